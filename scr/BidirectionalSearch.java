@@ -0,0 +1,360 @@
+package hw7;
+
+import hw5.EdgeCursor;
+import hw5.IndexedGraph;
+import hw5.LabEdge;
+import hw5.LabeledGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BidirectionalSearch is a single-use minimum-cost path search that grows
+ * one Dijkstra search forward from the origin along out-edges and one
+ * backward from the destination along in-edges, always advancing the side
+ * whose next node is closer.
+ * <p>
+ * Whenever a side relaxes an edge into a node the other side has reached,
+ * the joined path is a candidate. The search stops once the keys at the
+ * top of the two frontiers add up to at least the best candidate, since
+ * no path through an unsettled node can then be cheaper. Like
+ * DijkstraSearch, paths are ordered by total cost and then by number of
+ * edges, and the returned labels are the cumulative cost from the origin.
+ *
+ * @param <T> type of the nodes of the graph
+ */
+public abstract class BidirectionalSearch<T> {
+	// Rep invariant:
+	//     forward, backward != null
+	//     bestFrom == -1 iff no candidate path has been found, and then
+	//     bestCost is infinite
+	//     otherwise bestFrom is reached by forward, bestTo is reached by
+	//     backward, and an edge from bestFrom to bestTo weighs bestWeight
+
+	// Abstract function:
+	//     AF(this) = a search in progress whose cheapest known path from
+	//                origin to dest is the forward path to bestFrom, then
+	//                the edge to bestTo, then the backward path to dest
+
+	private final Side forward;  // search from the origin along out-edges
+	private final Side backward; // search from the destination along in-edges
+	private double bestCost = Double.POSITIVE_INFINITY; // cost of best candidate
+	private int bestHops = Integer.MAX_VALUE; // edge count of best candidate
+	private int bestFrom = -1;  // last forward node of best candidate
+	private int bestTo = -1;    // first backward node of best candidate
+	private double bestWeight;  // weight of the edge joining them
+
+	/**
+	 * Creates a search expecting about capacity nodes.
+	 */
+	private BidirectionalSearch(int capacity) {
+		capacity = Math.max(16, capacity);
+		this.forward = new Side(capacity);
+		this.backward = new Side(capacity);
+	}
+
+	/**
+	 * Finds the minimum-cost path from origin to dest.
+	 *
+	 * @param graph the graph used to find shortest path from origin to dest
+	 * @param origin the node the path starts from
+	 * @param dest the node the path ends at
+	 * @requires graph, origin, dest != null, origin and dest are in graph,
+	 *           and no label in graph is negative
+	 * @return the minimum-cost path from origin to dest as a list of edges
+	 *         whose labels are the cumulative cost up to each node, starting
+	 *         with (origin, 0.0), or null if no path exists
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> /*@Nullable*/ List<LabEdge<T, Double>> minimumCostPath(
+			LabeledGraph<T, Double> graph, T origin, T dest) {
+		BidirectionalSearch<T> search;
+		if (graph instanceof IndexedGraph)
+			search = new OverIndexedGraph<T>((IndexedGraph<T>) graph);
+		else
+			search = new OverLabeledGraph<T>(graph);
+		return search.run(origin, dest);
+	}
+
+	/**
+	 * Returns the id of node, handing out a new id if needed.
+	 */
+	abstract int idOf(T node);
+
+	/**
+	 * Returns the node with id.
+	 */
+	abstract T nodeAt(int id);
+
+	/**
+	 * Calls relaxForward(u, v, weight) for every out-edge (u, v).
+	 */
+	abstract void expandForward(int u);
+
+	/**
+	 * Calls relaxBackward(u, v, weight) for every in-edge (v, u).
+	 */
+	abstract void expandBackward(int u);
+
+	/**
+	 * Runs both searches until the stopping criterion holds or one side
+	 * runs out of nodes.
+	 */
+	private /*@Nullable*/ List<LabEdge<T, Double>> run(T origin, T dest) {
+		int start = idOf(origin);
+		int target = idOf(dest);
+		forward.start(start);
+		backward.start(target);
+		if (start == target) {
+			bestCost = 0.0;
+			bestHops = 0;
+		}
+
+		while (!forward.active.isEmpty() && !backward.active.isEmpty()) {
+			int f = forward.active.peek();
+			int b = backward.active.peek();
+			double reach = forward.dist[f] + backward.dist[b];
+			int reachHops = forward.hops[f] + backward.hops[b];
+			if (compare(reach, reachHops, bestCost, bestHops) >= 0)
+				break;
+
+			if (compare(forward.dist[f], forward.hops[f], backward.dist[b], backward.hops[b]) <= 0) {
+				forward.settled[forward.active.poll()] = true;
+				expandForward(f);
+			} else {
+				backward.settled[backward.active.poll()] = true;
+				expandBackward(b);
+			}
+		}
+
+		if (start == target)
+			return pathOf(start, -1, 0.0);
+		if (bestFrom == -1)
+			return null;
+		return pathOf(bestFrom, bestTo, bestWeight);
+	}
+
+	/**
+	 * Relaxes the out-edge (u, v) from the forward side.
+	 */
+	final void relaxForward(int u, int v, double weight) {
+		forward.relax(u, v, weight);
+		if (backward.reached(v))
+			offerCandidate(u, v, weight);
+	}
+
+	/**
+	 * Relaxes the in-edge (v, u) from the backward side.
+	 */
+	final void relaxBackward(int u, int v, double weight) {
+		backward.relax(u, v, weight);
+		if (forward.reached(v))
+			offerCandidate(v, u, weight);
+	}
+
+	/**
+	 * Records the path through the edge (from, to) if it beats the best
+	 * candidate.
+	 */
+	private void offerCandidate(int from, int to, double weight) {
+		double cost = forward.dist[from] + weight + backward.dist[to];
+		int hops = forward.hops[from] + 1 + backward.hops[to];
+		if (compare(cost, hops, bestCost, bestHops) < 0) {
+			bestCost = cost;
+			bestHops = hops;
+			bestFrom = from;
+			bestTo = to;
+			bestWeight = weight;
+		}
+	}
+
+	/**
+	 * Grows the per-id arrays of both sides so that ids below capacity fit.
+	 */
+	final void ensureCapacity(int capacity) {
+		forward.ensureCapacity(capacity);
+		backward.ensureCapacity(capacity);
+	}
+
+	/**
+	 * Builds the path made of the forward path to from, the edge to to
+	 * weighing weight, and the backward path from to. to is -1 if the
+	 * forward path alone is the whole path.
+	 */
+	private List<LabEdge<T, Double>> pathOf(int from, int to, double weight) {
+		List<LabEdge<T, Double>> path = new ArrayList<LabEdge<T, Double>>();
+		int[] head = new int[forward.hops[from] + 1];
+		for (int i = from; i != -1; i = forward.pred[i])
+			head[forward.hops[i]] = i;
+		for (int id : head)
+			path.add(new LabEdge<T, Double>(nodeAt(id), forward.dist[id]));
+		double cost = forward.dist[from];
+		if (to != -1) {
+			cost += weight;
+			path.add(new LabEdge<T, Double>(nodeAt(to), cost));
+			for (int i = to; backward.pred[i] != -1; i = backward.pred[i]) {
+				cost += backward.via[i];
+				path.add(new LabEdge<T, Double>(nodeAt(backward.pred[i]), cost));
+			}
+		}
+		return path;
+	}
+
+	/**
+	 * Orders (cost, hops) pairs by cost and then by hops.
+	 */
+	private static int compare(double c1, int h1, double c2, int h2) {
+		int c = Double.compare(c1, c2);
+		return c != 0 ? c : Integer.compare(h1, h2);
+	}
+
+	/**
+	 * One direction of the search: a frontier plus one distance, hop count,
+	 * predecessor and predecessor edge weight per reached id.
+	 */
+	private static final class Side {
+		private final IndexedMinHeap active; // reached but not settled ids
+		private double[] dist;   // cost of best known path to each id
+		private int[] hops;      // edge count of best known path to each id
+		private int[] pred;      // neighbour each id was reached from
+		private double[] via;    // weight of the edge to pred
+		private boolean[] settled; // true once the best path to an id is final
+		private boolean[] seen;  // true once an id has been reached
+
+		Side(int capacity) {
+			active = new IndexedMinHeap(capacity);
+			dist = new double[capacity];
+			hops = new int[capacity];
+			pred = new int[capacity];
+			via = new double[capacity];
+			settled = new boolean[capacity];
+			seen = new boolean[capacity];
+		}
+
+		void start(int id) {
+			dist[id] = 0.0;
+			hops[id] = 0;
+			pred[id] = -1;
+			seen[id] = true;
+			active.offer(id, 0.0, 0);
+		}
+
+		boolean reached(int id) {
+			return seen[id];
+		}
+
+		void relax(int u, int v, double weight) {
+			if (settled[v])
+				return;
+			double newCost = dist[u] + weight;
+			int length = hops[u] + 1;
+			if (active.offer(v, newCost, length)) {
+				dist[v] = newCost;
+				hops[v] = length;
+				pred[v] = u;
+				via[v] = weight;
+				seen[v] = true;
+			}
+		}
+
+		void ensureCapacity(int capacity) {
+			if (capacity <= dist.length)
+				return;
+			int cap = Math.max(capacity, dist.length * 2);
+			dist = Arrays.copyOf(dist, cap);
+			hops = Arrays.copyOf(hops, cap);
+			pred = Arrays.copyOf(pred, cap);
+			via = Arrays.copyOf(via, cap);
+			settled = Arrays.copyOf(settled, cap);
+			seen = Arrays.copyOf(seen, cap);
+		}
+	}
+
+	/**
+	 * Search over a graph that already numbers its nodes.
+	 */
+	private static final class OverIndexedGraph<T> extends BidirectionalSearch<T> {
+		private final IndexedGraph<T> graph;    // walked forward
+		private final IndexedGraph<T> reversed; // walked backward
+
+		OverIndexedGraph(IndexedGraph<T> graph) {
+			super(graph.nodeCount());
+			this.graph = graph;
+			this.reversed = graph.transpose();
+		}
+
+		@Override
+		int idOf(T node) {
+			return graph.idOf(node);
+		}
+
+		@Override
+		T nodeAt(int id) {
+			return graph.nodeAt(id);
+		}
+
+		@Override
+		void expandForward(int u) {
+			for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++)
+				relaxForward(u, graph.targetOf(e), graph.weightOf(e));
+		}
+
+		@Override
+		void expandBackward(int u) {
+			for (int e = reversed.firstEdge(u), end = reversed.endEdge(u); e < end; e++)
+				relaxBackward(u, reversed.targetOf(e), reversed.weightOf(e));
+		}
+	}
+
+	/**
+	 * Search over a graph of objects, numbering nodes as they are reached.
+	 */
+	private static final class OverLabeledGraph<T> extends BidirectionalSearch<T> {
+		private final EdgeCursor<T> outEdges; // reused for every forward expansion
+		private final EdgeCursor<T> inEdges;  // reused for every backward expansion
+		private final Map<T, Integer> ids;    // node to id, in order reached
+		private final List<T> nodes;          // id to node
+
+		OverLabeledGraph(LabeledGraph<T, Double> graph) {
+			super(graph.size());
+			this.outEdges = graph.newEdgeCursor(DijkstraSearch.WEIGHT);
+			this.inEdges = graph.newInEdgeCursor(DijkstraSearch.WEIGHT);
+			this.ids = new HashMap<T, Integer>();
+			this.nodes = new ArrayList<T>();
+		}
+
+		@Override
+		int idOf(T node) {
+			Integer id = ids.get(node);
+			if (id != null)
+				return id;
+			int next = nodes.size();
+			ensureCapacity(next + 1);
+			ids.put(node, next);
+			nodes.add(node);
+			return next;
+		}
+
+		@Override
+		T nodeAt(int id) {
+			return nodes.get(id);
+		}
+
+		@Override
+		void expandForward(int u) {
+			outEdges.reset(nodes.get(u));
+			while (outEdges.next())
+				relaxForward(u, idOf(outEdges.dest()), outEdges.weight());
+		}
+
+		@Override
+		void expandBackward(int u) {
+			inEdges.reset(nodes.get(u));
+			while (inEdges.next())
+				relaxBackward(u, idOf(inEdges.dest()), inEdges.weight());
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package hw8;
+
+import hw5.CsrGraph;
+import hw5.LabEdge;
+import hw7.IndexedSearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * BuildingRouteTable holds the shortest walking routes between every pair
+ * of building locations on campus, so that a building-to-building query
+ * is a table lookup plus unrolling the route.
+ * <p>
+ * For every building location the table stores the walking distance to
+ * every other building location, and the shortest-path tree of one
+ * IndexedSearch from it: the predecessor of each node on its route. The
+ * search stops once every building location is settled, and the searches
+ * of different buildings run in parallel, one IndexedSearch per worker.
+ * Routes are ordered by distance and then by number of path segments,
+ * break exact ties as MarvelPaths2.minimumCostPath does, and are
+ * labelled with the same cumulative distances.
+ * <p>
+ * The table takes 8 bytes per pair of buildings and 4 bytes per building
+ * and path node, which memoryBytes reports and estimateBytes predicts
+ * before any of it is allocated.
+ *
+ * @specfield buildings : Set<Coordinates> // locations routes are stored between
+ */
+public final class BuildingRouteTable {
+	// Rep invariant:
+	//     graph, rows, nodeOf, distances, preds != null
+	//     rows maps each building location to its index in nodeOf, and
+	//     nodeOf[i] is the id of that location in graph
+	//     distances.length == nodeOf.length * nodeOf.length
+	//     preds.length == nodeOf.length * graph.nodeCount()
+
+	// Abstract function:
+	//     AF(this) = a table such that buildings = rows.keySet(), the
+	//                distance from building i to building j is
+	//                distances[i * b + j] and the route from i to the node
+	//                with id v ends with an edge from preds[i * n + v], where
+	//                b = nodeOf.length and n = graph.nodeCount()
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	private final CsrGraph<Coordinates> graph; // the campus paths
+	private final Map<Coordinates, Integer> rows; // building location to row
+	private final int[] nodeOf;      // id of the location of each row
+	private final double[] distances; // row-major building distances
+	private final int[] preds;       // row-major predecessor ids, -1 if none
+	private final long buildNanos;   // time taken to fill the table
+
+	// longest array the JVM reliably allocates
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Runs one search per building location of paths.
+	 *
+	 * @param paths the campus paths
+	 * @param buildings locations of the buildings; those that are not
+	 *        nodes of paths are left out
+	 * @requires paths, buildings != null and no distance in paths is
+	 *           negative
+	 * @throws IllegalArgumentException if the distances or predecessors
+	 *         of the table would not fit in one array
+	 */
+	public BuildingRouteTable(CsrGraph<Coordinates> paths, Collection<Coordinates> buildings) {
+		if (paths == null || buildings == null)
+			throw new IllegalArgumentException("paths and buildings cannot be null.");
+		long start = System.nanoTime();
+		this.graph = paths;
+		this.rows = new HashMap<Coordinates, Integer>();
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Coordinates location : buildings) {
+			int id = paths.idOf(location);
+			if (id >= 0 && !rows.containsKey(location)) {
+				rows.put(location, ids.size());
+				ids.add(id);
+			}
+		}
+		final int b = ids.size();
+		this.nodeOf = new int[b];
+		for (int i = 0; i < b; i++)
+			nodeOf[i] = ids.get(i);
+		long pairs = (long) b * b;
+		long predCount = (long) b * paths.nodeCount();
+		if (pairs > MAX_ARRAY_LENGTH || predCount > MAX_ARRAY_LENGTH)
+			throw new IllegalArgumentException("routes between " + b + " buildings over " + 
+					paths.nodeCount() + " nodes are too many for one table.");
+		this.distances = new double[(int) pairs];
+		this.preds = new int[(int) predCount];
+
+		// true for the ids of building locations, so that a search knows
+		// when it is done
+		final boolean[] building = new boolean[paths.nodeCount()];
+		for (int id : nodeOf)
+			building[id] = true;
+		final ThreadLocal<IndexedSearch> searches = new ThreadLocal<IndexedSearch>() {
+			@Override
+			protected IndexedSearch initialValue() {
+				return new IndexedSearch(graph);
+			}
+		};
+		IntStream.range(0, b).parallel().forEach(new IntConsumer() {
+			public void accept(int row) {
+				fillRow(row, building, searches.get());
+			}
+		});
+		this.buildNanos = System.nanoTime() - start;
+		checkRep();
+	}
+
+	/**
+	 * Constructs a table from the arrays of a table read back by 
+	 * CampusSnapshot, taking ownership of them.
+	 *
+	 * @requires nodeOf holds distinct ids of paths, distances.length ==
+	 *           nodeOf.length * nodeOf.length, preds.length ==
+	 *           nodeOf.length * paths.nodeCount(), and preds are the
+	 *           predecessors the searches of a table over paths found
+	 */
+	BuildingRouteTable(CsrGraph<Coordinates> paths, int[] nodeOf, double[] distances, int[] preds) {
+		this.graph = paths;
+		this.rows = new HashMap<Coordinates, Integer>();
+		for (int i = 0; i < nodeOf.length; i++)
+			rows.put(paths.nodeAt(nodeOf[i]), i);
+		this.nodeOf = nodeOf;
+		this.distances = distances;
+		this.preds = preds;
+		this.buildNanos = 0;
+		checkRep();
+	}
+
+	/**
+	 * Returns the building locations routes are stored between.
+	 *
+	 * @return unmodifiable view of the building locations in the table
+	 */
+	public Set<Coordinates> getBuildings() {
+		return Collections.unmodifiableSet(rows.keySet());
+	}
+
+	/**
+	 * Returns true if routes from and to location are in the table.
+	 *
+	 * @param location a point on campus
+	 * @return true if location is a building location in the table
+	 */
+	public boolean contains(Coordinates location) {
+		return rows.containsKey(location);
+	}
+
+	/**
+	 * Returns the walking distance between two buildings.
+	 *
+	 * @param start location of the first building
+	 * @param end location of the second building
+	 * @requires start, end are in the table
+	 * @throws IllegalArgumentException if start or end is not in the table
+	 * @return the length of the shortest route from start to end, or
+	 *         infinity if there is none
+	 */
+	public double distance(Coordinates start, Coordinates end) {
+		return distances[rowOf(start) * nodeOf.length + rowOf(end)];
+	}
+
+	/**
+	 * Returns the shortest walking route between two buildings.
+	 *
+	 * @param start location of the first building
+	 * @param end location of the second building
+	 * @requires start, end are in the table
+	 * @throws IllegalArgumentException if start or end is not in the table
+	 * @return the shortest route from start to end as a list of edges whose
+	 *         labels are the distance walked up to each point, starting
+	 *         with (start, 0.0), or null if there is no route
+	 */
+	public /*@Nullable*/ List<LabEdge<Coordinates, Double>> route(Coordinates start, Coordinates end) {
+		int row = rowOf(start);
+		int target = nodeOf[rowOf(end)];
+		if (distances[row * nodeOf.length + rowOf(end)] == Double.POSITIVE_INFINITY)
+			return null;
+		int n = graph.nodeCount();
+		int length = 0;
+		for (int v = target; v != -1; v = preds[row * n + v])
+			length++;
+		int[] ids = new int[length];
+		for (int v = target, i = length - 1; v != -1; v = preds[row * n + v], i--)
+			ids[i] = v;
+		List<LabEdge<Coordinates, Double>> path = new ArrayList<LabEdge<Coordinates, Double>>(length);
+		double walked = 0.0;
+		path.add(new LabEdge<Coordinates, Double>(graph.nodeAt(ids[0]), walked));
+		for (int i = 1; i < length; i++) {
+			walked += shortestEdge(ids[i - 1], ids[i]);
+			path.add(new LabEdge<Coordinates, Double>(graph.nodeAt(ids[i]), walked));
+		}
+		return path;
+	}
+
+	/**
+	 * Returns the number of building locations in the table.
+	 *
+	 * @return number of building locations
+	 */
+	public int buildingCount() {
+		return nodeOf.length;
+	}
+
+	/**
+	 * Returns the number of bytes taken by the distance and predecessor
+	 * arrays of the table.
+	 *
+	 * @return approximate memory cost of the table in bytes
+	 */
+	public long memoryBytes() {
+		return 8L * distances.length + 4L * preds.length + 4L * nodeOf.length;
+	}
+
+	/**
+	 * Returns the number of bytes memoryBytes would report for a table of
+	 * buildings building locations over a graph of nodes nodes, without
+	 * building it.
+	 *
+	 * @param buildings number of building locations
+	 * @param nodes number of nodes of the campus paths
+	 * @requires buildings, nodes >= 0
+	 * @return approximate memory cost of such a table in bytes
+	 */
+	public static long estimateBytes(int buildings, int nodes) {
+		return 8L * buildings * buildings + 4L * buildings * nodes + 4L * buildings;
+	}
+
+	/**
+	 * Returns how long filling the table took.
+	 *
+	 * @return build time in milliseconds, or 0 if the table was read 
+	 *         from a snapshot
+	 */
+	public long buildMillis() {
+		return buildNanos / 1000000;
+	}
+
+	/**
+	 * Returns the id of the location of each row, for CampusSnapshot.
+	 */
+	int[] nodeIds() {
+		return nodeOf;
+	}
+
+	/**
+	 * Returns the row-major building distances, for CampusSnapshot.
+	 */
+	double[] distanceMatrix() {
+		return distances;
+	}
+
+	/**
+	 * Returns the row-major predecessor ids, for CampusSnapshot.
+	 */
+	int[] predecessorMatrix() {
+		return preds;
+	}
+
+	/**
+	 * Returns the row of a building location.
+	 */
+	private int rowOf(Coordinates location) {
+		Integer row = rows.get(location);
+		if (row == null)
+			throw new IllegalArgumentException(location + " is not a building in the table.");
+		return row;
+	}
+
+	/**
+	 * Returns the weight of the lightest edge from u to v.
+	 */
+	private double shortestEdge(int u, int v) {
+		double best = Double.POSITIVE_INFINITY;
+		for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+			if (graph.targetOf(e) == v)
+				best = Math.min(best, graph.weightOf(e));
+		}
+		return best;
+	}
+
+	/**
+	 * Searches from the building of row until every building is settled,
+	 * filling the distances and predecessors of row.
+	 */
+	private void fillRow(int row, boolean[] building, IndexedSearch search) {
+		int n = graph.nodeCount();
+		int b = nodeOf.length;
+		int base = row * n;
+		Arrays.fill(preds, base, base + n, -1);
+		search.run(nodeOf[row], building, b);
+		for (int i = 0; i < search.settledCount(); i++) {
+			int v = search.settledAt(i);
+			preds[base + v] = search.predecessorOf(v);
+		}
+		for (int j = 0; j < b; j++)
+			distances[row * b + j] = search.distanceTo(nodeOf[j]);
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			if (distances.length != nodeOf.length * nodeOf.length)
+				throw new RuntimeException("distance matrix has the wrong size");
+			if (preds.length != nodeOf.length * graph.nodeCount())
+				throw new RuntimeException("predecessor matrix has the wrong size");
+			for (Map.Entry<Coordinates, Integer> entry : rows.entrySet()) {
+				if (graph.idOf(entry.getKey()) != nodeOf[entry.getValue()])
+					throw new RuntimeException("row of " + entry.getKey() + " is for another node");
+			}
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package hw8;
 
+import hw5.CsrGraph;
 import hw5.DirGraph;
+import hw5.LabEdge;
 
 import java.io.*;
 import java.util.*;
@@ -29,6 +31,7 @@ public class CampusDataParser {
 	 * 		  building's abbreviated name to its location (empty initially)
 	 * @throws Exception if the format of the file does not match the 
 	 * 		   expected format
+	 * @throws IOException if the file cannot be read
 	 */
 	public static void parseBuildingData(String buildings, 
 			Map<String, String> buildingNames, Map<String, String> buildingNamesOpp, 
@@ -69,9 +72,6 @@ public class CampusDataParser {
 	    		}
 	    		inputLine = reader.readLine();
 	    	}
-	    } catch (IOException e) {
-	    	System.err.println(e.toString());
-	    	e.printStackTrace(System.err);
 	    } finally {
 	    	if (reader != null) {
 	    		reader.close();
@@ -97,69 +97,120 @@ public class CampusDataParser {
 	 * @param campusPaths a graph that contains campus paths (empty initially)
 	 * @throws Exception if the format of the file does not match the 
 	 * 		   expected format
+	 * @throws IOException if the file cannot be read
 	 */
 	public static void buildCampusPaths(String pathsfile, 
 			DirGraph<Coordinates, Double> campusPaths) throws Exception {
+		DirGraph<Coordinates, Double> built = buildCampusPaths(pathsfile);
+		for (Coordinates location : built.getNodesView())
+			campusPaths.addNode(location);
+		for (Coordinates location : built.getNodesView()) {
+			for (LabEdge<Coordinates, Double> edge : built.getOutwardEdgesView(location))
+				campusPaths.addEdge(location, edge.getDest(), edge.getLabel());
+		}
+	}
+	
+	/**
+	 * Read campus paths dataset and returns the campus paths, 
+	 * collecting them in a DirGraph.Builder so that the graph is 
+	 * built in one pass.
+	 * 
+	 * @requires File is well-formed. File passed in should start with 
+	 * 			 a non-indented line (if file is not empty) with 
+	 * 			 coordinates of a point, followed by lines of 
+	 * 			 coordinates and the distance between the coordinates of 
+	 * 			 point in non-indented line and	coordinates of point in 
+	 * 			 this line. Format of non-indented lines should be 
+	 * 			 x coordinate of the point followed by a comma and then 
+	 * 			 the y coordinate of the point (e.g. x,y). Format of 
+	 * 			 indented lines should be like non-indented lines 
+	 * 			 and followed by a colon and the distance between those 
+	 * 			 two points.
+	 * @param pathsfile file which contains data of campus paths
+	 * @return a graph that contains campus paths
+	 * @throws MalformedDataException if the format of the file does not 
+	 * 		   match the expected format
+	 * @throws IOException if the file cannot be read
+	 */
+	public static DirGraph<Coordinates, Double> buildCampusPaths(String pathsfile) 
+			throws IOException, MalformedDataException {
+		CsrGraph<Coordinates> loaded = loadCampusPaths(pathsfile);
+		DirGraph.Builder<Coordinates, Double> campusPaths = 
+				new DirGraph.Builder<Coordinates, Double>(loaded.nodeCount(), loaded.edgeCount());
+		for (int id = 0; id < loaded.nodeCount(); id++)
+			campusPaths.addNode(loaded.nodeAt(id));
+		for (int id = 0; id < loaded.nodeCount(); id++) {
+			Coordinates location = loaded.nodeAt(id);
+			for (int e = loaded.firstEdge(id); e < loaded.endEdge(id); e++)
+				campusPaths.addEdge(location, loaded.nodeAt(loaded.targetOf(e)), loaded.weightOf(e));
+		}
+		return campusPaths.build();
+	}
+	
+	/**
+	 * Read campus paths dataset and returns the campus paths as an 
+	 * immutable CSR graph, equal to 
+	 * CsrGraph.freeze(buildCampusPaths(pathsfile)).
+	 * <p>
+	 * The file is streamed a chunk of bytes at a time and scanned by hand: 
+	 * numbers are parsed without making a String per line, each distinct 
+	 * point gets one Coordinates through a table keyed by the bits of its 
+	 * coordinates, and the edges are collected in primitive arrays and 
+	 * handed to CsrGraph.of. Quotes, spaces and tabs around the numbers 
+	 * are skipped, and a line with a distance is an edge whether or not 
+	 * it is indented.
+	 * 
+	 * @requires File is well-formed, as for buildCampusPaths(pathsfile)
+	 * @param pathsfile file which contains data of campus paths
+	 * @return a graph that contains campus paths
+	 * @throws MalformedDataException if the format of the file does not 
+	 * 		   match the expected format; it gives the line and column at 
+	 * 		   which the file stops matching it
+	 * @throws IOException if the file cannot be read
+	 */
+	public static CsrGraph<Coordinates> loadCampusPaths(String pathsfile) 
+			throws IOException, MalformedDataException {
+		InputStream in = new FileInputStream(pathsfile);
+		try {
+			return new CampusPathsScanner(in).scan();
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * A checked exception for a data file that does not match its 
+	 * expected format, giving where in the file it stops matching.
+	 */
+	@SuppressWarnings("serial")
+	public static class MalformedDataException extends Exception {
+		private final int line;
+		private final int column;
 		
-		BufferedReader reader = null;
-	    try {
-	    	reader = new BufferedReader(new FileReader(pathsfile));
-	    	
-	    	String inputLine = reader.readLine();
-	    	Coordinates location = null;
-	    	while (inputLine != null) {
-	    		
-	    		// Ignore comment lines.
-	    		if (!inputLine.startsWith("#")) {
-	    			
-		    		inputLine = inputLine.replace("\"", "");
-		    		
-		    		inputLine = inputLine.replace("\t", "");
-		    		// split coordinate and distance from indented lines
-		    		String[] tokens = inputLine.split(": ");
-		    		
-		    		String[] tokens2 = tokens[0].split(",");
-	    			double x = Double.parseDouble(tokens2[0]);
-	    			double y = Double.parseDouble(tokens2[1]);
-	    			Coordinates coordinates = new Coordinates(x, y);
-	    			
-		    		// token.length == 1 or 2 means the line is non-indented
-		    		// else means the file is not well-formed
-		    		if (tokens.length == 1) {
-		    			// add the coordinates to the graph if it
-		    			// is not already in the graph
-		    			if (!campusPaths.containsNode(coordinates))
-		    				campusPaths.addNode(coordinates);
-		    			
-		    			location = coordinates;
-		    		} else if (tokens.length == 2) {
-		    			if (location == null)
-		    				throw new Exception("File is not well-formed. " +
-		    						"Non-indented line should come before " +
-		    						"indented line.");
-
-		    			// add the coordinates to the graph is it
-		    			// is not already in the graph
-		    			if (!campusPaths.containsNode(coordinates))
-		    				campusPaths.addNode(coordinates);
-		    			
-		    			double dist = Double.parseDouble(tokens[1]);
-		    			campusPaths.addEdge(location, coordinates, dist);
-		    		} else {
-		    			throw new Exception("File is not well-formed. " + inputLine);
-		    		}
-	    		}
-	    		
-	    		inputLine = reader.readLine();
-	    		
-	    	}
-	    } catch (IOException e) {
-	    	System.err.println(e.toString());
-	    	e.printStackTrace(System.err);
-	    } finally {
-	    	if (reader != null) {
-	    		reader.close();
-	    	}
-	    }
+		/**
+		 * @param message what was expected
+		 * @param line the number of the line, from 1
+		 * @param column the number of the byte in the line, from 1
+		 */
+		public MalformedDataException(String message, int line, int column) {
+			super("line " + line + ", column " + column + ": " + message);
+			this.line = line;
+			this.column = column;
+		}
+		
+		/**
+		 * @return the number of the line that is malformed, from 1
+		 */
+		public int getLine() {
+			return line;
+		}
+		
+		/**
+		 * @return the number of the byte in the line at which the line 
+		 *         stops matching the format, from 1
+		 */
+		public int getColumn() {
+			return column;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,337 @@
+package hw8;
+
+import hw5.CsrGraph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CampusPathsScanner reads a campus paths file a chunk of bytes at a time
+ * and collects its points and edges in primitive arrays, for
+ * CampusDataParser.loadCampusPaths.
+ * <p>
+ * Numbers are parsed from the bytes of a line without making a String,
+ * and each distinct point is numbered once through a table keyed by the
+ * bits of its coordinates, so a Coordinates is made per point rather
+ * than per line. The edges are then grouped by origin and handed to
+ * CsrGraph.of in the order a DirGraph keeps them, so the graph equals
+ * CsrGraph.freeze of the DirGraph buildCampusPaths returns.
+ * <p>
+ * Each line is a comment starting with #, a point "x,y", or an edge
+ * "x,y: distance" from the last point to x,y, usually indented with a
+ * tab. Quotes, spaces and tabs around the numbers are skipped.
+ */
+final class CampusPathsScanner {
+
+	// bytes read from the file at a time
+	private static final int CHUNK = 1 << 16;
+
+	// powers of ten a double holds exactly
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+	}
+
+	private final InputStream in;
+	private final byte[] chunk = new byte[CHUNK];
+	private int chunkPos = 0;
+	private int chunkEnd = 0;
+
+	private byte[] line = new byte[256]; // bytes of the current line
+	private int length;                  // number of bytes in line
+	private int pos;                     // next byte of line to scan
+	private int lineNumber = 0;
+
+	// the points, numbered in the order first seen
+	private double[] xs = new double[1024];
+	private double[] ys = new double[1024];
+	private int[] hashes = new int[1024];
+	private int[] table = new int[4096]; // id + 1 of the point in each slot, 0 if empty
+	private int points = 0;
+
+	// the edges, in the order read
+	private int[] origins = new int[1024];
+	private int[] dests = new int[1024];
+	private double[] distances = new double[1024];
+	private int edges = 0;
+
+	/**
+	 * @param in the paths file, read to its end by scan
+	 */
+	CampusPathsScanner(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the paths file to its end and returns its graph.
+	 *
+	 * @return the campus paths, with the points numbered in the order
+	 *         they first appear
+	 * @throws IOException if the file cannot be read
+	 * @throws CampusDataParser.MalformedDataException if a line is not a
+	 *         comment, a point or an edge, or an edge comes before any point
+	 */
+	CsrGraph<Coordinates> scan() throws IOException, CampusDataParser.MalformedDataException {
+		int location = -1;
+		while (nextLine()) {
+			if (length > 0 && line[0] == '#')
+				continue;
+			skipBlanks();
+			double x = number("x coordinate");
+			skipBlanks();
+			expect(',', "',' after the x coordinate");
+			skipBlanks();
+			double y = number("y coordinate");
+			skipBlanks();
+			int point = idOf(x, y);
+			if (pos == length) {
+				location = point;
+				continue;
+			}
+			expect(':', "':' or the end of the line");
+			if (location < 0)
+				throw error(1, "an edge must come after a point line");
+			skipBlanks();
+			double distance = number("distance");
+			skipBlanks();
+			if (pos != length)
+				throw error(pos + 1, "expected the end of the line");
+			addEdge(location, point, distance);
+		}
+		return build();
+	}
+
+	/**
+	 * Reads the next line into line, without its line end.
+	 *
+	 * @return false if the file has no more lines
+	 */
+	private boolean nextLine() throws IOException {
+		length = 0;
+		pos = 0;
+		boolean any = false;
+		while (true) {
+			if (chunkPos == chunkEnd) {
+				chunkEnd = in.read(chunk);
+				chunkPos = 0;
+				if (chunkEnd <= 0) {
+					chunkEnd = 0;
+					break;
+				}
+			}
+			any = true;
+			byte b = chunk[chunkPos++];
+			if (b == '\n')
+				break;
+			if (length == line.length)
+				line = Arrays.copyOf(line, 2 * length);
+			line[length++] = b;
+		}
+		if (!any)
+			return false;
+		if (length > 0 && line[length - 1] == '\r')
+			length--;
+		lineNumber++;
+		return true;
+	}
+
+	private void skipBlanks() {
+		while (pos < length && (line[pos] == ' ' || line[pos] == '\t' || line[pos] == '"'))
+			pos++;
+	}
+
+	private void expect(char c, String what) throws CampusDataParser.MalformedDataException {
+		if (pos == length || line[pos] != c)
+			throw error(pos + 1, "expected " + what);
+		pos++;
+	}
+
+	/**
+	 * Parses the number at pos, as Double.parseDouble would, and moves pos
+	 * past it. Numbers of at most 15 significant digits and a decimal
+	 * exponent of at most 22 are exact with one multiplication or division
+	 * of doubles, so only longer numbers are handed to Double.parseDouble.
+	 */
+	private double number(String what) throws CampusDataParser.MalformedDataException {
+		int start = pos;
+		boolean negative = false;
+		if (pos < length && (line[pos] == '-' || line[pos] == '+'))
+			negative = line[pos++] == '-';
+		long mantissa = 0;
+		int digits = 0;      // significant digits in mantissa
+		int scale = 0;       // decimal exponent of the last digit
+		boolean any = false; // true once a digit is seen
+		boolean exact = true;
+		for (boolean point = false; pos < length; pos++) {
+			byte b = line[pos];
+			if (b == '.' && !point) {
+				point = true;
+			} else if (b >= '0' && b <= '9') {
+				any = true;
+				if (mantissa != 0 || b != '0')
+					digits++;
+				if (digits > 15)
+					exact = false;
+				else
+					mantissa = 10 * mantissa + (b - '0');
+				if (point)
+					scale--;
+			} else {
+				break;
+			}
+		}
+		if (!any)
+			throw error(start + 1, "expected the " + what);
+		if (pos < length && (line[pos] == 'e' || line[pos] == 'E')) {
+			int at = pos++;
+			boolean negativeExponent = false;
+			if (pos < length && (line[pos] == '-' || line[pos] == '+'))
+				negativeExponent = line[pos++] == '-';
+			int exponent = 0;
+			int expStart = pos;
+			for (; pos < length && line[pos] >= '0' && line[pos] <= '9'; pos++)
+				exponent = Math.min(10000, 10 * exponent + (line[pos] - '0'));
+			if (pos == expStart)
+				throw error(at + 1, "expected the exponent of the " + what);
+			scale += negativeExponent ? -exponent : exponent;
+		}
+		if (!exact || scale < -22 || scale > 22)
+			return Double.parseDouble(new String(line, start, pos - start, StandardCharsets.US_ASCII));
+		double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	private CampusDataParser.MalformedDataException error(int column, String message) {
+		return new CampusDataParser.MalformedDataException(message, lineNumber, column);
+	}
+
+	/**
+	 * Returns the id of the point (x, y), numbering it if it is new.
+	 */
+	private int idOf(double x, double y) {
+		long xBits = Double.doubleToLongBits(x);
+		long yBits = Double.doubleToLongBits(y);
+		int h = Coordinates.hashOf(x, y);
+		int mask = table.length - 1;
+		int slot = h & mask;
+		for (; table[slot] != 0; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (hashes[id] == h && Double.doubleToLongBits(xs[id]) == xBits
+					&& Double.doubleToLongBits(ys[id]) == yBits)
+				return id;
+		}
+		int id = points++;
+		if (id == xs.length) {
+			xs = Arrays.copyOf(xs, 2 * id);
+			ys = Arrays.copyOf(ys, 2 * id);
+			hashes = Arrays.copyOf(hashes, 2 * id);
+		}
+		xs[id] = x;
+		ys[id] = y;
+		hashes[id] = h;
+		table[slot] = id + 1;
+		if (2 * points >= table.length) {
+			table = new int[2 * table.length];
+			mask = table.length - 1;
+			for (int i = 0; i < points; i++) {
+				slot = hashes[i] & mask;
+				while (table[slot] != 0)
+					slot = (slot + 1) & mask;
+				table[slot] = i + 1;
+			}
+		}
+		return id;
+	}
+
+	private void addEdge(int origin, int dest, double distance) {
+		if (edges == origins.length) {
+			origins = Arrays.copyOf(origins, 2 * edges);
+			dests = Arrays.copyOf(dests, 2 * edges);
+			distances = Arrays.copyOf(distances, 2 * edges);
+		}
+		origins[edges] = origin;
+		dests[edges] = dest;
+		distances[edges] = distance;
+		edges++;
+	}
+
+	/**
+	 * Groups the edges by origin, sorts and deduplicates the out-edges of
+	 * each point as DirGraph does, and returns the graph.
+	 */
+	private CsrGraph<Coordinates> build() {
+		int n = points;
+		int[] offsets = new int[n + 1];
+		for (int e = 0; e < edges; e++)
+			offsets[origins[e] + 1]++;
+		for (int id = 0; id < n; id++)
+			offsets[id + 1] += offsets[id];
+		int[] targets = new int[edges];
+		double[] weights = new double[edges];
+		int[] next = Arrays.copyOf(offsets, n);
+		for (int e = 0; e < edges; e++) {
+			targets[next[origins[e]]] = dests[e];
+			weights[next[origins[e]]++] = distances[e];
+		}
+
+		// sort each out-edge list and drop duplicates in place, moving
+		// the kept edges of every point down to their final offsets
+		int kept = 0;
+		for (int id = 0; id < n; id++) {
+			int from = offsets[id];
+			int to = offsets[id + 1];
+			sort(targets, weights, from, to);
+			offsets[id] = kept;
+			for (int e = from; e < to; e++) {
+				if (e > from && targets[e] == targets[e - 1]
+						&& Double.doubleToLongBits(weights[e]) == Double.doubleToLongBits(weights[e - 1]))
+					continue;
+				targets[kept] = targets[e];
+				weights[kept++] = weights[e];
+			}
+		}
+		offsets[n] = kept;
+
+		List<Coordinates> nodes = new ArrayList<Coordinates>(n);
+		for (int id = 0; id < n; id++)
+			nodes.add(new Coordinates(xs[id], ys[id]));
+		return CsrGraph.of(nodes, offsets, Arrays.copyOf(targets, kept), Arrays.copyOf(weights, kept));
+	}
+
+	/**
+	 * Sorts the edges from .. to - 1 into the order of LabEdge.compareTo:
+	 * by weight, then by the hash code of the destination, then by the
+	 * destination. Out-degrees on a campus are small, so this is an
+	 * insertion sort.
+	 */
+	private void sort(int[] targets, double[] weights, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			int target = targets[i];
+			double weight = weights[i];
+			int j = i - 1;
+			for (; j >= from && compare(weight, target, weights[j], targets[j]) < 0; j--) {
+				targets[j + 1] = targets[j];
+				weights[j + 1] = weights[j];
+			}
+			targets[j + 1] = target;
+			weights[j + 1] = weight;
+		}
+	}
+
+	private int compare(double weight1, int target1, double weight2, int target2) {
+		int byWeight = Double.compare(weight1, weight2);
+		if (byWeight != 0 || target1 == target2)
+			return byWeight;
+		int byHash = Integer.compare(hashes[target1], hashes[target2]);
+		if (byHash != 0)
+			return byHash;
+		int byX = Double.compare(xs[target1], xs[target2]);
+		return byX != 0 ? byX : Double.compare(ys[target1], ys[target2]);
+	}
+}
@@ -1,9 +1,12 @@
 package hw8;
 
-import hw5.DirGraph;
+import hw5.CsrGraph;
 import hw5.LabEdge;
+import hw7.ContractionHierarchy;
 import hw7.MarvelPaths2;
+import hw7.SearchMode;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -18,7 +21,7 @@ import java.util.Set;
  * 							   // short names mapped to full names of buildings
  * @specfield buildingLocs : Map<String, Coordinates>
  * 								   // short names mapped to location of building
- * @specfield campusPaths : DirGraph<Coordinates, Double>
+ * @specfield campusPaths : CsrGraph<Coordinates>
  * 							 // a graph of all the possible paths with the associated distance on campus 
  */
 public class CampusRouteFinder {
@@ -35,9 +38,14 @@ public class CampusRouteFinder {
 		
 		// constant variable for checkRep
 		private static final boolean CHECK = false;
+		
+		// most bytes the routes between buildings may take for them to be 
+		// precomputed by default; the table grows with buildings times 
+		// path nodes, so a count of buildings alone does not bound it
+		private static final long MAX_PRECOMPUTED_BYTES = 64L << 20;
 
 		// a graph representing campus paths
-		private DirGraph<Coordinates, Double> campusPaths;
+		private CsrGraph<Coordinates> campusPaths;
 				
 		// a map that maps building's short name to full name
 		private Map<String, String> buildingNames;
@@ -48,8 +56,21 @@ public class CampusRouteFinder {
 		// a map that maps building's short name to its location
 		private Map<String, Coordinates> buildingLocs;
 		
+		// straight-line estimate of walking distances that is consistent
+		// on campusPaths, or null if A* cannot be used on campusPaths
+		private /*@Nullable*/ StraightLineHeuristic walkingHeuristic;
+		
+		// contraction hierarchy of campusPaths, or null until the first 
+		// query that asks for one
+		private /*@Nullable*/ ContractionHierarchy<Coordinates> hierarchy;
+		
+		// shortest routes between all pairs of buildings, or null if they 
+		// are not precomputed
+		private /*@Nullable*/ BuildingRouteTable routeTable;
+		
 		/**
-		 * Constructs a campus graph.
+		 * Constructs a campus graph, precomputing the routes between all 
+		 * pairs of buildings if they take no more than 64 MB.
 		 * 
 		 * @requires Files are well-formed.	each line of building passed in 
 		 * 			 should contain exactly four tokens separated by a 
@@ -69,8 +90,40 @@ public class CampusRouteFinder {
 		 * @param paths file which contains data of campus paths
 		 * @throws Exception if the format of the files does not match the 
 		 * 		   expected format
+		 * @throws IOException if either file cannot be read
 		 */
 		public CampusRouteFinder(String buildings, String paths) throws Exception {
+			this(buildings, paths, MAX_PRECOMPUTED_BYTES);
+		}
+		
+		/**
+		 * Constructs a campus graph, precomputing the routes between all 
+		 * pairs of buildings if precomputeRoutes is true. Precomputed routes 
+		 * take memory for one distance per pair of buildings and one node per 
+		 * building and path point, see getRouteTable.
+		 * 
+		 * @requires Files are well-formed, as for CampusRouteFinder(String, String)
+		 * @param buildings file which contains data of campus buildings
+		 * @param paths file which contains data of campus paths
+		 * @param precomputeRoutes true to precompute the routes between buildings
+		 * @throws Exception if the format of the files does not match the 
+		 * 		   expected format
+		 * @throws IOException if either file cannot be read
+		 * @throws IllegalArgumentException if precomputeRoutes is true and the 
+		 * 		   routes are too many for one table
+		 */
+		public CampusRouteFinder(String buildings, String paths, boolean precomputeRoutes) 
+				throws Exception {
+			this(buildings, paths, precomputeRoutes ? Long.MAX_VALUE : -1);
+		}
+		
+		/**
+		 * Constructs a campus graph, precomputing the routes between buildings 
+		 * if BuildingRouteTable.estimateBytes puts them at no more than 
+		 * maxTableBytes.
+		 */
+		private CampusRouteFinder(String buildings, String paths, long maxTableBytes) 
+				throws Exception {
 			if (buildings == null && paths == null)
 				throw new IllegalArgumentException("buildings and paths files passed in " +
 						"cannot be null.");
@@ -88,11 +141,43 @@ public class CampusRouteFinder {
 			// a map thats maps building's abbreviated name to its location
 			buildingLocs = new HashMap<String, Coordinates>();
 			
-			// a graph to hold all the paths with the distance associated with them
-			campusPaths = new DirGraph<Coordinates, Double>();
-			
 			CampusDataParser.parseBuildingData(buildings, buildingNames, buildingNamesOpp, buildingLocs);
-			CampusDataParser.buildCampusPaths(paths, campusPaths);
+			
+			// a graph to hold all the paths with the distance associated with them, 
+			// loaded straight into CSR form since it is only searched from here on
+			campusPaths = CampusDataParser.loadCampusPaths(paths);
+			
+			// A* is only used if straight-line distance never overestimates
+			// a walking distance on this campus
+			walkingHeuristic = StraightLineHeuristic.calibrate(campusPaths);
+			
+			// building-to-building queries become table lookups
+			if (!buildingLocs.isEmpty() && BuildingRouteTable.estimateBytes(buildingLocs.size(), 
+					campusPaths.nodeCount()) <= maxTableBytes)
+				routeTable = new BuildingRouteTable(campusPaths, buildingLocs.values());
+			checkRep();
+		}
+		
+		/**
+		 * Constructs a campus graph from the parts CampusSnapshot read back, 
+		 * taking ownership of them.
+		 * 
+		 * @requires buildingNames, buildingLocs, campusPaths != null, they 
+		 * 			 satisfy the representation invariant, and walkingHeuristic 
+		 * 			 and routeTable are null or were built for campusPaths
+		 */
+		CampusRouteFinder(Map<String, String> buildingNames, 
+				Map<String, Coordinates> buildingLocs, CsrGraph<Coordinates> campusPaths, 
+				/*@Nullable*/ StraightLineHeuristic walkingHeuristic, 
+				/*@Nullable*/ BuildingRouteTable routeTable) {
+			this.buildingNames = buildingNames;
+			this.buildingNamesOpp = new HashMap<String, String>();
+			for (Map.Entry<String, String> entry : buildingNames.entrySet())
+				buildingNamesOpp.put(entry.getValue(), entry.getKey());
+			this.buildingLocs = buildingLocs;
+			this.campusPaths = campusPaths;
+			this.walkingHeuristic = walkingHeuristic;
+			this.routeTable = routeTable;
 			checkRep();
 		}
 		
@@ -171,8 +256,53 @@ public class CampusRouteFinder {
 			return buildingLocs.get(buildingName);
 		}
 		
+		/**
+		 * Returns true if routes on this campus can be found with A* search, 
+		 * that is if straight-line distance never overestimates the walking 
+		 * distance of a path segment.
+		 * 
+		 * @return true if A* search is used for routes on this campus
+		 */
+		public boolean supportsAStar() {
+			checkRep();
+			return walkingHeuristic != null;
+		}
+		
+		/**
+		 * Returns the campus paths, for CampusSnapshot.
+		 * 
+		 * @return graph of the campus paths
+		 */
+		CsrGraph<Coordinates> getCampusPaths() {
+			return campusPaths;
+		}
+		
+		/**
+		 * Returns the straight-line estimate A* uses, for CampusSnapshot.
+		 * 
+		 * @return the walking heuristic, or null if A* is not used
+		 */
+		/*@Nullable*/ StraightLineHeuristic getWalkingHeuristic() {
+			return walkingHeuristic;
+		}
+		
+		/**
+		 * Returns the precomputed routes between buildings, whose 
+		 * buildMillis and memoryBytes report what precomputing them cost.
+		 * 
+		 * @return the routes between all pairs of buildings, or null if they 
+		 * 		   were not precomputed
+		 */
+		public /*@Nullable*/ BuildingRouteTable getRouteTable() {
+			checkRep();
+			return routeTable;
+		}
+		
 		/**
 		 * Finds the shortest walking route from one point to another point on campus.
+		 * Looks the route up if both points are buildings with precomputed 
+		 * routes, and otherwise uses A* search if the campus supports it and 
+		 * Dijkstra's algorithm if not.
 		 * 
 		 * @param start starting point of the walking route
 		 * @param end end point of the walking route
@@ -182,9 +312,52 @@ public class CampusRouteFinder {
 		 */
 		public /*@Nullable*/ Map<Coordinates, Double> findShortestWalkingRoute(
 				Coordinates start, Coordinates end) {
-			List<LabEdge<Coordinates, Double>> route = 
-					MarvelPaths2.minimumCostPath(campusPaths, start, end);
+			if (routeTable != null && routeTable.contains(start) && routeTable.contains(end))
+				return toRouteMap(routeTable.route(start, end));
+			return findShortestWalkingRoute(start, end, SearchMode.A_STAR);
+		}
+		
+		/**
+		 * Finds the shortest walking route from one point to another point on 
+		 * campus with the given search algorithm. A_STAR falls back to 
+		 * DIJKSTRA on a campus that does not support A*. The first 
+		 * CONTRACTION_HIERARCHY query preprocesses the campus paths, which 
+		 * later queries of that mode reuse.
+		 * 
+		 * @param start starting point of the walking route
+		 * @param end end point of the walking route
+		 * @param mode the search algorithm to be used
+		 * @requires start, end, mode != null, and start and end are nodes in campusPaths
+		 * @return the shortest walking route from start to end, or null if 
+		 * 		   no path exists from start to end
+		 */
+		public /*@Nullable*/ Map<Coordinates, Double> findShortestWalkingRoute(
+				Coordinates start, Coordinates end, SearchMode mode) {
+			if (mode == null)
+				throw new IllegalArgumentException("search mode cannot be null.");
+			
+			List<LabEdge<Coordinates, Double>> route;
+			if (mode == SearchMode.A_STAR && walkingHeuristic != null)
+				route = MarvelPaths2.minimumCostPath(campusPaths, start, end, walkingHeuristic);
+			else if (mode == SearchMode.A_STAR)
+				route = MarvelPaths2.minimumCostPath(campusPaths, start, end, SearchMode.DIJKSTRA);
+			else if (mode == SearchMode.CONTRACTION_HIERARCHY)
+				route = getHierarchy().minimumCostPath(start, end);
+			else
+				route = MarvelPaths2.minimumCostPath(campusPaths, start, end, mode);
 			
+			return toRouteMap(route);
+		}
+		
+		/**
+		 * Converts a path into the map returned by findShortestWalkingRoute.
+		 * 
+		 * @param route a path with cumulative distances as labels, or null
+		 * @return map of the points of route to the distance walked up to 
+		 * 		   each, in order, or null if route is null
+		 */
+		private static /*@Nullable*/ Map<Coordinates, Double> toRouteMap(
+				/*@Nullable*/ List<LabEdge<Coordinates, Double>> route) {
 			// return null if no path was found
 			if (route == null)
 				return null;
@@ -198,6 +371,18 @@ public class CampusRouteFinder {
 			return route_map;
 		}
 		
+		/**
+		 * Returns the contraction hierarchy of the campus paths, building it 
+		 * on first use.
+		 * 
+		 * @return contraction hierarchy of campusPaths
+		 */
+		private synchronized ContractionHierarchy<Coordinates> getHierarchy() {
+			if (hierarchy == null)
+				hierarchy = ContractionHierarchy.build(campusPaths);
+			return hierarchy;
+		}
+		
 		/**
 		 * Checks if representation invariant holds.
 		 */
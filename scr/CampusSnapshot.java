@@ -0,0 +1,323 @@
+package hw8;
+
+import hw5.CsrGraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * CampusSnapshot saves everything a CampusRouteFinder computes at start up
+ * (the building names and locations, the campus paths, the calibrated
+ * straight-line heuristic and the precomputed route table) to a binary
+ * file, and reads it back without parsing any text.
+ * <p>
+ * The file is a 24-byte header (magic, version, payload length and the
+ * CRC32 of the payload) followed by the payload, all big-endian:
+ * <pre>
+ *   int b, int[2b + 1] string starts, byte[] UTF-8 short and full names
+ *   double[2b]   building locations, x then y
+ *   int n, int m, double[2n] path points, x then y
+ *   int[n + 1] offsets, int[m] targets, double[m] distances
+ *   double       heuristic scale, or NaN if A* is not used
+ *   int rows, int[rows] ids, double[rows * rows] distances,
+ *   int[rows * n] predecessors   the route table; rows is 0 if there is none
+ * </pre>
+ * read maps the file, checks the header and checksum, and copies each
+ * array out with one bulk get, so loading costs about as much as reading
+ * the bytes.
+ * <p>
+ * Usage: java hw8.CampusSnapshot buildings paths snapshot
+ */
+public final class CampusSnapshot {
+
+	// first word of every snapshot: "CAMP"
+	private static final int MAGIC = 0x43414d50;
+	private static final int VERSION = 1;
+	private static final int HEADER = 24;
+
+	private CampusSnapshot() {
+	}
+
+	/**
+	 * Compiles the text datasets into a snapshot.
+	 *
+	 * @param args the buildings file, the paths file and the snapshot to write
+	 */
+	public static void main(String[] args) {
+		if (args.length != 3) {
+			System.err.println("Usage: java hw8.CampusSnapshot buildings paths snapshot");
+			System.exit(2);
+		}
+		try {
+			long start = System.nanoTime();
+			compile(args[0], args[1], args[2]);
+			System.out.printf("wrote %s in %d ms%n", args[2], (System.nanoTime() - start) / 1000000);
+		} catch (Exception e) {
+			System.err.println(e.toString());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Parses the text datasets as CampusRouteFinder(buildings, paths) does,
+	 * and writes what it computes to a snapshot.
+	 *
+	 * @requires Files are well-formed, as for CampusRouteFinder(String, String)
+	 * @param buildings file which contains data of campus buildings
+	 * @param paths file which contains data of campus paths
+	 * @param snapshot the file to write, replacing any file already there
+	 * @throws Exception if the format of the files does not match the
+	 * 		   expected format, or the snapshot cannot be written
+	 */
+	public static void compile(String buildings, String paths, String snapshot) throws Exception {
+		write(new CampusRouteFinder(buildings, paths), snapshot);
+	}
+
+	/**
+	 * Writes the state of model to a snapshot.
+	 *
+	 * @param model the route finder to be saved
+	 * @param snapshot the file to write, replacing any file already there
+	 * @requires model, snapshot != null
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public static void write(CampusRouteFinder model, String snapshot) throws IOException {
+		if (model == null || snapshot == null)
+			throw new IllegalArgumentException("model and snapshot cannot be null.");
+		CsrGraph<Coordinates> paths = model.getCampusPaths();
+		StraightLineHeuristic heuristic = model.getWalkingHeuristic();
+		BuildingRouteTable table = model.getRouteTable();
+
+		// building names as one block of bytes with the start of each
+		Map<String, String> names = model.getBuildings();
+		List<String> shortNames = new ArrayList<String>(names.keySet());
+		int b = shortNames.size();
+		byte[][] strings = new byte[2 * b][];
+		long stringBytes = 0;
+		for (int i = 0; i < b; i++) {
+			strings[2 * i] = shortNames.get(i).getBytes(StandardCharsets.UTF_8);
+			strings[2 * i + 1] = names.get(shortNames.get(i)).getBytes(StandardCharsets.UTF_8);
+			stringBytes += strings[2 * i].length + strings[2 * i + 1].length;
+		}
+
+		int n = paths.nodeCount();
+		int m = paths.edgeCount();
+		int rows = table == null ? 0 : table.buildingCount();
+		long size = 4 + 4L * (2L * b + 1) + stringBytes + 8L * 2 * b
+				+ 8 + 8L * 2 * n + 4L * (n + 1) + 4L * m + 8L * m
+				+ 8 + 4 + 4L * rows + 8L * rows * rows + 4L * rows * n;
+		if (HEADER + size > Integer.MAX_VALUE)
+			throw new IOException("campus of " + size + " bytes is too large for a snapshot");
+
+		ByteBuffer out = ByteBuffer.allocate((int) (HEADER + size)).order(ByteOrder.BIG_ENDIAN);
+		out.position(HEADER);
+		out.putInt(b);
+		int start = 0;
+		for (byte[] string : strings) {
+			out.putInt(start);
+			start += string.length;
+		}
+		out.putInt(start);
+		for (byte[] string : strings)
+			out.put(string);
+		for (String name : shortNames) {
+			Coordinates location = model.getLocationOfBuilding(name);
+			out.putDouble(location.getX());
+			out.putDouble(location.getY());
+		}
+
+		out.putInt(n);
+		out.putInt(m);
+		for (int id = 0; id < n; id++) {
+			out.putDouble(paths.nodeAt(id).getX());
+			out.putDouble(paths.nodeAt(id).getY());
+		}
+		for (int id = 0; id < n; id++)
+			out.putInt(paths.firstEdge(id));
+		out.putInt(m);
+		for (int e = 0; e < m; e++)
+			out.putInt(paths.targetOf(e));
+		for (int e = 0; e < m; e++)
+			out.putDouble(paths.weightOf(e));
+
+		out.putDouble(heuristic == null ? Double.NaN : heuristic.getScale());
+		out.putInt(rows);
+		if (table != null) {
+			for (int id : table.nodeIds())
+				out.putInt(id);
+			for (double d : table.distanceMatrix())
+				out.putDouble(d);
+			for (int id : table.predecessorMatrix())
+				out.putInt(id);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(out.array(), HEADER, (int) size);
+		out.putInt(0, MAGIC);
+		out.putInt(4, VERSION);
+		out.putLong(8, size);
+		out.putLong(16, crc.getValue());
+		out.rewind();
+
+		FileChannel channel = FileChannel.open(Paths.get(snapshot), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while (out.hasRemaining())
+				channel.write(out);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads a route finder back from a snapshot written by write.
+	 *
+	 * @param snapshot the snapshot file
+	 * @requires snapshot != null
+	 * @return a route finder with the buildings, paths and precomputed
+	 *         routes of the one that was written
+	 * @throws IOException if the snapshot cannot be read, is not a snapshot
+	 *         of this version, or fails its checksum
+	 */
+	public static CampusRouteFinder read(String snapshot) throws IOException {
+		if (snapshot == null)
+			throw new IllegalArgumentException("snapshot cannot be null.");
+		ByteBuffer in;
+		FileChannel channel = FileChannel.open(Paths.get(snapshot), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < HEADER || size > Integer.MAX_VALUE)
+				throw new IOException(snapshot + " is not a campus snapshot");
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.BIG_ENDIAN);
+		} finally {
+			channel.close();
+		}
+
+		if (in.getInt(0) != MAGIC)
+			throw new IOException(snapshot + " is not a campus snapshot");
+		if (in.getInt(4) != VERSION)
+			throw new IOException(snapshot + " has unknown version " + in.getInt(4));
+		if (in.getLong(8) != in.capacity() - HEADER)
+			throw new IOException(snapshot + " is truncated");
+		in.position(HEADER);
+		CRC32 crc = new CRC32();
+		crc.update(in.slice());
+		if (crc.getValue() != in.getLong(16))
+			throw new IOException(snapshot + " fails its checksum");
+
+		try {
+			int b = count(in);
+			int[] starts = ints(in, 2L * b + 1);
+			byte[] strings = new byte[count(in, starts[2 * b])];
+			in.get(strings);
+			double[] locations = doubles(in, 2L * b);
+			Map<String, String> buildingNames = new HashMap<String, String>();
+			Map<String, Coordinates> buildingLocs = new HashMap<String, Coordinates>();
+			for (int i = 0; i < b; i++) {
+				String shortName = string(strings, starts, 2 * i);
+				buildingNames.put(shortName, string(strings, starts, 2 * i + 1));
+				buildingLocs.put(shortName, new Coordinates(locations[2 * i], locations[2 * i + 1]));
+			}
+
+			int n = count(in);
+			int m = count(in);
+			double[] points = doubles(in, 2L * n);
+			List<Coordinates> nodes = new ArrayList<Coordinates>(n);
+			for (int id = 0; id < n; id++)
+				nodes.add(new Coordinates(points[2 * id], points[2 * id + 1]));
+			int[] offsets = ints(in, n + 1L);
+			int[] targets = ints(in, m);
+			double[] weights = doubles(in, m);
+			CsrGraph<Coordinates> paths = CsrGraph.of(nodes, offsets, targets, weights);
+
+			double scale = in.getDouble();
+			StraightLineHeuristic heuristic = Double.isNaN(scale) ? null : new StraightLineHeuristic(scale);
+
+			BuildingRouteTable table = null;
+			int rows = count(in);
+			if (rows > 0) {
+				int[] ids = ints(in, rows);
+				double[] distances = doubles(in, (long) rows * rows);
+				int[] preds = ints(in, (long) rows * n);
+				for (int id : ids) {
+					if (id < 0 || id >= n)
+						throw new IOException("route table id out of range: " + id);
+				}
+				for (int id : preds) {
+					if (id < -1 || id >= n)
+						throw new IOException("route table id out of range: " + id);
+				}
+				table = new BuildingRouteTable(paths, ids, distances, preds);
+			}
+			if (in.hasRemaining())
+				throw new IOException(snapshot + " has " + in.remaining() + " unread bytes");
+			return new CampusRouteFinder(buildingNames, buildingLocs, paths, heuristic, table);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(snapshot + " is not a valid campus snapshot: " + e.getMessage());
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException(snapshot + " is not a valid campus snapshot: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads a count and checks it is not negative.
+	 */
+	private static int count(ByteBuffer in) throws IOException {
+		return count(in, in.getInt());
+	}
+
+	/**
+	 * Checks that count is not negative.
+	 */
+	private static int count(ByteBuffer in, int count) throws IOException {
+		if (count < 0)
+			throw new IOException("negative count at byte " + in.position());
+		return count;
+	}
+
+	/**
+	 * Copies the next count ints of in into a new array.
+	 */
+	private static int[] ints(ByteBuffer in, long count) throws IOException {
+		checkRemaining(in, 4 * count);
+		int[] array = new int[(int) count];
+		in.asIntBuffer().get(array);
+		in.position(in.position() + 4 * array.length);
+		return array;
+	}
+
+	/**
+	 * Copies the next count doubles of in into a new array.
+	 */
+	private static double[] doubles(ByteBuffer in, long count) throws IOException {
+		checkRemaining(in, 8 * count);
+		double[] array = new double[(int) count];
+		in.asDoubleBuffer().get(array);
+		in.position(in.position() + 8 * array.length);
+		return array;
+	}
+
+	private static void checkRemaining(ByteBuffer in, long bytes) throws IOException {
+		if (bytes < 0 || bytes > in.remaining())
+			throw new IOException("snapshot ends before " + bytes + " bytes at byte " + in.position());
+	}
+
+	/**
+	 * Decodes string i of the block of names.
+	 */
+	private static String string(byte[] strings, int[] starts, int i) throws IOException {
+		if (starts[i] < 0 || starts[i] > starts[i + 1] || starts[i + 1] > strings.length)
+			throw new IOException("bad name bounds for name " + i);
+		return new String(strings, starts[i], starts[i + 1] - starts[i], StandardCharsets.UTF_8);
+	}
+}
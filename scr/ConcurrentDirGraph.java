@@ -0,0 +1,562 @@
+package hw5;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * <b>ConcurrentDirGraph</b> represents a mutable, directed, labeled graph
+ * that any number of threads can read and modify at once. It has the API
+ * of DirGraph, plus removeEdge so that closed paths can be taken out while
+ * queries run.
+ * <p>
+ * The out-edges and in-edges of every node are kept in immutable arrays,
+ * sorted in the order getOutwardEdgesOf returns them. A write copies the
+ * arrays it changes and publishes the copies through a volatile field,
+ * so readers never block: every read of a node sees all of its edges
+ * before or after a write, never part of one. Writers lock one of a fixed
+ * set of stripes per endpoint, so writes to different nodes mostly run in
+ * parallel.
+ * <p>
+ * Reads of different nodes are not atomic together: a search that runs
+ * while edges change sees each node as it was when the search reached it.
+ * Views and cursors see the edges of a node as they were when they were
+ * obtained or reset.
+ *
+ * @specfield nodes : Set<T> // Set of all nodes of type T in graph
+ * @specfield outEdges : Set<LabEdge<T, L> // Set of edges for each node in nodes
+ *  					// each edge containing label of type L, destination of type T
+ */
+public class ConcurrentDirGraph<T, L extends Comparable<L>> implements LabeledGraph<T, L> {
+	// Representative Invariant:
+	//	 graph != null, locks != null, and every element of locks != null
+	//	 graph has no null nodes
+	//	 graph can have an edge going from n1 to n2 only if n1 and n2
+	//	 are present in graph
+	//	 out and in of every Adjacency are sorted by LabEdge.compareTo
+	//	 and have no two equal edges
+	//	 once no write is running, (o, l) is in graph.get(d).in iff
+	//	 (d, l) is in graph.get(o).out
+
+	// Abstract Function
+	//	 AF(g) = a directed labeled graph such that nodes = graph.keySet()
+	//	 		 and the out-edges of n are graph.get(n).out, each edge
+	//	 		 described as (d, l) where d is destination node and l is label
+
+	// constant variable used in checkRep
+	private final static boolean CHECK = false;
+
+	// number of write locks; nodes hash to one of them
+	private static final int STRIPES = 64;
+
+	// shared by every node with no edges
+	static final LabEdge<?, ?>[] NO_EDGES = new LabEdge<?, ?>[0];
+
+	// edges of every node
+	private final ConcurrentHashMap<T, Adjacency<T, L>> graph;
+
+	// read-only view of the nodes of graph
+	private final Set<T> nodesView;
+
+	// a writer holds the stripe of every node whose edges it changes
+	private final Object[] locks;
+
+	/**
+	 * @effects Constructs a new concurrent directed graph with no nodes
+	 */
+	public ConcurrentDirGraph() {
+		graph = new ConcurrentHashMap<T, Adjacency<T, L>>();
+		nodesView = Collections.unmodifiableSet(graph.keySet());
+		locks = new Object[STRIPES];
+		for(int i = 0; i < STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * returns true if node is present in the graph
+	 *
+	 * @param node The node to be checked if contained in the graph
+	 * @requires node != null
+	 * @return true if graph contains node, false otherwise
+	 */
+	public boolean containsNode(T node) {
+		if(node == null) {
+			throw new IllegalArgumentException("null node cannot be passed as parameter");
+		}
+		return graph.containsKey(node);
+	}
+
+	/**
+	 * adds node node to be added in the graph, it is not present in graph
+	 *
+	 * @param node The node to be added in the graph
+	 * @modifies nodes
+	 * @effects addes node to nodes if node is not already present in
+	 * nodes
+	 * @requires node != null
+	 * @return true if node was successfully added in the graph, false otherwise
+	 */
+	public boolean addNode(T node) {
+		if(node == null) {
+			throw new IllegalArgumentException("null node cannot be passed as parameter");
+		}
+		return graph.putIfAbsent(node, new Adjacency<T, L>()) == null;
+	}
+
+	/**
+	 * adds edge from origin to dest with
+	 * attribute label and does not add duplicate edges
+	 *
+	 * @param origin The node which the edge originates from
+	 * @param dest The node which the edge lands on
+	 * @param label The attribute of the edge
+	 * @requires origin, dest, label != null
+	 * @modifies outEdges
+	 * @effects adds new edge to outEdges if edge is not already in graph
+	 * @throws IllegalArgumentException if either origin or dest
+	 * is not in graph
+	 * @return true if edge is successfully added, false otherwise
+	 */
+	public boolean addEdge(T origin, T dest, L label) {
+		return changeEdge(origin, dest, label, true);
+	}
+
+	/**
+	 * removes the edge from origin to dest with attribute label
+	 *
+	 * @param origin The node which the edge originates from
+	 * @param dest The node which the edge lands on
+	 * @param label The attribute of the edge
+	 * @requires origin, dest, label != null
+	 * @modifies outEdges
+	 * @effects removes the edge from outEdges if it is in graph
+	 * @throws IllegalArgumentException if either origin or dest
+	 * is not in graph
+	 * @return true if edge was in the graph and is removed, false otherwise
+	 */
+	public boolean removeEdge(T origin, T dest, L label) {
+		return changeEdge(origin, dest, label, false);
+	}
+
+	/**
+	 * Adds or removes the edge (origin, dest, label), holding the stripes
+	 * of origin and dest.
+	 */
+	private boolean changeEdge(T origin, T dest, L label, boolean add) {
+		if(origin == null || dest == null || label == null) {
+			throw new IllegalArgumentException("None of the parameters can be null");
+		}
+		Adjacency<T, L> from = adjacencyOf(origin);
+		Adjacency<T, L> to = adjacencyOf(dest);
+		LabEdge<T, L> out = new LabEdge<T, L>(dest, label);
+		LabEdge<T, L> in = new LabEdge<T, L>(origin, label);
+
+		// take both stripes in index order so that writers cannot deadlock
+		int a = stripeOf(origin);
+		int b = stripeOf(dest);
+		synchronized(locks[Math.min(a, b)]) {
+			synchronized(locks[Math.max(a, b)]) {
+				LabEdge<T, L>[] outEdges = add ? inserted(from.out, out) : removed(from.out, out);
+				if(outEdges == null) {
+					return false;
+				}
+				from.out = outEdges;
+				LabEdge<T, L>[] inEdges = add ? inserted(to.in, in) : removed(to.in, in);
+				if(inEdges != null) {
+					to.in = inEdges;
+				}
+				checkRep(from);
+				checkRep(to);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * returns a set of nodes
+	 *
+	 * @return set of nodes
+	 */
+	public Set<T> getNodes() {
+		return new TreeSet<T>(graph.keySet());
+	}
+
+	/**
+	 * returns size of graph or number of nodes in it
+	 *
+	 * @return number of nodes
+	 */
+	public int size() {
+		return graph.size();
+	}
+
+	/**
+	 * returns true if graph has no nodes
+	 *
+	 * @return true if graph has no nodes
+	 */
+	public boolean isEmpty() {
+		return graph.isEmpty();
+	}
+
+	/**
+	 * returns a set of outgoing edges from node
+	 *
+	 * @param node The node of which the outgoing edges are returned
+	 * @return set of outgoing edges from node
+	 * @requires n != null
+	 * @throws IllegalArgumentException if node is not in nodes
+	 */
+	public Set<LabEdge<T, L>> getOutwardEdgesOf(T node) {
+		return new TreeSet<LabEdge<T, L>>(getOutwardEdgesView(node));
+	}
+
+	/**
+	 * returns a read-only view of the nodes, without copying them.
+	 * The view reflects later changes to the graph.
+	 *
+	 * @return unmodifiable view of the set of nodes
+	 */
+	public Set<T> getNodesView() {
+		return nodesView;
+	}
+
+	/**
+	 * returns a read-only view of the outgoing edges from node, without
+	 * copying them. The view holds the edges node had when it was
+	 * returned and does not reflect later changes.
+	 *
+	 * @param node The node of which the outgoing edges are returned
+	 * @return unmodifiable view of the outgoing edges from node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in nodes
+	 */
+	public Set<LabEdge<T, L>> getOutwardEdgesView(T node) {
+		return new EdgeArraySet<T, L>(adjacencyOf(node).out);
+	}
+
+	/**
+	 * returns a read-only view of the incoming edges of node, each
+	 * described as (origin, label). The view holds the edges node had
+	 * when it was returned and does not reflect later changes.
+	 *
+	 * @param node The node of which the incoming edges are returned
+	 * @return unmodifiable view of the incoming edges of node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in nodes
+	 */
+	public Set<LabEdge<T, L>> getInwardEdgesView(T node) {
+		return new EdgeArraySet<T, L>(adjacencyOf(node).in);
+	}
+
+	/**
+	 * passes every outgoing edge from node to visitor, in the order
+	 * getOutwardEdgesOf returns them, without copying the edges
+	 *
+	 * @param node The node of which the outgoing edges are visited
+	 * @param visitor called once for each outgoing edge
+	 * @requires node, visitor != null
+	 * @throws IllegalArgumentException if node is not in nodes
+	 */
+	public void forEachOutEdge(T node, Consumer<? super LabEdge<T, L>> visitor) {
+		if(visitor == null) {
+			throw new IllegalArgumentException("visitor cannot be null");
+		}
+		for(LabEdge<T, L> edge : adjacencyOf(node).out) {
+			visitor.accept(edge);
+		}
+	}
+
+	/**
+	 * returns a new reusable cursor over outgoing edges that reports
+	 * weights as primitive doubles
+	 *
+	 * @param weightOf converts an edge label to its weight
+	 * @requires weightOf != null
+	 * @return a new cursor, positioned on no node
+	 */
+	public EdgeCursor<T> newEdgeCursor(ToDoubleFunction<? super L> weightOf) {
+		if(weightOf == null) {
+			throw new IllegalArgumentException("weightOf cannot be null");
+		}
+		return new ArrayCursor(weightOf, false);
+	}
+
+	/**
+	 * returns a new reusable cursor over incoming edges that reports
+	 * weights as primitive doubles. The cursor reports the origin of
+	 * each edge as its dest().
+	 *
+	 * @param weightOf converts an edge label to its weight
+	 * @requires weightOf != null
+	 * @return a new cursor, positioned on no node
+	 */
+	public EdgeCursor<T> newInEdgeCursor(ToDoubleFunction<? super L> weightOf) {
+		if(weightOf == null) {
+			throw new IllegalArgumentException("weightOf cannot be null");
+		}
+		return new ArrayCursor(weightOf, true);
+	}
+
+	/**
+	 * returns a set nodes that are connected to the node
+	 *
+	 * @param node The node of which the children are returned
+	 * @return set of children from node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in graph
+	 */
+	public Set<T> getChildrenOf(T node) {
+		Set<T> children = new TreeSet<T>();
+		for(LabEdge<T, L> edge : adjacencyOf(node).out) {
+			children.add(edge.getDest()); // add the destination of edge to children
+		}
+		return children;
+	}
+
+	/**
+	 * returns a set of edges between node1 and node2
+	 *
+	 * @param node1 The origin node
+	 * @param node2 The destination node
+	 * @requires node1, node2 != null
+	 * @throws IllegalArgumentException if node1 or node2 is
+	 * not in nodes
+	 * @return set of edges going from node1 to node2
+	 */
+	public Set<LabEdge<T, L>> getEdgesBetween(T node1, T node2) {
+		LabEdge<T, L>[] edges = adjacencyOf(node1).out;
+		adjacencyOf(node2);
+		Set<LabEdge<T, L>> edgesBetween = new HashSet<LabEdge<T, L>>();
+		for(LabEdge<T, L> edge : edges) {
+			if(edge.getDest().equals(node2)) {
+				edgesBetween.add(new LabEdge<T, L>(edge.getDest(), edge.getLabel()));
+			}
+		}
+		return edgesBetween;
+	}
+
+	/**
+	 * returns the smallest edge between node1 and node2
+	 *
+	 * @param node1 The origin node
+	 * @param node2 The destination node
+	 * @requires node1, node2 != null
+	 * @throws IllegalArgumentException if node1 or node2 is
+	 * not in nodes
+	 * @throws NoSuchElementException if there are no edges between node1 and node2
+	 * @return smallest edge going from node1 to node2
+	 */
+	public LabEdge<T, L> getShortestEdgeBetween(T node1, T node2) {
+		Set<LabEdge<T, L>> edgesBetween = getEdgesBetween(node1, node2);
+		if(edgesBetween.isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		LabEdge<T, L> min = Collections.min(edgesBetween);
+		return new LabEdge<T, L>(node2, min.getLabel());
+	}
+
+	/**
+	 * Returns string representation of the graph.
+	 *
+	 * @return string representation of the graph
+	 */
+	public String toString() {
+		StringBuilder s = new StringBuilder("{");
+		for(T node : graph.keySet()) {
+			if(s.length() > 1) {
+				s.append(", ");
+			}
+			s.append(node).append('=').append(Arrays.toString(graph.get(node).out));
+		}
+		return s.append('}').toString();
+	}
+
+	/**
+	 * Returns the edges of node.
+	 *
+	 * @throws IllegalArgumentException if node is null or not in graph
+	 */
+	private Adjacency<T, L> adjacencyOf(T node) {
+		if(node == null) {
+			throw new IllegalArgumentException("null node cannot be passed as parameter");
+		}
+		Adjacency<T, L> adjacency = graph.get(node);
+		if(adjacency == null) {
+			throw new IllegalArgumentException("graph does not contain " + node + " node");
+		}
+		return adjacency;
+	}
+
+	/**
+	 * Returns the index of the lock guarding the edges of node.
+	 */
+	private static int stripeOf(Object node) {
+		int h = node.hashCode();
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	/**
+	 * Returns a copy of edges with edge inserted in order, or null if
+	 * edges already has it.
+	 */
+	static <T, L extends Comparable<L>> /*@Nullable*/ LabEdge<T, L>[] inserted(
+			LabEdge<T, L>[] edges, LabEdge<T, L> edge) {
+		int i = Arrays.binarySearch(edges, edge);
+		if(i >= 0) {
+			return null;
+		}
+		i = -i - 1;
+		LabEdge<T, L>[] copy = Arrays.copyOf(edges, edges.length + 1);
+		System.arraycopy(edges, i, copy, i + 1, edges.length - i);
+		copy[i] = edge;
+		return copy;
+	}
+
+	/**
+	 * Returns a copy of edges without edge, or null if edges does not
+	 * have it.
+	 */
+	static <T, L extends Comparable<L>> /*@Nullable*/ LabEdge<T, L>[] removed(
+			LabEdge<T, L>[] edges, LabEdge<T, L> edge) {
+		int i = Arrays.binarySearch(edges, edge);
+		if(i < 0) {
+			return null;
+		}
+		LabEdge<T, L>[] copy = Arrays.copyOf(edges, edges.length - 1);
+		System.arraycopy(edges, i + 1, copy, i, edges.length - i - 1);
+		return copy;
+	}
+
+	/**
+	 * Out-edges and in-edges of one node. Each array is replaced, never
+	 * changed, and only by a writer holding the stripe of the node.
+	 */
+	private static final class Adjacency<T, L extends Comparable<L>> {
+		volatile LabEdge<T, L>[] out; // sorted out-edges (dest, label)
+		volatile LabEdge<T, L>[] in;  // sorted in-edges (origin, label)
+
+		@SuppressWarnings("unchecked")
+		Adjacency() {
+			out = (LabEdge<T, L>[]) NO_EDGES;
+			in = (LabEdge<T, L>[]) NO_EDGES;
+		}
+	}
+
+	/**
+	 * Unmodifiable set over one published array of edges.
+	 */
+	static final class EdgeArraySet<T, L extends Comparable<L>> extends AbstractSet<LabEdge<T, L>> {
+		private final LabEdge<T, L>[] edges;
+
+		EdgeArraySet(LabEdge<T, L>[] edges) {
+			this.edges = edges;
+		}
+
+		@Override
+		public Iterator<LabEdge<T, L>> iterator() {
+			return new Iterator<LabEdge<T, L>>() {
+				private int next = 0;
+
+				public boolean hasNext() {
+					return next < edges.length;
+				}
+
+				public LabEdge<T, L> next() {
+					if(next == edges.length) {
+						throw new NoSuchElementException();
+					}
+					return edges[next++];
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return edges.length;
+		}
+	}
+
+	/**
+	 * EdgeCursor over the out-edges or in-edges a node had when the
+	 * cursor was reset to it.
+	 */
+	private final class ArrayCursor implements EdgeCursor<T> {
+		private final ToDoubleFunction<? super L> weightOf; // label to weight
+		private final boolean inward; // walk in-edges instead of out-edges
+		private LabEdge<T, L>[] edges = null; // edges of the node
+		private int current = -1; // index of the edge the cursor is on
+
+		ArrayCursor(ToDoubleFunction<? super L> weightOf, boolean inward) {
+			this.weightOf = weightOf;
+			this.inward = inward;
+		}
+
+		public void reset(T node) {
+			Adjacency<T, L> adjacency = adjacencyOf(node);
+			edges = inward ? adjacency.in : adjacency.out;
+			current = -1;
+		}
+
+		public boolean next() {
+			if(edges == null || current + 1 >= edges.length) {
+				current = edges == null ? -1 : edges.length;
+				return false;
+			}
+			current++;
+			return true;
+		}
+
+		public T dest() {
+			return edge().dest;
+		}
+
+		public double weight() {
+			return weightOf.applyAsDouble(edge().label);
+		}
+
+		private LabEdge<T, L> edge() {
+			if(edges == null || current < 0 || current >= edges.length) {
+				throw new NoSuchElementException();
+			}
+			return edges[current];
+		}
+	}
+
+	/**
+	 * Checks if representation invariant holds for the edges of one node,
+	 * while its writer holds the stripe of the node
+	 */
+	private void checkRep(Adjacency<T, L> adjacency) throws RuntimeException {
+		if(CHECK) {
+			checkSorted(adjacency.out);
+			checkSorted(adjacency.in);
+		}
+	}
+
+	/**
+	 * Checks that edges are sorted, distinct and land on nodes of graph
+	 */
+	private void checkSorted(LabEdge<T, L>[] edges) throws RuntimeException {
+		for(int i = 0; i < edges.length; i++) {
+			if(edges[i] == null) {
+				throw new RuntimeException("edge cannot be null");
+			}
+			if(!graph.containsKey(edges[i].getDest())) {
+				throw new RuntimeException("graph must contain endpoint of edge");
+			}
+			if(i > 0 && edges[i - 1].compareTo(edges[i]) >= 0) {
+				throw new RuntimeException("edges are not sorted");
+			}
+		}
+	}
+}
@@ -0,0 +1,824 @@
+package hw7;
+
+import hw5.CsrGraph;
+import hw5.DirGraph;
+import hw5.IndexedGraph;
+import hw5.LabEdge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * ContractionHierarchy is an immutable, preprocessed form of a graph with
+ * non-negative weights that answers minimum-cost path queries by searching
+ * only a small part of it.
+ * <p>
+ * Preprocessing contracts nodes one batch at a time, from least to most
+ * important. Contracting a node removes it and, for every pair of
+ * neighbours whose cheapest connection ran through it, adds a shortcut
+ * edge that stands for the two edges it replaces. Importance is the edge
+ * difference (shortcuts added minus edges removed), counted twice, plus
+ * the number of neighbours already contracted. Each batch is a set of
+ * nodes that are local minima of importance and pairwise non-adjacent,
+ * and its shortcuts are worked out in parallel on the graph as it was
+ * before the batch. A shortcut is left out only for a witness path that
+ * is strictly better by (cost, number of original edges), which no
+ * minimum-cost path can have, so a witness may safely run through other
+ * nodes of the same batch.
+ * <p>
+ * The result is an upward graph holding the edges that lead to a later
+ * contracted node and a downward graph holding the edges that lead to an
+ * earlier one. A query searches upward from the origin and, against the
+ * downward edges, upward from the destination, then unpacks the shortcuts
+ * on the best meeting path back into original edges. Paths are ordered by
+ * total cost and then by number of original edges, like DijkstraSearch.
+ * <p>
+ * Queries may run from several threads at once.
+ *
+ * @param <T> type of the nodes of the graph
+ */
+public final class ContractionHierarchy<T> {
+	// Rep invariant:
+	//     graph, rank != null, rank is a permutation of 0 .. n - 1
+	//     upOffsets and downOffsets have n + 1 entries
+	//     up edges lead from a node to a node of higher rank, down edges
+	//     are stored at their target and come from a node of higher rank
+	//     a shortcut's mid has a lower rank than both of its end points
+
+	// Abstract function:
+	//     AF(this) = a hierarchy over graph in which the node with id v was
+	//                contracted rank[v]-th; the up edges of v are
+	//                (upTargets[e], upWeights[e], upHops[e], upMids[e]) and
+	//                the down edges into v are (downSources[e], ...) for e in
+	//                the offsets range of v; mid is -1 for an original edge
+
+	// nodes a witness search may settle before giving up
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	// the same, when only estimating how many shortcuts a node needs
+	private static final int ESTIMATE_SETTLE_LIMIT = 50;
+
+	private final IndexedGraph<T> graph; // numbers the nodes
+	private final int[] rank;            // order in which each id was contracted
+	private final int[] upOffsets;
+	private final int[] upTargets;
+	private final double[] upWeights;
+	private final int[] upHops;
+	private final int[] upMids;
+	private final int[] downOffsets;
+	private final int[] downSources;
+	private final double[] downWeights;
+	private final int[] downHops;
+	private final int[] downMids;
+	private final int shortcuts;         // number of shortcut edges
+	private final ThreadLocal<Query> queries; // reusable query state per thread
+
+	/**
+	 * Constructs a hierarchy from the edges recorded while contracting.
+	 */
+	private ContractionHierarchy(IndexedGraph<T> graph, int[] rank,
+			Adjacency[] up, Adjacency[] down) {
+		int n = graph.nodeCount();
+		this.graph = graph;
+		this.rank = rank;
+		this.upOffsets = new int[n + 1];
+		this.downOffsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			upOffsets[v + 1] = upOffsets[v] + up[v].size;
+			downOffsets[v + 1] = downOffsets[v] + down[v].size;
+		}
+		this.upTargets = new int[upOffsets[n]];
+		this.upWeights = new double[upOffsets[n]];
+		this.upHops = new int[upOffsets[n]];
+		this.upMids = new int[upOffsets[n]];
+		this.downSources = new int[downOffsets[n]];
+		this.downWeights = new double[downOffsets[n]];
+		this.downHops = new int[downOffsets[n]];
+		this.downMids = new int[downOffsets[n]];
+		int count = 0;
+		for (int v = 0; v < n; v++) {
+			count += up[v].copyTo(upOffsets[v], upTargets, upWeights, upHops, upMids);
+			count += down[v].copyTo(downOffsets[v], downSources, downWeights, downHops, downMids);
+		}
+		this.shortcuts = count;
+		this.queries = new ThreadLocal<Query>();
+	}
+
+	/**
+	 * Preprocesses graph into a contraction hierarchy.
+	 *
+	 * @param graph the graph to be preprocessed
+	 * @requires graph != null and no label in graph is negative
+	 * @return contraction hierarchy of graph
+	 */
+	public static <T> ContractionHierarchy<T> build(DirGraph<T, Double> graph) {
+		if (graph == null)
+			throw new IllegalArgumentException("graph cannot be null.");
+		return build(CsrGraph.freeze(graph));
+	}
+
+	/**
+	 * Preprocesses graph into a contraction hierarchy.
+	 *
+	 * @param graph the graph to be preprocessed
+	 * @requires graph != null and no weight in graph is negative
+	 * @return contraction hierarchy of graph
+	 */
+	public static <T> ContractionHierarchy<T> build(IndexedGraph<T> graph) {
+		if (graph == null)
+			throw new IllegalArgumentException("graph cannot be null.");
+		return new Contractor<T>(graph).contract();
+	}
+
+	/**
+	 * Returns the number of nodes in the hierarchy.
+	 *
+	 * @return number of nodes
+	 */
+	public int nodeCount() {
+		return rank.length;
+	}
+
+	/**
+	 * Returns the number of shortcut edges added by preprocessing.
+	 *
+	 * @return number of shortcuts
+	 */
+	public int shortcutCount() {
+		return shortcuts;
+	}
+
+	/**
+	 * Finds the minimum-cost path from origin to dest.
+	 *
+	 * @param origin the node the path starts from
+	 * @param dest the node the path ends at
+	 * @requires origin, dest != null
+	 * @throws IllegalArgumentException if origin or dest is not in the graph
+	 * @return the minimum-cost path from origin to dest as a list of edges
+	 *         whose labels are the cumulative cost up to each node, starting
+	 *         with (origin, 0.0), or null if no path exists
+	 */
+	public /*@Nullable*/ List<LabEdge<T, Double>> minimumCostPath(T origin, T dest) {
+		if (origin == null || dest == null)
+			throw new IllegalArgumentException("start and end cannot be null.");
+		int s = graph.idOf(origin);
+		int t = graph.idOf(dest);
+		if (s < 0)
+			throw new IllegalArgumentException(origin + " is not in the graph.");
+		if (t < 0)
+			throw new IllegalArgumentException(dest + " is not in the graph.");
+
+		Query query = queries.get();
+		if (query == null) {
+			query = new Query(rank.length);
+			queries.set(query);
+		}
+		try {
+			return query.run(s, t);
+		} finally {
+			query.reset();
+		}
+	}
+
+	/**
+	 * Orders (cost, hops) pairs by cost and then by hops.
+	 */
+	private static int compare(double c1, int h1, double c2, int h2) {
+		int c = Double.compare(c1, c2);
+		return c != 0 ? c : Integer.compare(h1, h2);
+	}
+
+	/**
+	 * State of one query, reused by the queries of one thread. Only the
+	 * entries listed in touched are dirty between queries.
+	 */
+	private final class Query {
+		private final IndexedMinHeap forward;  // frontier of the upward search from the origin
+		private final IndexedMinHeap backward; // frontier of the upward search from the destination
+		private final double[] fDist, bDist;
+		private final int[] fHops, bHops;
+		private final int[] fEdge, bEdge; // edge each id was reached by, -1 at the start
+		private final boolean[] fSeen, bSeen;
+		private int[] touched;
+		private int touchedCount;
+
+		Query(int n) {
+			forward = new IndexedMinHeap(n);
+			backward = new IndexedMinHeap(n);
+			fDist = new double[n];
+			bDist = new double[n];
+			fHops = new int[n];
+			bHops = new int[n];
+			fEdge = new int[n];
+			bEdge = new int[n];
+			fSeen = new boolean[n];
+			bSeen = new boolean[n];
+			touched = new int[16];
+		}
+
+		/**
+		 * Runs both upward searches and unpacks the best meeting path.
+		 */
+		/*@Nullable*/ List<LabEdge<T, Double>> run(int s, int t) {
+			double best = Double.POSITIVE_INFINITY;
+			int bestHops = Integer.MAX_VALUE;
+			int meet = -1;
+			touch(s);
+			fDist[s] = 0.0;
+			fHops[s] = 0;
+			fEdge[s] = -1;
+			fSeen[s] = true;
+			forward.offer(s, 0.0, 0);
+			touch(t);
+			bDist[t] = 0.0;
+			bHops[t] = 0;
+			bEdge[t] = -1;
+			bSeen[t] = true;
+			backward.offer(t, 0.0, 0);
+
+			while (true) {
+				boolean fDone = forward.isEmpty() || compare(fDist[forward.peek()],
+						fHops[forward.peek()], best, bestHops) >= 0;
+				boolean bDone = backward.isEmpty() || compare(bDist[backward.peek()],
+						bHops[backward.peek()], best, bestHops) >= 0;
+				if (fDone && bDone)
+					break;
+				boolean goForward = !fDone && (bDone
+						|| compare(fDist[forward.peek()], fHops[forward.peek()],
+								bDist[backward.peek()], bHops[backward.peek()]) <= 0);
+				if (goForward) {
+					int u = forward.poll();
+					if (bSeen[u] && compare(fDist[u] + bDist[u], fHops[u] + bHops[u], best, bestHops) < 0) {
+						best = fDist[u] + bDist[u];
+						bestHops = fHops[u] + bHops[u];
+						meet = u;
+					}
+					for (int e = upOffsets[u]; e < upOffsets[u + 1]; e++) {
+						int v = upTargets[e];
+						double cost = fDist[u] + upWeights[e];
+						int hops = fHops[u] + upHops[e];
+						if (!fSeen[v] || (forward.contains(v) && compare(cost, hops, fDist[v], fHops[v]) < 0)) {
+							touch(v);
+							fSeen[v] = true;
+							fDist[v] = cost;
+							fHops[v] = hops;
+							fEdge[v] = e;
+							forward.offer(v, cost, hops);
+						}
+					}
+				} else {
+					int u = backward.poll();
+					if (fSeen[u] && compare(fDist[u] + bDist[u], fHops[u] + bHops[u], best, bestHops) < 0) {
+						best = fDist[u] + bDist[u];
+						bestHops = fHops[u] + bHops[u];
+						meet = u;
+					}
+					for (int e = downOffsets[u]; e < downOffsets[u + 1]; e++) {
+						int v = downSources[e];
+						double cost = bDist[u] + downWeights[e];
+						int hops = bHops[u] + downHops[e];
+						if (!bSeen[v] || (backward.contains(v) && compare(cost, hops, bDist[v], bHops[v]) < 0)) {
+							touch(v);
+							bSeen[v] = true;
+							bDist[v] = cost;
+							bHops[v] = hops;
+							bEdge[v] = e;
+							backward.offer(v, cost, hops);
+						}
+					}
+				}
+			}
+			if (meet == -1)
+				return null;
+			return unpack(s, meet);
+		}
+
+		/**
+		 * Unpacks the forward path to meet and the backward path from meet
+		 * into original edges, with cumulative costs as labels.
+		 */
+		private List<LabEdge<T, Double>> unpack(int s, int meet) {
+			// up edges from s to meet, collected backwards
+			IntList upPath = new IntList();
+			for (int v = meet; fEdge[v] != -1; v = originOfUp(fEdge[v]))
+				upPath.add(fEdge[v]);
+
+			List<LabEdge<T, Double>> path = new ArrayList<LabEdge<T, Double>>();
+			path.add(new LabEdge<T, Double>(graph.nodeAt(s), 0.0));
+			for (int i = upPath.size - 1; i >= 0; i--)
+				expand(upPath.items[i], path);
+			for (int v = meet; bEdge[v] != -1; v = targetOfDown(bEdge[v]))
+				expand(~bEdge[v], path);
+			return path;
+		}
+
+		private void touch(int id) {
+			if (touchedCount == touched.length)
+				touched = Arrays.copyOf(touched, touchedCount * 2);
+			touched[touchedCount++] = id;
+		}
+
+		/**
+		 * Clears the entries used by the last query.
+		 */
+		void reset() {
+			forward.clear();
+			backward.clear();
+			for (int i = 0; i < touchedCount; i++) {
+				fSeen[touched[i]] = false;
+				bSeen[touched[i]] = false;
+			}
+			touchedCount = 0;
+		}
+	}
+
+	/**
+	 * Appends the original edges that an edge stands for to path, with
+	 * labels continuing from the cost of the last edge of path. The edge is
+	 * the up edge e for e >= 0 and the down edge ~e otherwise.
+	 */
+	private void expand(int edge, List<LabEdge<T, Double>> path) {
+		double cost = path.get(path.size() - 1).getLabel();
+		IntList stack = new IntList(); // edges still to be unpacked, next on top
+		stack.add(edge);
+		while (stack.size > 0) {
+			int e = stack.items[--stack.size];
+			int from, to, mid;
+			double weight;
+			if (e >= 0) {
+				from = originOfUp(e);
+				to = upTargets[e];
+				mid = upMids[e];
+				weight = upWeights[e];
+			} else {
+				from = downSources[~e];
+				to = targetOfDown(~e);
+				mid = downMids[~e];
+				weight = downWeights[~e];
+			}
+			if (mid == -1) {
+				cost += weight;
+				path.add(new LabEdge<T, Double>(graph.nodeAt(to), cost));
+			} else {
+				// from -> mid is a down edge stored at mid, mid -> to an up edge of mid
+				stack.add(findUp(mid, to));
+				stack.add(~findDown(mid, from));
+			}
+		}
+	}
+
+	/**
+	 * Returns the up edge from v to target.
+	 */
+	private int findUp(int v, int target) {
+		for (int e = upOffsets[v]; e < upOffsets[v + 1]; e++) {
+			if (upTargets[e] == target)
+				return e;
+		}
+		throw new IllegalStateException("missing up edge " + v + " -> " + target);
+	}
+
+	/**
+	 * Returns the down edge from source into v.
+	 */
+	private int findDown(int v, int source) {
+		for (int e = downOffsets[v]; e < downOffsets[v + 1]; e++) {
+			if (downSources[e] == source)
+				return e;
+		}
+		throw new IllegalStateException("missing down edge " + source + " -> " + v);
+	}
+
+	/**
+	 * Returns the node an up edge starts from.
+	 */
+	private int originOfUp(int e) {
+		return owner(upOffsets, e);
+	}
+
+	/**
+	 * Returns the node a down edge lands on.
+	 */
+	private int targetOfDown(int e) {
+		return owner(downOffsets, e);
+	}
+
+	/**
+	 * Returns the node whose offsets range holds edge e.
+	 */
+	private static int owner(int[] offsets, int e) {
+		int lo = 0;
+		int hi = offsets.length - 2;
+		while (lo < hi) {
+			int m = (lo + hi + 1) >>> 1;
+			if (offsets[m] <= e)
+				lo = m;
+			else
+				hi = m - 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * Growable list of ints.
+	 */
+	private static final class IntList {
+		int[] items = new int[16];
+		int size = 0;
+
+		void add(int item) {
+			if (size == items.length)
+				items = Arrays.copyOf(items, size * 2);
+			items[size++] = item;
+		}
+	}
+
+	/**
+	 * Edges of one node during contraction, at most one per neighbour:
+	 * the cheapest by (weight, hops).
+	 */
+	private static final class Adjacency {
+		int[] nodes = new int[4];  // neighbour of each edge
+		double[] weights = new double[4];
+		int[] hops = new int[4];   // number of original edges
+		int[] mids = new int[4];   // contracted node of a shortcut, -1 if original
+		int size = 0;
+
+		/**
+		 * Adds the edge to node, or lowers the existing one.
+		 */
+		void add(int node, double weight, int hop, int mid) {
+			for (int i = 0; i < size; i++) {
+				if (nodes[i] == node) {
+					if (compare(weight, hop, weights[i], hops[i]) < 0) {
+						weights[i] = weight;
+						hops[i] = hop;
+						mids[i] = mid;
+					}
+					return;
+				}
+			}
+			if (size == nodes.length) {
+				int cap = size * 2;
+				nodes = Arrays.copyOf(nodes, cap);
+				weights = Arrays.copyOf(weights, cap);
+				hops = Arrays.copyOf(hops, cap);
+				mids = Arrays.copyOf(mids, cap);
+			}
+			nodes[size] = node;
+			weights[size] = weight;
+			hops[size] = hop;
+			mids[size] = mid;
+			size++;
+		}
+
+		/**
+		 * Drops the edges to contracted nodes.
+		 */
+		void removeContracted(boolean[] contracted) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (!contracted[nodes[i]]) {
+					nodes[kept] = nodes[i];
+					weights[kept] = weights[i];
+					hops[kept] = hops[i];
+					mids[kept] = mids[i];
+					kept++;
+				}
+			}
+			size = kept;
+		}
+
+		/**
+		 * Copies the edges into the arrays from offset on and returns how
+		 * many of them are shortcuts.
+		 */
+		int copyTo(int offset, int[] n, double[] w, int[] h, int[] m) {
+			System.arraycopy(nodes, 0, n, offset, size);
+			System.arraycopy(weights, 0, w, offset, size);
+			System.arraycopy(hops, 0, h, offset, size);
+			System.arraycopy(mids, 0, m, offset, size);
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (mids[i] != -1)
+					count++;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Contracts the nodes of a graph in batches of independent nodes.
+	 */
+	private static final class Contractor<T> {
+		private final IndexedGraph<T> graph;
+		private final int n;
+		private final Adjacency[] out;  // remaining out-edges of each id
+		private final Adjacency[] in;   // remaining in-edges of each id, by origin
+		private final Adjacency[] up;   // out-edges of each id when it was contracted
+		private final Adjacency[] down; // in-edges of each id when it was contracted
+		private final boolean[] contracted;
+		private final int[] priority;     // importance of each id, lower first
+		private final int[] deleted;      // contracted neighbours of each id
+		private final boolean[] dirty;    // true for ids whose priority is stale
+		private final int[] rank;
+		private final ThreadLocal<Witness> witnesses;
+
+		Contractor(IndexedGraph<T> graph) {
+			this.graph = graph;
+			this.n = graph.nodeCount();
+			this.out = new Adjacency[n];
+			this.in = new Adjacency[n];
+			this.up = new Adjacency[n];
+			this.down = new Adjacency[n];
+			this.contracted = new boolean[n];
+			this.priority = new int[n];
+			this.deleted = new int[n];
+			this.dirty = new boolean[n];
+			this.rank = new int[n];
+			this.witnesses = new ThreadLocal<Witness>();
+			for (int v = 0; v < n; v++) {
+				out[v] = new Adjacency();
+				in[v] = new Adjacency();
+			}
+			for (int v = 0; v < n; v++) {
+				for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+					int w = graph.targetOf(e);
+					if (w == v)
+						continue;
+					out[v].add(w, graph.weightOf(e), 1, -1);
+					in[w].add(v, graph.weightOf(e), 1, -1);
+				}
+			}
+		}
+
+		ContractionHierarchy<T> contract() {
+			IntStream.range(0, n).parallel().forEach(new IntConsumer() {
+				public void accept(int v) {
+					priority[v] = importance(v);
+				}
+			});
+			int next = 0;
+			while (next < n) {
+				final int[] batch = independentSet();
+				final Shortcuts[] found = new Shortcuts[batch.length];
+				IntStream.range(0, batch.length).parallel().forEach(new IntConsumer() {
+					public void accept(int i) {
+						found[i] = shortcutsOf(batch[i], WITNESS_SETTLE_LIMIT);
+					}
+				});
+
+				IntList touched = new IntList();
+				for (int i = 0; i < batch.length; i++) {
+					int v = batch[i];
+					rank[v] = next++;
+					contracted[v] = true;
+					out[v].removeContracted(contracted);
+					in[v].removeContracted(contracted);
+					up[v] = out[v];
+					down[v] = in[v];
+					for (int j = 0; j < found[i].size; j++) {
+						int a = found[i].from[j];
+						int b = found[i].to[j];
+						out[a].add(b, found[i].weight[j], found[i].hops[j], v);
+						in[b].add(a, found[i].weight[j], found[i].hops[j], v);
+					}
+					for (int j = 0; j < up[v].size; j++)
+						markNeighbour(up[v].nodes[j], touched);
+					for (int j = 0; j < down[v].size; j++)
+						markNeighbour(down[v].nodes[j], touched);
+				}
+				for (int i = 0; i < touched.size; i++) {
+					int x = touched.items[i];
+					dirty[x] = false;
+					out[x].removeContracted(contracted);
+					in[x].removeContracted(contracted);
+				}
+				final int[] stale = touched.items;
+				IntStream.range(0, touched.size).parallel().forEach(new IntConsumer() {
+					public void accept(int i) {
+						if (!contracted[stale[i]])
+							priority[stale[i]] = importance(stale[i]);
+					}
+				});
+			}
+			return new ContractionHierarchy<T>(graph, rank, up, down);
+		}
+
+		/**
+		 * Counts the contraction of a neighbour of x and lists x once in
+		 * touched.
+		 */
+		private void markNeighbour(int x, IntList touched) {
+			deleted[x]++;
+			if (!dirty[x]) {
+				dirty[x] = true;
+				touched.add(x);
+			}
+		}
+
+		/**
+		 * Returns the remaining ids whose (priority, id) is lower than that
+		 * of every remaining neighbour.
+		 */
+		private int[] independentSet() {
+			IntList batch = new IntList();
+			for (int v = 0; v < n; v++) {
+				if (!contracted[v] && isLocalMinimum(v, out[v]) && isLocalMinimum(v, in[v]))
+					batch.add(v);
+			}
+			return Arrays.copyOf(batch.items, batch.size);
+		}
+
+		private boolean isLocalMinimum(int v, Adjacency edges) {
+			for (int i = 0; i < edges.size; i++) {
+				int x = edges.nodes[i];
+				if (contracted[x])
+					continue;
+				int c = Integer.compare(priority[x], priority[v]);
+				if (c < 0 || (c == 0 && x < v))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns twice the edge difference of contracting v plus the number
+		 * of its neighbours already contracted.
+		 */
+		private int importance(int v) {
+			int removed = 0;
+			for (int i = 0; i < out[v].size; i++) {
+				if (!contracted[out[v].nodes[i]])
+					removed++;
+			}
+			for (int i = 0; i < in[v].size; i++) {
+				if (!contracted[in[v].nodes[i]])
+					removed++;
+			}
+			return 2 * (shortcutsOf(v, ESTIMATE_SETTLE_LIMIT).size - removed) + deleted[v];
+		}
+
+		/**
+		 * Returns the shortcuts that contracting v needs, giving up on a
+		 * witness after settleLimit nodes.
+		 */
+		private Shortcuts shortcutsOf(int v, int settleLimit) {
+			Witness witness = witnesses.get();
+			if (witness == null) {
+				witness = new Witness(n);
+				witnesses.set(witness);
+			}
+			Shortcuts result = new Shortcuts();
+			Adjacency ins = in[v];
+			Adjacency outs = out[v];
+			for (int j = 0; j < outs.size; j++) {
+				if (!contracted[outs.nodes[j]])
+					witness.addTarget(outs.nodes[j]);
+			}
+			for (int i = 0; i < ins.size; i++) {
+				int a = ins.nodes[i];
+				if (contracted[a])
+					continue;
+				double limit = 0.0;
+				for (int j = 0; j < outs.size; j++) {
+					int b = outs.nodes[j];
+					if (b != a && !contracted[b])
+						limit = Math.max(limit, ins.weights[i] + outs.weights[j]);
+				}
+				witness.search(a, v, limit, settleLimit);
+				for (int j = 0; j < outs.size; j++) {
+					int b = outs.nodes[j];
+					if (b == a || contracted[b])
+						continue;
+					double cost = ins.weights[i] + outs.weights[j];
+					int hops = ins.hops[i] + outs.hops[j];
+					if (!witness.reaches(b, cost, hops))
+						result.add(a, b, cost, hops);
+				}
+				witness.reset();
+			}
+			witness.clearTargets();
+			return result;
+		}
+
+		/**
+		 * Bounded Dijkstra search looking for paths that avoid one node,
+		 * reused by the contraction work of one thread.
+		 */
+		private final class Witness {
+			private final IndexedMinHeap active;
+			private final double[] dist;
+			private final int[] hops;
+			private final boolean[] seen;
+			private final boolean[] target; // true for the ids a search is after
+			private final IntList touched = new IntList();
+			private final IntList targets = new IntList();
+
+			Witness(int n) {
+				active = new IndexedMinHeap(n);
+				dist = new double[n];
+				hops = new int[n];
+				seen = new boolean[n];
+				target = new boolean[n];
+			}
+
+			void addTarget(int id) {
+				if (!target[id]) {
+					target[id] = true;
+					targets.add(id);
+				}
+			}
+
+			void clearTargets() {
+				for (int i = 0; i < targets.size; i++)
+					target[targets.items[i]] = false;
+				targets.size = 0;
+			}
+
+			/**
+			 * Searches from source, never entering avoid, until every target
+			 * is settled, limit is passed or enough nodes are settled.
+			 */
+			void search(int source, int avoid, double limit, int settleLimit) {
+				seen[source] = true;
+				touched.add(source);
+				dist[source] = 0.0;
+				hops[source] = 0;
+				active.offer(source, 0.0, 0);
+				int settled = 0;
+				int remaining = targets.size;
+				while (!active.isEmpty() && settled < settleLimit) {
+					int u = active.poll();
+					settled++;
+					if (dist[u] > limit || (target[u] && --remaining == 0))
+						break;
+					Adjacency edges = out[u];
+					for (int i = 0; i < edges.size; i++) {
+						int x = edges.nodes[i];
+						if (x == avoid || contracted[x])
+							continue;
+						double cost = dist[u] + edges.weights[i];
+						int h = hops[u] + edges.hops[i];
+						if (!seen[x]) {
+							seen[x] = true;
+							touched.add(x);
+							dist[x] = cost;
+							hops[x] = h;
+							active.offer(x, cost, h);
+						} else if (active.contains(x) && compare(cost, h, dist[x], hops[x]) < 0) {
+							dist[x] = cost;
+							hops[x] = h;
+							active.offer(x, cost, h);
+						}
+					}
+				}
+			}
+
+			/**
+			 * Returns true if the search found a path to target strictly
+			 * better than (cost, h).
+			 */
+			boolean reaches(int target, double cost, int h) {
+				return seen[target] && compare(dist[target], hops[target], cost, h) < 0;
+			}
+
+			void reset() {
+				active.clear();
+				for (int i = 0; i < touched.size; i++)
+					seen[touched.items[i]] = false;
+				touched.size = 0;
+			}
+		}
+	}
+
+	/**
+	 * Shortcuts found for one contracted node.
+	 */
+	private static final class Shortcuts {
+		int[] from = new int[4];
+		int[] to = new int[4];
+		double[] weight = new double[4];
+		int[] hops = new int[4];
+		int size = 0;
+
+		void add(int a, int b, double w, int h) {
+			if (size == from.length) {
+				int cap = size * 2;
+				from = Arrays.copyOf(from, cap);
+				to = Arrays.copyOf(to, cap);
+				weight = Arrays.copyOf(weight, cap);
+				hops = Arrays.copyOf(hops, cap);
+			}
+			from[size] = a;
+			to[size] = b;
+			weight[size] = w;
+			hops[size] = h;
+			size++;
+		}
+	}
+}
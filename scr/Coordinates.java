@@ -2,109 +2,209 @@ package hw8;
 
 /**
  * This class represents coordinates of a point.
- * 
+ * <p>
+ * Coordinates are held as primitive doubles. Two coordinates are equal if
+ * their x and y are equal as Double.equals compares them, and the hash
+ * code mixes the raw bits of both, so that points that are mirror images
+ * or lie on a regular grid do not collide the way a sum of the hash codes
+ * of x and y does. Coordinates are ordered by x and then by y.
+ * <p>
+ * toPacked quantizes a point into one long, so that many points can be
+ * kept in a long[] rather than as objects; x and y are rounded to the
+ * nearest multiple of PACKED_RESOLUTION.
+ *
  * @specfield x_coordinate : double
  * @specfield y_coordinate : double
- * 
+ *
  */
-public class Coordinates {
+public class Coordinates implements Comparable<Coordinates> {
 	public static final double epsilon = 0.00000001;
-	
-	private Double x; // x coordinate 
-	private Double y; // y coordinate
-	
+
+	/**
+	 * Step between the values a packed coordinate can take.
+	 */
+	public static final double PACKED_RESOLUTION = 1.0 / 1024;
+
+	/**
+	 * Largest magnitude of a coordinate that toPacked accepts.
+	 */
+	public static final double PACKED_LIMIT = Integer.MAX_VALUE * PACKED_RESOLUTION;
+
+	private final double x; // x coordinate
+	private final double y; // y coordinate
+
 	// Rep invariant:
-	//		x != null && y != null
-	
+	//		true; x and y may be any doubles
+
 	// Abstract function:
-	// 		AF(this) = coordinates of a point p such that 
+	// 		AF(this) = coordinates of a point p such that
 	//			p.x_coordinate = this.x;
 	//			p.y_coordinate = this.y;
-	
+
 	/**
-	 * Constructs coordinates of a point. 
-	 * 
+	 * Constructs coordinates of a point.
+	 *
 	 * @param x x coordinate of the point
 	 * @param y y coordinate of the point
 	 */
 	public Coordinates(double x, double y) {
 		this.x = x;
 		this.y = y;
-		checkRep();
 	}
-	
+
 	/**
 	 * Returns x coordinate of the point.
-	 * 
+	 *
 	 * @return x coordinate of the point
 	 */
 	public double getX() {
-		checkRep();
 		return x;
 	}
-	
+
 	/**
 	 * Returns y coordinate of the point.
-	 * 
+	 *
 	 * @return y coordinate of the point
 	 */
 	public double getY() {
-		checkRep();
 		return y;
 	}
-	
+
 	/**
 	 * Compares this object against the specified object.
-	 * 
+	 *
 	 * @param o object to be compared
 	 * @return true if o represents the same coordinates
 	 */
 	@Override
 	public boolean equals(/*@Nullable*/ Object other) {
-		checkRep();
-		if (!(other instanceof Coordinates)) {
-			checkRep();
+		if (!(other instanceof Coordinates))
 			return false;
-		}
-		
+
 		Coordinates c = (Coordinates) other;
-		checkRep();
-		return (c.x.equals(x)) && (c.y.equals(y));
+		return Double.doubleToLongBits(c.x) == Double.doubleToLongBits(x)
+				&& Double.doubleToLongBits(c.y) == Double.doubleToLongBits(y);
+	}
+
+	/**
+	 * Compares this point with other by x coordinate and then by y
+	 * coordinate, as Double.compare does.
+	 *
+	 * @param other point to be compared
+	 * @requires other != null
+	 * @return a negative number, zero or a positive number as this point
+	 * 		   comes before, is equal to or comes after other
+	 */
+	@Override
+	public int compareTo(Coordinates other) {
+		int byX = Double.compare(x, other.x);
+		return byX != 0 ? byX : Double.compare(y, other.y);
 	}
-	
+
 	/**
 	 * Returns the string representation of this object
-	 * 
-	 * @return String representation of this object 
+	 *
+	 * @return String representation of this object
 	 */
 	@Override
 	public String toString() {
-		checkRep();
-		String toReturn =  x.toString() + ", " + y.toString();
-		checkRep();
-		return toReturn;
+		return x + ", " + y;
 	}
-	
-	
+
+
 	/**
 	 * Returns a hash code for this Coordinates object.
-	 * 
+	 *
 	 * @return a hash code for this Coordinates object
 	 */
 	@Override
 	public int hashCode() {
-		checkRep();
-		return x.hashCode() + y.hashCode();
+		return hashOf(x, y);
 	}
-	
+
+	/**
+	 * Returns the hash code of the point (x, y), without making a
+	 * Coordinates.
+	 *
+	 * @param x x coordinate of the point
+	 * @param y y coordinate of the point
+	 * @return new Coordinates(x, y).hashCode()
+	 */
+	static int hashOf(double x, double y) {
+		// mix the bits of x fully before y is folded in, since the doubles
+		// of a grid differ only in a few high bits of the mantissa, and a
+		// plain product of the two would lose them
+		long h = mix(Double.doubleToLongBits(x));
+		h = mix(h ^ Double.doubleToLongBits(y) * 0x9e3779b97f4a7c15L);
+		return (int) h;
+	}
+
+	/**
+	 * Returns h with every bit mixed into every other, as the finalizer of
+	 * MurmurHash3 does.
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Returns this point quantized into one long: x and y are rounded to
+	 * the nearest multiple of PACKED_RESOLUTION, and the multiples are
+	 * kept in the high and low 32 bits.
+	 *
+	 * @requires |x|, |y| <= PACKED_LIMIT
+	 * @return packed form of this point
+	 * @throws IllegalArgumentException if x or y is NaN or larger in
+	 * 		   magnitude than PACKED_LIMIT
+	 */
+	public long toPacked() {
+		return ((long) quantize(x) << 32) | (quantize(y) & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the point a packed long stands for.
+	 *
+	 * @param packed a value returned by toPacked
+	 * @return the point with the quantized coordinates of packed
+	 */
+	public static Coordinates fromPacked(long packed) {
+		return new Coordinates(packedX(packed), packedY(packed));
+	}
+
+	/**
+	 * Returns the x coordinate of a packed point, without making a
+	 * Coordinates.
+	 *
+	 * @param packed a value returned by toPacked
+	 * @return the quantized x coordinate of packed
+	 */
+	public static double packedX(long packed) {
+		return (int) (packed >> 32) * PACKED_RESOLUTION;
+	}
+
+	/**
+	 * Returns the y coordinate of a packed point, without making a
+	 * Coordinates.
+	 *
+	 * @param packed a value returned by toPacked
+	 * @return the quantized y coordinate of packed
+	 */
+	public static double packedY(long packed) {
+		return (int) packed * PACKED_RESOLUTION;
+	}
+
 	/**
-	 * Checks if representation invariant holds.
+	 * Returns value as a whole number of PACKED_RESOLUTION steps.
 	 */
-	private void checkRep() {
-		if (x == null)
-			throw new RuntimeException("x coordinate cannot be null.");
-		
-		if (y == null)
-			throw new RuntimeException("y coordinate cannot be null.");
+	private static int quantize(double value) {
+		if (!(Math.abs(value) <= PACKED_LIMIT))
+			throw new IllegalArgumentException("coordinate " + value +
+					" cannot be packed.");
+		return (int) Math.round(value / PACKED_RESOLUTION);
 	}
 }
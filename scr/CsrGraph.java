@@ -0,0 +1,390 @@
+package hw5;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * <b>CsrGraph</b> represents an immutable, directed graph with double
+ * edge weights stored in compressed sparse row form: the out-edges of
+ * the node with id i are the entries offsets[i] .. offsets[i + 1] - 1 of
+ * targets and weights.
+ * <p>
+ * A CsrGraph is built from a DirGraph with DirGraph.toCsr or
+ * CsrGraph.freeze, or from arrays read back from storage with
+ * CsrGraph.of. It keeps the out-edges of every node in the order
+ * DirGraph.getOutwardEdgesOf returns them, so searches over either
+ * graph visit edges in the same order.
+ *
+ * @specfield nodes : Set<T> // Set of all nodes of type T in graph
+ * @specfield outEdges : Set<LabEdge<T, Double>> // Set of edges for each node in nodes
+ */
+public final class CsrGraph<T> implements IndexedGraph<T>, LabeledGraph<T, Double> {
+	// Representative Invariant:
+	//	 offsets.length == ids.size() + 1, offsets[0] == 0
+	//	 offsets[i] <= offsets[i + 1] for 0 <= i < ids.size()
+	//	 offsets[ids.size()] == targets.length == weights.length
+	//	 0 <= targets[e] < ids.size() for every edge e
+	//	 ids is not modified
+
+	// Abstract Function
+	//	 AF(g) = a directed weighted graph such that
+	//			 nodes = {ids.nodeAt(0), .., ids.nodeAt(n - 1)}
+	//			 the out-edges of ids.nodeAt(i) are 
+	//			 (ids.nodeAt(targets[e]), weights[e])
+	//			 for offsets[i] <= e < offsets[i + 1]
+
+	// constant variable used in checkRep
+	private final static boolean CHECK = false;
+
+	private final NodeDictionary<T> ids; // node to id and back
+	private final int[] offsets;       // first edge of each id, plus total edge count
+	private final int[] targets;       // destination id of each edge
+	private final double[] weights;    // weight of each edge
+	private final Set<T> nodesView;    // read-only view of the nodes of ids
+	private volatile CsrGraph<T> transposed; // reversed graph, built on first use
+
+	/**
+	 * Constructs a graph from its CSR arrays, taking ownership of them.
+	 *
+	 * @requires the arrays satisfy the representation invariant
+	 */
+	CsrGraph(NodeDictionary<T> ids, int[] offsets, int[] targets, double[] weights) {
+		this.ids = ids;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.nodesView = ids.asSet();
+		checkRep();
+	}
+
+	/**
+	 * Returns an immutable CSR snapshot of a graph with Double labels.
+	 *
+	 * @param graph the graph to be frozen
+	 * @requires graph != null
+	 * @return CSR snapshot of graph
+	 */
+	public static <T> CsrGraph<T> freeze(DirGraph<T, Double> graph) {
+		if (graph == null) {
+			throw new IllegalArgumentException("graph cannot be null");
+		}
+		return graph.toCsr(new ToDoubleFunction<Double>() {
+			public double applyAsDouble(Double label) {
+				return label;
+			}
+		});
+	}
+
+	/**
+	 * Returns a graph over CSR arrays read back from storage, taking
+	 * ownership of them: the out-edges of nodes.get(i) are
+	 * (nodes.get(targets[e]), weights[e]) for offsets[i] <= e < offsets[i + 1].
+	 *
+	 * @param nodes the nodes, in id order
+	 * @param offsets first edge of each id, then the number of edges
+	 * @param targets destination id of each edge
+	 * @param weights weight of each edge
+	 * @requires nodes, offsets, targets, weights != null and the arrays are
+	 *           not modified afterwards
+	 * @return graph over the given arrays
+	 * @throws IllegalArgumentException if a node is null or repeated, or the
+	 *         arrays do not describe the edges of nodes
+	 */
+	public static <T> CsrGraph<T> of(List<? extends T> nodes, int[] offsets,
+			int[] targets, double[] weights) {
+		if (nodes == null || offsets == null || targets == null || weights == null) {
+			throw new IllegalArgumentException("nodes and arrays cannot be null");
+		}
+		int n = nodes.size();
+		if (offsets.length != n + 1 || offsets[0] != 0 || offsets[n] != targets.length
+				|| targets.length != weights.length) {
+			throw new IllegalArgumentException("arrays do not match " + n + " nodes");
+		}
+		NodeDictionary<T> ids = new NodeDictionary<T>(n);
+		for (int i = 0; i < n; i++) {
+			T node = nodes.get(i);
+			if (node == null || ids.add(node) != i) {
+				throw new IllegalArgumentException("node " + i + " is null or repeated");
+			}
+			if (offsets[i] > offsets[i + 1]) {
+				throw new IllegalArgumentException("offsets must not decrease");
+			}
+		}
+		for (int target : targets) {
+			if (target < 0 || target >= n) {
+				throw new IllegalArgumentException("edge target out of range: " + target);
+			}
+		}
+		return new CsrGraph<T>(ids, offsets, targets, weights);
+	}
+
+	/**
+	 * Returns a graph over CSR arrays, as of does, for a graph that is its
+	 * own transpose. transpose() returns the graph itself, so the reversed
+	 * edges and their weights are never copied. The arrays themselves
+	 * still hold each edge, and its weight, once in each direction.
+	 *
+	 * @param nodes the nodes, in id order
+	 * @param offsets first edge of each id, then the number of edges
+	 * @param targets destination id of each edge
+	 * @param weights weight of each edge
+	 * @requires nodes, offsets, targets, weights != null, the arrays are
+	 *           not modified afterwards, and for every edge (i, j, w) the
+	 *           graph has an edge (j, i, w)
+	 * @return graph over the given arrays
+	 * @throws IllegalArgumentException if a node is null or repeated, or the
+	 *         arrays do not describe the edges of nodes
+	 */
+	public static <T> CsrGraph<T> symmetric(List<? extends T> nodes, int[] offsets,
+			int[] targets, double[] weights) {
+		CsrGraph<T> graph = of(nodes, offsets, targets, weights);
+		graph.transposed = graph;
+		return graph;
+	}
+
+	@Override
+	public int nodeCount() {
+		return ids.size();
+	}
+
+	@Override
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	@Override
+	public int idOf(T node) {
+		return ids.idOf(node);
+	}
+
+	@Override
+	public T nodeAt(int id) {
+		return ids.nodeAt(id);
+	}
+
+	@Override
+	public int firstEdge(int id) {
+		return offsets[id];
+	}
+
+	@Override
+	public int endEdge(int id) {
+		return offsets[id + 1];
+	}
+
+	@Override
+	public int targetOf(int edge) {
+		return targets[edge];
+	}
+
+	@Override
+	public double weightOf(int edge) {
+		return weights[edge];
+	}
+
+	/**
+	 * returns the graph with every edge reversed. It shares the node
+	 * dictionary of this graph and is built on first use.
+	 *
+	 * @return the transpose of this graph
+	 */
+	@Override
+	public CsrGraph<T> transpose() {
+		CsrGraph<T> t = transposed;
+		if (t == null) {
+			int n = ids.size();
+			int[] inOffsets = new int[n + 1];
+			for (int target : targets) {
+				inOffsets[target + 1]++;
+			}
+			for (int i = 0; i < n; i++) {
+				inOffsets[i + 1] += inOffsets[i];
+			}
+			int[] next = Arrays.copyOf(inOffsets, n);
+			int[] origins = new int[targets.length];
+			double[] inWeights = new double[targets.length];
+			for (int i = 0; i < n; i++) {
+				for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+					int slot = next[targets[e]]++;
+					origins[slot] = i;
+					inWeights[slot] = weights[e];
+				}
+			}
+			t = new CsrGraph<T>(ids, inOffsets, origins, inWeights);
+			t.transposed = this;
+			transposed = t;
+		}
+		return t;
+	}
+
+	@Override
+	public boolean containsNode(T node) {
+		return idOf(node) >= 0;
+	}
+
+	@Override
+	public Set<T> getNodes() {
+		return new HashSet<T>(nodesView);
+	}
+
+	@Override
+	public Set<T> getNodesView() {
+		return nodesView;
+	}
+
+	@Override
+	public int size() {
+		return ids.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return ids.size() == 0;
+	}
+
+	@Override
+	public Set<LabEdge<T, Double>> getOutwardEdgesOf(T node) {
+		int id = idOf(node);
+		if (id < 0) {
+			throw new IllegalArgumentException("graph does not contain " + node + " node");
+		}
+		Set<LabEdge<T, Double>> outwardEdges = new TreeSet<LabEdge<T, Double>>();
+		for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+			outwardEdges.add(new LabEdge<T, Double>(nodeAt(targets[e]), weights[e]));
+		}
+		return outwardEdges;
+	}
+
+	/**
+	 * returns a read-only set of the outgoing edges from node. A CsrGraph
+	 * does not hold LabEdge objects, so unlike DirGraph this builds the
+	 * set; walk the edges by id or with newEdgeCursor to avoid that.
+	 *
+	 * @param node The node of which the outgoing edges are returned
+	 * @return unmodifiable set of the outgoing edges from node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in the graph
+	 */
+	@Override
+	public Set<LabEdge<T, Double>> getOutwardEdgesView(T node) {
+		return Collections.unmodifiableSet(getOutwardEdgesOf(node));
+	}
+
+	@Override
+	public void forEachOutEdge(T node, Consumer<? super LabEdge<T, Double>> visitor) {
+		if (visitor == null) {
+			throw new IllegalArgumentException("visitor cannot be null");
+		}
+		int id = idOf(node);
+		if (id < 0) {
+			throw new IllegalArgumentException("graph does not contain " + node + " node");
+		}
+		for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+			visitor.accept(new LabEdge<T, Double>(nodeAt(targets[e]), weights[e]));
+		}
+	}
+
+	@Override
+	public EdgeCursor<T> newEdgeCursor(final ToDoubleFunction<? super Double> weightOf) {
+		if (weightOf == null) {
+			throw new IllegalArgumentException("weightOf cannot be null");
+		}
+		return new EdgeCursor<T>() {
+			private int edge = 0; // edge the cursor is on
+			private int end = 0;  // one past the last edge of the node
+
+			public void reset(T node) {
+				int id = idOf(node);
+				if (id < 0) {
+					throw new IllegalArgumentException("graph does not contain " + node + " node");
+				}
+				edge = offsets[id] - 1;
+				end = offsets[id + 1];
+			}
+
+			public boolean next() {
+				if (edge + 1 >= end) {
+					edge = end;
+					return false;
+				}
+				edge++;
+				return true;
+			}
+
+			public T dest() {
+				if (edge >= end) {
+					throw new NoSuchElementException();
+				}
+				return nodeAt(targets[edge]);
+			}
+
+			public double weight() {
+				if (edge >= end) {
+					throw new NoSuchElementException();
+				}
+				return weightOf.applyAsDouble(weights[edge]);
+			}
+		};
+	}
+
+	@Override
+	public EdgeCursor<T> newInEdgeCursor(ToDoubleFunction<? super Double> weightOf) {
+		return transpose().newEdgeCursor(weightOf);
+	}
+
+	/**
+	 * Returns string representation of the graph.
+	 *
+	 * @return string representation of the graph
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < ids.size(); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(nodeAt(i)).append("=[");
+			for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+				if (e > offsets[i]) {
+					sb.append(", ");
+				}
+				sb.append(nodeAt(targets[e])).append('(').append(weights[e]).append(')');
+			}
+			sb.append(']');
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Checks if representation invariant holds (if any)
+	 */
+	private void checkRep() throws RuntimeException {
+		if (CHECK) {
+			int n = ids.size();
+			if (offsets.length != n + 1 || offsets[0] != 0) {
+				throw new RuntimeException("offsets do not match nodes");
+			}
+			if (offsets[n] != targets.length || targets.length != weights.length) {
+				throw new RuntimeException("edge arrays do not match offsets");
+			}
+			for (int i = 0; i < n; i++) {
+				if (offsets[i] > offsets[i + 1]) {
+					throw new RuntimeException("offsets must not decrease");
+				}
+			}
+			for (int target : targets) {
+				if (target < 0 || target >= n) {
+					throw new RuntimeException("edge target out of range: " + target);
+				}
+			}
+		}
+	}
+}
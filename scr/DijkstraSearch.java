@@ -0,0 +1,467 @@
+package hw7;
+
+import hw5.EdgeCursor;
+import hw5.IdEdgeCursor;
+import hw5.IndexedGraph;
+import hw5.LabEdge;
+import hw5.LabeledGraph;
+import hw5.NumberedGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * DijkstraSearch is a single-use minimum-cost path search over a graph
+ * with non-negative Double labels.
+ * <p>
+ * Instead of keeping a copy of the whole path for every relaxed edge, the
+ * search keeps one distance, one hop count and one predecessor per settled
+ * node and rebuilds the path once, when the destination is settled. Nodes
+ * are searched by dense int id, and the frontier is a PathQueue holding,
+ * for every relaxed edge, only the end of the path: its node, cost, number
+ * of edges and predecessor. Like the queue of whole paths it replaces, it
+ * may hold a node more than once, and it pops entries equal in cost and
+ * edges in the order the PriorityQueue of paths popped them, so paths that
+ * tie exactly resolve to the same path as before. An
+ * IndexedGraph such as a CsrGraph is searched on its own ids and
+ * primitive weights, and a NumberedGraph such as a DirGraph on its own
+ * ids; any other graph has ids handed out as nodes are reached.
+ * <p>
+ * Given a Heuristic the search becomes A*: nodes are settled in order of
+ * known cost plus the estimated cost to the destination, which is
+ * computed once per reached node.
+ * <p>
+ * Paths are ordered by total cost and then by number of edges, the same
+ * order MarvelPaths2.minimumCostPath has always used.
+ *
+ * @param <T> type of the nodes of the graph
+ */
+public abstract class DijkstraSearch<T> {
+	// Rep invariant:
+	//     active != null
+	//     dist, hops, pred and settled have the same length, which is
+	//     larger than every id handed out
+	//     for every settled id i, pred[i] == -1 iff i is the origin, and
+	//     otherwise pred[i] is settled and hops[i] == hops[pred[i]] + 1
+	//     bound has the same length as dist; bound[i] is NaN until the
+	//     estimate for id i is computed, and always 0 without a heuristic
+
+	// Abstract function:
+	//     AF(this) = a search in progress such that for every settled node
+	//                with id i, the minimum-cost path from the origin
+	//                costs dist[i], has hops[i] edges and its last edge
+	//                comes from the node with id pred[i]; active holds the
+	//                paths that extend a settled path by one edge
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	// reads a Double label as an edge weight
+	static final ToDoubleFunction<Double> WEIGHT = new ToDoubleFunction<Double>() {
+		public double applyAsDouble(Double label) {
+			return label;
+		}
+	};
+
+	private final PathQueue active; // ends of paths one edge past the settled ids
+	private double[] dist;  // cost of the path to each settled id
+	private int[] hops;     // edge count of the path to each settled id
+	private int[] pred;     // predecessor of each settled id on its path
+	private boolean[] settled; // true once the best path to an id is final
+	private double[] bound; // estimated cost from each id to the destination
+	private /*@Nullable*/ Heuristic<T> heuristic; // estimates for A*, or null
+	private /*@Nullable*/ T dest; // destination of the running search
+
+	/**
+	 * Creates a search expecting about capacity nodes.
+	 */
+	private DijkstraSearch(int capacity) {
+		capacity = Math.max(16, capacity);
+		this.active = new PathQueue(capacity);
+		this.bound = new double[capacity];
+		this.dist = new double[capacity];
+		this.hops = new int[capacity];
+		this.pred = new int[capacity];
+		this.settled = new boolean[capacity];
+	}
+
+	/**
+	 * Finds the minimum-cost path from origin to dest.
+	 *
+	 * @param graph the graph used to find shortest path from origin to dest
+	 * @param origin the node the path starts from
+	 * @param dest the node the path ends at
+	 * @requires graph, origin, dest != null, origin and dest are in graph,
+	 *           and no label in graph is negative
+	 * @return the minimum-cost path from origin to dest as a list of edges
+	 *         whose labels are the cumulative cost up to each node, starting
+	 *         with (origin, 0.0), or null if no path exists
+	 */
+	public static <T> /*@Nullable*/ List<LabEdge<T, Double>> minimumCostPath(
+			LabeledGraph<T, Double> graph, T origin, T dest) {
+		return newSearch(graph).run(origin, dest);
+	}
+
+	/**
+	 * Finds the minimum-cost path from origin to dest with A* search.
+	 *
+	 * @param graph the graph used to find shortest path from origin to dest
+	 * @param origin the node the path starts from
+	 * @param dest the node the path ends at
+	 * @param heuristic consistent estimate of the cost between two nodes
+	 * @requires graph, origin, dest, heuristic != null, origin and dest are
+	 *           in graph, and no label in graph is negative
+	 * @return the minimum-cost path from origin to dest as a list of edges
+	 *         whose labels are the cumulative cost up to each node, starting
+	 *         with (origin, 0.0), or null if no path exists
+	 */
+	public static <T> /*@Nullable*/ List<LabEdge<T, Double>> minimumCostPath(
+			LabeledGraph<T, Double> graph, T origin, T dest, Heuristic<T> heuristic) {
+		DijkstraSearch<T> search = newSearch(graph);
+		search.heuristic = heuristic;
+		Arrays.fill(search.bound, Double.NaN);
+		return search.run(origin, dest);
+	}
+
+	/**
+	 * Finds the minimum-cost paths from origin to every node within radius
+	 * of it.
+	 *
+	 * @param graph the graph used to find shortest paths from origin
+	 * @param origin the node every path starts from
+	 * @param radius largest cost of a path to keep; infinity for all
+	 * @requires graph, origin != null, origin is in graph, radius >= 0,
+	 *           and no label in graph is negative
+	 * @return the tree of minimum-cost paths from origin to every node
+	 *         whose path costs at most radius
+	 */
+	public static <T> ShortestPathTree<T> shortestPathTree(
+			LabeledGraph<T, Double> graph, T origin, double radius) {
+		return newSearch(graph).grow(origin, radius);
+	}
+
+	/**
+	 * Returns a search suited to the representation of graph.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> DijkstraSearch<T> newSearch(LabeledGraph<T, Double> graph) {
+		if (graph instanceof IndexedGraph)
+			return new OverIndexedGraph<T>((IndexedGraph<T>) graph);
+		if (graph instanceof NumberedGraph)
+			return new OverNumberedGraph<T>((NumberedGraph<T, Double>) graph);
+		return new OverLabeledGraph<T>(graph);
+	}
+
+	/**
+	 * Returns the id of node, handing out a new id if needed.
+	 */
+	abstract int idOf(T node);
+
+	/**
+	 * Returns the node with id.
+	 */
+	abstract T nodeAt(int id);
+
+	/**
+	 * Returns a lookup of the id of a node that hands out no new ids and
+	 * returns -1 for a node without one, for a tree to find its nodes by
+	 * after the search is done.
+	 */
+	abstract ToIntFunction<T> ids();
+
+	/**
+	 * Calls relax(u, v, weight) for every out-edge of u.
+	 */
+	abstract void expand(int u);
+
+	/**
+	 * Runs the search until dest is settled or every reachable node is.
+	 */
+	private /*@Nullable*/ List<LabEdge<T, Double>> run(T origin, T dest) {
+		this.dest = dest;
+		int start = idOf(origin);
+		int target = idOf(dest);
+		active.offer(start, 0.0, boundOf(start), 0, -1);
+
+		while (!active.isEmpty()) {
+			int u = settleMin();
+			if (u == -1)
+				continue;
+			if (u == target)
+				return pathTo(u);
+			expand(u);
+			checkRep();
+		}
+
+		// no path exists from origin to dest
+		return null;
+	}
+
+	/**
+	 * Runs the search until every node within radius of origin is settled
+	 * and copies the settled ones into a tree, in the order they were
+	 * settled.
+	 */
+	private ShortestPathTree<T> grow(T origin, double radius) {
+		int start = idOf(origin);
+		active.offer(start, 0.0, 0.0, 0, -1);
+
+		int[] order = new int[16]; // settled ids, closest first
+		int count = 0;
+		while (!active.isEmpty() && active.minKey() <= radius) {
+			int u = settleMin();
+			if (u == -1)
+				continue;
+			if (count == order.length)
+				order = Arrays.copyOf(order, count * 2);
+			order[count++] = u;
+			expand(u);
+			checkRep();
+		}
+
+		// position of each settled id in order, to renumber predecessors
+		int[] position = new int[dist.length];
+		Object[] nodes = new Object[count];
+		double[] treeDist = new double[count];
+		int[] treePred = new int[count];
+		int[] treeHops = new int[count];
+		int[] treeIds = Arrays.copyOf(order, count);
+		for (int i = 0; i < count; i++) {
+			int id = order[i];
+			position[id] = i;
+			nodes[i] = nodeAt(id);
+			treeDist[i] = dist[id];
+			treePred[i] = pred[id] == -1 ? -1 : position[pred[id]];
+			treeHops[i] = hops[id];
+		}
+		return new ShortestPathTree<T>(nodes, treeIds, treeDist, treePred, treeHops,
+				radius, ids());
+	}
+
+	/**
+	 * Removes the smallest path end from active and settles its node, 
+	 * unless the node is settled already.
+	 *
+	 * @return the id settled, or -1 if its node was settled already
+	 */
+	private int settleMin() {
+		int u = active.minId();
+		if (settled[u]) {
+			active.removeMin();
+			return -1;
+		}
+		dist[u] = active.minCost();
+		hops[u] = active.minHops();
+		pred[u] = active.minPred();
+		settled[u] = true;
+		active.removeMin();
+		return u;
+	}
+
+	/**
+	 * Offers the path to v through the settled id u and an edge of the
+	 * given weight. Every such path is queued, not only one cheaper than
+	 * those already queued for v, so that the queue takes exactly the
+	 * entries the queue of whole paths took; that queue also took the
+	 * self-loops of the node being expanded.
+	 */
+	final void relax(int u, int v, double weight) {
+		if (settled[v] && v != u)
+			return;
+		double newCost = dist[u] + weight;
+		active.offer(v, newCost, newCost + boundOf(v), hops[u] + 1, u);
+	}
+
+	/**
+	 * Returns the estimated cost from id to the destination, computing it
+	 * on first use.
+	 */
+	private double boundOf(int id) {
+		if (heuristic == null)
+			return 0.0;
+		double b = bound[id];
+		if (Double.isNaN(b)) {
+			b = heuristic.estimate(nodeAt(id), dest);
+			bound[id] = b;
+		}
+		return b;
+	}
+
+	/**
+	 * Grows the per-id arrays so that ids below capacity fit.
+	 */
+	final void ensureCapacity(int capacity) {
+		if (capacity <= dist.length)
+			return;
+		int old = dist.length;
+		int cap = Math.max(capacity, old * 2);
+		dist = Arrays.copyOf(dist, cap);
+		hops = Arrays.copyOf(hops, cap);
+		pred = Arrays.copyOf(pred, cap);
+		settled = Arrays.copyOf(settled, cap);
+		bound = Arrays.copyOf(bound, cap);
+		if (heuristic != null)
+			Arrays.fill(bound, old, cap, Double.NaN);
+	}
+
+	/**
+	 * Rebuilds the path ending at id target by following predecessors.
+	 */
+	private List<LabEdge<T, Double>> pathTo(int target) {
+		LabEdge<T, Double>[] path = newEdgeArray(hops[target] + 1);
+		for (int i = target; i != -1; i = pred[i])
+			path[hops[i]] = new LabEdge<T, Double>(nodeAt(i), dist[i]);
+		return new ArrayList<LabEdge<T, Double>>(Arrays.asList(path));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> LabEdge<T, Double>[] newEdgeArray(int length) {
+		return (LabEdge<T, Double>[]) new LabEdge<?, ?>[length];
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			for (int i = 0; i < dist.length; i++) {
+				if (settled[i] && pred[i] != -1
+						&& (!settled[pred[i]] || hops[i] != hops[pred[i]] + 1))
+					throw new RuntimeException("path to settled id " + i + " is broken");
+			}
+		}
+	}
+
+	/**
+	 * Search over a graph that already numbers its nodes.
+	 */
+	private static final class OverIndexedGraph<T> extends DijkstraSearch<T> {
+		private final IndexedGraph<T> graph;
+
+		OverIndexedGraph(IndexedGraph<T> graph) {
+			super(graph.nodeCount());
+			this.graph = graph;
+		}
+
+		@Override
+		int idOf(T node) {
+			return graph.idOf(node);
+		}
+
+		@Override
+		T nodeAt(int id) {
+			return graph.nodeAt(id);
+		}
+
+		@Override
+		ToIntFunction<T> ids() {
+			return new ToIntFunction<T>() {
+				public int applyAsInt(T node) {
+					return graph.idOf(node);
+				}
+			};
+		}
+
+		@Override
+		void expand(int u) {
+			for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++)
+				relax(u, graph.targetOf(e), graph.weightOf(e));
+		}
+	}
+
+	/**
+	 * Search over a graph that numbers its nodes but not its edges.
+	 */
+	private static final class OverNumberedGraph<T> extends DijkstraSearch<T> {
+		private final NumberedGraph<T, Double> graph;
+		private final IdEdgeCursor edges; // reused for every expansion
+
+		OverNumberedGraph(NumberedGraph<T, Double> graph) {
+			super(graph.nodeCount());
+			this.graph = graph;
+			this.edges = graph.newIdEdgeCursor(WEIGHT);
+		}
+
+		@Override
+		int idOf(T node) {
+			return graph.idOf(node);
+		}
+
+		@Override
+		T nodeAt(int id) {
+			return graph.nodeAt(id);
+		}
+
+		@Override
+		ToIntFunction<T> ids() {
+			return new ToIntFunction<T>() {
+				public int applyAsInt(T node) {
+					return graph.idOf(node);
+				}
+			};
+		}
+
+		@Override
+		void expand(int u) {
+			edges.reset(u);
+			while (edges.next())
+				relax(u, edges.target(), edges.weight());
+		}
+	}
+
+	/**
+	 * Search over a graph of objects, numbering nodes as they are reached.
+	 */
+	private static final class OverLabeledGraph<T> extends DijkstraSearch<T> {
+		private final EdgeCursor<T> edges; // reused for every expansion
+		private final Map<T, Integer> ids;  // node to id, in order reached
+		private final List<T> nodes;        // id to node
+
+		OverLabeledGraph(LabeledGraph<T, Double> graph) {
+			super(graph.size());
+			this.edges = graph.newEdgeCursor(WEIGHT);
+			this.ids = new HashMap<T, Integer>();
+			this.nodes = new ArrayList<T>();
+		}
+
+		@Override
+		int idOf(T node) {
+			Integer id = ids.get(node);
+			if (id != null)
+				return id;
+			int next = nodes.size();
+			ensureCapacity(next + 1);
+			ids.put(node, next);
+			nodes.add(node);
+			return next;
+		}
+
+		@Override
+		T nodeAt(int id) {
+			return nodes.get(id);
+		}
+
+		@Override
+		ToIntFunction<T> ids() {
+			// the map is the one the search filled, not a copy
+			return new ToIntFunction<T>() {
+				public int applyAsInt(T node) {
+					Integer id = ids.get(node);
+					return id == null ? -1 : id;
+				}
+			};
+		}
+
+		@Override
+		void expand(int u) {
+			edges.reset(nodes.get(u));
+			while (edges.next())
+				relax(u, idOf(edges.dest()), edges.weight());
+		}
+	}
+}
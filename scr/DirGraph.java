@@ -1,13 +1,20 @@
 package hw5;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
 
 /**
  * <b>DirGraph</b> represents a mutable, directed, labeled graph
@@ -18,12 +25,25 @@ import java.util.TreeSet;
  * @author Yash Vig
  *
  */
-public class DirGraph<T, L extends Comparable<L>> {
+public class DirGraph<T, L extends Comparable<L>> implements NumberedGraph<T, L> {
 	// Representative Invariant: 
 	//	 graph != null
 	//	 graph has no null nodes
 	// 	 graph can have an edge going from n1 to n2 only if n1 and n2 
 	//	 are present in graph
+	//	 views has the same keys as graph, and views.get(n) is an 
+	//	 unmodifiable view of graph.get(n)
+	//	 inEdges is null, or has the same keys as graph and (o, l) is in 
+	//	 inEdges.get(d) exactly once iff (d, l) is in graph.get(o); the 
+	//	 sets of inEdges are not numbered
+	//	 edgesTo has the same keys as graph, edgesTo.get(o).get(d) is an 
+	//	 edge of graph.get(o) landing on d with the smallest label, and 
+	//	 is absent if there are none
+	//	 parallelTo.get(o).get(d) holds exactly the edges of graph.get(o) 
+	//	 landing on d if there are two or more of them, and is absent 
+	//	 otherwise; parallelTo has no empty maps
+	//	 ids holds exactly the keys of graph, outById.get(ids.idOf(n)) 
+	//	 == graph.get(n), and every set of graph is numbered with ids
 	
 	// Abstract Function 
 	//	 AF(g) = a directed labeled graph such that
@@ -40,14 +60,82 @@ public class DirGraph<T, L extends Comparable<L>> {
 	// directed labeled multi-graph
 	private final Map<T, Set<LabEdge<T, L>>> graph;
 	
+	// read-only views of the out-edges of each node, handed out 
+	// without copying
+	private final Map<T, Set<LabEdge<T, L>>> views;
+	
+	// read-only view of the nodes of graph
+	private final Set<T> nodesView;
+	
+	// edges landing on each node, each stored as (origin, label) and 
+	// sorted so one is found by binary search; null until first needed 
+	// if the graph was made without in-edge index
+	private /*@Nullable*/ Map<T, SortedEdgeArray<T, L>> inEdges;
+	
+	// lightest out-edge of each node to each of its destinations
+	private final Map<T, Map<T, LabEdge<T, L>>> edgesTo;
+	
+	// out-edges of each node grouped by destination, only for the 
+	// destinations it has more than one edge to
+	private final Map<T, Map<T, List<LabEdge<T, L>>>> parallelTo;
+	
+	// dense id of each node, in the order nodes were added
+	private final NodeDictionary<T> ids;
+	
+	// out-edges of each node by id, the same sets as in graph
+	private final List<SortedEdgeArray<T, L>> outById;
+	
 	/**
 	 * @effects Constructs a new directed graph with no nodes
 	 */
 	public DirGraph() {
-		graph = new HashMap<T, Set<LabEdge<T, L>>>();
+		this(0, true);
+	}
+	
+	/**
+	 * @param indexInEdges whether to keep the incoming edges of every 
+	 * node up to date from the start
+	 * @effects Constructs a new directed graph with no nodes. Without 
+	 * the in-edge index, adding edges takes less time and memory, and 
+	 * the index is built the first time incoming edges are asked for, 
+	 * then kept up to date.
+	 */
+	public DirGraph(boolean indexInEdges) {
+		this(0, indexInEdges);
+	}
+	
+	/**
+	 * @effects Constructs a new directed graph with no nodes, sized for 
+	 * about expectedNodes nodes
+	 */
+	private DirGraph(int expectedNodes, boolean indexInEdges) {
+		this(expectedNodes, indexInEdges, new NodeDictionary<T>(expectedNodes));
 		checkRep();
 	}
 	
+	/**
+	 * @effects Constructs a new directed graph with no nodes yet, whose 
+	 * nodes will be numbered by ids. Until the caller adds the out-edges 
+	 * of every node of ids, the representation invariant does not hold.
+	 */
+	private DirGraph(int expectedNodes, boolean indexInEdges, NodeDictionary<T> ids) {
+		this.ids = ids;
+		outById = new ArrayList<SortedEdgeArray<T, L>>(expectedNodes);
+		graph = new HashMap<T, Set<LabEdge<T, L>>>(capacityFor(expectedNodes));
+		views = new HashMap<T, Set<LabEdge<T, L>>>(capacityFor(expectedNodes));
+		nodesView = Collections.unmodifiableSet(graph.keySet());
+		inEdges = indexInEdges ? new HashMap<T, SortedEdgeArray<T, L>>(capacityFor(expectedNodes)) : null;
+		edgesTo = new HashMap<T, Map<T, LabEdge<T, L>>>(capacityFor(expectedNodes));
+		parallelTo = new HashMap<T, Map<T, List<LabEdge<T, L>>>>();
+	}
+	
+	/**
+	 * Returns a HashMap capacity that holds n keys without rehashing.
+	 */
+	private static int capacityFor(int n) {
+		return Math.max(16, (int) (n / 0.75f) + 1);
+	}
+	
 	/**
 	 * returns true if node is present in the graph
 	 * 
@@ -84,7 +172,15 @@ public class DirGraph<T, L extends Comparable<L>> {
 		// do not add duplicates, return false
 		if(graph.containsKey(node))
 			return false;
-		graph.put(node, new TreeSet<LabEdge<T, L>>());
+		SortedEdgeArray<T, L> edges = new SortedEdgeArray<T, L>(true);
+		ids.add(node);
+		outById.add(edges);
+		graph.put(node, edges);
+		views.put(node, Collections.unmodifiableSet(edges));
+		if(inEdges != null) {
+			inEdges.put(node, new SortedEdgeArray<T, L>(false));
+		}
+		edgesTo.put(node, new HashMap<T, LabEdge<T, L>>(4));
 		checkRep();
 		return true;
 	}
@@ -116,7 +212,52 @@ public class DirGraph<T, L extends Comparable<L>> {
 			throw new IllegalArgumentException("graph does not contain " + dest + " node");
 		}
 		checkRep();
-		boolean success = graph.get(origin).add(new LabEdge<T, L>(dest, label));
+		LabEdge<T, L> edge = new LabEdge<T, L>(dest, label);
+		boolean success = ((SortedEdgeArray<T, L>) graph.get(origin)).add(edge, ids.idOf(dest));
+		if(success) {
+			if(inEdges != null) {
+				inEdges.get(dest).add(new LabEdge<T, L>(origin, label));
+			}
+			indexEdge(origin, edge);
+		}
+		checkRep();
+		return success;
+	}
+	
+	/**
+	 * removes the edge from origin to dest with attribute label
+	 * 
+	 * @param origin The node which the edge originates from
+	 * @param dest The node which the edge lands on
+	 * @param label The attribute of the edge
+	 * @requires origin, dest, label != null
+	 * @modifies outEdges
+	 * @effects removes the edge from outEdges if it is in graph
+	 * @throws IllegalArgumentException if either origin or dest 
+	 * is not in graph
+	 * @return true if edge was in the graph and is removed, false otherwise
+	 */
+	public boolean removeEdge(T origin, T dest, L label) {
+		if(origin == null || dest == null || label == null) {
+			throw new IllegalArgumentException("None of the parameters can be null");
+		}
+		
+		if(!containsNode(origin)) {
+			throw new IllegalArgumentException("graph does not contain " + origin + " node");
+		}
+		
+		if(!containsNode(dest)) {
+			throw new IllegalArgumentException("graph does not contain " + dest + " node");
+		}
+		checkRep();
+		LabEdge<T, L> edge = new LabEdge<T, L>(dest, label);
+		boolean success = graph.get(origin).remove(edge);
+		if(success) {
+			if(inEdges != null) {
+				inEdges.get(dest).remove(new LabEdge<T, L>(origin, label));
+			}
+			unindexEdge(origin, edge);
+		}
 		checkRep();
 		return success;
 	}
@@ -167,14 +308,145 @@ public class DirGraph<T, L extends Comparable<L>> {
 		if(!graph.containsKey(node)) {
 			throw new IllegalArgumentException("graph does not contain " + node + " node");
 		}
-		Set<LabEdge<T, L>> outwardEdges = new TreeSet<LabEdge<T, L>>();
-		for (LabEdge<T, L> edge : graph.get(node)) {
-			outwardEdges.add(edge); // add the destination of edge to children
-		}
+		// the edges are already sorted, so the copy is one array copy
+		Set<LabEdge<T, L>> outwardEdges = 
+				new SortedEdgeArray<T, L>((SortedEdgeArray<T, L>) graph.get(node));
 		checkRep();
 		return outwardEdges;
 	}
 	
+	/**
+	 * returns a read-only view of the nodes, without copying them.
+	 * The view reflects later changes to the graph.
+	 * 
+	 * @return unmodifiable view of the set of nodes
+	 */
+	public Set<T> getNodesView() {
+		checkRep();
+		return nodesView;
+	}
+	
+	/**
+	 * returns a read-only view of the outgoing edges from node, without 
+	 * copying them. The view reflects later changes to the graph.
+	 * 
+	 * @param node The node of which the outgoing edges are returned
+	 * @return unmodifiable view of the outgoing edges from node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in nodes
+	 */
+	public Set<LabEdge<T, L>> getOutwardEdgesView(T node) {
+		checkRep();
+		if(node == null) {
+			throw new IllegalArgumentException("null node cannot be passed as parameter");
+		}
+		Set<LabEdge<T, L>> view = views.get(node);
+		if(view == null) {
+			throw new IllegalArgumentException("graph does not contain " + node + " node");
+		}
+		return view;
+	}
+	
+	/**
+	 * passes every outgoing edge from node to visitor, in the order 
+	 * getOutwardEdgesOf returns them, without copying the edges
+	 * 
+	 * @param node The node of which the outgoing edges are visited
+	 * @param visitor called once for each outgoing edge
+	 * @requires node, visitor != null and visitor does not modify the graph
+	 * @throws IllegalArgumentException if node is not in nodes
+	 */
+	public void forEachOutEdge(T node, Consumer<? super LabEdge<T, L>> visitor) {
+		if(visitor == null) {
+			throw new IllegalArgumentException("visitor cannot be null");
+		}
+		for(LabEdge<T, L> edge : getOutwardEdgesView(node)) {
+			visitor.accept(edge);
+		}
+	}
+	
+	/**
+	 * returns a new reusable cursor over outgoing edges that reports 
+	 * weights as primitive doubles
+	 * 
+	 * @param weightOf converts an edge label to its weight
+	 * @requires weightOf != null
+	 * @return a new cursor, positioned on no node
+	 */
+	public EdgeCursor<T> newEdgeCursor(ToDoubleFunction<? super L> weightOf) {
+		checkRep();
+		if(weightOf == null) {
+			throw new IllegalArgumentException("weightOf cannot be null");
+		}
+		return new LabelCursor(weightOf, false);
+	}
+	
+	/**
+	 * returns a new reusable cursor over incoming edges that reports 
+	 * weights as primitive doubles. The cursor reports the origin of 
+	 * each edge as its dest().
+	 * 
+	 * @param weightOf converts an edge label to its weight
+	 * @requires weightOf != null
+	 * @return a new cursor, positioned on no node
+	 */
+	public EdgeCursor<T> newInEdgeCursor(ToDoubleFunction<? super L> weightOf) {
+		checkRep();
+		if(weightOf == null) {
+			throw new IllegalArgumentException("weightOf cannot be null");
+		}
+		return new LabelCursor(weightOf, true);
+	}
+	
+	/**
+	 * returns the number of nodes in the graph, the same as size()
+	 * 
+	 * @return number of nodes, one more than the largest id
+	 */
+	public int nodeCount() {
+		return ids.size();
+	}
+	
+	/**
+	 * returns the id of a node. Nodes are numbered 0, 1, .. in the order 
+	 * they were added, and keep their id for the life of the graph.
+	 * 
+	 * @param node the node to be looked up
+	 * @requires node != null
+	 * @return id of node, or -1 if node is not in the graph
+	 */
+	public int idOf(T node) {
+		return ids.idOf(node);
+	}
+	
+	/**
+	 * returns the node with the given id
+	 * 
+	 * @param id id of the node
+	 * @requires 0 <= id < nodeCount()
+	 * @return the node numbered id
+	 */
+	public T nodeAt(int id) {
+		return ids.nodeAt(id);
+	}
+	
+	/**
+	 * returns a new reusable cursor over outgoing edges that names nodes 
+	 * by id and reports weights as primitive doubles. It walks edges in 
+	 * the order getOutwardEdgesOf returns them.
+	 * 
+	 * @param weightOf converts an edge label to its weight
+	 * @requires weightOf != null
+	 * @return a new cursor, positioned on no node
+	 */
+	public IdEdgeCursor newIdEdgeCursor(ToDoubleFunction<? super L> weightOf) {
+		checkRep();
+		if(weightOf == null) {
+			throw new IllegalArgumentException("weightOf cannot be null");
+		}
+		return new IdCursor(weightOf);
+	}
+	
 	/**
 	 * returns a set nodes that are connected to the node
 	 * 
@@ -192,7 +464,7 @@ public class DirGraph<T, L extends Comparable<L>> {
 			throw new IllegalArgumentException("graph does not contain " + node + " node");
 		}
 		Set<T> children = new TreeSet<T>();
-		for (LabEdge<T, L> edge : getOutwardEdgesOf(node)) {
+		for (LabEdge<T, L> edge : graph.get(node)) {
 			children.add(edge.getDest()); // add the destination of edge to children
 		}
 		checkRep();
@@ -200,7 +472,121 @@ public class DirGraph<T, L extends Comparable<L>> {
 	}
 	
 	/**
-	 * returns a set of edges between node1 and node2
+	 * returns a set of incoming edges of node, each described as 
+	 * (origin, label)
+	 * 
+	 * @param node The node of which the incoming edges are returned
+	 * @return set of incoming edges of node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in graph
+	 */
+	public Set<LabEdge<T, L>> getInwardEdgesOf(T node) {
+		checkRep();
+		Set<LabEdge<T, L>> inwardEdges = new TreeSet<LabEdge<T, L>>(inEdgesOf(node));
+		checkRep();
+		return inwardEdges;
+	}
+	
+	/**
+	 * returns a set of nodes that have an edge to node
+	 * 
+	 * @param node The node of which the parents are returned
+	 * @return set of parents of node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in graph
+	 */
+	public Set<T> getParentsOf(T node) {
+		checkRep();
+		Set<T> parents = new TreeSet<T>();
+		for(LabEdge<T, L> edge : inEdgesOf(node)) {
+			parents.add(edge.getDest()); // add the origin of edge to parents
+		}
+		checkRep();
+		return parents;
+	}
+	
+	/**
+	 * returns the number of edges landing on node
+	 * 
+	 * @param node The node of which the incoming edges are counted
+	 * @return number of incoming edges of node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in graph
+	 */
+	public int inDegree(T node) {
+		checkRep();
+		return inEdgesOf(node).size();
+	}
+	
+	/**
+	 * returns the number of edges going out of node
+	 * 
+	 * @param node The node of which the outgoing edges are counted
+	 * @return number of outgoing edges of node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in graph
+	 */
+	public int outDegree(T node) {
+		checkRep();
+		return getOutwardEdgesView(node).size();
+	}
+	
+	/**
+	 * returns true if the incoming edges of every node are kept up to 
+	 * date as edges are added
+	 * 
+	 * @return true if the graph has its in-edge index
+	 */
+	public boolean hasInEdgeIndex() {
+		return inEdges != null;
+	}
+	
+	/**
+	 * Returns the incoming edges of node, building the in-edge index if 
+	 * the graph does not have it yet.
+	 * 
+	 * @throws IllegalArgumentException if node is null or not in graph
+	 */
+	private SortedEdgeArray<T, L> inEdgesOf(T node) {
+		if(node == null) {
+			throw new IllegalArgumentException("null node cannot be passed as parameter");
+		}
+		if(inEdges == null) {
+			Map<T, List<LabEdge<T, L>>> lists = new HashMap<T, List<LabEdge<T, L>>>(capacityFor(graph.size()));
+			for(T n : graph.keySet()) {
+				lists.put(n, new ArrayList<LabEdge<T, L>>());
+			}
+			for(Entry<T, Set<LabEdge<T, L>>> entry : graph.entrySet()) {
+				for(LabEdge<T, L> edge : entry.getValue()) {
+					lists.get(edge.getDest()).add(new LabEdge<T, L>(entry.getKey(), edge.getLabel()));
+				}
+			}
+			Map<T, SortedEdgeArray<T, L>> index = new HashMap<T, SortedEdgeArray<T, L>>(capacityFor(graph.size()));
+			for(Entry<T, List<LabEdge<T, L>>> entry : lists.entrySet()) {
+				index.put(entry.getKey(), sortedSet(entry.getValue()));
+			}
+			inEdges = index;
+			checkRep();
+		}
+		SortedEdgeArray<T, L> in = inEdges.get(node);
+		if(in == null) {
+			throw new IllegalArgumentException("graph does not contain " + node + " node");
+		}
+		return in;
+	}
+	
+	/**
+	 * Returns an unnumbered set of edges, sorting edges in place; edges 
+	 * must not have two edges comparing as equal
+	 */
+	private static <T, L extends Comparable<L>> SortedEdgeArray<T, L> sortedSet(List<LabEdge<T, L>> edges) {
+		Collections.sort(edges);
+		return new SortedEdgeArray<T, L>(edges, null);
+	}
+	
+	/**
+	 * returns a set of edges between node1 and node2, looked up by 
+	 * destination rather than by scanning the out-edges of node1
 	 * 
 	 * @param node1 The origin node
 	 * @param node2 The destination node
@@ -224,8 +610,14 @@ public class DirGraph<T, L extends Comparable<L>> {
 			throw new IllegalArgumentException("parameter " + node2 + "not in graph");
 		}
 		Set<LabEdge<T, L>> edgesBetween = new HashSet<LabEdge<T, L>>();
-		for(LabEdge<T, L> edge : graph.get(node1)) {
-			if(edge.getDest().equals(node2)) {
+		List<LabEdge<T, L>> parallel = parallelOf(node1, node2);
+		if(parallel != null) {
+			for(LabEdge<T, L> edge : parallel) {
+				edgesBetween.add(new LabEdge<T, L>(edge.getDest(), edge.getLabel()));
+			}
+		} else {
+			LabEdge<T, L> edge = edgesTo.get(node1).get(node2);
+			if(edge != null) {
 				edgesBetween.add(new LabEdge<T, L>(edge.getDest(), edge.getLabel()));
 			}
 		}
@@ -234,7 +626,8 @@ public class DirGraph<T, L extends Comparable<L>> {
 	}
 	
 	/**
-	 * returns the smallest edge between node1 and node2
+	 * returns the smallest edge between node1 and node2, in constant 
+	 * expected time
 	 * 
 	 * @param node1 The origin node
 	 * @param node2 The destination node
@@ -246,13 +639,88 @@ public class DirGraph<T, L extends Comparable<L>> {
 	 */
 	public LabEdge<T, L> getShortestEdgeBetween(T node1, T node2) {
 		checkRep();
-		Set<LabEdge<T, L>> edgesBetween = getEdgesBetween(node1, node2);
-		if(edgesBetween.isEmpty()) {
+		if(node1 == null || node2 == null) {
+			throw new IllegalArgumentException("parameters cannot be null");
+		}
+		Map<T, LabEdge<T, L>> byDest = edgesTo.get(node1);
+		if(byDest == null) {
+			throw new IllegalArgumentException("parameter " + node1 + " not in graph");
+		}
+		if(!graph.containsKey(node2)) {
+			throw new IllegalArgumentException("parameter " + node2 + "not in graph");
+		}
+		LabEdge<T, L> lightest = byDest.get(node2);
+		if(lightest == null) {
 			throw new NoSuchElementException();
 		}
-		LabEdge<T, L> min = Collections.min(edgesBetween);
 		checkRep();
-		return new LabEdge<T, L>(node2, min.getLabel());
+		return new LabEdge<T, L>(node2, lightest.getLabel());
+	}
+	
+	/**
+	 * Adds edge, a new out-edge of origin, to the destination index, 
+	 * keeping the lightest edge to each destination. A list of the edges 
+	 * to a destination is only made once there are two of them.
+	 */
+	private void indexEdge(T origin, LabEdge<T, L> edge) {
+		Map<T, LabEdge<T, L>> byDest = edgesTo.get(origin);
+		LabEdge<T, L> lightest = byDest.get(edge.getDest());
+		if(lightest == null) {
+			byDest.put(edge.getDest(), edge);
+			return;
+		}
+		List<LabEdge<T, L>> parallel = parallelOf(origin, edge.getDest());
+		if(parallel == null) {
+			Map<T, List<LabEdge<T, L>>> lists = parallelTo.get(origin);
+			if(lists == null) {
+				lists = new HashMap<T, List<LabEdge<T, L>>>(4);
+				parallelTo.put(origin, lists);
+			}
+			parallel = new ArrayList<LabEdge<T, L>>(2);
+			parallel.add(lightest);
+			lists.put(edge.getDest(), parallel);
+		}
+		parallel.add(edge);
+		if(edge.getLabel().compareTo(lightest.getLabel()) < 0) {
+			byDest.put(edge.getDest(), edge);
+		}
+	}
+	
+	/**
+	 * Takes edge, a removed out-edge of origin, out of the destination 
+	 * index, keeping the lightest remaining edge to its destination
+	 */
+	private void unindexEdge(T origin, LabEdge<T, L> edge) {
+		Map<T, LabEdge<T, L>> byDest = edgesTo.get(origin);
+		List<LabEdge<T, L>> parallel = parallelOf(origin, edge.getDest());
+		if(parallel == null) {
+			byDest.remove(edge.getDest());
+			return;
+		}
+		parallel.remove(edge);
+		LabEdge<T, L> lightest = parallel.get(0);
+		for(LabEdge<T, L> other : parallel) {
+			if(other.getLabel().compareTo(lightest.getLabel()) < 0) {
+				lightest = other;
+			}
+		}
+		byDest.put(edge.getDest(), lightest);
+		if(parallel.size() == 1) {
+			Map<T, List<LabEdge<T, L>>> lists = parallelTo.get(origin);
+			lists.remove(edge.getDest());
+			if(lists.isEmpty()) {
+				parallelTo.remove(origin);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the out-edges of origin landing on dest, or null if there 
+	 * are fewer than two of them
+	 */
+	private /*@Nullable*/ List<LabEdge<T, L>> parallelOf(T origin, T dest) {
+		Map<T, List<LabEdge<T, L>>> lists = parallelTo.get(origin);
+		return lists == null ? null : lists.get(dest);
 	}
 	
 	/**
@@ -275,14 +743,467 @@ public class DirGraph<T, L extends Comparable<L>> {
 		return Collections.unmodifiableSet(graph.entrySet());
 	}
 	
+	/**
+	 * Returns an immutable compressed-sparse-row snapshot of the graph.
+	 * Nodes keep their ids in this graph and every label is converted to a
+	 * primitive double weight; the out-edges of each node keep the order
+	 * getOutwardEdgesOf returns them in.
+	 * 
+	 * @param weightOf converts an edge label to its weight
+	 * @requires weightOf != null
+	 * @return CSR snapshot of the graph
+	 */
+	public CsrGraph<T> toCsr(ToDoubleFunction<? super L> weightOf) {
+		checkRep();
+		if(weightOf == null) {
+			throw new IllegalArgumentException("weightOf cannot be null");
+		}
+		// the snapshot keeps the ids of this graph, so no node is hashed
+		int n = ids.size();
+		int[] offsets = new int[n + 1];
+		for(int id = 0; id < n; id++) {
+			offsets[id + 1] = offsets[id] + outById.get(id).size();
+		}
+		int[] targets = new int[offsets[n]];
+		double[] weights = new double[offsets[n]];
+		for(int id = 0; id < n; id++) {
+			SortedEdgeArray<T, L> out = outById.get(id);
+			for(int i = 0, e = offsets[id]; i < out.size(); i++, e++) {
+				targets[e] = out.targetAt(i);
+				weights[e] = weightOf.applyAsDouble(out.edgeAt(i).getLabel());
+			}
+		}
+		checkRep();
+		return new CsrGraph<T>(new NodeDictionary<T>(ids), offsets, targets, weights);
+	}
+	
+	/**
+	 * <b>Builder</b> collects the nodes and edges of a new DirGraph and 
+	 * builds it in one pass. Edges are only collected as they are added; 
+	 * build() sorts and deduplicates the out-edges of each node once, and 
+	 * fills the in-edge and destination indexes of the graph from them. 
+	 * This skips the checks and ordered insertion addNode and addEdge do 
+	 * for every call, so loading a large dataset is faster.
+	 * <p>
+	 * A builder can be used once: after build() it accepts no more nodes 
+	 * or edges.
+	 * 
+	 * @param <T> type of the nodes of the graph
+	 * @param <L> type of the edge labels
+	 */
+	public static final class Builder<T, L extends Comparable<L>> {
+		// nodes added so far, numbered in the order added; null once built
+		private /*@Nullable*/ NodeDictionary<T> nodes;
+		
+		// record of each node added so far, by id
+		private final List<Pending<T, L>> records;
+		
+		// number of edges added so far, duplicates included
+		private int edgeCount = 0;
+		
+		// initial capacity of the out-edge list of each node
+		private final int degreeHint;
+		
+		/**
+		 * @effects Constructs a builder of an empty graph
+		 */
+		public Builder() {
+			this(0, 0);
+		}
+		
+		/**
+		 * @param expectedNodes about how many nodes the graph will have
+		 * @param expectedEdges about how many edges the graph will have
+		 * @requires expectedNodes, expectedEdges >= 0
+		 * @effects Constructs a builder of an empty graph, sized for about 
+		 * expectedNodes nodes and expectedEdges edges
+		 */
+		public Builder(int expectedNodes, int expectedEdges) {
+			if(expectedNodes < 0 || expectedEdges < 0) {
+				throw new IllegalArgumentException("expected counts cannot be negative");
+			}
+			nodes = new NodeDictionary<T>(expectedNodes);
+			records = new ArrayList<Pending<T, L>>(expectedNodes);
+			degreeHint = expectedNodes == 0 ? 2 
+					: Math.max(1, (int) Math.min(1024, (expectedEdges + (long) expectedNodes - 1) / expectedNodes));
+		}
+		
+		/**
+		 * adds node to the graph being built, if it is not already there
+		 * 
+		 * @param node The node to be added in the graph
+		 * @requires node != null
+		 * @throws IllegalStateException if build() was called
+		 * @return this builder
+		 */
+		public Builder<T, L> addNode(T node) {
+			if(node == null) {
+				throw new IllegalArgumentException("null node cannot be passed as parameter");
+			}
+			pendingOf(node);
+			return this;
+		}
+		
+		/**
+		 * adds the edge from origin to dest with attribute label to the 
+		 * graph being built, and origin and dest if they are not already 
+		 * there. Duplicate edges are dropped by build().
+		 * 
+		 * @param origin The node which the edge originates from
+		 * @param dest The node which the edge lands on
+		 * @param label The attribute of the edge
+		 * @requires origin, dest, label != null
+		 * @throws IllegalStateException if build() was called
+		 * @return this builder
+		 */
+		public Builder<T, L> addEdge(T origin, T dest, L label) {
+			if(origin == null || dest == null || label == null) {
+				throw new IllegalArgumentException("None of the parameters can be null");
+			}
+			add(origin, pendingOf(origin), dest, label);
+			return this;
+		}
+		
+		/**
+		 * adds a batch of out-edges of origin to the graph being built, 
+		 * with origin and their destinations
+		 * 
+		 * @param origin The node the edges originate from
+		 * @param batch The edges, each given as (dest, label)
+		 * @requires origin, batch != null and batch has no null edge
+		 * @throws IllegalStateException if build() was called
+		 * @return this builder
+		 */
+		public Builder<T, L> addEdges(T origin, Iterable<? extends LabEdge<T, L>> batch) {
+			if(origin == null || batch == null) {
+				throw new IllegalArgumentException("origin and batch cannot be null");
+			}
+			Pending<T, L> from = pendingOf(origin);
+			for(LabEdge<T, L> edge : batch) {
+				add(origin, from, edge.getDest(), edge.getLabel());
+			}
+			return this;
+		}
+		
+		/**
+		 * adds a stream of out-edges of origin to the graph being built, 
+		 * with origin and their destinations
+		 * 
+		 * @param origin The node the edges originate from
+		 * @param stream The edges, each given as (dest, label)
+		 * @requires origin, stream != null and stream has no null edge
+		 * @throws IllegalStateException if build() was called
+		 * @return this builder
+		 */
+		public Builder<T, L> addEdges(final T origin, Stream<? extends LabEdge<T, L>> stream) {
+			if(origin == null || stream == null) {
+				throw new IllegalArgumentException("origin and stream cannot be null");
+			}
+			final Pending<T, L> from = pendingOf(origin);
+			stream.sequential().forEachOrdered(new Consumer<LabEdge<T, L>>() {
+				public void accept(LabEdge<T, L> edge) {
+					add(origin, from, edge.getDest(), edge.getLabel());
+				}
+			});
+			return this;
+		}
+		
+		/**
+		 * builds the graph from the nodes and edges added so far
+		 * 
+		 * @throws IllegalStateException if build() was already called
+		 * @return a new graph with the added nodes and the added edges, 
+		 * without duplicates
+		 */
+		public DirGraph<T, L> build() {
+			NodeDictionary<T> all = pending();
+			nodes = null;
+			int n = all.size();
+			DirGraph<T, L> g = new DirGraph<T, L>(n, true, all);
+			
+			// sort and deduplicate the out-edges of every node, then fill 
+			// its out-edge set and destination index from them in order, 
+			// so the first edge to each destination is the lightest; the 
+			// graph keeps the ids the builder gave its nodes
+			boolean dropped = false;
+			for(int id = 0; id < n; id++) {
+				T node = all.nodeAt(id);
+				Pending<T, L> p = records.get(id);
+				List<LabEdge<T, L>> out = p.out;
+				Collections.sort(out);
+				int kept = 0;
+				for(int i = 0; i < out.size(); i++) {
+					if(kept == 0 || out.get(kept - 1).compareTo(out.get(i)) != 0) {
+						out.set(kept++, out.get(i));
+					}
+				}
+				if(kept < out.size()) {
+					out.subList(kept, out.size()).clear();
+					dropped = true;
+				}
+				
+				int[] targets = new int[kept];
+				for(int i = 0; i < kept; i++) {
+					targets[i] = all.idOf(out.get(i).getDest());
+				}
+				SortedEdgeArray<T, L> set = new SortedEdgeArray<T, L>(out, targets);
+				g.graph.put(node, set);
+				g.outById.add(set);
+				g.views.put(node, Collections.unmodifiableSet(set));
+				g.edgesTo.put(node, new HashMap<T, LabEdge<T, L>>((int) (kept / 0.75f) + 1));
+				for(LabEdge<T, L> edge : set) {
+					g.indexEdge(node, edge);
+				}
+			}
+			
+			// the in-edges were recorded as edges were added; if duplicates 
+			// were dropped, they are made again from the kept out-edges
+			if(dropped) {
+				for(Pending<T, L> p : records) {
+					p.in.clear();
+				}
+				for(int id = 0; id < n; id++) {
+					T origin = all.nodeAt(id);
+					SortedEdgeArray<T, L> out = g.outById.get(id);
+					for(int i = 0; i < out.size(); i++) {
+						records.get(out.targetAt(i)).in.add(new LabEdge<T, L>(origin, out.edgeAt(i).getLabel()));
+					}
+				}
+			}
+			for(int id = 0; id < n; id++) {
+				g.inEdges.put(all.nodeAt(id), sortedSet(records.get(id).in));
+			}
+			g.checkRep();
+			return g;
+		}
+		
+		/**
+		 * Returns the number of edges added so far, duplicates included.
+		 * 
+		 * @return number of edges added
+		 */
+		public int edgeCount() {
+			return edgeCount;
+		}
+		
+		/**
+		 * Adds the edge (dest, label) to the out-edges of origin, whose 
+		 * record is from, and (origin, label) to the in-edges of dest.
+		 */
+		private void add(T origin, Pending<T, L> from, T dest, L label) {
+			pendingOf(dest).in.add(new LabEdge<T, L>(origin, label));
+			from.out.add(new LabEdge<T, L>(dest, label));
+			edgeCount++;
+		}
+		
+		/**
+		 * Returns the record of node, adding node if needed.
+		 */
+		private Pending<T, L> pendingOf(T node) {
+			int id = pending().add(node);
+			if(id == records.size()) {
+				records.add(new Pending<T, L>(degreeHint));
+			}
+			return records.get(id);
+		}
+		
+		private NodeDictionary<T> pending() {
+			if(nodes == null) {
+				throw new IllegalStateException("graph was already built");
+			}
+			return nodes;
+		}
+	}
+	
+	/**
+	 * A node added to a Builder with its out-edges and in-edges so far.
+	 */
+	private static final class Pending<T, L extends Comparable<L>> {
+		final List<LabEdge<T, L>> out; // (dest, label), unsorted, with duplicates
+		final List<LabEdge<T, L>> in;  // (origin, label), in the order added
+		
+		Pending(int degreeHint) {
+			out = new ArrayList<LabEdge<T, L>>(degreeHint);
+			in = new ArrayList<LabEdge<T, L>>(degreeHint);
+		}
+	}
+	
+	/**
+	 * EdgeCursor over the out-edges or in-edges of a node, reading 
+	 * weights from labels.
+	 */
+	private final class LabelCursor implements EdgeCursor<T> {
+		private final ToDoubleFunction<? super L> weightOf; // label to weight
+		private final boolean inward; // walk in-edges instead of out-edges
+		private Iterator<LabEdge<T, L>> edges = null; // remaining edges of the node
+		private LabEdge<T, L> current = null; // edge the cursor is on
+		
+		LabelCursor(ToDoubleFunction<? super L> weightOf, boolean inward) {
+			this.weightOf = weightOf;
+			this.inward = inward;
+		}
+		
+		public void reset(T node) {
+			Collection<LabEdge<T, L>> all;
+			if(inward) {
+				all = inEdgesOf(node);
+			} else {
+				all = getOutwardEdgesView(node);
+			}
+			edges = all.iterator();
+			current = null;
+		}
+		
+		public boolean next() {
+			if(edges == null || !edges.hasNext()) {
+				current = null;
+				return false;
+			}
+			current = edges.next();
+			return true;
+		}
+		
+		public T dest() {
+			if(current == null) {
+				throw new NoSuchElementException();
+			}
+			return current.dest;
+		}
+		
+		public double weight() {
+			if(current == null) {
+				throw new NoSuchElementException();
+			}
+			return weightOf.applyAsDouble(current.label);
+		}
+	}
+	
+	/**
+	 * IdEdgeCursor over the out-edges of a node, reading weights from 
+	 * labels.
+	 */
+	private final class IdCursor implements IdEdgeCursor {
+		private final ToDoubleFunction<? super L> weightOf; // label to weight
+		private /*@Nullable*/ SortedEdgeArray<T, L> edges = null; // out-edges of the node
+		private int edge = 0; // index of the edge the cursor is on
+		
+		IdCursor(ToDoubleFunction<? super L> weightOf) {
+			this.weightOf = weightOf;
+		}
+		
+		public void reset(int id) {
+			if(id < 0 || id >= outById.size()) {
+				throw new IllegalArgumentException("graph has no node with id " + id);
+			}
+			edges = outById.get(id);
+			edge = -1;
+		}
+		
+		public boolean next() {
+			if(edges == null || edge + 1 >= edges.size()) {
+				edge = edges == null ? 0 : edges.size();
+				return false;
+			}
+			edge++;
+			return true;
+		}
+		
+		public int target() {
+			if(edges == null || edge < 0 || edge >= edges.size()) {
+				throw new NoSuchElementException();
+			}
+			return edges.targetAt(edge);
+		}
+		
+		public double weight() {
+			if(edges == null || edge < 0 || edge >= edges.size()) {
+				throw new NoSuchElementException();
+			}
+			return weightOf.applyAsDouble(edges.edgeAt(edge).label);
+		}
+	}
+	
 	/**
 	 * Checks if representation invariant holds (if any)
 	 */
 	private void checkRep() throws RuntimeException {
 		if(CHECK) {
+			if(ids.size() != graph.size() || outById.size() != graph.size()) {
+				throw new RuntimeException("ids must number exactly the nodes of graph");
+			}
+			for(int id = 0; id < ids.size(); id++) {
+				SortedEdgeArray<T, L> out = outById.get(id);
+				if(out != graph.get(ids.nodeAt(id)) || !out.isNumbered()) {
+					throw new RuntimeException("out-edges of id " + id + " do not match graph");
+				}
+				for(int i = 0; i < out.size(); i++) {
+					if(ids.idOf(out.edgeAt(i).getDest()) != out.targetAt(i)) {
+						throw new RuntimeException("edge " + out.edgeAt(i) + " has the wrong target id");
+					}
+				}
+			}
 			if(graph == null) {
 				throw new RuntimeException("graph cannot be null");
 			}
+			if(!views.keySet().equals(graph.keySet())) {
+				throw new RuntimeException("views must cover exactly the nodes of graph");
+			}
+			if(inEdges != null && !inEdges.keySet().equals(graph.keySet())) {
+				throw new RuntimeException("inEdges must cover exactly the nodes of graph");
+			}
+			int outCount = 0;
+			int inCount = 0;
+			for(T node : graph.keySet()) {
+				outCount += graph.get(node).size();
+				if(inEdges == null) {
+					continue;
+				}
+				inCount += inEdges.get(node).size();
+				for(LabEdge<T, L> in : inEdges.get(node)) {
+					if(!graph.get(in.getDest()).contains(new LabEdge<T, L>(node, in.getLabel()))) {
+						throw new RuntimeException("in-edge " + in + " of " + node + " has no out-edge");
+					}
+				}
+			}
+			if(inEdges != null && outCount != inCount) {
+				throw new RuntimeException("in-edges do not match out-edges");
+			}
+			if(!edgesTo.keySet().equals(graph.keySet())) {
+				throw new RuntimeException("edgesTo must cover exactly the nodes of graph");
+			}
+			int indexed = 0;
+			for(T node : graph.keySet()) {
+				for(Entry<T, LabEdge<T, L>> lightest : edgesTo.get(node).entrySet()) {
+					LabEdge<T, L> first = lightest.getValue();
+					List<LabEdge<T, L>> parallel = parallelOf(node, lightest.getKey());
+					List<LabEdge<T, L>> all = parallel != null ? parallel : Collections.singletonList(first);
+					if(parallel != null && (parallel.size() < 2 || !parallel.contains(first))) {
+						throw new RuntimeException("parallel edges of " + node + " are indexed wrongly");
+					}
+					for(LabEdge<T, L> edge : all) {
+						if(!edge.getDest().equals(lightest.getKey()) || !graph.get(node).contains(edge)) {
+							throw new RuntimeException("edge " + edge + " of " + node + " is indexed wrongly");
+						}
+						if(edge.getLabel().compareTo(first.getLabel()) < 0) {
+							throw new RuntimeException("lightest edge of " + node + " is not indexed");
+						}
+						indexed++;
+					}
+				}
+			}
+			if(indexed != outCount) {
+				throw new RuntimeException("destination index does not match out-edges");
+			}
+			for(Entry<T, Map<T, List<LabEdge<T, L>>>> lists : parallelTo.entrySet()) {
+				if(lists.getValue().isEmpty()) {
+					throw new RuntimeException("parallelTo has an empty map for " + lists.getKey());
+				}
+				for(T dest : lists.getValue().keySet()) {
+					if(!edgesTo.get(lists.getKey()).containsKey(dest)) {
+						throw new RuntimeException("parallel edges of " + lists.getKey() + " are not indexed");
+					}
+				}
+			}
 			for(T node : graph.keySet()) {
 				if(node == null) {
 					throw new RuntimeException("node cannot be null");
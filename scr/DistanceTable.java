@@ -0,0 +1,162 @@
+package hw7;
+
+import hw5.IndexedGraph;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * DistanceTable computes the minimum costs from each of a list of source
+ * nodes to each of a list of target nodes.
+ * <p>
+ * Each source gets one Dijkstra search, which stops as soon as every
+ * target is settled instead of exploring the whole graph. The searches
+ * are split across the workers of a ForkJoinPool, and every worker reuses
+ * one IndexedSearch for all of its searches.
+ */
+public final class DistanceTable {
+
+	// sources searched by one task without splitting further
+	private static final int SOURCES_PER_TASK = 1;
+
+	private DistanceTable() {
+	}
+
+	/**
+	 * Computes the minimum cost from every source to every target on the
+	 * common ForkJoinPool.
+	 *
+	 * @param graph the graph to search
+	 * @param sources the nodes paths start from
+	 * @param targets the nodes paths end at
+	 * @requires graph, sources, targets != null, every source and target is
+	 *           in graph and no weight in graph is negative
+	 * @throws IllegalArgumentException if a source or target is not in graph
+	 * @return table whose entry [i][j] is the minimum cost from sources[i]
+	 *         to targets[j], or infinity if there is no path
+	 */
+	public static <T> double[][] compute(IndexedGraph<T> graph, List<T> sources, List<T> targets) {
+		return compute(graph, sources, targets, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the minimum cost from every source to every target on pool.
+	 *
+	 * @param graph the graph to search
+	 * @param sources the nodes paths start from
+	 * @param targets the nodes paths end at
+	 * @param pool the pool the searches run on
+	 * @requires graph, sources, targets, pool != null, every source and
+	 *           target is in graph and no weight in graph is negative
+	 * @throws IllegalArgumentException if a source or target is not in graph
+	 * @return table whose entry [i][j] is the minimum cost from sources[i]
+	 *         to targets[j], or infinity if there is no path
+	 */
+	public static <T> double[][] compute(IndexedGraph<T> graph, List<T> sources,
+			List<T> targets, ForkJoinPool pool) {
+		if (graph == null || sources == null || targets == null || pool == null)
+			throw new IllegalArgumentException("graph, sources, targets and pool cannot be null.");
+		int[] from = idsOf(graph, sources);
+		int[] to = idsOf(graph, targets);
+
+		// distinct target ids, so that a search knows when it is done
+		boolean[] isTarget = new boolean[graph.nodeCount()];
+		int distinct = 0;
+		for (int id : to) {
+			if (!isTarget[id]) {
+				isTarget[id] = true;
+				distinct++;
+			}
+		}
+
+		double[][] table = new double[from.length][];
+		Job job = new Job(graph, from, to, isTarget, distinct, table);
+		pool.invoke(new Rows(job, 0, from.length));
+		return table;
+	}
+
+	/**
+	 * Returns the ids of nodes in graph.
+	 */
+	private static <T> int[] idsOf(IndexedGraph<T> graph, List<T> nodes) {
+		int[] ids = new int[nodes.size()];
+		for (int i = 0; i < ids.length; i++) {
+			T node = nodes.get(i);
+			ids[i] = node == null ? -1 : graph.idOf(node);
+			if (ids[i] < 0)
+				throw new IllegalArgumentException(node + " is not in the graph.");
+		}
+		return ids;
+	}
+
+	/**
+	 * What every row of one table needs.
+	 */
+	private static final class Job {
+		final IndexedGraph<?> graph;
+		final int[] from;          // source ids, one per row
+		final int[] to;            // target ids, one per column
+		final boolean[] isTarget;  // true for the ids in to
+		final int distinct;        // number of distinct ids in to
+		final double[][] table;    // rows filled by the tasks
+		final ThreadLocal<IndexedSearch> searches; // search of each worker
+
+		Job(final IndexedGraph<?> graph, int[] from, int[] to, boolean[] isTarget,
+				int distinct, double[][] table) {
+			this.graph = graph;
+			this.from = from;
+			this.to = to;
+			this.isTarget = isTarget;
+			this.distinct = distinct;
+			this.table = table;
+			this.searches = new ThreadLocal<IndexedSearch>() {
+				@Override
+				protected IndexedSearch initialValue() {
+					return new IndexedSearch(graph);
+				}
+			};
+		}
+
+		/**
+		 * Searches from the source of row until every target is settled
+		 * and returns the row of the table for it.
+		 */
+		double[] row(int row) {
+			IndexedSearch search = searches.get();
+			search.run(from[row], isTarget, distinct);
+			double[] costs = new double[to.length];
+			for (int j = 0; j < costs.length; j++)
+				costs[j] = search.distanceTo(to[j]);
+			return costs;
+		}
+	}
+
+	/**
+	 * Fills the rows lo to hi of a table, splitting them in halves.
+	 */
+	private static final class Rows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Job job;
+		private final int lo;
+		private final int hi;
+
+		Rows(Job job, int lo, int hi) {
+			this.job = job;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo <= SOURCES_PER_TASK) {
+				for (int row = lo; row < hi; row++)
+					job.table[row] = job.row(row);
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new Rows(job, lo, mid), new Rows(job, mid, hi));
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package hw5;
+
+/**
+ * <b>EdgeCursor</b> is a reusable, forward-only position over the
+ * out-edges of one node at a time, reporting each edge as its
+ * destination and a primitive double weight. A single cursor can be
+ * reset to node after node, so walking a graph with it creates no
+ * LabEdge, Set or boxed weight per visited node.
+ * <p>
+ * A cursor is only valid while its graph is not modified, and is not
+ * safe for use by more than one thread.
+ *
+ * @param <T> type of the nodes of the graph
+ */
+public interface EdgeCursor<T> {
+
+	/**
+	 * positions the cursor before the first out-edge of node
+	 *
+	 * @param node the node whose out-edges are walked
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in the graph
+	 */
+	void reset(T node);
+
+	/**
+	 * advances the cursor to the next out-edge
+	 *
+	 * @return true if the cursor is on an edge, false if the out-edges
+	 *         of the node are exhausted
+	 */
+	boolean next();
+
+	/**
+	 * returns the destination of the current edge
+	 *
+	 * @requires the last call to next() returned true
+	 * @return destination of the current edge
+	 */
+	T dest();
+
+	/**
+	 * returns the weight of the current edge
+	 *
+	 * @requires the last call to next() returned true
+	 * @return weight of the current edge
+	 */
+	double weight();
+}
@@ -0,0 +1,26 @@
+package hw7;
+
+/**
+ * A <b>Heuristic</b> estimates the cost of the cheapest path between two
+ * nodes of a graph, letting a search settle nodes in order of known cost
+ * plus estimate (A*) instead of known cost alone.
+ * <p>
+ * The estimate must be consistent: it never exceeds the label of an edge
+ * from a to b plus the estimate from b, and the estimate from a node to
+ * itself is 0. A consistent estimate is also a lower bound on the true
+ * cost, so A* still returns minimum-cost paths.
+ *
+ * @param <T> type of the nodes of the graph
+ */
+public interface Heuristic<T> {
+
+	/**
+	 * Returns a lower bound on the cost of any path from node to dest.
+	 *
+	 * @param node the node the path would start from
+	 * @param dest the node the path would end at
+	 * @requires node, dest != null
+	 * @return a non-negative lower bound on the cost from node to dest
+	 */
+	double estimate(T node, T dest);
+}
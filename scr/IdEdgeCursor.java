@@ -0,0 +1,40 @@
+package hw5;
+
+/**
+ * <b>IdEdgeCursor</b> is an EdgeCursor that names nodes by the dense ids
+ * of a NumberedGraph rather than by the nodes themselves, so walking the
+ * out-edges of a node neither hashes nor compares any node.
+ * <p>
+ * A cursor is only valid while its graph is not modified, and is not
+ * safe for use by more than one thread.
+ */
+public interface IdEdgeCursor {
+
+	/**
+	 * positions the cursor before the first out-edge of the node with id
+	 * @param id id of the node whose out-edges are walked
+	 * @throws IllegalArgumentException if no node has id
+	 */
+	void reset(int id);
+
+	/**
+	 * advances the cursor to the next out-edge
+	 * @return true if the cursor is on an edge, false if the out-edges
+	 *         of the node are exhausted
+	 */
+	boolean next();
+
+	/**
+	 * returns the id of the destination of the current edge
+	 * @requires the last call to next() returned true
+	 * @return id of the destination of the current edge
+	 */
+	int target();
+
+	/**
+	 * returns the weight of the current edge
+	 * @requires the last call to next() returned true
+	 * @return weight of the current edge
+	 */
+	double weight();
+}
@@ -0,0 +1,91 @@
+package hw5;
+
+/**
+ * <b>IndexedGraph</b> is a read-only directed graph with primitive
+ * double edge weights whose nodes are numbered 0 .. nodeCount() - 1 and
+ * whose edges are numbered so that the out-edges of node id are exactly
+ * the edges firstEdge(id) .. endEdge(id) - 1.
+ * <p>
+ * Searches can walk an IndexedGraph entirely in ints and doubles and only
+ * translate between ids and nodes at the start and at the end.
+ *
+ * @param <T> type of the nodes of the graph
+ */
+public interface IndexedGraph<T> {
+
+	/**
+	 * returns the number of nodes in the graph
+	 *
+	 * @return number of nodes
+	 */
+	int nodeCount();
+
+	/**
+	 * returns the number of edges in the graph
+	 *
+	 * @return number of edges
+	 */
+	int edgeCount();
+
+	/**
+	 * returns the id of a node
+	 *
+	 * @param node the node to be looked up
+	 * @requires node != null
+	 * @return id of node, or -1 if node is not in the graph
+	 */
+	int idOf(T node);
+
+	/**
+	 * returns the node with the given id
+	 *
+	 * @param id id of the node
+	 * @requires 0 <= id < nodeCount()
+	 * @return the node numbered id
+	 */
+	T nodeAt(int id);
+
+	/**
+	 * returns the first out-edge of a node
+	 *
+	 * @param id id of the origin node
+	 * @requires 0 <= id < nodeCount()
+	 * @return number of the first out-edge of id
+	 */
+	int firstEdge(int id);
+
+	/**
+	 * returns one past the last out-edge of a node
+	 *
+	 * @param id id of the origin node
+	 * @requires 0 <= id < nodeCount()
+	 * @return one past the number of the last out-edge of id
+	 */
+	int endEdge(int id);
+
+	/**
+	 * returns the id of the node an edge lands on
+	 *
+	 * @param edge number of the edge
+	 * @requires 0 <= edge < edgeCount()
+	 * @return id of the destination of edge
+	 */
+	int targetOf(int edge);
+
+	/**
+	 * returns the weight of an edge
+	 *
+	 * @param edge number of the edge
+	 * @requires 0 <= edge < edgeCount()
+	 * @return weight of edge
+	 */
+	double weightOf(int edge);
+
+	/**
+	 * returns the graph with every edge reversed, numbering nodes the
+	 * same way as this graph
+	 *
+	 * @return the transpose of this graph
+	 */
+	IndexedGraph<T> transpose();
+}
@@ -0,0 +1,268 @@
+package hw7;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <b>IndexedMinHeap</b> is a mutable binary min-heap of int ids, each
+ * carrying a double key and an int tie-breaker. Unlike
+ * java.util.PriorityQueue it knows where every id sits in the heap, so
+ * the key of an id already in the heap can be lowered in place
+ * (decrease-key) instead of inserting a duplicate entry.
+ * <p>
+ * Ids are ordered by key first and then by tie-breaker, both ascending.
+ *
+ * @specfield entries : Set<(id, key, tie)> // ids currently in the heap
+ */
+public class IndexedMinHeap {
+	// Rep invariant:
+	//     0 <= size <= heap.length
+	//     for 0 <= i < size, pos[heap[i]] == i
+	//     pos[id] == -1 for every id not in heap[0..size)
+	//     for 0 < i < size, entry heap[(i - 1) / 2] is not greater than entry heap[i]
+
+	// Abstract function:
+	//     AF(this) = entries such that for 0 <= i < size
+	//                (heap[i], key[heap[i]], tie[heap[i]]) is in entries
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	private int[] heap; // ids laid out as a binary heap
+	private int[] pos;  // position of each id in heap, -1 if absent
+	private double[] key; // primary key of each id
+	private int[] tie;  // secondary key of each id
+	private int size;   // number of ids in the heap
+
+	/**
+	 * Constructs an empty heap.
+	 *
+	 * @param capacity expected number of distinct ids
+	 * @requires capacity >= 0
+	 */
+	public IndexedMinHeap(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity cannot be negative: " + capacity);
+		int cap = Math.max(capacity, 16);
+		heap = new int[cap];
+		pos = new int[cap];
+		key = new double[cap];
+		tie = new int[cap];
+		Arrays.fill(pos, -1);
+		size = 0;
+		checkRep();
+	}
+
+	/**
+	 * Returns true if the heap has no ids.
+	 *
+	 * @return true if the heap has no ids
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of ids in the heap.
+	 *
+	 * @return number of ids in the heap
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if id is currently in the heap.
+	 *
+	 * @param id the id to look for
+	 * @return true if id is in the heap
+	 */
+	public boolean contains(int id) {
+		return id >= 0 && id < pos.length && pos[id] >= 0;
+	}
+
+	/**
+	 * Returns the key of an id in the heap.
+	 *
+	 * @param id an id in the heap
+	 * @throws NoSuchElementException if id is not in the heap
+	 * @return the key of id
+	 */
+	public double keyOf(int id) {
+		if (!contains(id))
+			throw new NoSuchElementException("id " + id + " is not in the heap");
+		return key[id];
+	}
+
+	/**
+	 * Returns the smallest key in the heap.
+	 *
+	 * @throws NoSuchElementException if the heap is empty
+	 * @return the smallest key in the heap
+	 */
+	public double minKey() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return key[heap[0]];
+	}
+
+	/**
+	 * Returns the id with the smallest keys, without removing it.
+	 *
+	 * @throws NoSuchElementException if the heap is empty
+	 * @return id with the smallest keys
+	 */
+	public int peek() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return heap[0];
+	}
+
+	/**
+	 * Inserts id with the given keys, or lowers the keys of id if it
+	 * is already in the heap and (k, t) is smaller than its current keys.
+	 *
+	 * @param id the id to insert or update
+	 * @param k primary key of id
+	 * @param t secondary key of id
+	 * @requires id >= 0
+	 * @modifies this
+	 * @return true if the heap changed
+	 */
+	public boolean offer(int id, double k, int t) {
+		if (id < 0)
+			throw new IllegalArgumentException("id cannot be negative: " + id);
+		ensureCapacity(id + 1);
+		int p = pos[id];
+		if (p < 0) {
+			key[id] = k;
+			tie[id] = t;
+			heap[size] = id;
+			pos[id] = size;
+			size++;
+			siftUp(size - 1);
+			checkRep();
+			return true;
+		}
+		if (compare(k, t, key[id], tie[id]) >= 0)
+			return false;
+		key[id] = k;
+		tie[id] = t;
+		siftUp(p);
+		checkRep();
+		return true;
+	}
+
+	/**
+	 * Removes and returns the id with the smallest keys.
+	 *
+	 * @modifies this
+	 * @throws NoSuchElementException if the heap is empty
+	 * @return id with the smallest keys
+	 */
+	public int poll() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		int min = heap[0];
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			pos[heap[0]] = 0;
+			siftDown(0);
+		}
+		pos[min] = -1;
+		checkRep();
+		return min;
+	}
+
+	/**
+	 * Removes every id from the heap.
+	 *
+	 * @modifies this
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			pos[heap[i]] = -1;
+		size = 0;
+	}
+
+	/**
+	 * Grows the per-id arrays so that ids below capacity can be stored.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity <= pos.length)
+			return;
+		int cap = Math.max(capacity, pos.length * 2);
+		int old = pos.length;
+		heap = Arrays.copyOf(heap, cap);
+		pos = Arrays.copyOf(pos, cap);
+		key = Arrays.copyOf(key, cap);
+		tie = Arrays.copyOf(tie, cap);
+		Arrays.fill(pos, old, cap, -1);
+	}
+
+	private void siftUp(int i) {
+		int id = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			int p = heap[parent];
+			if (compare(key[id], tie[id], key[p], tie[p]) >= 0)
+				break;
+			heap[i] = p;
+			pos[p] = i;
+			i = parent;
+		}
+		heap[i] = id;
+		pos[id] = i;
+	}
+
+	private void siftDown(int i) {
+		int id = heap[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int c = heap[child];
+			int right = child + 1;
+			if (right < size && compare(key[heap[right]], tie[heap[right]], key[c], tie[c]) < 0) {
+				child = right;
+				c = heap[child];
+			}
+			if (compare(key[id], tie[id], key[c], tie[c]) <= 0)
+				break;
+			heap[i] = c;
+			pos[c] = i;
+			i = child;
+		}
+		heap[i] = id;
+		pos[id] = i;
+	}
+
+	/**
+	 * Orders (k1, t1) and (k2, t2) by key and then by tie-breaker.
+	 */
+	private static int compare(double k1, int t1, double k2, int t2) {
+		int c = Double.compare(k1, k2);
+		if (c != 0)
+			return c;
+		return Integer.compare(t1, t2);
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			if (size < 0 || size > heap.length)
+				throw new RuntimeException("size out of range: " + size);
+			for (int i = 0; i < size; i++) {
+				if (pos[heap[i]] != i)
+					throw new RuntimeException("position of id " + heap[i] + " is stale");
+				if (i > 0) {
+					int parent = heap[(i - 1) / 2];
+					if (compare(key[parent], tie[parent], key[heap[i]], tie[heap[i]]) > 0)
+						throw new RuntimeException("heap order violated at " + i);
+				}
+			}
+		}
+	}
+}
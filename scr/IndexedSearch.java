@@ -0,0 +1,219 @@
+package hw7;
+
+import hw5.IndexedGraph;
+
+import java.util.Arrays;
+
+/**
+ * <b>IndexedSearch</b> is a Dijkstra search from one source over the ids
+ * and primitive weights of an IndexedGraph, which can be run again and
+ * again from different sources. A search may stop once a given set of
+ * target ids is settled rather than exploring the whole graph.
+ * <p>
+ * The per-id arrays are allocated once, and each run clears only the
+ * entries the run before it settled, so a worker that runs many searches
+ * over one graph keeps one IndexedSearch for all of them. An
+ * IndexedSearch is not safe for use by more than one thread at a time.
+ * <p>
+ * The frontier is a PathQueue and edges are relaxed as DijkstraSearch
+ * relaxes them, so paths are ordered by total cost and then by number of
+ * edges, and a path that ties exactly with another is the one
+ * MarvelPaths2.minimumCostPath returns.
+ *
+ * @specfield source : int // id the last run started from
+ * @specfield settled : Set<int> // ids whose minimum-cost path the last run found
+ */
+public final class IndexedSearch {
+	// Rep invariant:
+	//     graph, active, dist, hops, pred, settled, order != null
+	//     dist, hops, pred and settled have length graph.nodeCount()
+	//     settled[i] iff i is in order[0..settledCount)
+	//     for every settled id i, pred[i] == -1 iff i is the source, and
+	//     otherwise pred[i] is settled and hops[i] == hops[pred[i]] + 1
+
+	// Abstract function:
+	//     AF(this) = the last run such that settled = order[0..settledCount),
+	//                and for every settled id i the minimum-cost path from
+	//                source costs dist[i], has hops[i] edges and its last
+	//                edge comes from the id pred[i]
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	private final IndexedGraph<?> graph; // the graph searched
+	private final PathQueue active; // ends of paths one edge past the settled ids
+	private final double[] dist;    // cost of the path to each settled id
+	private final int[] hops;       // edge count of the path to each settled id
+	private final int[] pred;       // predecessor of each settled id on its path
+	private final boolean[] settled; // true once the path to an id is final
+	private int[] order;            // settled ids, in the order they were settled
+	private int settledCount;       // number of settled ids
+
+	/**
+	 * Constructs a search over graph that has not run yet.
+	 *
+	 * @param graph the graph to search
+	 * @requires graph != null and no weight in graph is negative
+	 */
+	public IndexedSearch(IndexedGraph<?> graph) {
+		if (graph == null)
+			throw new IllegalArgumentException("graph cannot be null.");
+		int n = graph.nodeCount();
+		this.graph = graph;
+		this.active = new PathQueue(n);
+		this.dist = new double[n];
+		this.hops = new int[n];
+		this.pred = new int[n];
+		this.settled = new boolean[n];
+		this.order = new int[16];
+		this.settledCount = 0;
+	}
+
+	/**
+	 * Searches from source until every id it reaches is settled.
+	 *
+	 * @param source id the paths start from
+	 * @requires 0 <= source < graph.nodeCount()
+	 * @modifies this
+	 * @effects forgets the last run and settles every id reachable from
+	 *          source
+	 */
+	public void run(int source) {
+		run(source, null, 0);
+	}
+
+	/**
+	 * Searches from source until the distinct ids marked in isTarget are
+	 * all settled, or every id it reaches is.
+	 *
+	 * @param source id the paths start from
+	 * @param isTarget true for the ids the search is for, or null to
+	 *        settle every id reachable from source
+	 * @param targets number of ids marked in isTarget
+	 * @requires 0 <= source < graph.nodeCount(), and isTarget is null or
+	 *           has length graph.nodeCount() and exactly targets true entries
+	 * @modifies this
+	 * @effects forgets the last run and settles ids in order of their
+	 *          paths from source until every target is settled
+	 */
+	public void run(int source, /*@Nullable*/ boolean[] isTarget, int targets) {
+		clear();
+		int remaining = targets;
+		active.offer(source, 0.0, 0.0, 0, -1);
+		while (!active.isEmpty() && (isTarget == null || remaining > 0)) {
+			int u = active.minId();
+			if (settled[u]) {
+				active.removeMin();
+				continue;
+			}
+			dist[u] = active.minCost();
+			hops[u] = active.minHops();
+			pred[u] = active.minPred();
+			active.removeMin();
+			settle(u);
+			if (isTarget != null && isTarget[u])
+				remaining--;
+			// self-loops are queued as DijkstraSearch queues them, so
+			// that ties pop in the same order
+			for (int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+				int v = graph.targetOf(e);
+				if (!settled[v] || v == u) {
+					double cost = dist[u] + graph.weightOf(e);
+					active.offer(v, cost, cost, hops[u] + 1, u);
+				}
+			}
+		}
+		active.clear();
+		checkRep();
+	}
+
+	/**
+	 * Returns true if the last run found the minimum-cost path to id.
+	 *
+	 * @param id an id of the graph
+	 * @return true if id is settled
+	 */
+	public boolean isSettled(int id) {
+		return settled[id];
+	}
+
+	/**
+	 * Returns the cost of the minimum-cost path from the source to id.
+	 *
+	 * @param id an id of the graph
+	 * @return cost of the path to id, or infinity if id is not settled
+	 */
+	public double distanceTo(int id) {
+		return settled[id] ? dist[id] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the id the last edge of the minimum-cost path to id comes
+	 * from.
+	 *
+	 * @param id an id of the graph
+	 * @return predecessor of id, or -1 if id is the source or not settled
+	 */
+	public int predecessorOf(int id) {
+		return settled[id] ? pred[id] : -1;
+	}
+
+	/**
+	 * Returns the number of ids the last run settled.
+	 *
+	 * @return number of settled ids
+	 */
+	public int settledCount() {
+		return settledCount;
+	}
+
+	/**
+	 * Returns the i-th id the last run settled.
+	 *
+	 * @param i index of a settled id
+	 * @requires 0 <= i < settledCount()
+	 * @return the i-th settled id, the source first
+	 */
+	public int settledAt(int i) {
+		if (i < 0 || i >= settledCount)
+			throw new IndexOutOfBoundsException("no settled id " + i);
+		return order[i];
+	}
+
+	/**
+	 * Marks id settled.
+	 */
+	private void settle(int id) {
+		settled[id] = true;
+		if (settledCount == order.length)
+			order = Arrays.copyOf(order, settledCount * 2);
+		order[settledCount++] = id;
+	}
+
+	/**
+	 * Forgets the ids the last run settled.
+	 */
+	private void clear() {
+		for (int i = 0; i < settledCount; i++)
+			settled[order[i]] = false;
+		settledCount = 0;
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			int count = 0;
+			for (int i = 0; i < settled.length; i++) {
+				if (!settled[i])
+					continue;
+				count++;
+				if (pred[i] != -1 && (!settled[pred[i]] || hops[i] != hops[pred[i]] + 1))
+					throw new RuntimeException("path to settled id " + i + " is broken");
+			}
+			if (count != settledCount)
+				throw new RuntimeException("settled ids do not match their order");
+		}
+	}
+}
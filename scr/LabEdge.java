@@ -108,11 +108,30 @@ public class LabEdge<T, L extends Comparable<L>> implements Comparable<LabEdge<T
 			return label.compareTo(other.label);
 		}
 		if (!(dest.equals(other.dest))) {
-			return dest.hashCode() - other.dest.hashCode();
+			// Integer.compare cannot overflow the way subtracting hash 
+			// codes does, which made the order of far-apart hashes flip
+			int byHash = Integer.compare(dest.hashCode(), other.dest.hashCode());
+			if (byHash != 0 || !(dest instanceof Comparable)) {
+				return byHash;
+			}
+			// equal hashes of different destinations
+			return compareDests(dest, other.dest);
 		}
 		return 0;
 	}
 	
+	/**
+	 * Compares two destinations of the same class by their natural order, 
+	 * or returns 0 if they are of different classes.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static int compareDests(Object d1, Object d2) {
+		if (d1.getClass() != d2.getClass()) {
+			return 0;
+		}
+		return ((Comparable) d1).compareTo(d2);
+	}
+	
 	/**
 	 * returns a hash code for this edge
 	 * 
@@ -0,0 +1,106 @@
+package hw5;
+
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * <b>LabeledGraph</b> is the read-only view of a directed labeled graph
+ * that path searches are written against, so that they run the same on a
+ * mutable DirGraph and on its frozen snapshots.
+ *
+ * @param <T> type of the nodes of the graph
+ * @param <L> type of the edge labels
+ */
+public interface LabeledGraph<T, L extends Comparable<L>> {
+
+	/**
+	 * returns true if node is present in the graph
+	 *
+	 * @param node The node to be checked if contained in the graph
+	 * @requires node != null
+	 * @return true if graph contains node, false otherwise
+	 */
+	boolean containsNode(T node);
+
+	/**
+	 * returns a set of nodes
+	 *
+	 * @return set of nodes
+	 */
+	Set<T> getNodes();
+
+	/**
+	 * returns size of graph or number of nodes in it
+	 *
+	 * @return number of nodes
+	 */
+	int size();
+
+	/**
+	 * returns true if graph has no nodes
+	 *
+	 * @return true if graph has no nodes
+	 */
+	boolean isEmpty();
+
+	/**
+	 * returns a set of outgoing edges from node
+	 *
+	 * @param node The node of which the outgoing edges are returned
+	 * @return set of outgoing edges from node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in the graph
+	 */
+	Set<LabEdge<T, L>> getOutwardEdgesOf(T node);
+
+	/**
+	 * returns a read-only view of the nodes, without copying them
+	 *
+	 * @return unmodifiable view of the set of nodes
+	 */
+	Set<T> getNodesView();
+
+	/**
+	 * returns a read-only view of the outgoing edges from node, without
+	 * copying them
+	 *
+	 * @param node The node of which the outgoing edges are returned
+	 * @return unmodifiable view of the outgoing edges from node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in the graph
+	 */
+	Set<LabEdge<T, L>> getOutwardEdgesView(T node);
+
+	/**
+	 * passes every outgoing edge from node to visitor, in the order
+	 * getOutwardEdgesOf returns them
+	 *
+	 * @param node The node of which the outgoing edges are visited
+	 * @param visitor called once for each outgoing edge
+	 * @requires node, visitor != null and visitor does not modify the graph
+	 * @throws IllegalArgumentException if node is not in the graph
+	 */
+	void forEachOutEdge(T node, Consumer<? super LabEdge<T, L>> visitor);
+
+	/**
+	 * returns a new reusable cursor over outgoing edges that reports
+	 * weights as primitive doubles
+	 *
+	 * @param weightOf converts an edge label to its weight
+	 * @requires weightOf != null
+	 * @return a new cursor, positioned on no node
+	 */
+	EdgeCursor<T> newEdgeCursor(ToDoubleFunction<? super L> weightOf);
+
+	/**
+	 * returns a new reusable cursor over incoming edges that reports
+	 * weights as primitive doubles. The cursor reports the origin of each
+	 * edge as its dest().
+	 *
+	 * @param weightOf converts an edge label to its weight
+	 * @requires weightOf != null
+	 * @return a new cursor, positioned on no node
+	 */
+	EdgeCursor<T> newInEdgeCursor(ToDoubleFunction<? super L> weightOf);
+}
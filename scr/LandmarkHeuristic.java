@@ -0,0 +1,375 @@
+package hw7;
+
+import hw5.CsrGraph;
+import hw5.DirGraph;
+import hw5.IndexedGraph;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * LandmarkHeuristic estimates the cost between two nodes from precomputed
+ * distances to and from a few landmark nodes, which makes A* usable on
+ * graphs without geometry (ALT: A*, landmarks, triangle inequality).
+ * <p>
+ * For a landmark L, the triangle inequality gives two lower bounds on the
+ * cost from v to t: d(L, t) - d(L, v) and d(v, L) - d(t, L). The estimate
+ * is the largest such bound over all landmarks, or infinity when a
+ * landmark shows that t cannot be reached from v. Landmarks are chosen
+ * either by degree or by repeatedly taking the node farthest from those
+ * already chosen, and the distance tables are filled by one IndexedSearch
+ * per landmark and direction, run in parallel. Estimates are
+ * shaved by a tiny relative margin, so paths found with them cost the same
+ * as Dijkstra's up to floating-point rounding.
+ * <p>
+ * The tables are flat double arrays indexed by the ids of the
+ * IndexedGraph the heuristic was built for. writeTo and readFrom save and
+ * load them next to that graph.
+ *
+ * @param <T> type of the nodes of the graph
+ * @specfield landmarks : List<T> // nodes distances are measured against
+ */
+public final class LandmarkHeuristic<T> implements Heuristic<T> {
+	// Rep invariant:
+	//     graph, landmarks, from, to != null
+	//     from.length == to.length == landmarks.length * graph.nodeCount()
+	//     no entry of from or to is negative or NaN
+
+	// Abstract function:
+	//     AF(this) = a heuristic whose i-th landmark is the node with id
+	//                landmarks[i], with from[v * k + i] the cost from that
+	//                landmark to the node with id v and to[v * k + i] the
+	//                cost back, k = landmarks.length, infinite if no path
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	// first int of a saved table, "ALT1"
+	private static final int MAGIC = 0x414c5431;
+
+	// relative margin taken off an estimate to absorb rounding
+	private static final double MARGIN = 1e-9;
+
+	/**
+	 * How landmarks are picked.
+	 */
+	public enum Selection {
+		/** The nodes with the most out-edges. */
+		DEGREE,
+
+		/**
+		 * Each landmark is the node farthest from the landmarks already
+		 * chosen, preferring nodes none of them reaches.
+		 */
+		FARTHEST
+	}
+
+	private final IndexedGraph<T> graph; // numbers the nodes
+	private final int[] landmarks; // ids of the landmarks
+	private final double[] from;   // cost from each landmark, node-major
+	private final double[] to;     // cost to each landmark, node-major
+
+	private LandmarkHeuristic(IndexedGraph<T> graph, int[] landmarks,
+			double[] from, double[] to) {
+		this.graph = graph;
+		this.landmarks = landmarks;
+		this.from = from;
+		this.to = to;
+		checkRep();
+	}
+
+	/**
+	 * Picks landmarks of graph and measures the distances to and from them.
+	 *
+	 * @param graph the graph the heuristic is for
+	 * @param count number of landmarks
+	 * @param selection how landmarks are picked
+	 * @requires graph, selection != null, count > 0 and no label in graph
+	 *           is negative
+	 * @return heuristic over CsrGraph.freeze(graph) with at most count
+	 *         landmarks
+	 */
+	public static <T> LandmarkHeuristic<T> build(DirGraph<T, Double> graph,
+			int count, Selection selection) {
+		if (graph == null)
+			throw new IllegalArgumentException("graph cannot be null.");
+		return build(CsrGraph.freeze(graph), count, selection);
+	}
+
+	/**
+	 * Picks landmarks of graph and measures the distances to and from them.
+	 * The heuristic takes nodes of graph, so it should be used to search
+	 * graph itself or a graph with the same nodes and edges.
+	 *
+	 * @param graph the graph the heuristic is for
+	 * @param count number of landmarks
+	 * @param selection how landmarks are picked
+	 * @requires graph, selection != null, count > 0 and no weight in graph
+	 *           is negative
+	 * @return heuristic over graph with min(count, graph.nodeCount())
+	 *         landmarks
+	 */
+	public static <T> LandmarkHeuristic<T> build(final IndexedGraph<T> graph,
+			int count, Selection selection) {
+		if (graph == null)
+			throw new IllegalArgumentException("graph cannot be null.");
+		if (selection == null)
+			throw new IllegalArgumentException("selection cannot be null.");
+		if (count <= 0)
+			throw new IllegalArgumentException("count must be positive: " + count);
+		final int n = graph.nodeCount();
+		final int k = Math.min(count, n);
+		final double[] from = new double[n * k];
+		final double[] to = new double[n * k];
+		final int[] landmarks;
+		if (selection == Selection.DEGREE) {
+			landmarks = byDegree(graph, k);
+			final ThreadLocal<IndexedSearch> searches = searchesOf(graph);
+			IntStream.range(0, k).parallel().forEach(new IntConsumer() {
+				public void accept(int i) {
+					store(distancesFrom(searches.get(), landmarks[i], n), from, i, k);
+				}
+			});
+		} else {
+			// each pick needs the distances from the previous landmarks
+			landmarks = farthest(new IndexedSearch(graph), graph, k, from);
+		}
+		final ThreadLocal<IndexedSearch> reversed = searchesOf(graph.transpose());
+		IntStream.range(0, k).parallel().forEach(new IntConsumer() {
+			public void accept(int i) {
+				store(distancesFrom(reversed.get(), landmarks[i], n), to, i, k);
+			}
+		});
+		return new LandmarkHeuristic<T>(graph, landmarks, from, to);
+	}
+
+	/**
+	 * Returns the number of landmarks.
+	 *
+	 * @return number of landmarks
+	 */
+	public int landmarkCount() {
+		return landmarks.length;
+	}
+
+	/**
+	 * Returns the i-th landmark.
+	 *
+	 * @param i index of a landmark
+	 * @requires 0 <= i < landmarkCount()
+	 * @return the i-th landmark
+	 */
+	public T landmarkAt(int i) {
+		return graph.nodeAt(landmarks[i]);
+	}
+
+	/**
+	 * Returns a lower bound on the cost of any path from node to dest, or
+	 * infinity if the landmarks show that there is no such path.
+	 *
+	 * @param node the node the path would start from
+	 * @param dest the node the path would end at
+	 * @requires node and dest are in the graph the heuristic was built for
+	 * @throws IllegalArgumentException if node or dest is not in the graph
+	 * @return a non-negative lower bound on the cost from node to dest
+	 */
+	@Override
+	public double estimate(T node, T dest) {
+		int v = graph.idOf(node);
+		int t = graph.idOf(dest);
+		if (v < 0)
+			throw new IllegalArgumentException(node + " is not in the graph.");
+		if (t < 0)
+			throw new IllegalArgumentException(dest + " is not in the graph.");
+		return estimate(v, t);
+	}
+
+	/**
+	 * Returns the bound for the ids v and t.
+	 */
+	private double estimate(int v, int t) {
+		if (v == t)
+			return 0.0;
+		int k = landmarks.length;
+		int vk = v * k;
+		int tk = t * k;
+		double best = 0.0;
+		for (int i = 0; i < k; i++) {
+			double lv = from[vk + i];
+			double lt = from[tk + i];
+			double vl = to[vk + i];
+			double tl = to[tk + i];
+			// the landmark reaches v but not t, or t reaches it but v does not
+			if ((lt == Double.POSITIVE_INFINITY && lv != Double.POSITIVE_INFINITY)
+					|| (vl == Double.POSITIVE_INFINITY && tl != Double.POSITIVE_INFINITY))
+				return Double.POSITIVE_INFINITY;
+			if (lv != Double.POSITIVE_INFINITY)
+				best = Math.max(best, lt - lv);
+			if (tl != Double.POSITIVE_INFINITY)
+				best = Math.max(best, vl - tl);
+		}
+		return best * (1 - MARGIN);
+	}
+
+	/**
+	 * Writes the landmarks and distance tables to out.
+	 *
+	 * @param out the stream to write to
+	 * @requires out != null
+	 * @modifies out
+	 * @throws IOException if out cannot be written
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		if (out == null)
+			throw new IllegalArgumentException("out cannot be null.");
+		out.writeInt(MAGIC);
+		out.writeInt(graph.nodeCount());
+		out.writeInt(graph.edgeCount());
+		out.writeInt(landmarks.length);
+		for (int id : landmarks)
+			out.writeInt(id);
+		for (double d : from)
+			out.writeDouble(d);
+		for (double d : to)
+			out.writeDouble(d);
+	}
+
+	/**
+	 * Reads tables written by writeTo for graph.
+	 *
+	 * @param in the stream to read from
+	 * @param graph the graph the tables were built for, or one with the same
+	 *        ids, nodes and edges
+	 * @requires in, graph != null
+	 * @modifies in
+	 * @throws IOException if in cannot be read, or does not hold tables for
+	 *         a graph of the size of graph
+	 * @return the heuristic that was written
+	 */
+	public static <T> LandmarkHeuristic<T> readFrom(DataInputStream in,
+			IndexedGraph<T> graph) throws IOException {
+		if (in == null || graph == null)
+			throw new IllegalArgumentException("in and graph cannot be null.");
+		if (in.readInt() != MAGIC)
+			throw new IOException("not a landmark table");
+		int n = in.readInt();
+		int m = in.readInt();
+		if (n != graph.nodeCount() || m != graph.edgeCount())
+			throw new IOException("table is for a graph with " + n + " nodes and "
+					+ m + " edges, not " + graph.nodeCount() + " and " + graph.edgeCount());
+		int k = in.readInt();
+		if (k < 0 || k > n)
+			throw new IOException("bad landmark count: " + k);
+		int[] landmarks = new int[k];
+		for (int i = 0; i < k; i++) {
+			landmarks[i] = in.readInt();
+			if (landmarks[i] < 0 || landmarks[i] >= n)
+				throw new IOException("bad landmark id: " + landmarks[i]);
+		}
+		double[] from = new double[n * k];
+		double[] to = new double[n * k];
+		for (int i = 0; i < from.length; i++)
+			from[i] = in.readDouble();
+		for (int i = 0; i < to.length; i++)
+			to[i] = in.readDouble();
+		return new LandmarkHeuristic<T>(graph, landmarks, from, to);
+	}
+
+	/**
+	 * Returns the ids of the k nodes with the most out-edges.
+	 */
+	private static int[] byDegree(IndexedGraph<?> graph, int k) {
+		final int n = graph.nodeCount();
+		// sort ids by descending degree, then ascending id
+		long[] keys = new long[n];
+		for (int v = 0; v < n; v++) {
+			long degree = graph.endEdge(v) - graph.firstEdge(v);
+			keys[v] = ((Integer.MAX_VALUE - degree) << 32) | v;
+		}
+		Arrays.sort(keys);
+		int[] picked = new int[k];
+		for (int i = 0; i < k; i++)
+			picked[i] = (int) keys[i];
+		return picked;
+	}
+
+	/**
+	 * Picks k landmarks, each as far as possible from those before it,
+	 * storing the distances from each into from.
+	 */
+	private static int[] farthest(IndexedSearch search, IndexedGraph<?> graph, int k, double[] from) {
+		int n = graph.nodeCount();
+		int[] picked = new int[k];
+		// cost from the nearest landmark to each id, -1 for landmarks
+		double[] nearest = new double[n];
+		Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+		int next = byDegree(graph, 1)[0];
+		for (int i = 0; i < k; i++) {
+			picked[i] = next;
+			double[] dist = distancesFrom(search, next, n);
+			store(dist, from, i, k);
+			for (int v = 0; v < n; v++)
+				nearest[v] = Math.min(nearest[v], dist[v]);
+			nearest[next] = -1.0;
+			// an unreached node is the farthest, otherwise the costliest
+			next = -1;
+			for (int v = 0; v < n; v++) {
+				if (next == -1 || nearest[v] > nearest[next])
+					next = v;
+			}
+		}
+		return picked;
+	}
+
+	/**
+	 * Copies dist into column i of a node-major table with k columns.
+	 */
+	private static void store(double[] dist, double[] table, int i, int k) {
+		for (int v = 0; v < dist.length; v++)
+			table[v * k + i] = dist[v];
+	}
+
+	/**
+	 * Returns one IndexedSearch over graph for each worker that asks.
+	 */
+	private static ThreadLocal<IndexedSearch> searchesOf(final IndexedGraph<?> graph) {
+		return new ThreadLocal<IndexedSearch>() {
+			@Override
+			protected IndexedSearch initialValue() {
+				return new IndexedSearch(graph);
+			}
+		};
+	}
+
+	/**
+	 * Returns the cost of the cheapest path from source to every one of
+	 * the n ids of the graph of search, infinite for the ids it does not
+	 * reach.
+	 */
+	static double[] distancesFrom(IndexedSearch search, int source, int n) {
+		search.run(source);
+		double[] dist = new double[n];
+		for (int v = 0; v < n; v++)
+			dist[v] = search.distanceTo(v);
+		return dist;
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			int expected = landmarks.length * graph.nodeCount();
+			if (from.length != expected || to.length != expected)
+				throw new RuntimeException("distance tables have the wrong size");
+			for (int i = 0; i < expected; i++) {
+				if (!(from[i] >= 0) || !(to[i] >= 0))
+					throw new RuntimeException("bad distance at " + i);
+			}
+		}
+	}
+}
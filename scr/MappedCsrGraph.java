@@ -0,0 +1,584 @@
+package hw5;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * <b>MappedCsrGraph</b> represents an immutable, directed graph of String
+ * nodes with double edge weights whose CSR arrays live in a file that is
+ * mapped read-only, rather than on the heap.
+ * <p>
+ * write lays a graph out in a file once; open maps the file and reads
+ * nothing but its header, so opening is as fast for a road network as for
+ * a handful of nodes, and every JVM on a host that maps the same file
+ * shares one copy of it in the page cache. Nodes are numbered in the
+ * byte order of their UTF-8 names, so idOf is a binary search over the
+ * mapped names. Each node keeps its out-edges in the order the graph it
+ * was written from returns them.
+ * <p>
+ * write also lays out the reversed graph, so transpose, and with it
+ * every backward search, maps its edges from the file like the forward
+ * ones instead of building them on the heap.
+ * <p>
+ * The file holds, in big-endian order:
+ * <pre>
+ *   int magic, int version, int n, int m
+ *   int[n + 1]  offsets      first edge of each id, then m
+ *   int[m]      targets      destination id of each edge
+ *   int[n + 1]  inOffsets    first in-edge of each id, then m
+ *   int[m]      origins      origin id of each in-edge
+ *   double[m]   weights      weight of each edge
+ *   double[m]   inWeights    weight of each in-edge
+ *   int[n + 1]  nameStarts   first byte of each name, then the name length
+ *   byte[]      names        UTF-8 names, in id order
+ * </pre>
+ * The in-edges of each id are ordered by origin id. Each section is
+ * mapped on its own, so no section may pass 2 GB.
+ *
+ * @specfield nodes : Set<String> // Set of all nodes in graph
+ * @specfield outEdges : Set<LabEdge<String, Double>> // Set of edges for each node in nodes
+ */
+public final class MappedCsrGraph implements IndexedGraph<String>, LabeledGraph<String, Double> {
+	// Representative Invariant:
+	//	 offsets.limit() == nameStarts.limit() == n + 1, offsets.get(0) == 0
+	//	 offsets.get(i) <= offsets.get(i + 1) for 0 <= i < n
+	//	 offsets.get(n) == targets.limit() == weights.limit() == m
+	//	 0 <= targets.get(e) < n for every edge e
+	//	 names[nameStarts.get(i) .. nameStarts.get(i + 1)) is the name of
+	//	 node i, and the names are strictly increasing in unsigned byte order
+	//	 transposed != null, transposed.transposed == this, and transposed
+	//	 shares nameStarts and names and holds every edge of this reversed
+
+	// Abstract Function
+	//	 AF(g) = a directed weighted graph such that
+	//			 nodes = {name(0), .., name(n - 1)}
+	//			 the out-edges of name(i) are (name(targets[e]), weights[e])
+	//			 for offsets[i] <= e < offsets[i + 1]
+
+	// constant variable used in checkRep
+	private final static boolean CHECK = false;
+
+	// first word of every graph file: "CSRG"
+	private static final int MAGIC = 0x43535247;
+	private static final int VERSION = 2;
+	private static final int HEADER = 16;
+
+	private final int n;                 // number of nodes
+	private final int m;                 // number of edges
+	private final IntBuffer offsets;     // first edge of each id, plus total edge count
+	private final IntBuffer targets;     // destination id of each edge
+	private final DoubleBuffer weights;  // weight of each edge
+	private final IntBuffer nameStarts;  // first byte of each name, plus total bytes
+	private final ByteBuffer names;      // UTF-8 bytes of every name
+	private final Set<String> nodesView; // read-only view of the names
+	private final MappedCsrGraph transposed; // reversed graph, over the in-edge sections
+
+	/**
+	 * Constructs a graph over its sections, which must satisfy the
+	 * representation invariant. If transposed is null, the reversed graph
+	 * is constructed over inOffsets, origins and inWeights; otherwise it
+	 * is transposed, and the in-edge sections are not used.
+	 */
+	private MappedCsrGraph(IntBuffer offsets, IntBuffer targets, DoubleBuffer weights,
+			IntBuffer inOffsets, IntBuffer origins, DoubleBuffer inWeights,
+			IntBuffer nameStarts, ByteBuffer names, /*@Nullable*/ MappedCsrGraph transposed) {
+		this.n = offsets.limit() - 1;
+		this.m = targets.limit();
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.nameStarts = nameStarts;
+		this.names = names;
+		this.nodesView = new AbstractSet<String>() {
+			@Override
+			public int size() {
+				return n;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String && idOf((String) o) >= 0;
+			}
+
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					private int next = 0; // id of the next node
+
+					public boolean hasNext() {
+						return next < n;
+					}
+
+					public String next() {
+						if (next >= n) {
+							throw new NoSuchElementException();
+						}
+						return nodeAt(next++);
+					}
+				};
+			}
+		};
+		this.transposed = transposed != null ? transposed : new MappedCsrGraph(inOffsets,
+				origins, inWeights, offsets, targets, weights, nameStarts, names, this);
+		checkRep();
+	}
+
+	/**
+	 * Writes graph to a graph file that open can map.
+	 *
+	 * @param graph the graph to be written
+	 * @param filename the file to write, replacing any file already there
+	 * @requires graph, filename != null and no two nodes of graph are equal
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(IndexedGraph<String> graph, String filename) throws IOException {
+		if (graph == null || filename == null) {
+			throw new IllegalArgumentException("graph and filename cannot be null");
+		}
+		final int n = graph.nodeCount();
+		int m = graph.edgeCount();
+
+		// number nodes in the byte order of their names
+		final byte[][] bytes = new byte[n][];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			bytes[i] = graph.nodeAt(i).getBytes(StandardCharsets.UTF_8);
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Arrays.compareUnsigned(bytes[a], bytes[b]);
+			}
+		});
+		int[] idOf = new int[n];
+		for (int id = 0; id < n; id++) {
+			idOf[order[id]] = id;
+		}
+
+		// group the edges by destination, in origin id order; only the
+		// edge of each in-edge is kept, and its origin and weight are
+		// read back from graph as the sections are written
+		int[] inOffsets = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			inOffsets[idOf[graph.targetOf(e)] + 1]++;
+		}
+		for (int id = 0; id < n; id++) {
+			inOffsets[id + 1] += inOffsets[id];
+		}
+		int[] next = Arrays.copyOf(inOffsets, n);
+		int[] inEdges = new int[m];
+		int[] origins = new int[m];
+		for (int id = 0; id < n; id++) {
+			for (int e = graph.firstEdge(order[id]); e < graph.endEdge(order[id]); e++) {
+				int slot = next[idOf[graph.targetOf(e)]]++;
+				inEdges[slot] = e;
+				origins[slot] = id;
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(m);
+			int edge = 0;
+			for (int id = 0; id < n; id++) {
+				out.writeInt(edge);
+				edge += graph.endEdge(order[id]) - graph.firstEdge(order[id]);
+			}
+			out.writeInt(edge);
+			for (int id = 0; id < n; id++) {
+				for (int e = graph.firstEdge(order[id]); e < graph.endEdge(order[id]); e++) {
+					out.writeInt(idOf[graph.targetOf(e)]);
+				}
+			}
+			for (int id = 0; id <= n; id++) {
+				out.writeInt(inOffsets[id]);
+			}
+			for (int slot = 0; slot < m; slot++) {
+				out.writeInt(origins[slot]);
+			}
+			// the int sections hold 2 * (n + 1 + m) ints, so the doubles
+			// start on a multiple of 8 bytes
+			for (int id = 0; id < n; id++) {
+				for (int e = graph.firstEdge(order[id]); e < graph.endEdge(order[id]); e++) {
+					out.writeDouble(graph.weightOf(e));
+				}
+			}
+			for (int slot = 0; slot < m; slot++) {
+				out.writeDouble(graph.weightOf(inEdges[slot]));
+			}
+			int start = 0;
+			for (int id = 0; id < n; id++) {
+				out.writeInt(start);
+				start += bytes[order[id]].length;
+			}
+			out.writeInt(start);
+			for (int id = 0; id < n; id++) {
+				out.write(bytes[order[id]]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Maps a graph file written by write. Only the header is read; the
+	 * rest of the file is paged in as searches reach it.
+	 *
+	 * @param filename the graph file
+	 * @requires filename != null
+	 * @return the graph held in the file
+	 * @throws IOException if the file cannot be read or is not a graph file
+	 */
+	public static MappedCsrGraph open(String filename) throws IOException {
+		if (filename == null) {
+			throw new IllegalArgumentException("filename cannot be null");
+		}
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < HEADER) {
+				throw new IOException(filename + " is not a graph file");
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException(filename + " is not a graph file");
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException(filename + " has unknown version " + header.getInt(4));
+			}
+			int n = header.getInt(8);
+			int m = header.getInt(12);
+			if (n < 0 || m < 0) {
+				throw new IOException(filename + " has a bad header");
+			}
+			long offsetsAt = HEADER;
+			long targetsAt = offsetsAt + 4L * (n + 1);
+			long inOffsetsAt = targetsAt + 4L * m;
+			long originsAt = inOffsetsAt + 4L * (n + 1);
+			long weightsAt = originsAt + 4L * m;
+			long inWeightsAt = weightsAt + 8L * m;
+			long nameStartsAt = inWeightsAt + 8L * m;
+			long namesAt = nameStartsAt + 4L * (n + 1);
+			if (namesAt > size) {
+				throw new IOException(filename + " is truncated");
+			}
+
+			IntBuffer nameStarts = map(channel, nameStartsAt, 4L * (n + 1)).asIntBuffer();
+			long nameBytes = nameStarts.get(n) & 0xffffffffL;
+			if (namesAt + nameBytes != size) {
+				throw new IOException(filename + " is " + size + " bytes, not "
+						+ (namesAt + nameBytes));
+			}
+			// the mappings stay valid once the channel is closed
+			return new MappedCsrGraph(
+					map(channel, offsetsAt, 4L * (n + 1)).asIntBuffer(),
+					map(channel, targetsAt, 4L * m).asIntBuffer(),
+					map(channel, weightsAt, 8L * m).asDoubleBuffer(),
+					map(channel, inOffsetsAt, 4L * (n + 1)).asIntBuffer(),
+					map(channel, originsAt, 4L * m).asIntBuffer(),
+					map(channel, inWeightsAt, 8L * m).asDoubleBuffer(),
+					nameStarts,
+					map(channel, namesAt, nameBytes),
+					null);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Maps length bytes of channel read-only, starting at position.
+	 */
+	private static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("section of " + length + " bytes is too large to map");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+				.order(ByteOrder.BIG_ENDIAN);
+	}
+
+	@Override
+	public int nodeCount() {
+		return n;
+	}
+
+	@Override
+	public int edgeCount() {
+		return m;
+	}
+
+	@Override
+	public int idOf(String node) {
+		if (node == null) {
+			throw new IllegalArgumentException("null node cannot be passed as parameter");
+		}
+		byte[] key = node.getBytes(StandardCharsets.UTF_8);
+		int lo = 0;
+		int hi = n - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = compareName(mid, key);
+			if (c < 0) {
+				lo = mid + 1;
+			} else if (c > 0) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String nodeAt(int id) {
+		int start = nameStarts.get(id);
+		byte[] bytes = new byte[nameStarts.get(id + 1) - start];
+		names.get(start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int firstEdge(int id) {
+		return offsets.get(id);
+	}
+
+	@Override
+	public int endEdge(int id) {
+		return offsets.get(id + 1);
+	}
+
+	@Override
+	public int targetOf(int edge) {
+		return targets.get(edge);
+	}
+
+	@Override
+	public double weightOf(int edge) {
+		return weights.get(edge);
+	}
+
+	/**
+	 * returns the graph with every edge reversed. It shares the mapped
+	 * names of this graph, and maps its edges from the in-edge sections of
+	 * the file, so it takes no heap beyond the object itself.
+	 *
+	 * @return the transpose of this graph
+	 */
+	@Override
+	public MappedCsrGraph transpose() {
+		return transposed;
+	}
+
+	@Override
+	public boolean containsNode(String node) {
+		return idOf(node) >= 0;
+	}
+
+	@Override
+	public Set<String> getNodes() {
+		return new HashSet<String>(nodesView);
+	}
+
+	@Override
+	public Set<String> getNodesView() {
+		return nodesView;
+	}
+
+	@Override
+	public int size() {
+		return n;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return n == 0;
+	}
+
+	@Override
+	public Set<LabEdge<String, Double>> getOutwardEdgesOf(String node) {
+		int id = checkedIdOf(node);
+		Set<LabEdge<String, Double>> outwardEdges = new TreeSet<LabEdge<String, Double>>();
+		for (int e = offsets.get(id); e < offsets.get(id + 1); e++) {
+			outwardEdges.add(new LabEdge<String, Double>(nodeAt(targets.get(e)), weights.get(e)));
+		}
+		return outwardEdges;
+	}
+
+	/**
+	 * returns a read-only set of the outgoing edges from node. A
+	 * MappedCsrGraph does not hold LabEdge objects, so this builds the set;
+	 * walk the edges by id or with newEdgeCursor to avoid that.
+	 *
+	 * @param node The node of which the outgoing edges are returned
+	 * @return unmodifiable set of the outgoing edges from node
+	 * @requires node != null
+	 * @throws IllegalArgumentException if node is not in the graph
+	 */
+	@Override
+	public Set<LabEdge<String, Double>> getOutwardEdgesView(String node) {
+		return Collections.unmodifiableSet(getOutwardEdgesOf(node));
+	}
+
+	@Override
+	public void forEachOutEdge(String node, Consumer<? super LabEdge<String, Double>> visitor) {
+		if (visitor == null) {
+			throw new IllegalArgumentException("visitor cannot be null");
+		}
+		int id = checkedIdOf(node);
+		for (int e = offsets.get(id); e < offsets.get(id + 1); e++) {
+			visitor.accept(new LabEdge<String, Double>(nodeAt(targets.get(e)), weights.get(e)));
+		}
+	}
+
+	@Override
+	public EdgeCursor<String> newEdgeCursor(final ToDoubleFunction<? super Double> weightOf) {
+		if (weightOf == null) {
+			throw new IllegalArgumentException("weightOf cannot be null");
+		}
+		return new EdgeCursor<String>() {
+			private int edge = 0; // edge the cursor is on
+			private int end = 0;  // one past the last edge of the node
+
+			public void reset(String node) {
+				int id = checkedIdOf(node);
+				edge = offsets.get(id) - 1;
+				end = offsets.get(id + 1);
+			}
+
+			public boolean next() {
+				if (edge + 1 >= end) {
+					edge = end;
+					return false;
+				}
+				edge++;
+				return true;
+			}
+
+			public String dest() {
+				if (edge >= end) {
+					throw new NoSuchElementException();
+				}
+				return nodeAt(targets.get(edge));
+			}
+
+			public double weight() {
+				if (edge >= end) {
+					throw new NoSuchElementException();
+				}
+				return weightOf.applyAsDouble(weights.get(edge));
+			}
+		};
+	}
+
+	@Override
+	public EdgeCursor<String> newInEdgeCursor(ToDoubleFunction<? super Double> weightOf) {
+		return transpose().newEdgeCursor(weightOf);
+	}
+
+	/**
+	 * Returns string representation of the graph.
+	 *
+	 * @return string representation of the graph
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < n; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(nodeAt(i)).append("=[");
+			for (int e = offsets.get(i); e < offsets.get(i + 1); e++) {
+				if (e > offsets.get(i)) {
+					sb.append(", ");
+				}
+				sb.append(nodeAt(targets.get(e))).append('(').append(weights.get(e)).append(')');
+			}
+			sb.append(']');
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Returns the id of node.
+	 *
+	 * @throws IllegalArgumentException if node is not in the graph
+	 */
+	private int checkedIdOf(String node) {
+		int id = idOf(node);
+		if (id < 0) {
+			throw new IllegalArgumentException("graph does not contain " + node + " node");
+		}
+		return id;
+	}
+
+	/**
+	 * Compares the name of id with key in unsigned byte order.
+	 */
+	private int compareName(int id, byte[] key) {
+		int start = nameStarts.get(id);
+		int length = nameStarts.get(id + 1) - start;
+		int common = Math.min(length, key.length);
+		for (int i = 0; i < common; i++) {
+			int c = Integer.compare(names.get(start + i) & 0xff, key[i] & 0xff);
+			if (c != 0) {
+				return c;
+			}
+		}
+		return Integer.compare(length, key.length);
+	}
+
+	/**
+	 * Checks if representation invariant holds (if any)
+	 */
+	private void checkRep() throws RuntimeException {
+		if (CHECK) {
+			if (nameStarts.limit() != n + 1 || offsets.get(0) != 0) {
+				throw new RuntimeException("offsets do not match nodes");
+			}
+			if (offsets.get(n) != m || weights.limit() != m) {
+				throw new RuntimeException("edge arrays do not match offsets");
+			}
+			if (transposed.n != n || transposed.m != m || transposed.names != names) {
+				throw new RuntimeException("transpose does not match the graph");
+			}
+			for (int i = 0; i < n; i++) {
+				if (offsets.get(i) > offsets.get(i + 1)) {
+					throw new RuntimeException("offsets must not decrease");
+				}
+				if (i > 0 && compareName(i - 1, nodeAt(i).getBytes(StandardCharsets.UTF_8)) >= 0) {
+					throw new RuntimeException("names are not sorted at " + i);
+				}
+			}
+			for (int e = 0; e < m; e++) {
+				if (targets.get(e) < 0 || targets.get(e) >= n) {
+					throw new RuntimeException("edge target out of range: " + targets.get(e));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package hw7;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import hw5.DirGraph;
+import hw5.LabEdge;
+import hw7.MarvelParser2.MalformedDataException;
+
+/**
+ * <b>MarvelNetwork</b> is the social network MarvelPaths2.makeWeightedGraph
+ * returns, kept together with what its weights were counted from, so
+ * that new appearances of characters in books can be added to it
+ * without reading the whole dataset again.
+ * <p>
+ * Besides the graph, the network keeps for every book how many lines
+ * list each of its characters. The count parseData gives a pair of
+ * characters is not kept apart from the graph: the edge between them is
+ * weighted 1 / count, so the count is read back from its weight. A new
+ * line listing a character in a book is paired with every listing the
+ * book already has, so only the counts between that character and the
+ * characters of the book change, and only the edges between them are
+ * replaced.
+ * <p>
+ * Replacing an edge is a binary search in the sorted out-edges and
+ * in-edges of its two characters, and a shift of the edges after it.
+ * An append thus takes time in proportion to the number of distinct
+ * characters of its book times the degree of the busiest of them, and
+ * the part that grows with the degree is a copy of one array, however
+ * large the dataset.
+ *
+ * @specfield graph : DirGraph<String, Double> // the network of every line read or appended
+ * @specfield books : Map<String, Map<String, Integer>> // lines listing each character in each book
+ */
+public class MarvelNetwork {
+	// Rep invariant:
+	//     books, graph != null
+	//     every character of a book of books is a node of graph, and 
+	//     every number of books is positive
+	//     let count(a, b) be the sum over the books of times(a) * times(b)
+	//     if a != b, and of times(a) * (times(a) - 1) if a == b, where
+	//     times(c) is the number of lines listing c in the book; graph has
+	//     exactly one edge from a to b, labeled 1.0 / count(a, b), if
+	//     count(a, b) > 0, and no other edges
+
+	// Abstract function:
+	//     AF(n) = a network such that graph = n.graph and books = n.books
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	private final Map<String, HashMap<String, Integer>> books; // lines listing each character, by book
+	private final DirGraph<String, Double> graph;
+
+	/**
+	 * @effects Constructs an empty network
+	 */
+	public MarvelNetwork() {
+		this(new HashMap<String, HashMap<String, Integer>>(), new DirGraph<String, Double>());
+	}
+
+	private MarvelNetwork(Map<String, HashMap<String, Integer>> books, DirGraph<String, Double> graph) {
+		this.books = books;
+		this.graph = graph;
+		checkRep();
+	}
+
+	/**
+	 * Reads the Marvel Universe dataset and returns its network, with the
+	 * graph makeWeightedGraph returns for it.
+	 *
+	 * @requires filename is a valid file path
+	 * @param filename the file that will be read
+	 * @return network of the characters of the file
+	 * @throws MalformedDataException if the file is not well-formed:
+	 *          each line contains exactly two tokens separated by a tab,
+	 *          or else starting with a # symbol to indicate a comment line.
+	 * @throws IOException if the file cannot be read
+	 */
+	public static MarvelNetwork load(String filename) throws IOException, MalformedDataException {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		MarvelParser2.Cooccurrences counted = MarvelParser2.parseCounts(filename, true, pool);
+		String[] characters = counted.characters;
+
+		Map<String, HashMap<String, Integer>> books =
+				new HashMap<String, HashMap<String, Integer>>(counted.books.length * 4 / 3 + 1);
+		for (int b = 0; b < counted.books.length; b++) {
+			int from = counted.bookStart[b];
+			int to = counted.bookStart[b + 1];
+			HashMap<String, Integer> listed = new HashMap<String, Integer>((to - from) * 4 / 3 + 1);
+			for (int i = from; i < to; i++)
+				listed.put(characters[counted.bookChars[i]], counted.bookTimes[i]);
+			books.put(counted.books[b], listed);
+		}
+
+		return new MarvelNetwork(books, MarvelPaths2.weightedGraph(counted));
+	}
+
+	/**
+	 * Returns the graph of the network. It is the graph itself, not a
+	 * copy, and append changes it in place.
+	 *
+	 * @return graph of the social network between characters, which
+	 *         must only be changed through this network
+	 */
+	public DirGraph<String, Double> getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the characters listed in a book.
+	 *
+	 * @param book the book to be looked up
+	 * @requires book != null
+	 * @return unmodifiable view of the characters of book, empty if no
+	 *         line lists book
+	 */
+	public Set<String> getCharactersOf(String book) {
+		if (book == null)
+			throw new IllegalArgumentException("book cannot be null.");
+		HashMap<String, Integer> listed = books.get(book);
+		if (listed == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(listed.keySet());
+	}
+
+	/**
+	 * Returns the count of a pair of characters, as parseData counts it.
+	 *
+	 * @param a a character
+	 * @param b a character
+	 * @requires a, b != null
+	 * @return the count of a with b, 0 if they share no book
+	 */
+	public int countOf(String a, String b) {
+		if (a == null || b == null)
+			throw new IllegalArgumentException("characters cannot be null.");
+		if (!graph.containsNode(a) || !graph.containsNode(b))
+			return 0;
+		return count(a, b);
+	}
+
+	/**
+	 * Adds one line of a dataset, listing character in book, to the
+	 * network.
+	 *
+	 * @param character the character listed
+	 * @param book the book it is listed in
+	 * @requires character, book != null
+	 * @modifies graph, books
+	 * @effects adds character to graph if it is new, and replaces the
+	 *          edges between character and each character of book with
+	 *          ones weighted by their new counts
+	 */
+	public void append(String character, String book) {
+		if (character == null || book == null)
+			throw new IllegalArgumentException("character and book cannot be null.");
+		HashMap<String, Integer> listed = books.get(book);
+		if (listed == null) {
+			listed = new HashMap<String, Integer>();
+			books.put(book, listed);
+		}
+		graph.addNode(character);
+
+		// the new listing is paired with each listing already in the
+		// book; listings of its own character pair with it both ways
+		for (Entry<String, Integer> entry : listed.entrySet()) {
+			String other = entry.getKey();
+			int times = entry.getValue();
+			addPairs(character, other, other.equals(character) ? 2 * times : times);
+		}
+		Integer times = listed.get(character);
+		listed.put(character, times == null ? 1 : times + 1);
+		checkRep();
+	}
+
+	/**
+	 * Reads a dataset of new lines and appends each of them, as
+	 * append(character, book) does. If the file is not well-formed,
+	 * nothing is appended.
+	 *
+	 * @requires filename is a valid file path
+	 * @param filename the file that will be read
+	 * @modifies graph, books
+	 * @effects appends every line of the file
+	 * @throws MalformedDataException if the file is not well-formed:
+	 *          each line contains exactly two tokens separated by a tab,
+	 *          or else starting with a # symbol to indicate a comment line.
+	 * @throws IOException if the file cannot be read
+	 */
+	public void appendData(String filename) throws IOException, MalformedDataException {
+		List<String[]> lines = new ArrayList<String[]>();
+		BufferedReader reader = new BufferedReader(new FileReader(filename));
+		try {
+			String inputLine;
+			int lineNumber = 0;
+			while ((inputLine = reader.readLine()) != null) {
+				lineNumber++;
+				String[] tokens = MarvelParser2.splitLine(inputLine, lineNumber);
+				if (tokens != null)
+					lines.add(tokens);
+			}
+		} finally {
+			reader.close();
+		}
+		for (String[] tokens : lines)
+			append(tokens[0], tokens[1]);
+	}
+
+	/**
+	 * Returns the count of a with b, read from the weight of the edge
+	 * between them, or 0 if there is none.
+	 */
+	private int count(String a, String b) {
+		Set<LabEdge<String, Double>> edges = graph.getEdgesBetween(a, b);
+		if (edges.isEmpty())
+			return 0;
+		// the weight is 1.0 / count, and rounding its inverse gives the 
+		// count back for any count an int holds
+		return (int) Math.round(1.0 / edges.iterator().next().getLabel());
+	}
+
+	/**
+	 * Adds added to the count of a with b, and replaces the edges between
+	 * them with ones weighted by the new count.
+	 */
+	private void addPairs(String a, String b, int added) {
+		int old = count(a, b);
+
+		// both directions share one weight, as in makeWeightedGraph
+		if (old > 0) {
+			Double stale = 1.0 / old;
+			graph.removeEdge(a, b, stale);
+			if (!a.equals(b))
+				graph.removeEdge(b, a, stale);
+		}
+		Double weight = 1.0 / (old + added);
+		graph.addEdge(a, b, weight);
+		if (!a.equals(b))
+			graph.addEdge(b, a, weight);
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			if (books == null || graph == null)
+				throw new RuntimeException("fields cannot be null.");
+			Map<String, Map<String, Integer>> counts = new HashMap<String, Map<String, Integer>>();
+			for (HashMap<String, Integer> listed : books.values()) {
+				for (Entry<String, Integer> a : listed.entrySet()) {
+					if (!graph.containsNode(a.getKey()) || a.getValue() <= 0)
+						throw new RuntimeException("book lists " + a.getKey() + " wrongly.");
+					Map<String, Integer> partners = counts.get(a.getKey());
+					if (partners == null) {
+						partners = new HashMap<String, Integer>();
+						counts.put(a.getKey(), partners);
+					}
+					for (Entry<String, Integer> b : listed.entrySet()) {
+						int pairs = a.getKey().equals(b.getKey()) ? a.getValue() * (a.getValue() - 1)
+								: a.getValue() * b.getValue();
+						if (pairs > 0) {
+							Integer count = partners.get(b.getKey());
+							partners.put(b.getKey(), count == null ? pairs : count + pairs);
+						}
+					}
+				}
+			}
+			for (String a : graph.getNodesView()) {
+				Map<String, Integer> partners = counts.get(a);
+				int degree = partners == null ? 0 : partners.size();
+				if (graph.outDegree(a) != degree)
+					throw new RuntimeException("edges of " + a + " do not match its books.");
+				for (LabEdge<String, Double> edge : graph.getOutwardEdgesView(a)) {
+					Integer count = partners.get(edge.getDest());
+					if (count == null || edge.getLabel() != 1.0 / count)
+						throw new RuntimeException("edge from " + a + " to " + edge.getDest() + " has a stale weight.");
+				}
+			}
+		}
+	}
+}
@@ -1,6 +1,15 @@
 package hw7;
 import java.io.*;
 import java.util.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import hw5.NodeDictionary;
 
 /**
  * Parser utility to load the Marvel Comics dataset.
@@ -28,11 +37,28 @@ public class MarvelParser2 {
         }
     }
 	
+	// listings of characters in books whose rows one task counts 
+	// without splitting further
+	private static final int LISTINGS_PER_TASK = 2048;
+	
+	// pairs copied into maps by one task without splitting further
+	private static final int PAIRS_PER_TASK = 4096;
+	
 	/**
 	 * 
 	 * Reads the Marvel Universe dataset.
      * Each line of the input file contains a character name and a comic
      * book the character appeared in, separated by a tab character
+     * <p>
+     * The file is read once to number the characters and group them by 
+     * book. The partners of each character are then counted in parallel on 
+     * the common ForkJoinPool, by distinct character with their number of 
+     * appearances, into a dense counter per worker, and written straight 
+     * into one row per character of primitive arrays.
+     * The maps of countChar are filled in parallel as well, each by one task.
+     * A character listed twice in one book is counted as the line by line
+     * parser counted it: once with every other appearance in the book, 
+     * including its own.
      * 
      * @requires file is well-formed, with each line containing exactly two
      *           quote-delimited tokens separated by a tab, or else starting with
@@ -43,75 +69,680 @@ public class MarvelParser2 {
      * @modifies countChar
      * @effects fills countChar with characters and map with other characters who appear 
      *          in other books together with the number of book in they appear together
-	 * 
+	 * @throws IOException if the file cannot be read, as parseMappedData 
+	 *         does; countChar is left empty
 	 */
 	public static void parseData(String filename, 
 			Map<String, HashMap<String, Integer>> countChar) throws Exception {
+		parseData(filename, countChar, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Reads the Marvel Universe dataset as parseData(filename, countChar) 
+	 * does, counting the pairs of characters on pool.
+	 * 
+	 * @requires file is well-formed, as for parseData(filename, countChar),
+	 *           and pool != null
+	 * @param filename the file that will be read
+	 * @param countChar map characters with other characters who appear in other books 
+	 *        together with the number of book in they appear together
+	 * @param pool the pool the books are counted on
+	 * @modifies countChar
+	 * @effects fills countChar with characters and map with other characters who appear 
+	 *          in other books together with the number of book in they appear together
+	 * @throws MalformedDataException if a line that is not a comment does 
+	 *         not hold exactly two tokens separated by a tab; the message 
+	 *         gives the number of the line
+	 * @throws IOException if the file cannot be read; countChar is left 
+	 *         empty
+	 */
+	public static void parseData(String filename, 
+			Map<String, HashMap<String, Integer>> countChar, ForkJoinPool pool) throws Exception {
+		if (pool == null)
+			throw new IllegalArgumentException("pool cannot be null.");
+		fillMaps(countLines(filename, pool), countChar, pool);
+	}
+	
+	/**
+	 * Reads the dataset a line at a time, as parseData does, and counts 
+	 * its pairs of characters on pool.
+	 */
+	private static Cooccurrences countLines(String filename, ForkJoinPool pool) 
+			throws IOException, MalformedDataException {
+		// ids of characters and books, and one (book, character) pair 
+		// for each line, in the order of the file
+		NodeDictionary<String> characters = new NodeDictionary<String>();
+		NodeDictionary<String> books = new NodeDictionary<String>();
+		Appearances appearances = new Appearances();
 		
-		BufferedReader reader = null;
+		BufferedReader reader = new BufferedReader(new FileReader(filename));
 	    try {
-			reader = new BufferedReader(new FileReader(filename));
-			
-			// a map to hold the book and its characters
-			HashMap<String, ArrayList<String>> books = 
-					new HashMap<String, ArrayList<String>>();
-			
 			String inputLine;
+			int lineNumber = 0;
 			while ((inputLine = reader.readLine()) != null) {
-				// Ignore comment lines.
-		        if (inputLine.startsWith("#")) {
-		        	continue;
-		        }
-		        
-		        // Parse the data, stripping out quotation marks and throwing
-		        // an exception for malformed lines.
-		        inputLine = inputLine.replace("\"", "");
-		        String[] tokens = inputLine.split("\t");
-		        if (tokens.length != 2) {
-		            throw new Exception("Line should contain exactly one tab: " + inputLine);
-		        }
-
-		        String character = tokens[0];
-		        String book = tokens[1];
-		        
-		        // add characters to countChar is the character is not in map
-		        if (!countChar.containsKey(character))
-		        		countChar.put(character, new HashMap<String, Integer>());
-		        
-		        if (!books.containsKey(book)) {
-			        	ArrayList<String> allCharacters = new ArrayList<String>();
-			        	allCharacters.add(character);
-			        	books.put(book, allCharacters);
-		        } else {
-			        	// if the book is already in books, update the 
-			        	// edge count of this character and the character
-			        	// in this book
-			        	ArrayList<String> chars = books.get(book);
-			        	HashMap<String, Integer> count1 = countChar.get(character);
-			        	for (String singleChar : chars) {
-			        		if (!count1.containsKey(singleChar))
-			        			count1.put(singleChar, 1);
-			        		else
-			        			count1.put(singleChar, count1.get(singleChar) + 1);
-			        		String secondChar = singleChar;
-			        		HashMap<String, Integer> count2 = countChar.get(secondChar);
-			        		if (!count2.containsKey(character))
-			        			count2.put(character, 1);
-			        		else
-			        			count2.put(character, count2.get(character) + 1);
-			        	}
-			        	// add the character to the book
-			        	chars.add(character);
-			        	books.put(book, chars);
-		        }
+				lineNumber++;
+				String[] tokens = splitLine(inputLine, lineNumber);
+				if (tokens != null)
+					appearances.add(characters.add(tokens[0]), books.add(tokens[1]));
 			}
-	    } catch (IOException e) {
-	        System.err.println(e.toString());
-	        e.printStackTrace(System.err);
 	    } finally {
-	        if (reader != null) {
-	        	reader.close();
-	        }
+	    	reader.close();
+	    }
+	    
+	    String[] names = new String[characters.size()];
+	    for (int id = 0; id < names.length; id++)
+	    	names[id] = characters.nodeAt(id);
+	    return count(names, books.size(), null, appearances, pool);
+	}
+	
+	/**
+	 * Returns the character and the book of one line of a dataset, with 
+	 * their quotation marks stripped out, or null if the line is a comment.
+	 * 
+	 * @param inputLine the line, without its line end
+	 * @param lineNumber the number of the line in its file, from 1
+	 * @return {character, book}, or null if inputLine starts with #
+	 * @throws MalformedDataException if inputLine is not a comment and does 
+	 *         not hold exactly two tokens separated by a tab
+	 */
+	static /*@Nullable*/ String[] splitLine(String inputLine, int lineNumber) 
+			throws MalformedDataException {
+		// Ignore comment lines.
+        if (inputLine.startsWith("#")) {
+        	return null;
+        }
+        
+        // Parse the data, stripping out quotation marks and throwing
+        // an exception for malformed lines.
+        inputLine = inputLine.replace("\"", "");
+        String[] tokens = inputLine.split("\t");
+        if (tokens.length != 2) {
+            throw new MalformedDataException("Line " + lineNumber + 
+            		" should contain exactly one tab: " + inputLine);
+        }
+        return tokens;
+	}
+	
+	/**
+	 * Reads the Marvel Universe dataset as parseData(filename, countChar) 
+	 * does, but without making a String per line: the file is mapped 
+	 * into memory and its bytes are scanned for quotes, tabs and line 
+	 * ends, and each name is looked up by its bytes, so that a String is 
+	 * made once for each distinct character and never for a book.
+	 * 
+	 * @requires file is well-formed, as for parseData(filename, countChar), 
+	 *           encoded in UTF-8 with lines that end in \n or \r\n
+	 * @param filename the file that will be read
+	 * @param countChar map characters with other characters who appear in other books 
+	 *        together with the number of book in they appear together
+	 * @modifies countChar
+	 * @effects fills countChar with characters and map with other characters who appear 
+	 *          in other books together with the number of book in they appear together
+	 * @throws MalformedDataException if a line that is not a comment does 
+	 *         not hold exactly two tokens separated by a tab; the message 
+	 *         gives the number of the line
+	 * @throws IOException if the file cannot be read or is 2 GB or larger
+	 */
+	public static void parseMappedData(String filename, 
+			Map<String, HashMap<String, Integer>> countChar) throws IOException, MalformedDataException {
+		parseMappedData(filename, countChar, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Reads the Marvel Universe dataset as parseMappedData(filename, 
+	 * countChar) does, counting the pairs of characters on pool.
+	 * 
+	 * @requires file is well-formed, as for parseMappedData(filename, 
+	 *           countChar), and pool != null
+	 * @param filename the file that will be read
+	 * @param countChar map characters with other characters who appear in other books 
+	 *        together with the number of book in they appear together
+	 * @param pool the pool the books are counted on
+	 * @modifies countChar
+	 * @effects fills countChar with characters and map with other characters who appear 
+	 *          in other books together with the number of book in they appear together
+	 * @throws MalformedDataException if a line that is not a comment does 
+	 *         not hold exactly two tokens separated by a tab; the message 
+	 *         gives the number of the line
+	 * @throws IOException if the file cannot be read or is 2 GB or larger
+	 */
+	public static void parseMappedData(String filename, Map<String, HashMap<String, Integer>> countChar, 
+			ForkJoinPool pool) throws IOException, MalformedDataException {
+		if (pool == null)
+			throw new IllegalArgumentException("pool cannot be null.");
+		fillMaps(parseCounts(filename, pool), countChar, pool);
+	}
+	
+	/**
+	 * Reads the dataset as parseMappedData does and returns its pairs of 
+	 * characters, counted on pool, without filling any maps.
+	 * 
+	 * @requires file is well-formed, as for parseMappedData(filename, 
+	 *           countChar), and pool != null
+	 * @param filename the file that will be read
+	 * @param pool the pool the books are counted on
+	 * @return the characters of the file and the number of books each 
+	 *         pair of them appear in together
+	 * @throws MalformedDataException if a line that is not a comment does 
+	 *         not hold exactly two tokens separated by a tab
+	 * @throws IOException if the file cannot be read or is 2 GB or larger
+	 */
+	static Cooccurrences parseCounts(String filename, ForkJoinPool pool) 
+			throws IOException, MalformedDataException {
+		return parseCounts(filename, false, pool);
+	}
+	
+	/**
+	 * Reads the dataset as parseCounts(filename, pool) does, and if 
+	 * keepBooks is true also makes the name of every book, so that the 
+	 * returned counts carry the characters of each book by name.
+	 * 
+	 * @requires file is well-formed, as for parseMappedData(filename, 
+	 *           countChar), and pool != null
+	 * @param filename the file that will be read
+	 * @param keepBooks whether the names of the books are kept
+	 * @param pool the pool the books are counted on
+	 * @return the characters of the file and the number of books each 
+	 *         pair of them appear in together, with the names of the 
+	 *         books if keepBooks is true
+	 * @throws MalformedDataException if a line that is not a comment does 
+	 *         not hold exactly two tokens separated by a tab
+	 * @throws IOException if the file cannot be read or is 2 GB or larger
+	 */
+	static Cooccurrences parseCounts(String filename, boolean keepBooks, ForkJoinPool pool) 
+			throws IOException, MalformedDataException {
+		ByteBuffer in;
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException(filename + " is too large to be mapped");
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+		
+		Names characters = new Names();
+		Names books = new Names();
+		Appearances appearances = new Appearances();
+		byte[] token = new byte[64]; // a name with its quotes removed
+		int[] tabs = new int[4];     // positions of the tabs of a line
+		int end = in.limit();
+		int lineNumber = 0;
+		for (int lineStart = 0; lineStart < end; ) {
+			lineNumber++;
+			int lineEnd = lineStart;
+			int tabCount = 0;
+			for (; lineEnd < end && in.get(lineEnd) != '\n'; lineEnd++) {
+				if (in.get(lineEnd) == '\t') {
+					if (tabCount == tabs.length)
+						tabs = Arrays.copyOf(tabs, 2 * tabCount);
+					tabs[tabCount++] = lineEnd;
+				}
+			}
+			int next = lineEnd + 1;
+			if (lineEnd > lineStart && in.get(lineEnd - 1) == '\r')
+				lineEnd--;
+			
+			// Ignore comment lines.
+			if (lineEnd > lineStart && in.get(lineStart) == '#') {
+				lineStart = next;
+				continue;
+			}
+			
+			// split drops trailing empty tokens, so a line is well-formed 
+			// if its tokens after the second have nothing but quotes
+			boolean wellFormed = tabCount >= 1 && 
+					!isBlank(in, tabs[0] + 1, tabCount > 1 ? tabs[1] : lineEnd);
+			for (int t = 1; t < tabCount && wellFormed; t++)
+				wellFormed = isBlank(in, tabs[t] + 1, t + 1 < tabCount ? tabs[t + 1] : lineEnd);
+			if (!wellFormed) {
+				byte[] line = new byte[lineEnd - lineStart];
+				for (int i = 0; i < line.length; i++)
+					line[i] = in.get(lineStart + i);
+				throw new MalformedDataException("Line " + lineNumber + 
+						" should contain exactly one tab: " + 
+						new String(line, StandardCharsets.UTF_8).replace("\"", ""));
+			}
+			
+			int length = tabs[0] - lineStart;
+			if (token.length < length)
+				token = new byte[Math.max(length, 2 * token.length)];
+			int character = characters.add(token, strip(in, lineStart, tabs[0], token));
+			length = (tabCount > 1 ? tabs[1] : lineEnd) - tabs[0] - 1;
+			if (token.length < length)
+				token = new byte[Math.max(length, 2 * token.length)];
+			int book = books.add(token, strip(in, tabs[0] + 1, tabCount > 1 ? tabs[1] : lineEnd, token));
+			appearances.add(character, book);
+			lineStart = next;
+		}
+		
+		String[] names = new String[characters.size()];
+		for (int id = 0; id < names.length; id++)
+			names[id] = characters.nameAt(id);
+		String[] bookNames = null;
+		if (keepBooks) {
+			bookNames = new String[books.size()];
+			for (int id = 0; id < bookNames.length; id++)
+				bookNames[id] = books.nameAt(id);
+		}
+		return count(names, books.size(), bookNames, appearances, pool);
+	}
+	
+	/**
+	 * Returns true if in[from .. to) holds nothing but quotes.
+	 */
+	private static boolean isBlank(ByteBuffer in, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (in.get(i) != '"')
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Copies in[from .. to) without its quotes into token and returns the 
+	 * number of bytes copied.
+	 */
+	private static int strip(ByteBuffer in, int from, int to, byte[] token) {
+		int length = 0;
+		for (int i = from; i < to; i++) {
+			byte b = in.get(i);
+			if (b != '"')
+				token[length++] = b;
+		}
+		return length;
+	}
+	
+	/**
+	 * Counts the pairs of characters of appearances on pool. books holds 
+	 * the name of each book id, or is null if the names are not kept.
+	 */
+	private static Cooccurrences count(String[] characters, int bookCount, 
+			/*@Nullable*/ String[] books, Appearances appearances, ForkJoinPool pool) {
+		int lines = appearances.size;
+		int[] lineBooks = appearances.books;
+		int[] lineChars = appearances.characters;
+		int n = characters.length;
+		
+	    // group the characters by book: the characters of book b are 
+	    // bookChars[bookStart[b] .. bookStart[b + 1])
+	    int[] bookStart = new int[bookCount + 1];
+	    for (int i = 0; i < lines; i++)
+	    	bookStart[lineBooks[i] + 1]++;
+	    for (int b = 0; b < bookCount; b++)
+	    	bookStart[b + 1] += bookStart[b];
+	    int[] bookChars = new int[lines];
+	    int[] next = Arrays.copyOf(bookStart, bookCount);
+	    for (int i = 0; i < lines; i++)
+	    	bookChars[next[lineBooks[i]]++] = lineChars[i];
+	    
+	    // keep each character once per book, with the number of times it 
+	    // is listed there, moving the books down over the dropped entries
+	    int[] bookTimes = new int[lines];
+	    int kept = 0;
+	    for (int b = 0; b < bookCount; b++) {
+	    	int from = bookStart[b];
+	    	int to = bookStart[b + 1];
+	    	Arrays.sort(bookChars, from, to);
+	    	bookStart[b] = kept;
+	    	for (int i = from; i < to; i++) {
+	    		if (i > from && bookChars[i] == bookChars[i - 1]) {
+	    			bookTimes[kept - 1]++;
+	    		} else {
+	    			bookChars[kept] = bookChars[i];
+	    			bookTimes[kept++] = 1;
+	    		}
+	    	}
+	    }
+	    bookStart[bookCount] = kept;
+	    
+	    // and the other way round: the books of character c, with its 
+	    // number of listings in each, are charBooks[charStart[c] .. charStart[c + 1])
+	    int[] charStart = new int[n + 1];
+	    for (int i = 0; i < kept; i++)
+	    	charStart[bookChars[i] + 1]++;
+	    for (int c = 0; c < n; c++)
+	    	charStart[c + 1] += charStart[c];
+	    int[] charBooks = new int[kept];
+	    int[] charTimes = new int[kept];
+	    next = Arrays.copyOf(charStart, n);
+	    for (int b = 0; b < bookCount; b++) {
+	    	for (int i = bookStart[b]; i < bookStart[b + 1]; i++) {
+	    		charBooks[next[bookChars[i]]] = b;
+	    		charTimes[next[bookChars[i]]++] = bookTimes[i];
+	    	}
+	    }
+	    
+	    // count the partners of every character once to size the rows, 
+	    // then again to fill them, so each row is written straight into 
+	    // place and no pair is held anywhere else
+	    Rows rows = new Rows(n, bookStart, bookChars, bookTimes, charStart, charBooks, charTimes);
+	    int[] start = new int[n + 1];
+	    rows.start = start;
+	    pool.invoke(new RowTask(rows, 0, n));
+	    for (int c = 0; c < n; c++)
+	    	start[c + 1] += start[c];
+	    rows.partners = new int[start[n]];
+	    rows.counts = new int[start[n]];
+	    pool.invoke(new RowTask(rows, 0, n));
+	    if (books == null)
+	    	return new Cooccurrences(characters, start, rows.partners, rows.counts, null, null, null, null);
+	    return new Cooccurrences(characters, start, rows.partners, rows.counts, 
+	    		books, bookStart, Arrays.copyOf(bookChars, kept), Arrays.copyOf(bookTimes, kept));
+	}
+	
+	/**
+	 * Fills countChar with the pairs of counted, on pool.
+	 */
+	private static void fillMaps(Cooccurrences counted, 
+			Map<String, HashMap<String, Integer>> countChar, ForkJoinPool pool) {
+		String[] characters = counted.characters;
+		int[] start = counted.start;
+		int n = characters.length;
+		
+	    // countChar is only changed here; each map is then filled by one task
+	    List<HashMap<String, Integer>> maps = new ArrayList<HashMap<String, Integer>>(n);
+	    for (int id = 0; id < n; id++) {
+	    	String character = characters[id];
+	    	HashMap<String, Integer> map = countChar.get(character);
+	    	if (map == null) {
+	    		map = new HashMap<String, Integer>((start[id + 1] - start[id]) * 4 / 3 + 1);
+	    		countChar.put(character, map);
+	    	}
+	    	maps.add(map);
 	    }
+	    pool.invoke(new Maps(characters, maps, start, counted.partners, counted.counts, 0, n));
+	}
+	
+	/**
+	 * Adds count to the count of character in map.
+	 */
+	private static void addCount(HashMap<String, Integer> map, String character, Integer count) {
+		Integer old = map.put(character, count);
+		if (old != null)
+			map.put(character, old + count);
+	}
+	
+	/**
+	 * The pairs of characters of a dataset with the number of books each 
+	 * pair appears in together, kept as a graph in compressed sparse row 
+	 * form: the partners of the character with id c, itself included if 
+	 * it is listed twice in a book, are partners[start[c] .. start[c + 1]), 
+	 * and counts holds the count of each. Every pair is listed from both 
+	 * of its characters, and the arrays are owned by whoever takes them.
+	 * <p>
+	 * If the names of the books were kept, the distinct characters of the 
+	 * book books[b] are bookChars[bookStart[b] .. bookStart[b + 1]), and 
+	 * bookTimes holds how many lines list each of them in that book; 
+	 * otherwise the four are null.
+	 */
+	static final class Cooccurrences {
+		final String[] characters; // name of each id, in order of first appearance
+		final int[] start;         // first partner of each id, then the total
+		final int[] partners;      // id of each partner
+		final int[] counts;        // books shared with each partner
+		final /*@Nullable*/ String[] books; // name of each book id
+		final /*@Nullable*/ int[] bookStart; // first character of each book, then the total
+		final /*@Nullable*/ int[] bookChars; // id of each character of a book
+		final /*@Nullable*/ int[] bookTimes; // lines listing it in the book
+		
+		Cooccurrences(String[] characters, int[] start, int[] partners, int[] counts, 
+				/*@Nullable*/ String[] books, /*@Nullable*/ int[] bookStart, 
+				/*@Nullable*/ int[] bookChars, /*@Nullable*/ int[] bookTimes) {
+			this.characters = characters;
+			this.start = start;
+			this.partners = partners;
+			this.counts = counts;
+			this.books = books;
+			this.bookStart = bookStart;
+			this.bookChars = bookChars;
+			this.bookTimes = bookTimes;
+		}
+	}
+	
+	/**
+	 * The (character, book) pair of each line of a dataset, by id, in the 
+	 * order of the file.
+	 */
+	private static final class Appearances {
+		int[] characters = new int[1024];
+		int[] books = new int[1024];
+		int size;
+		
+		void add(int character, int book) {
+			if (size == characters.length) {
+				characters = Arrays.copyOf(characters, 2 * size);
+				books = Arrays.copyOf(books, 2 * size);
+			}
+			characters[size] = character;
+			books[size] = book;
+			size++;
+		}
+	}
+	
+	/**
+	 * A dictionary that gives each distinct name a dense int id, as 
+	 * NodeDictionary does, but looks names up by their UTF-8 bytes. The 
+	 * bytes of every name are kept in one array, and the String of a name 
+	 * is only made when nameAt first asks for it.
+	 */
+	private static final class Names {
+		// Rep invariant:
+		//     the names bytes[starts[id] .. starts[id + 1]), 0 <= id < size, 
+		//     are distinct, and hashes[id] is the hash of name id
+		//     table.length is a power of two greater than 2 * size, and 
+		//     holds id + 1 of each name in the first free slot probing 
+		//     from its hash; every other slot is 0
+		//     strings[id] is null or the UTF-8 decoding of name id
+		
+		private byte[] bytes = new byte[1024];
+		private int[] starts = new int[65];
+		private int[] hashes = new int[64];
+		private String[] strings = new String[64];
+		private int[] table = new int[256];
+		private int size;
+		
+		int size() {
+			return size;
+		}
+		
+		/**
+		 * Returns the id of the name name[0 .. length), adding it with the 
+		 * next id if it is new.
+		 */
+		int add(byte[] name, int length) {
+			int h = 0;
+			for (int i = 0; i < length; i++)
+				h = 31 * h + name[i];
+			h *= 0x9e3779b9;
+			h ^= h >>> 16;
+			int mask = table.length - 1;
+			int slot = h & mask;
+			for (; table[slot] != 0; slot = (slot + 1) & mask) {
+				int id = table[slot] - 1;
+				if (hashes[id] == h && Arrays.equals(bytes, starts[id], starts[id + 1], name, 0, length))
+					return id;
+			}
+			
+			int id = size;
+			if (id == hashes.length) {
+				hashes = Arrays.copyOf(hashes, 2 * id);
+				strings = Arrays.copyOf(strings, 2 * id);
+				starts = Arrays.copyOf(starts, 2 * id + 1);
+			}
+			int start = starts[id];
+			if (start + length > bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.max(start + length, 2 * bytes.length));
+			System.arraycopy(name, 0, bytes, start, length);
+			starts[id + 1] = start + length;
+			hashes[id] = h;
+			table[slot] = id + 1;
+			size++;
+			if (2 * size >= table.length)
+				rehash(2 * table.length);
+			return id;
+		}
+		
+		/**
+		 * Returns name id as a String.
+		 */
+		String nameAt(int id) {
+			if (strings[id] == null)
+				strings[id] = new String(bytes, starts[id], starts[id + 1] - starts[id], 
+						StandardCharsets.UTF_8);
+			return strings[id];
+		}
+		
+		private void rehash(int length) {
+			table = new int[length];
+			int mask = length - 1;
+			for (int id = 0; id < size; id++) {
+				int slot = hashes[id] & mask;
+				while (table[slot] != 0)
+					slot = (slot + 1) & mask;
+				table[slot] = id + 1;
+			}
+		}
+	}
+	
+	/**
+	 * What the counting of every row needs: the distinct characters of 
+	 * each book and the books of each character, each with the number of 
+	 * times the character is listed in the book.
+	 * <p>
+	 * Two distinct characters listed m1 and m2 times in a book share 
+	 * m1 * m2 pairs of listings there, and a character listed m times is 
+	 * paired with itself m * (m - 1) times, as the line by line count 
+	 * paired each listing with every earlier one in both directions.
+	 */
+	private static final class Rows {
+		final int n;
+		final int[] bookStart, bookChars, bookTimes;
+		final int[] charStart, charBooks, charTimes;
+		int[] start;    // the first pass counts the partners of c into start[c + 1]
+		/*@Nullable*/ int[] partners; // null in the first pass
+		/*@Nullable*/ int[] counts;
+		final ThreadLocal<int[][]> scratch = new ThreadLocal<int[][]>();
+		
+		Rows(int n, int[] bookStart, int[] bookChars, int[] bookTimes, 
+				int[] charStart, int[] charBooks, int[] charTimes) {
+			this.n = n;
+			this.bookStart = bookStart;
+			this.bookChars = bookChars;
+			this.bookTimes = bookTimes;
+			this.charStart = charStart;
+			this.charBooks = charBooks;
+			this.charTimes = charTimes;
+		}
+		
+		/**
+		 * Counts the partners of character a into a dense array of the 
+		 * calling worker, then either records how many there are or 
+		 * writes them to the row of a.
+		 */
+		void count(int a) {
+			int[][] arrays = scratch.get();
+			if (arrays == null) {
+				arrays = new int[][] {new int[n], new int[n]};
+				scratch.set(arrays);
+			}
+			int[] shared = arrays[0];  // pairs of listings with each character
+			int[] touched = arrays[1]; // characters with shared > 0
+			int found = 0;
+			for (int i = charStart[a]; i < charStart[a + 1]; i++) {
+				int book = charBooks[i];
+				int times = charTimes[i];
+				for (int j = bookStart[book]; j < bookStart[book + 1]; j++) {
+					int c = bookChars[j];
+					int add = c == a ? times * (times - 1) : times * bookTimes[j];
+					if (add == 0)
+						continue;
+					if (shared[c] == 0)
+						touched[found++] = c;
+					shared[c] += add;
+				}
+			}
+			if (partners == null) {
+				start[a + 1] = found;
+			} else {
+				int row = start[a];
+				for (int k = 0; k < found; k++) {
+					partners[row + k] = touched[k];
+					counts[row + k] = shared[touched[k]];
+				}
+			}
+			for (int k = 0; k < found; k++)
+				shared[touched[k]] = 0;
+		}
+	}
+	
+	/**
+	 * Counts the rows of the characters lo to hi, splitting them in halves.
+	 */
+	private static final class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final Rows rows;
+		private final int lo;
+		private final int hi;
+		
+		RowTask(Rows rows, int lo, int hi) {
+			this.rows = rows;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected void compute() {
+			if (hi - lo <= 1 || rows.charStart[hi] - rows.charStart[lo] <= LISTINGS_PER_TASK) {
+				for (int a = lo; a < hi; a++)
+					rows.count(a);
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new RowTask(rows, lo, mid), new RowTask(rows, mid, hi));
+		}
+	}
+	
+	/**
+	 * Copies the pairs of the characters lo to hi into their maps, 
+	 * splitting them in halves.
+	 */
+	private static final class Maps extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final String[] characters;
+		private final List<HashMap<String, Integer>> maps;
+		private final int[] start;
+		private final int[] partners;
+		private final int[] pairCounts;
+		private final int lo;
+		private final int hi;
+		
+		Maps(String[] characters, List<HashMap<String, Integer>> maps, 
+				int[] start, int[] partners, int[] pairCounts, int lo, int hi) {
+			this.characters = characters;
+			this.maps = maps;
+			this.start = start;
+			this.partners = partners;
+			this.pairCounts = pairCounts;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		@Override
+		protected void compute() {
+			if (hi - lo <= 1 || start[hi] - start[lo] <= PAIRS_PER_TASK) {
+				for (int id = lo; id < hi; id++) {
+					HashMap<String, Integer> map = maps.get(id);
+					for (int i = start[id]; i < start[id + 1]; i++)
+						addCount(map, characters[partners[i]], pairCounts[i]);
+				}
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new Maps(characters, maps, start, partners, pairCounts, lo, mid), 
+					new Maps(characters, maps, start, partners, pairCounts, mid, hi));
+		}
 	}
 }
@@ -1,7 +1,11 @@
 package hw7;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
 import hw5.*;
+import hw7.MarvelParser2.MalformedDataException;
 /**
  * This class contains a method to build graph using data 
  * from specified file, and a method to find the 
@@ -23,35 +27,138 @@ public class MarvelPaths2 {
 	 * @throws MalformedDataException if the file is not well-formed:
 	 *          each line contains exactly two tokens separated by a tab,
 	 *          or else starting with a # symbol to indicate a comment line.
+	 * @throws IOException if the file cannot be read
 	 */
 	public static DirGraph<String, Double> makeWeightedGraph(String filename) throws Exception {
-		DirGraph<String, Double> network = new DirGraph<String, Double>();
+		return weightedGraph(MarvelParser2.parseCounts(filename, ForkJoinPool.commonPool()));
+	}
+	
+	/**
+	 * Returns the social network of the characters of counted, with the 
+	 * edges makeWeightedGraph gives it.
+	 */
+	static DirGraph<String, Double> weightedGraph(MarvelParser2.Cooccurrences counted) {
+		String[] characters = counted.characters;
 		
-		Map<String, HashMap<String, Integer>> charCount = new HashMap<String, HashMap<String, Integer>>();
-		MarvelParser2.parseData(filename, charCount);
-		// adds all nodes to the graph
-		for (String character : charCount.keySet()) {
+		DirGraph.Builder<String, Double> network = 
+				new DirGraph.Builder<String, Double>(characters.length, counted.partners.length);
+		for (String character : characters)
 			network.addNode(character);
-		}
 		
-		// add weighted edges of nodes to the graph, 
-		// where the weight of the edge between two characters 
-		// is the inverse of how many comic books two 
-		// characters are in together
-		for (String char1 : charCount.keySet()) {
-			HashMap<String, Integer> count = charCount.get(char1);
-			for (String char2 : count.keySet()) {
-				int num = count.get(char2);
-				network.addEdge(char1, char2, 1.0 / num);
-				network.addEdge(char1, char2, 1.0 / num);
+		// the weight of the edge between two characters is the inverse 
+		// of how many comic books two characters are in together; each 
+		// pair is listed from both characters, so it is taken from the 
+		// smaller id and its edges in both directions share one weight
+		for (int a = 0; a < characters.length; a++) {
+			for (int i = counted.start[a]; i < counted.start[a + 1]; i++) {
+				int b = counted.partners[i];
+				if (b < a)
+					continue;
+				Double weight = 1.0 / counted.counts[i];
+				network.addEdge(characters[a], characters[b], weight);
+				if (a != b)
+					network.addEdge(characters[b], characters[a], weight);
 			}
 		}
 		
-		return network;
+		return network.build();
+	}
+	
+	/**
+	 * Reads the input dataset as makeWeightedGraph does and returns the 
+	 * same social network as an immutable CsrGraph, built straight from 
+	 * the counts of the pairs of characters: the partner ids the parser 
+	 * counted become the edge targets of the graph, each count is 
+	 * replaced by its weight, and no map of counts or DirGraph is made. 
+	 * The graph is its own transpose, so a search that walks in-edges 
+	 * reads the same arrays rather than a reversed copy; each pair of 
+	 * characters still has an edge, and a weight, in each direction.
+	 * <p>
+	 * The out-edges of each character are in the order 
+	 * DirGraph.getOutwardEdgesOf returns them, so the graph has the same 
+	 * edges, in the same order, as CsrGraph.freeze(makeWeightedGraph(filename)); 
+	 * only the ids of the characters may differ.
+	 * 
+	 * @requires filename is a valid file path
+	 * @param filename the file that will be read
+	 * @return graph of the social network between characters.
+	 * @throws MalformedDataException if the file is not well-formed:
+	 *          each line contains exactly two tokens separated by a tab,
+	 *          or else starting with a # symbol to indicate a comment line.
+	 * @throws IOException if the file cannot be read
+	 */
+	public static CsrGraph<String> makeCompactGraph(String filename) 
+			throws IOException, MalformedDataException {
+		MarvelParser2.Cooccurrences counted = MarvelParser2.parseCounts(filename, ForkJoinPool.commonPool());
+		String[] characters = counted.characters;
+		int[] start = counted.start;
+		int[] targets = counted.partners;
+		int[] counts = counted.counts;
+		double[] weights = new double[targets.length];
+		
+		// rank the characters as LabEdge breaks ties between destinations: 
+		// by hash code, with the id below it, and then by name
+		int n = characters.length;
+		long[] byHash = new long[n];
+		for (int c = 0; c < n; c++)
+			byHash[c] = (long) characters[c].hashCode() << 32 | c;
+		Arrays.sort(byHash);
+		int[] ofRank = new int[n];
+		for (int r = 0; r < n; r++)
+			ofRank[r] = (int) byHash[r];
+		for (int r = 0; r < n; ) {
+			int end = r + 1;
+			while (end < n && byHash[end] >> 32 == byHash[r] >> 32)
+				end++;
+			sortByName(ofRank, r, end, characters);
+			r = end;
+		}
+		int[] rank = new int[n];
+		for (int r = 0; r < n; r++)
+			rank[ofRank[r]] = r;
+		
+		// sort each row as LabEdge orders edges: by weight, which is by 
+		// count from the most books shared down, and then by the rank of 
+		// the destination; both fit in one long, and the destination and 
+		// count are read back from it
+		long[] keys = new long[0];
+		for (int a = 0; a < n; a++) {
+			int from = start[a];
+			int d = start[a + 1] - from;
+			if (keys.length < d)
+				keys = new long[Math.max(d, 2 * keys.length)];
+			for (int i = 0; i < d; i++)
+				keys[i] = (long) (Integer.MAX_VALUE - counts[from + i]) << 32 | rank[targets[from + i]];
+			Arrays.sort(keys, 0, d);
+			for (int i = 0; i < d; i++) {
+				targets[from + i] = ofRank[(int) keys[i]];
+				weights[from + i] = 1.0 / (Integer.MAX_VALUE - (int) (keys[i] >>> 32));
+			}
+		}
+		return CsrGraph.symmetric(Arrays.asList(characters), start, targets, weights);
+	}
+	
+	/**
+	 * Sorts ids[from, to) by the names of their characters. The range
+	 * holds characters whose hash codes collide, so it is short.
+	 */
+	private static void sortByName(int[] ids, int from, int to, String[] characters) {
+		for (int i = from + 1; i < to; i++) {
+			int id = ids[i];
+			int j = i;
+			while (j > from && characters[ids[j - 1]].compareTo(characters[id]) > 0) {
+				ids[j] = ids[j - 1];
+				j--;
+			}
+			ids[j] = id;
+		}
 	}
 	
 	/**
 	 * Finds the minimum-cost path from one character to another character.
+	 * graph may be a DirGraph or any read-only snapshot of one, such as 
+	 * the CsrGraph returned by DirGraph.toCsr or a MappedCsrGraph, which 
+	 * is searched in place in its mapped file.
 	 * 
 	 * @param graph the graph used to find shortest path from origin to dest
 	 * @param origin a character as origin
@@ -63,7 +170,156 @@ public class MarvelPaths2 {
 	 * not in the graph
 	 */
 	public static <T> /*@Nullable*/ List<LabEdge<T, Double>> minimumCostPath(
-			DirGraph<T, Double> graph, T origin, T dest) {
+			LabeledGraph<T, Double> graph, T origin, T dest) {
+		checkQuery(graph, origin, dest);
+		
+		// Dijkstra's algorithm keeping one distance and one predecessor
+		// per reached node; the path is only built once dest is settled
+		return DijkstraSearch.minimumCostPath(graph, origin, dest);
+	}
+	
+	/**
+	 * Finds the minimum-cost path from one node to another with A* search,
+	 * guided by an estimate of the remaining cost.
+	 * 
+	 * @param graph the graph used to find shortest path from origin to dest
+	 * @param origin a node as origin
+	 * @param dest a node as destination
+	 * @param heuristic consistent lower bound on the cost between two nodes
+	 * @requires graph != null && start != null && end != null && 
+	 * heuristic != null
+	 * @return the minimum-cost path from start to end, or null if 
+	 * no path exists from start to end
+	 * @throws IllegalArgumentException if either start or end is 
+	 * not in the graph
+	 */
+	public static <T> /*@Nullable*/ List<LabEdge<T, Double>> minimumCostPath(
+			LabeledGraph<T, Double> graph, T origin, T dest, Heuristic<T> heuristic) {
+		checkQuery(graph, origin, dest);
+		if (heuristic == null)
+			throw new IllegalArgumentException("heuristic cannot be null.");
+		
+		return DijkstraSearch.minimumCostPath(graph, origin, dest, heuristic);
+	}
+	
+	/**
+	 * Finds the minimum-cost path from one node to another with the given 
+	 * search algorithm. A_STAR needs a heuristic and CONTRACTION_HIERARCHY 
+	 * needs a preprocessed graph, so neither is accepted here.
+	 * 
+	 * @param graph the graph used to find shortest path from origin to dest
+	 * @param origin a node as origin
+	 * @param dest a node as destination
+	 * @param mode DIJKSTRA or BIDIRECTIONAL
+	 * @requires graph != null && start != null && end != null && 
+	 * mode != null
+	 * @return the minimum-cost path from start to end, or null if 
+	 * no path exists from start to end
+	 * @throws IllegalArgumentException if either start or end is 
+	 * not in the graph, or if mode needs a heuristic or preprocessing
+	 */
+	public static <T> /*@Nullable*/ List<LabEdge<T, Double>> minimumCostPath(
+			LabeledGraph<T, Double> graph, T origin, T dest, SearchMode mode) {
+		checkQuery(graph, origin, dest);
+		if (mode == null)
+			throw new IllegalArgumentException("search mode cannot be null.");
+		
+		switch (mode) {
+		case DIJKSTRA:
+			return DijkstraSearch.minimumCostPath(graph, origin, dest);
+		case BIDIRECTIONAL:
+			return BidirectionalSearch.minimumCostPath(graph, origin, dest);
+		case A_STAR:
+			throw new IllegalArgumentException("search mode " + mode + 
+					" needs a heuristic.");
+		default:
+			throw new IllegalArgumentException("search mode " + mode + 
+					" needs a preprocessed graph.");
+		}
+	}
+	
+	/**
+	 * Finds the minimum cost from every source to every target, running 
+	 * one search per source in parallel. Each search stops once it has 
+	 * settled every target. A graph that is not an IndexedGraph is first 
+	 * frozen into a CsrGraph.
+	 * 
+	 * @param graph the graph used to find the costs
+	 * @param sources nodes as origins
+	 * @param targets nodes as destinations
+	 * @requires graph != null && sources != null && targets != null, 
+	 * graph is a DirGraph or an IndexedGraph, and no label in graph is 
+	 * negative
+	 * @return table whose entry [i][j] is the cost of the minimum-cost 
+	 * path from sources.get(i) to targets.get(j), or infinity if no 
+	 * such path exists
+	 * @throws IllegalArgumentException if a source or target is not in 
+	 * the graph
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> double[][] distanceTable(LabeledGraph<T, Double> graph, 
+			List<T> sources, List<T> targets) {
+		if (graph == null)
+			throw new IllegalArgumentException("graph cannot be null.");
+		
+		IndexedGraph<T> indexed;
+		if (graph instanceof IndexedGraph)
+			indexed = (IndexedGraph<T>) graph;
+		else if (graph instanceof DirGraph)
+			indexed = CsrGraph.freeze((DirGraph<T, Double>) graph);
+		else
+			throw new IllegalArgumentException("graph must be a DirGraph or an IndexedGraph.");
+		return DistanceTable.compute(indexed, sources, targets);
+	}
+	
+	/**
+	 * Finds the minimum-cost paths from origin to every node reachable 
+	 * from it. The returned tree answers the cost of and path to any 
+	 * node without searching again.
+	 * 
+	 * @param graph the graph used to find shortest paths from origin
+	 * @param origin a node as origin
+	 * @requires graph != null && origin != null and no label in graph 
+	 * is negative
+	 * @return the tree of minimum-cost paths from origin
+	 * @throws IllegalArgumentException if origin is not in the graph
+	 */
+	public static <T> ShortestPathTree<T> shortestPathTree(
+			LabeledGraph<T, Double> graph, T origin) {
+		return shortestPathTree(graph, origin, Double.POSITIVE_INFINITY);
+	}
+	
+	/**
+	 * Finds the minimum-cost paths from origin to every node whose path 
+	 * costs at most radius. The search stops once the next node is 
+	 * farther than radius, so a small radius explores a small part of 
+	 * the graph.
+	 * 
+	 * @param graph the graph used to find shortest paths from origin
+	 * @param origin a node as origin
+	 * @param radius largest cost of a path in the tree
+	 * @requires graph != null && origin != null and no label in graph 
+	 * is negative
+	 * @return the tree of minimum-cost paths from origin to the nodes 
+	 * within radius of it
+	 * @throws IllegalArgumentException if origin is not in the graph, 
+	 * or if radius is negative or NaN
+	 */
+	public static <T> ShortestPathTree<T> shortestPathTree(
+			LabeledGraph<T, Double> graph, T origin, double radius) {
+		checkQuery(graph, origin, origin);
+		if (!(radius >= 0.0))
+			throw new IllegalArgumentException("radius must be non-negative.");
+		return DijkstraSearch.shortestPathTree(graph, origin, radius);
+	}
+	
+	/**
+	 * Checks the arguments of a path query.
+	 * 
+	 * @throws IllegalArgumentException if graph, origin or dest is null, 
+	 * or if origin or dest is not in graph
+	 */
+	private static <T> void checkQuery(LabeledGraph<T, Double> graph, T origin, T dest) {
 		if (graph == null)
 			throw new IllegalArgumentException("graph cannot be null.");
 		
@@ -77,71 +333,5 @@ public class MarvelPaths2 {
 		if (!(graph.containsNode(dest)))
 			throw new IllegalArgumentException("Characters " + dest + 
 					"is not in the graph.");
-		
-		// Each element in active is a path from start to a given node.
-		// A path's "priority" in the queue is the total cost of that path.
-		// Create the priority queue with specified comparator 
-		// to order paths by their total costs.
-		PriorityQueue<ArrayList<LabEdge<T, Double>>> active = 
-				new PriorityQueue<ArrayList<LabEdge<T, Double>>>(20, 
-						new Comparator<ArrayList<LabEdge<T, Double>>>() {
-							public int compare(ArrayList<LabEdge<T, Double>> path1, 
-											   ArrayList<LabEdge<T, Double>> path2) {
-								LabEdge<T, Double> char1 = path1.get(path1.size() - 1);
-								LabEdge<T, Double> char2 = path2.get(path2.size() - 1);
-								if (!(char1.getLabel().equals(char2.getLabel())))
-									return char1.getLabel().compareTo(char2.getLabel());
-								
-								return path1.size() - path2.size();
-							}
-						});
-		
-		// permVisited contains nodes for which we know the minimum-cost path from start
-		Set<T> permVisited = new HashSet<T>();
-		
-		// the path from start to itself has zero cost since it contains no edge,
-		// so add the edge with zero cost to active
-		ArrayList<LabEdge<T, Double>> start = new ArrayList<LabEdge<T, Double>>();
-		start.add(new LabEdge<T, Double>(origin, 0.0));
-		active.add(start);
-		
-		while (!active.isEmpty()) {
-			// minPath is the lowest-cost path in active and 
-			// is the minimum-cost path for some node
-			ArrayList<LabEdge<T, Double>> minPath = active.poll();
-			
-			// get the latest updated shortest path from origin to current node
-			LabEdge<T, Double> endOfMinPath = minPath.get(minPath.size() - 1);
-			T minDest = endOfMinPath.getDest();
-			double minCost = endOfMinPath.getLabel();
-			
-			// return minPath if the destination of minPath 
-			// is equal to end passed in by client
-			if (minDest.equals(dest))
-				return minPath;
-			
-			// if the minimum-cost path from start to minDest is already visited, 
-			// skip this one and examine the next one in active
-			if (permVisited.contains(minDest))
-				continue;
-			
-			// If we don't know the minimum-cost path from start to child,
-            // examine the path we've just found
-			Set<LabEdge<T, Double>> children = graph.getOutwardEdgesOf(minDest);
-			for (LabEdge<T, Double> edge : children) {
-				if (!permVisited.contains(edge.getDest())) {
-					double newCost = minCost + edge.getLabel();
-					ArrayList<LabEdge<T, Double>> newPath = 
-							new ArrayList<LabEdge<T, Double>>(minPath); 
-					newPath.add(new LabEdge<T, Double>(edge.getDest(), newCost));
-					active.add(newPath);
-				}
-			}
-			
-			permVisited.add(minDest);
-		}
-		
-		// no path exists from start to end
-		return null;
 	}
 }
@@ -0,0 +1,241 @@
+package hw5;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <b>NodeDictionary</b> gives each distinct node a dense int id, in the
+ * order nodes are added, so that a graph can keep its edges and a search
+ * its per-node state in arrays indexed by id, and only look nodes up where
+ * they enter or leave.
+ * <p>
+ * Lookups probe an open-addressing table of ids, so unlike a
+ * HashMap&lt;T, Integer&gt; the dictionary makes no entry object and no
+ * boxed Integer per node. The hash code of every node is kept, spread and
+ * compared before equals is called, so a probe that lands on another node
+ * almost never calls equals.
+ *
+ * @param <T> type of the nodes
+ * @specfield nodes : List<T> // distinct nodes, indexed by id
+ */
+public final class NodeDictionary<T> {
+	// Rep invariant:
+	//     nodes[0 .. size) are non-null and distinct, and
+	//     hashes[id] == spread(nodes[id].hashCode()) for 0 <= id < size
+	//     table.length is a power of two greater than 2 * size
+	//     each id is stored as id + 1 in exactly one slot of table, found
+	//     by probing from hashes[id] without passing an empty slot; every
+	//     other slot is 0
+
+	// Abstract function:
+	//     AF(d) = the list nodes[0], .., nodes[size - 1]
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	private Object[] nodes; // node of each id, then unused slots
+	private int[] hashes;   // spread hash code of each id
+	private int[] table;    // id + 1 of the node in each slot, 0 if empty
+	private int size;       // number of nodes
+
+	/**
+	 * @effects Constructs an empty dictionary
+	 */
+	public NodeDictionary() {
+		this(0);
+	}
+
+	/**
+	 * @param expectedSize about how many nodes the dictionary will hold
+	 * @requires expectedSize >= 0
+	 * @effects Constructs an empty dictionary sized for expectedSize nodes
+	 */
+	public NodeDictionary(int expectedSize) {
+		if (expectedSize < 0)
+			throw new IllegalArgumentException("expected size cannot be negative");
+		int capacity = Math.max(8, expectedSize);
+		nodes = new Object[capacity];
+		hashes = new int[capacity];
+		table = new int[Integer.highestOneBit(2 * capacity) * 2];
+		checkRep();
+	}
+
+	/**
+	 * @param other the dictionary to be copied
+	 * @requires other != null
+	 * @effects Constructs a dictionary with the nodes and ids of other
+	 */
+	public NodeDictionary(NodeDictionary<? extends T> other) {
+		if (other == null)
+			throw new IllegalArgumentException("other cannot be null");
+		nodes = Arrays.copyOf(other.nodes, Math.max(8, other.size));
+		hashes = Arrays.copyOf(other.hashes, nodes.length);
+		table = other.table.clone();
+		size = other.size;
+		checkRep();
+	}
+
+	/**
+	 * returns the number of nodes
+	 * @return number of nodes, one more than the largest id
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * returns the id of a node
+	 * @param node the node to be looked up
+	 * @requires node != null
+	 * @return id of node, or -1 if node is not in the dictionary
+	 */
+	public int idOf(T node) {
+		if (node == null)
+			throw new IllegalArgumentException("null node cannot be passed as parameter");
+		int h = spread(node.hashCode());
+		int mask = table.length - 1;
+		for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (id < 0)
+				return -1;
+			if (hashes[id] == h && node.equals(nodes[id]))
+				return id;
+		}
+	}
+
+	/**
+	 * returns the id of a node, adding the node with the next id if it is
+	 * not in the dictionary
+	 * @param node the node to be looked up or added
+	 * @requires node != null
+	 * @modifies this
+	 * @effects adds node with id size() if it is not in the dictionary
+	 * @return id of node
+	 */
+	public int add(T node) {
+		if (node == null)
+			throw new IllegalArgumentException("null node cannot be passed as parameter");
+		int h = spread(node.hashCode());
+		int mask = table.length - 1;
+		int slot = h & mask;
+		for (; table[slot] != 0; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (hashes[id] == h && node.equals(nodes[id]))
+				return id;
+		}
+		int id = size;
+		if (id == nodes.length) {
+			nodes = Arrays.copyOf(nodes, id + (id >> 1));
+			hashes = Arrays.copyOf(hashes, nodes.length);
+		}
+		nodes[id] = node;
+		hashes[id] = h;
+		table[slot] = id + 1;
+		size++;
+		if (2 * size >= table.length)
+			rehash(table.length * 2);
+		checkRep();
+		return id;
+	}
+
+	/**
+	 * returns the node with the given id
+	 * @param id id of the node
+	 * @requires 0 <= id < size()
+	 * @return the node numbered id
+	 */
+	@SuppressWarnings("unchecked")
+	public T nodeAt(int id) {
+		if (id < 0 || id >= size)
+			throw new IndexOutOfBoundsException("no node with id " + id);
+		return (T) nodes[id];
+	}
+
+	/**
+	 * returns a read-only view of the nodes, iterating in id order
+	 * @return unmodifiable view of the nodes that reflects later additions
+	 */
+	public Set<T> asSet() {
+		return new AbstractSet<T>() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public boolean contains(Object o) {
+				return o != null && idOf((T) o) >= 0;
+			}
+
+			@Override
+			public Iterator<T> iterator() {
+				return new Iterator<T>() {
+					private int next = 0; // id of the next node
+
+					public boolean hasNext() {
+						return next < size;
+					}
+
+					public T next() {
+						if (next >= size)
+							throw new NoSuchElementException();
+						return nodeAt(next++);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Spreads the bits of a hash code over the whole int, so that hash
+	 * codes that differ only in high bits land in different slots.
+	 */
+	private static int spread(int h) {
+		h *= 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Moves every id into a new table of the given length.
+	 */
+	private void rehash(int length) {
+		int[] bigger = new int[length];
+		int mask = length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while (bigger[slot] != 0)
+				slot = (slot + 1) & mask;
+			bigger[slot] = id + 1;
+		}
+		table = bigger;
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			if (Integer.bitCount(table.length) != 1 || table.length <= 2 * size)
+				throw new RuntimeException("table has the wrong length");
+			int used = 0;
+			for (int slot : table) {
+				if (slot != 0)
+					used++;
+			}
+			if (used != size)
+				throw new RuntimeException("table holds " + used + " ids, not " + size);
+			for (int id = 0; id < size; id++) {
+				if (nodes[id] == null || hashes[id] != spread(nodes[id].hashCode()))
+					throw new RuntimeException("node " + id + " is null or its hash is stale");
+				@SuppressWarnings("unchecked")
+				T node = (T) nodes[id];
+				if (idOf(node) != id)
+					throw new RuntimeException("node " + id + " is not found at its id");
+			}
+		}
+	}
+}
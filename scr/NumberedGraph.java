@@ -0,0 +1,46 @@
+package hw5;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * <b>NumberedGraph</b> is a LabeledGraph that gives its nodes dense int ids
+ * 0 .. nodeCount() - 1 as they are added, and can walk out-edges by id.
+ * Unlike an IndexedGraph it may still change, so its edges are not
+ * numbered; a search keeps its state by node id and translates between
+ * ids and nodes only at its start and end.
+ * @param <T> type of the nodes of the graph
+ * @param <L> type of the edge labels
+ */
+public interface NumberedGraph<T, L extends Comparable<L>> extends LabeledGraph<T, L> {
+
+	/**
+	 * returns the number of nodes in the graph
+	 * @return number of nodes, one more than the largest id
+	 */
+	int nodeCount();
+
+	/**
+	 * returns the id of a node
+	 * @param node the node to be looked up
+	 * @requires node != null
+	 * @return id of node, or -1 if node is not in the graph
+	 */
+	int idOf(T node);
+
+	/**
+	 * returns the node with the given id
+	 * @param id id of the node
+	 * @requires 0 <= id < nodeCount()
+	 * @return the node numbered id
+	 */
+	T nodeAt(int id);
+
+	/**
+	 * returns a new reusable cursor over outgoing edges that names nodes
+	 * by id and reports weights as primitive doubles
+	 * @param weightOf converts an edge label to its weight
+	 * @requires weightOf != null
+	 * @return a new cursor, positioned on no node
+	 */
+	IdEdgeCursor newIdEdgeCursor(ToDoubleFunction<? super L> weightOf);
+}
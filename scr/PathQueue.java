@@ -0,0 +1,257 @@
+package hw7;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <b>PathQueue</b> is a mutable binary min-heap of the ends of candidate
+ * paths: each entry is the id of the node a path reaches, the cost of
+ * the path, the key it is ordered by, its number of edges and the id of
+ * the node its last edge comes from.
+ * <p>
+ * Entries are ordered by key and then by number of edges, both
+ * ascending, and an id may be in the queue any number of times. The heap
+ * is laid out and sifted exactly as java.util.PriorityQueue lays out and
+ * sifts its elements, so entries that are equal in key and edges leave
+ * the queue in the order a PriorityQueue offered the same entries in the
+ * same order would return them. That keeps the paths of a search that
+ * queues its entries here the same as those of a search that queues
+ * whole paths in a PriorityQueue, down to exact ties.
+ *
+ * @specfield entries : List<(id, cost, key, hops, pred)> // candidate path ends
+ */
+public class PathQueue {
+	// Rep invariant:
+	//     0 <= size <= id.length == cost.length == key.length
+	//                             == hops.length == pred.length
+	//     for 0 < i < size, entry (i - 1) / 2 is not greater than entry i
+
+	// Abstract function:
+	//     AF(this) = entries such that for 0 <= i < size
+	//                (id[i], cost[i], key[i], hops[i], pred[i]) is in entries
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	private int[] id;      // node each entry reaches, laid out as a binary heap
+	private double[] cost; // cost of the path of each entry
+	private double[] key;  // primary key of each entry
+	private int[] hops;    // number of edges of each entry, its secondary key
+	private int[] pred;    // node the last edge of each entry comes from
+	private int size;      // number of entries in the queue
+
+	/**
+	 * Constructs an empty queue.
+	 *
+	 * @param capacity expected number of entries
+	 * @requires capacity >= 0
+	 */
+	public PathQueue(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity cannot be negative: " + capacity);
+		int cap = Math.max(capacity, 16);
+		id = new int[cap];
+		cost = new double[cap];
+		key = new double[cap];
+		hops = new int[cap];
+		pred = new int[cap];
+		size = 0;
+		checkRep();
+	}
+
+	/**
+	 * Returns true if the queue has no entries.
+	 *
+	 * @return true if the queue has no entries
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of entries in the queue.
+	 *
+	 * @return number of entries in the queue
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds an entry to the queue, even if its node already has one.
+	 *
+	 * @param node id of the node the path reaches
+	 * @param pathCost cost of the path
+	 * @param pathKey key the entry is ordered by
+	 * @param edges number of edges of the path
+	 * @param from id of the node the last edge of the path comes from
+	 * @modifies this
+	 * @effects adds (node, pathCost, pathKey, edges, from) to entries
+	 */
+	public void offer(int node, double pathCost, double pathKey, int edges, int from) {
+		if (size == id.length) {
+			int cap = size * 2;
+			id = Arrays.copyOf(id, cap);
+			cost = Arrays.copyOf(cost, cap);
+			key = Arrays.copyOf(key, cap);
+			hops = Arrays.copyOf(hops, cap);
+			pred = Arrays.copyOf(pred, cap);
+		}
+		// sift the new entry up from the end, moving parents into the hole
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (compare(pathKey, edges, key[parent], hops[parent]) >= 0)
+				break;
+			move(parent, i);
+			i = parent;
+		}
+		set(i, node, pathCost, pathKey, edges, from);
+		checkRep();
+	}
+
+	/**
+	 * Returns the node of the smallest entry.
+	 *
+	 * @throws NoSuchElementException if the queue is empty
+	 * @return id of the node the smallest entry reaches
+	 */
+	public int minId() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return id[0];
+	}
+
+	/**
+	 * Returns the cost of the smallest entry.
+	 *
+	 * @throws NoSuchElementException if the queue is empty
+	 * @return cost of the path of the smallest entry
+	 */
+	public double minCost() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return cost[0];
+	}
+
+	/**
+	 * Returns the key of the smallest entry.
+	 *
+	 * @throws NoSuchElementException if the queue is empty
+	 * @return the smallest key in the queue
+	 */
+	public double minKey() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return key[0];
+	}
+
+	/**
+	 * Returns the number of edges of the smallest entry.
+	 *
+	 * @throws NoSuchElementException if the queue is empty
+	 * @return number of edges of the path of the smallest entry
+	 */
+	public int minHops() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return hops[0];
+	}
+
+	/**
+	 * Returns the node the last edge of the smallest entry comes from.
+	 *
+	 * @throws NoSuchElementException if the queue is empty
+	 * @return id of the predecessor in the smallest entry
+	 */
+	public int minPred() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		return pred[0];
+	}
+
+	/**
+	 * Removes the smallest entry.
+	 *
+	 * @modifies this
+	 * @effects removes the smallest entry from entries
+	 * @throws NoSuchElementException if the queue is empty
+	 */
+	public void removeMin() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		int last = --size;
+		if (last == 0)
+			return;
+		// sift the last entry down from the root, moving children into
+		// the hole
+		int lastId = id[last];
+		double lastCost = cost[last];
+		double lastKey = key[last];
+		int lastHops = hops[last];
+		int lastPred = pred[last];
+		int i = 0;
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && compare(key[child], hops[child], key[right], hops[right]) > 0)
+				child = right;
+			if (compare(lastKey, lastHops, key[child], hops[child]) <= 0)
+				break;
+			move(child, i);
+			i = child;
+		}
+		set(i, lastId, lastCost, lastKey, lastHops, lastPred);
+		checkRep();
+	}
+
+	/**
+	 * Removes every entry from the queue.
+	 *
+	 * @modifies this
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Copies the entry at slot from to slot to.
+	 */
+	private void move(int from, int to) {
+		set(to, id[from], cost[from], key[from], hops[from], pred[from]);
+	}
+
+	private void set(int i, int node, double pathCost, double pathKey, int edges, int from) {
+		id[i] = node;
+		cost[i] = pathCost;
+		key[i] = pathKey;
+		hops[i] = edges;
+		pred[i] = from;
+	}
+
+	/**
+	 * Orders (k1, h1) and (k2, h2) by key and then by number of edges.
+	 */
+	private static int compare(double k1, int h1, double k2, int h2) {
+		int c = Double.compare(k1, k2);
+		if (c != 0)
+			return c;
+		return Integer.compare(h1, h2);
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			if (size < 0 || size > id.length)
+				throw new RuntimeException("size out of range: " + size);
+			for (int i = 1; i < size; i++) {
+				int parent = (i - 1) / 2;
+				if (compare(key[parent], hops[parent], key[i], hops[i]) > 0)
+					throw new RuntimeException("heap order violated at " + i);
+			}
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package hw7;
+
+/**
+ * SearchMode selects the algorithm a point-to-point route query runs.
+ * Every mode returns a minimum-cost path; they differ in how much of the
+ * graph they explore to find it.
+ */
+public enum SearchMode {
+	/** Dijkstra's algorithm, growing one search ball from the origin. */
+	DIJKSTRA,
+
+	/**
+	 * A* search, guided towards the destination by a Heuristic; with a
+	 * LandmarkHeuristic this is ALT search, which needs no geometry.
+	 */
+	A_STAR,
+
+	/**
+	 * Dijkstra's algorithm run forward from the origin and backward from
+	 * the destination at the same time, meeting in the middle.
+	 */
+	BIDIRECTIONAL,
+
+	/**
+	 * An upward search from both ends of a ContractionHierarchy built
+	 * from the graph in advance.
+	 */
+	CONTRACTION_HIERARCHY
+}
@@ -0,0 +1,250 @@
+package hw7;
+
+import hw5.LabEdge;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * ShortestPathTree is an immutable record of the minimum-cost paths from
+ * one origin to every node a search settled, optionally only those within
+ * a radius of the origin.
+ * <p>
+ * The settled nodes are numbered in the order they were settled, which is
+ * in order of cost from the origin, so index 0 is the origin and index i
+ * is the i-th closest node. Costs, predecessors and edge counts are kept
+ * in primitive arrays over these indexes, so any number of distance and
+ * path lookups can be answered without searching again. A node is looked
+ * up by the id the search knew it by, from the graph itself where the
+ * graph numbers its nodes, and that id is found among the tree's own by
+ * binary search, so building a tree puts none of its nodes in a map.
+ * Paths are the
+ * ones MarvelPaths2.minimumCostPath returns: ordered by total cost and
+ * then by number of edges, with the cumulative cost as labels.
+ *
+ * @param <T> type of the nodes of the graph
+ * @specfield origin : T // the node every path starts from
+ * @specfield radius : double // largest cost of a path in the tree
+ * @specfield reached : List<T> // nodes within radius, closest first
+ */
+public final class ShortestPathTree<T> {
+	// Rep invariant:
+	//     nodes, byId, idOf, dist, pred, hops != null
+	//     nodes, byId, dist, pred and hops have the same length n > 0
+	//     byId holds (id << 32 | i) for 0 <= i < n, where id is the search
+	//     id of nodes[i], sorted ascending and with no id twice
+	//     pred[0] == -1, and 0 <= pred[i] < i for 0 < i < n
+	//     dist is non-decreasing and dist[n - 1] <= radius
+
+	// Abstract function:
+	//     AF(this) = a tree such that origin = nodes[0], reached = nodes,
+	//                and the path to nodes[i] costs dist[i], has hops[i]
+	//                edges and ends with an edge from nodes[pred[i]]
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	private final Object[] nodes;  // settled nodes, closest first
+	private final long[] byId;     // search id and index of each node, by id
+	private final ToIntFunction<? super T> idOf; // search id of a node, or -1
+	private final double[] dist;   // cost of the path to each index
+	private final int[] pred;      // index of the predecessor of each index
+	private final int[] hops;      // edge count of the path to each index
+	private final double radius;   // no path in the tree costs more
+
+	/**
+	 * Constructs a tree over the settled nodes, closest first.
+	 *
+	 * @param ids the non-negative id the search knew each node by
+	 * @param idOf returns the id the search knew a node by, or -1 if it
+	 *        has none
+	 * @requires the arrays satisfy the rep invariant, and ids has the
+	 *           length of nodes and no id twice
+	 */
+	ShortestPathTree(Object[] nodes, int[] ids, double[] dist, int[] pred, int[] hops,
+			double radius, ToIntFunction<? super T> idOf) {
+		this.nodes = nodes;
+		this.dist = dist;
+		this.pred = pred;
+		this.hops = hops;
+		this.radius = radius;
+		this.idOf = idOf;
+		this.byId = new long[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			byId[i] = (long) ids[i] << 32 | i;
+		Arrays.sort(byId);
+		checkRep();
+	}
+
+	/**
+	 * Returns the origin of the tree.
+	 *
+	 * @return the node every path starts from
+	 */
+	public T getOrigin() {
+		return nodeAt(0);
+	}
+
+	/**
+	 * Returns the radius of the tree.
+	 *
+	 * @return the largest cost a path in the tree may have, infinity if the
+	 *         tree spans every node reachable from the origin
+	 */
+	public double getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Returns the number of nodes in the tree.
+	 *
+	 * @return number of nodes within radius of the origin, including it
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns true if node is within radius of the origin.
+	 *
+	 * @param node the node to look for
+	 * @return true if the tree has a path to node
+	 */
+	public boolean contains(T node) {
+		return indexOf(node) != -1;
+	}
+
+	/**
+	 * Returns the i-th closest node to the origin.
+	 *
+	 * @param i index of a node
+	 * @requires 0 <= i < size()
+	 * @return the node at index i; the origin for i = 0
+	 */
+	@SuppressWarnings("unchecked")
+	public T nodeAt(int i) {
+		return (T) nodes[i];
+	}
+
+	/**
+	 * Returns the cost of the path to the i-th closest node.
+	 *
+	 * @param i index of a node
+	 * @requires 0 <= i < size()
+	 * @return cost of the minimum-cost path to nodeAt(i)
+	 */
+	public double distanceAt(int i) {
+		return dist[i];
+	}
+
+	/**
+	 * Returns the nodes of the tree, closest first.
+	 *
+	 * @return unmodifiable list of the nodes within radius of the origin
+	 */
+	public List<T> getNodes() {
+		return new AbstractList<T>() {
+			@Override
+			public T get(int i) {
+				return nodeAt(i);
+			}
+
+			@Override
+			public int size() {
+				return nodes.length;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cost of the minimum-cost path from the origin to node.
+	 *
+	 * @param node the node the path ends at
+	 * @return the cost of the path to node, or infinity if node is not
+	 *         within radius of the origin
+	 */
+	public double distanceTo(T node) {
+		int i = indexOf(node);
+		return i == -1 ? Double.POSITIVE_INFINITY : dist[i];
+	}
+
+	/**
+	 * Returns the minimum-cost path from the origin to node.
+	 *
+	 * @param node the node the path ends at
+	 * @return the minimum-cost path from the origin to node as a list of
+	 *         edges whose labels are the cumulative cost up to each node,
+	 *         starting with (origin, 0.0), or null if node is not within
+	 *         radius of the origin
+	 */
+	public /*@Nullable*/ List<LabEdge<T, Double>> pathTo(T node) {
+		int target = indexOf(node);
+		if (target == -1)
+			return null;
+		LabEdge<T, Double>[] path = newEdgeArray(hops[target] + 1);
+		for (int i = target; i != -1; i = pred[i])
+			path[hops[i]] = new LabEdge<T, Double>(nodeAt(i), dist[i]);
+		return new ArrayList<LabEdge<T, Double>>(Arrays.asList(path));
+	}
+
+	/**
+	 * Returns the index of node, or -1 if node is not in the tree. The id
+	 * found is checked against the node at its index, so that a graph
+	 * that renumbered its nodes after the search cannot map node to
+	 * another node's path.
+	 */
+	private int indexOf(T node) {
+		int id = idOf.applyAsInt(node);
+		if (id < 0)
+			return -1;
+		int lo = 0;
+		int hi = byId.length - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int midId = (int) (byId[mid] >>> 32);
+			if (midId < id)
+				lo = mid + 1;
+			else if (midId > id)
+				hi = mid - 1;
+			else {
+				int i = (int) byId[mid];
+				return nodes[i].equals(node) ? i : -1;
+			}
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> LabEdge<T, Double>[] newEdgeArray(int length) {
+		return (LabEdge<T, Double>[]) new LabEdge<?, ?>[length];
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			int n = nodes.length;
+			if (n == 0 || byId.length != n || dist.length != n || pred.length != n
+					|| hops.length != n)
+				throw new RuntimeException("arrays of the tree do not match");
+			for (int i = 1; i < n; i++) {
+				if ((byId[i - 1] >>> 32) >= (byId[i] >>> 32))
+					throw new RuntimeException("ids of the tree are not sorted at " + i);
+			}
+			if (pred[0] != -1)
+				throw new RuntimeException("origin has a predecessor");
+			for (int i = 1; i < n; i++) {
+				if (pred[i] < 0 || pred[i] >= i)
+					throw new RuntimeException("bad predecessor of index " + i);
+				if (dist[i] < dist[i - 1])
+					throw new RuntimeException("nodes are not closest first at " + i);
+			}
+			if (dist[n - 1] > radius)
+				throw new RuntimeException("node beyond the radius");
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package hw5;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * SortedEdgeArray is a mutable set of edges kept in one growable array,
+ * sorted by LabEdge.compareTo, so it iterates in the same order as a
+ * TreeSet of the same edges.
+ * <p>
+ * Lookups are binary searches, and an insertion or removal shifts the
+ * edges after it, which for the out-edges of one node is a short copy.
+ * The set takes one array slot per edge, where a TreeSet takes a tree
+ * node of about 40 bytes per edge plus two objects per set.
+ * <p>
+ * A numbered set also keeps the id of the destination of each edge next
+ * to it, so DirGraph can walk edges by id. Its edges are added with
+ * add(edge, target); the sets DirGraph hands out are not numbered.
+ *
+ * @param <T> type of the nodes of the graph
+ * @param <L> type of the edge labels
+ */
+final class SortedEdgeArray<T, L extends Comparable<L>> extends AbstractSet<LabEdge<T, L>> {
+	// Rep invariant:
+	//     edges != null, 0 <= size <= edges.length
+	//     edges[0 .. size) are non-null, sorted by LabEdge.compareTo and
+	//     no two of them compare as equal
+	//     targets is null, or targets.length == edges.length and
+	//     targets[i] is the id of the destination of edges[i]
+
+	// constant variable for checkRep
+	private static final boolean CHECK = false;
+
+	// shared by every empty set until it grows
+	private static final LabEdge<?, ?>[] EMPTY = new LabEdge<?, ?>[0];
+	private static final int[] NO_TARGETS = new int[0];
+
+	private LabEdge<T, L>[] edges; // sorted edges, then unused slots
+	private /*@Nullable*/ int[] targets; // destination id of each edge, null if not numbered
+	private int size;              // number of edges in the set
+	private int modCount;          // changes, to fail iterators fast
+
+	/**
+	 * Creates an empty set, numbered if numbered is true.
+	 */
+	@SuppressWarnings("unchecked")
+	SortedEdgeArray(boolean numbered) {
+		this.edges = (LabEdge<T, L>[]) EMPTY;
+		this.targets = numbered ? NO_TARGETS : null;
+	}
+
+	/**
+	 * Creates a set holding sorted, which must be sorted by
+	 * LabEdge.compareTo and have no two edges comparing as equal. The set
+	 * is numbered with targets, the destination id of each edge, unless
+	 * targets is null.
+	 */
+	@SuppressWarnings("unchecked")
+	SortedEdgeArray(List<LabEdge<T, L>> sorted, /*@Nullable*/ int[] targets) {
+		this.edges = sorted.toArray((LabEdge<T, L>[]) new LabEdge<?, ?>[sorted.size()]);
+		this.targets = targets;
+		this.size = edges.length;
+		checkRep();
+	}
+
+	/**
+	 * Creates a copy of other that is not numbered.
+	 */
+	SortedEdgeArray(SortedEdgeArray<T, L> other) {
+		this.edges = Arrays.copyOf(other.edges, other.size);
+		this.size = other.size;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean contains(Object o) {
+		return o instanceof LabEdge && indexOf((LabEdge<T, L>) o) >= 0;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException if the set is numbered, since
+	 *         the id of the destination of edge is not known
+	 */
+	@Override
+	public boolean add(LabEdge<T, L> edge) {
+		if (targets != null)
+			throw new UnsupportedOperationException("a numbered set needs the id of the destination");
+		return insert(edge, -1);
+	}
+
+	/**
+	 * Adds edge, whose destination has id target, to a numbered set.
+	 *
+	 * @return true if the set did not already have edge
+	 */
+	boolean add(LabEdge<T, L> edge, int target) {
+		if (targets == null)
+			throw new IllegalStateException("the set is not numbered");
+		return insert(edge, target);
+	}
+
+	/**
+	 * Returns the edge at index i, in sorted order.
+	 *
+	 * @requires 0 <= i < size()
+	 */
+	LabEdge<T, L> edgeAt(int i) {
+		return edges[i];
+	}
+
+	/**
+	 * Returns the id of the destination of the edge at index i.
+	 *
+	 * @requires the set is numbered and 0 <= i < size()
+	 */
+	int targetAt(int i) {
+		return targets[i];
+	}
+
+	/**
+	 * Returns true if the set keeps the destination id of each edge.
+	 */
+	boolean isNumbered() {
+		return targets != null;
+	}
+
+	private boolean insert(LabEdge<T, L> edge, int target) {
+		if (edge == null)
+			throw new IllegalArgumentException("edge cannot be null");
+		int i = indexOf(edge);
+		if (i >= 0)
+			return false;
+		i = -i - 1;
+		if (size == edges.length) {
+			edges = Arrays.copyOf(edges, size < 4 ? size + 1 : size + (size >> 1));
+			if (targets != null)
+				targets = Arrays.copyOf(targets, edges.length);
+		}
+		System.arraycopy(edges, i, edges, i + 1, size - i);
+		edges[i] = edge;
+		if (targets != null) {
+			System.arraycopy(targets, i, targets, i + 1, size - i);
+			targets[i] = target;
+		}
+		size++;
+		modCount++;
+		checkRep();
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean remove(Object o) {
+		if (!(o instanceof LabEdge))
+			return false;
+		int i = indexOf((LabEdge<T, L>) o);
+		if (i < 0)
+			return false;
+		removeAt(i);
+		return true;
+	}
+
+	@Override
+	public Iterator<LabEdge<T, L>> iterator() {
+		return new Iterator<LabEdge<T, L>>() {
+			private int next = 0;           // index of the next edge
+			private int last = -1;          // index of the edge last returned
+			private int expected = modCount; // changes seen by this iterator
+
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			public LabEdge<T, L> next() {
+				if (expected != modCount)
+					throw new ConcurrentModificationException();
+				if (next >= size)
+					throw new NoSuchElementException();
+				last = next++;
+				return edges[last];
+			}
+
+			public void remove() {
+				if (last < 0)
+					throw new IllegalStateException();
+				if (expected != modCount)
+					throw new ConcurrentModificationException();
+				removeAt(last);
+				next = last;
+				last = -1;
+				expected = modCount;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of array slots the set holds, used or not.
+	 *
+	 * @return length of the backing array
+	 */
+	int capacity() {
+		return edges.length;
+	}
+
+	/**
+	 * Returns the index of edge, or -(insertion point) - 1 if the set does
+	 * not have it.
+	 */
+	private int indexOf(LabEdge<T, L> edge) {
+		return Arrays.binarySearch(edges, 0, size, edge);
+	}
+
+	private void removeAt(int i) {
+		System.arraycopy(edges, i + 1, edges, i, size - i - 1);
+		if (targets != null)
+			System.arraycopy(targets, i + 1, targets, i, size - i - 1);
+		edges[--size] = null;
+		modCount++;
+		checkRep();
+	}
+
+	/**
+	 * Checks if representation invariant holds.
+	 */
+	private void checkRep() {
+		if (CHECK) {
+			if (size > edges.length)
+				throw new RuntimeException("size is larger than the array");
+			if (targets != null && targets.length != edges.length)
+				throw new RuntimeException("targets do not match the edges");
+			for (int i = 0; i < size; i++) {
+				if (edges[i] == null)
+					throw new RuntimeException("edge " + i + " is null");
+				if (i > 0 && edges[i - 1].compareTo(edges[i]) >= 0)
+					throw new RuntimeException("edges are not sorted at " + i);
+			}
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package hw8;
+
+import hw5.EdgeCursor;
+import hw5.LabeledGraph;
+import hw7.Heuristic;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * StraightLineHeuristic estimates the walking distance between two points
+ * on campus as a multiple of the straight-line distance between them.
+ * <p>
+ * Straight-line distance never exceeds the length of a path between two
+ * points only when every path segment is at least as long as the segment
+ * between its end points, in the same units. calibrate measures the
+ * largest scale for which that holds on a dataset, so the estimate stays
+ * consistent even when coordinates and distances are in different units.
+ *
+ * @specfield scale : double // distance units per unit of coordinates
+ */
+public class StraightLineHeuristic implements Heuristic<Coordinates> {
+	// Rep invariant:
+	//     scale > 0 and scale is finite
+
+	// Abstract function:
+	//     AF(this) = a heuristic h such that h.scale = this.scale
+
+	// relative margin taken off a calibrated scale to absorb rounding
+	private static final double MARGIN = 1e-9;
+
+	// reads a Double label as a distance
+	private static final ToDoubleFunction<Double> DISTANCE = new ToDoubleFunction<Double>() {
+		public double applyAsDouble(Double label) {
+			return label;
+		}
+	};
+
+	private final double scale; // distance units per unit of coordinates
+
+	/**
+	 * Constructs a heuristic estimating scale times the straight-line
+	 * distance.
+	 *
+	 * @param scale distance units per unit of coordinates
+	 * @requires scale > 0 and scale is finite
+	 */
+	public StraightLineHeuristic(double scale) {
+		if (!(scale > 0) || Double.isInfinite(scale))
+			throw new IllegalArgumentException("scale must be positive and finite: " + scale);
+		this.scale = scale;
+	}
+
+	/**
+	 * Returns the scale of this heuristic.
+	 *
+	 * @return distance units per unit of coordinates
+	 */
+	public double getScale() {
+		return scale;
+	}
+
+	@Override
+	public double estimate(Coordinates node, Coordinates dest) {
+		double dx = node.getX() - dest.getX();
+		double dy = node.getY() - dest.getY();
+		return scale * Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Returns true if this heuristic is consistent on paths, that is if no
+	 * edge is shorter than the estimate between its end points.
+	 *
+	 * @param paths a graph of campus paths
+	 * @requires paths != null
+	 * @return true if A* with this heuristic finds shortest routes on paths
+	 */
+	public boolean isConsistent(LabeledGraph<Coordinates, Double> paths) {
+		if (paths == null)
+			throw new IllegalArgumentException("paths cannot be null.");
+		EdgeCursor<Coordinates> edges = paths.newEdgeCursor(DISTANCE);
+		for (Coordinates origin : paths.getNodesView()) {
+			edges.reset(origin);
+			while (edges.next()) {
+				if (edges.weight() < estimate(origin, edges.dest()))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the heuristic with the largest scale that is consistent on
+	 * paths, or null if there is none: when some edge between two distinct
+	 * points has no positive length, or when no edge joins distinct points.
+	 *
+	 * @param paths a graph of campus paths
+	 * @requires paths != null
+	 * @return the best consistent heuristic for paths, or null if A* cannot
+	 *         be used on paths
+	 */
+	public static /*@Nullable*/ StraightLineHeuristic calibrate(
+			LabeledGraph<Coordinates, Double> paths) {
+		if (paths == null)
+			throw new IllegalArgumentException("paths cannot be null.");
+		double scale = Double.POSITIVE_INFINITY;
+		EdgeCursor<Coordinates> edges = paths.newEdgeCursor(DISTANCE);
+		for (Coordinates origin : paths.getNodesView()) {
+			edges.reset(origin);
+			while (edges.next()) {
+				Coordinates dest = edges.dest();
+				double dx = origin.getX() - dest.getX();
+				double dy = origin.getY() - dest.getY();
+				double straight = Math.sqrt(dx * dx + dy * dy);
+				if (straight > 0)
+					scale = Math.min(scale, edges.weight() / straight);
+			}
+		}
+		scale *= 1 - MARGIN;
+		if (!(scale > 0) || Double.isInfinite(scale))
+			return null;
+		return new StraightLineHeuristic(scale);
+	}
+}
@@ -0,0 +1,607 @@
+package hw5;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * <b>VersionedGraph</b> represents a directed, labeled graph whose edits
+ * are published in versions, so that a query reads one consistent version
+ * of the graph however long it runs.
+ * <p>
+ * Writers call addNode, addEdge and removeEdge, which change a pending
+ * version no reader can see, and then publish, which makes the pending
+ * version current in one step. A reader pins the current version and
+ * searches the returned Snapshot; it never sees part of a publish and
+ * never blocks a writer. Closing the snapshot releases the version.
+ * <p>
+ * Versions are persistent: every version keeps the edges of each node in
+ * a 32-way trie over dense node ids, whose entries hold immutable sorted
+ * edge arrays. An edit copies the edge arrays of the nodes it changes and
+ * the trie nodes on their paths, and shares the rest with the version it
+ * was made from, so publishing costs memory in proportion to the edit
+ * rather than to the graph. A version no longer current is referenced
+ * only by the snapshots pinning it, and is reclaimed by the garbage
+ * collector once the last of them is closed.
+ *
+ * @specfield nodes : Set<T> // nodes of the current version
+ * @specfield outEdges : Set<LabEdge<T, L> // Set of edges for each node in nodes
+ *  					// each edge containing label of type L, destination of type T
+ * @specfield version : long // number of the current version, 0 when empty
+ */
+public class VersionedGraph<T, L extends Comparable<L>> {
+	// Representative Invariant:
+	//	 ids, current, pending, pinned != null
+	//	 ids maps each node to its id, and ids is the same for every version
+	//	 a version has the nodes with ids below its entries.size, and the
+	//	 entry with id i is for the node that ids maps to i
+	//	 out and in of every entry are sorted by LabEdge.compareTo, have no
+	//	 two equal edges, and (o, l) is in the in-edges of d iff (d, l) is
+	//	 in the out-edges of o
+	//	 pending.number == current.number + 1
+	//	 pinned has exactly the versions other than current whose pins > 0
+
+	// Abstract Function
+	//	 AF(g) = a graph such that nodes and outEdges are those of
+	//	 		 current, version = current.number, and the edits since
+	//	 		 the last publish are those from current to pending
+
+	// constant variable used in checkRep
+	private final static boolean CHECK = false;
+
+	// node to id, shared by every version; only grows
+	private final ConcurrentHashMap<T, Integer> ids;
+
+	// version readers pin
+	private volatile Version<T, L> current;
+
+	// version writers change, published next
+	private Version<T, L> pending;
+
+	// superseded versions some snapshot still pins
+	private final Set<Version<T, L>> pinned;
+
+	/**
+	 * @effects Constructs a new versioned graph with no nodes, at version 0
+	 */
+	public VersionedGraph() {
+		ids = new ConcurrentHashMap<T, Integer>();
+		current = new Version<T, L>(Trie.EMPTY, 0);
+		pending = new Version<T, L>(Trie.EMPTY, 1);
+		pinned = Collections.newSetFromMap(new ConcurrentHashMap<Version<T, L>, Boolean>());
+	}
+
+	/**
+	 * adds node to the pending version, if it is not already there
+	 *
+	 * @param node The node to be added in the graph
+	 * @requires node != null
+	 * @modifies pending version
+	 * @effects adds node to the nodes of the next version
+	 * @return true if node was added, false if it is already in the
+	 * pending version
+	 */
+	public synchronized boolean addNode(T node) {
+		if(node == null) {
+			throw new IllegalArgumentException("null node cannot be passed as parameter");
+		}
+		if(pending.containsNode(ids, node)) {
+			return false;
+		}
+		int id = pending.entries.size;
+		ids.put(node, id);
+		pending = pending.with(pending.entries.append(new Entry<T, L>(node)));
+		checkRep();
+		return true;
+	}
+
+	/**
+	 * adds the edge from origin to dest with attribute label to the
+	 * pending version, if it is not already there
+	 *
+	 * @param origin The node which the edge originates from
+	 * @param dest The node which the edge lands on
+	 * @param label The attribute of the edge
+	 * @requires origin, dest, label != null
+	 * @modifies pending version
+	 * @effects adds the edge to the next version
+	 * @throws IllegalArgumentException if either origin or dest
+	 * is not in the pending version
+	 * @return true if edge was added, false if it is already in the
+	 * pending version
+	 */
+	public synchronized boolean addEdge(T origin, T dest, L label) {
+		return changeEdge(origin, dest, label, true);
+	}
+
+	/**
+	 * removes the edge from origin to dest with attribute label from the
+	 * pending version
+	 *
+	 * @param origin The node which the edge originates from
+	 * @param dest The node which the edge lands on
+	 * @param label The attribute of the edge
+	 * @requires origin, dest, label != null
+	 * @modifies pending version
+	 * @effects removes the edge from the next version
+	 * @throws IllegalArgumentException if either origin or dest
+	 * is not in the pending version
+	 * @return true if edge was removed, false if it is not in the
+	 * pending version
+	 */
+	public synchronized boolean removeEdge(T origin, T dest, L label) {
+		return changeEdge(origin, dest, label, false);
+	}
+
+	/**
+	 * Adds or removes the edge (origin, dest, label) in pending.
+	 */
+	private boolean changeEdge(T origin, T dest, L label, boolean add) {
+		if(origin == null || dest == null || label == null) {
+			throw new IllegalArgumentException("None of the parameters can be null");
+		}
+		int from = pending.idOf(ids, origin);
+		int to = pending.idOf(ids, dest);
+		Entry<T, L> fromEntry = pending.entryAt(from);
+		LabEdge<T, L> out = new LabEdge<T, L>(dest, label);
+		LabEdge<T, L>[] outEdges = add ? ConcurrentDirGraph.inserted(fromEntry.out, out)
+				: ConcurrentDirGraph.removed(fromEntry.out, out);
+		if(outEdges == null) {
+			return false;
+		}
+		Trie entries = pending.entries.set(from, new Entry<T, L>(origin, outEdges, fromEntry.in));
+
+		// read dest after origin is replaced, in case the edge is a loop
+		Entry<T, L> toEntry = entryIn(entries, to);
+		LabEdge<T, L> in = new LabEdge<T, L>(origin, label);
+		LabEdge<T, L>[] inEdges = add ? ConcurrentDirGraph.inserted(toEntry.in, in)
+				: ConcurrentDirGraph.removed(toEntry.in, in);
+		if(inEdges != null) {
+			entries = entries.set(to, new Entry<T, L>(dest, toEntry.out, inEdges));
+		}
+		pending = pending.with(entries);
+		checkRep();
+		return true;
+	}
+
+	/**
+	 * makes every edit since the last publish visible to new snapshots at
+	 * once; snapshots pinned before keep their version
+	 *
+	 * @modifies this
+	 * @effects the pending version becomes the current version
+	 * @return the number of the new current version
+	 */
+	public synchronized long publish() {
+		Version<T, L> old = current;
+		current = pending;
+		pending = new Version<T, L>(current.entries, current.number + 1);
+		if(old.pins.get() > 0) {
+			pinned.add(old);
+			// the last reader may have released old before it was added
+			if(old.pins.get() == 0) {
+				pinned.remove(old);
+			}
+		}
+		checkRep();
+		return current.number;
+	}
+
+	/**
+	 * pins the current version for reading
+	 *
+	 * @return a snapshot of the current version, which must be closed
+	 * once the query using it is done
+	 */
+	public Snapshot<T, L> pin() {
+		Version<T, L> version = current;
+		if(version.pins.incrementAndGet() == 1 && version != current) {
+			pinned.add(version);
+		}
+		return new Snapshot<T, L>(this, version);
+	}
+
+	/**
+	 * returns the number of the current version
+	 *
+	 * @return number of the version new snapshots pin, 0 before the
+	 * first publish
+	 */
+	public long getVersion() {
+		return current.number;
+	}
+
+	/**
+	 * returns the number of superseded versions still pinned by a
+	 * snapshot, which are the versions kept alive besides the current one
+	 *
+	 * @return number of old versions not yet released
+	 */
+	public int pinnedVersionCount() {
+		return pinned.size();
+	}
+
+	/**
+	 * Releases one pin of version.
+	 */
+	private void release(Version<T, L> version) {
+		if(version.pins.decrementAndGet() == 0) {
+			pinned.remove(version);
+			// a publish may have superseded version after the check above
+			if(version.pins.get() > 0 && version != current) {
+				pinned.add(version);
+			}
+		}
+	}
+
+	/**
+	 * Returns the entry with id in entries.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T, L extends Comparable<L>> Entry<T, L> entryIn(Trie entries, int id) {
+		return (Entry<T, L>) entries.get(id);
+	}
+
+	/**
+	 * <b>Snapshot</b> is a read-only view of one version of a
+	 * VersionedGraph. It does not change when later versions are
+	 * published, and can be read by any number of threads. Once closed
+	 * it may no longer be read.
+	 */
+	public static final class Snapshot<T, L extends Comparable<L>>
+			implements LabeledGraph<T, L>, AutoCloseable {
+		private final VersionedGraph<T, L> owner; // graph the version is of
+		private final Version<T, L> version;      // the pinned version
+		private final Set<T> nodesView;           // nodes of the version
+		private final AtomicInteger open = new AtomicInteger(1); // 0 once closed
+
+		private Snapshot(VersionedGraph<T, L> owner, Version<T, L> version) {
+			this.owner = owner;
+			this.version = version;
+			this.nodesView = new AbstractSet<T>() {
+				@Override
+				public Iterator<T> iterator() {
+					return new Iterator<T>() {
+						private int next = 0;
+
+						public boolean hasNext() {
+							return next < Snapshot.this.version.entries.size;
+						}
+
+						public T next() {
+							if(!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							return Snapshot.this.version.entryAt(next++).node;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return Snapshot.this.version.entries.size;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public boolean contains(Object o) {
+					return o != null && Snapshot.this.version.containsNode(
+							Snapshot.this.owner.ids, (T) o);
+				}
+			};
+		}
+
+		/**
+		 * returns the number of the pinned version
+		 *
+		 * @return number of the version this snapshot reads
+		 */
+		public long getVersion() {
+			return version.number;
+		}
+
+		/**
+		 * releases the pinned version; closing twice has no effect
+		 *
+		 * @modifies this
+		 * @effects this may no longer be read
+		 */
+		public void close() {
+			if(open.compareAndSet(1, 0)) {
+				owner.release(version);
+			}
+		}
+
+		public boolean containsNode(T node) {
+			check();
+			if(node == null) {
+				throw new IllegalArgumentException("null node cannot be passed as parameter");
+			}
+			return version.containsNode(owner.ids, node);
+		}
+
+		public Set<T> getNodes() {
+			check();
+			return new TreeSet<T>(nodesView);
+		}
+
+		public int size() {
+			check();
+			return version.entries.size;
+		}
+
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		public Set<LabEdge<T, L>> getOutwardEdgesOf(T node) {
+			return new TreeSet<LabEdge<T, L>>(getOutwardEdgesView(node));
+		}
+
+		public Set<T> getNodesView() {
+			check();
+			return nodesView;
+		}
+
+		public Set<LabEdge<T, L>> getOutwardEdgesView(T node) {
+			return new ConcurrentDirGraph.EdgeArraySet<T, L>(entryOf(node).out);
+		}
+
+		/**
+		 * returns a read-only view of the incoming edges of node, each
+		 * described as (origin, label)
+		 *
+		 * @param node The node of which the incoming edges are returned
+		 * @return unmodifiable view of the incoming edges of node
+		 * @requires node != null
+		 * @throws IllegalArgumentException if node is not in the version
+		 */
+		public Set<LabEdge<T, L>> getInwardEdgesView(T node) {
+			return new ConcurrentDirGraph.EdgeArraySet<T, L>(entryOf(node).in);
+		}
+
+		public void forEachOutEdge(T node, Consumer<? super LabEdge<T, L>> visitor) {
+			if(visitor == null) {
+				throw new IllegalArgumentException("visitor cannot be null");
+			}
+			for(LabEdge<T, L> edge : entryOf(node).out) {
+				visitor.accept(edge);
+			}
+		}
+
+		public EdgeCursor<T> newEdgeCursor(ToDoubleFunction<? super L> weightOf) {
+			return newCursor(weightOf, false);
+		}
+
+		public EdgeCursor<T> newInEdgeCursor(ToDoubleFunction<? super L> weightOf) {
+			return newCursor(weightOf, true);
+		}
+
+		private EdgeCursor<T> newCursor(final ToDoubleFunction<? super L> weightOf, final boolean inward) {
+			check();
+			if(weightOf == null) {
+				throw new IllegalArgumentException("weightOf cannot be null");
+			}
+			return new EdgeCursor<T>() {
+				private LabEdge<T, L>[] edges = null; // edges of the node
+				private int current = -1; // index of the edge the cursor is on
+
+				public void reset(T node) {
+					Entry<T, L> entry = entryOf(node);
+					edges = inward ? entry.in : entry.out;
+					current = -1;
+				}
+
+				public boolean next() {
+					if(edges == null || current + 1 >= edges.length) {
+						current = edges == null ? -1 : edges.length;
+						return false;
+					}
+					current++;
+					return true;
+				}
+
+				public T dest() {
+					return edge().dest;
+				}
+
+				public double weight() {
+					return weightOf.applyAsDouble(edge().label);
+				}
+
+				private LabEdge<T, L> edge() {
+					if(edges == null || current < 0 || current >= edges.length) {
+						throw new NoSuchElementException();
+					}
+					return edges[current];
+				}
+			};
+		}
+
+		/**
+		 * Returns the entry of node in the pinned version.
+		 *
+		 * @throws IllegalArgumentException if node is null or not in the version
+		 */
+		private Entry<T, L> entryOf(T node) {
+			check();
+			if(node == null) {
+				throw new IllegalArgumentException("null node cannot be passed as parameter");
+			}
+			return version.entryAt(version.idOf(owner.ids, node));
+		}
+
+		/**
+		 * Throws IllegalStateException if the snapshot is closed.
+		 */
+		private void check() {
+			if(open.get() == 0) {
+				throw new IllegalStateException("snapshot of version " + version.number + " is closed");
+			}
+		}
+	}
+
+	/**
+	 * One version of the graph: the entries of its nodes and the number
+	 * of snapshots pinning it.
+	 */
+	private static final class Version<T, L extends Comparable<L>> {
+		final Trie entries; // entry of each node, by id
+		final long number;  // position in the sequence of versions
+		final AtomicInteger pins = new AtomicInteger(); // open snapshots
+
+		Version(Trie entries, long number) {
+			this.entries = entries;
+			this.number = number;
+		}
+
+		/**
+		 * Returns a version with the same number and the given entries.
+		 */
+		Version<T, L> with(Trie entries) {
+			return new Version<T, L>(entries, number);
+		}
+
+		boolean containsNode(ConcurrentHashMap<T, Integer> ids, T node) {
+			Integer id = ids.get(node);
+			return id != null && id < entries.size;
+		}
+
+		/**
+		 * Returns the id of node.
+		 *
+		 * @throws IllegalArgumentException if node is not in this version
+		 */
+		int idOf(ConcurrentHashMap<T, Integer> ids, T node) {
+			Integer id = ids.get(node);
+			if(id == null || id >= entries.size) {
+				throw new IllegalArgumentException("graph does not contain " + node + " node");
+			}
+			return id;
+		}
+
+		Entry<T, L> entryAt(int id) {
+			return entryIn(entries, id);
+		}
+	}
+
+	/**
+	 * A node with its sorted out-edges (dest, label) and in-edges
+	 * (origin, label). Never changed once made.
+	 */
+	private static final class Entry<T, L extends Comparable<L>> {
+		final T node;
+		final LabEdge<T, L>[] out;
+		final LabEdge<T, L>[] in;
+
+		@SuppressWarnings("unchecked")
+		Entry(T node) {
+			this(node, (LabEdge<T, L>[]) ConcurrentDirGraph.NO_EDGES,
+					(LabEdge<T, L>[]) ConcurrentDirGraph.NO_EDGES);
+		}
+
+		Entry(T node, LabEdge<T, L>[] out, LabEdge<T, L>[] in) {
+			this.node = node;
+			this.out = out;
+			this.in = in;
+		}
+	}
+
+	/**
+	 * Persistent array of size slots, stored as a trie of 32-slot arrays.
+	 * set and append return a new trie that shares every array except the
+	 * ones on the path to the changed slot.
+	 */
+	private static final class Trie {
+		private static final int BITS = 5;
+		private static final int WIDTH = 1 << BITS;
+		private static final int MASK = WIDTH - 1;
+
+		static final Trie EMPTY = new Trie(new Object[WIDTH], 0, 0);
+
+		private final Object[] root; // leaf when shift == 0
+		private final int shift;     // bits of an index below the root
+		final int size;              // number of slots
+
+		private Trie(Object[] root, int shift, int size) {
+			this.root = root;
+			this.shift = shift;
+			this.size = size;
+		}
+
+		/**
+		 * Returns the value in slot i, for 0 <= i < size.
+		 */
+		Object get(int i) {
+			Object[] node = root;
+			for(int level = shift; level > 0; level -= BITS) {
+				node = (Object[]) node[(i >>> level) & MASK];
+			}
+			return node[i & MASK];
+		}
+
+		/**
+		 * Returns a trie with value in slot i, for 0 <= i < size.
+		 */
+		Trie set(int i, Object value) {
+			return new Trie(setIn(root, shift, i, value), shift, size);
+		}
+
+		/**
+		 * Returns a trie with one more slot, holding value.
+		 */
+		Trie append(Object value) {
+			if(size == 1 << (shift + BITS)) {
+				// full: the old root becomes the first child of a new one
+				Object[] grown = new Object[WIDTH];
+				grown[0] = root;
+				return new Trie(setIn(grown, shift + BITS, size, value), shift + BITS, size + 1);
+			}
+			return new Trie(setIn(root, shift, size, value), shift, size + 1);
+		}
+
+		/**
+		 * Returns a copy of node, at the given level, with value in slot i.
+		 */
+		private static Object[] setIn(Object[] node, int level, int i, Object value) {
+			Object[] copy = node.clone();
+			if(level == 0) {
+				copy[i & MASK] = value;
+			} else {
+				int slot = (i >>> level) & MASK;
+				Object[] child = (Object[]) node[slot];
+				copy[slot] = setIn(child == null ? new Object[WIDTH] : child, level - BITS, i, value);
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * Checks if representation invariant holds (if any)
+	 */
+	private void checkRep() throws RuntimeException {
+		if(CHECK) {
+			if(pending.number != current.number + 1) {
+				throw new RuntimeException("pending version must follow current version");
+			}
+			int edges = 0;
+			for(int id = 0; id < pending.entries.size; id++) {
+				Entry<T, L> entry = pending.entryAt(id);
+				if(!ids.get(entry.node).equals(id)) {
+					throw new RuntimeException("entry " + id + " is not for node " + entry.node);
+				}
+				edges += entry.out.length - entry.in.length;
+			}
+			if(edges != 0) {
+				throw new RuntimeException("in-edges do not match out-edges");
+			}
+		}
+	}
+}
@@ -2,12 +2,22 @@ package hw8.test;
 
 import static org.junit.Assert.*;
 
+import hw5.CsrGraph;
 import hw5.DirGraph;
+import hw5.LabEdge;
 import hw8.CampusDataParser;
 import hw8.Coordinates;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -71,6 +81,16 @@ public class CampusDataParserTest {
 		CampusDataParser.parseBuildingData("src/hw8/data/bad_buildings.dat", buildingNames, buildingNamesOpp, buildingLocs);
 	}
 	
+	@Test(timeout = TIMEOUT, expected = IOException.class)
+	public void testParseMissingBuildingData() throws Exception {
+		CampusDataParser.parseBuildingData("src/hw8/data/missing_buildings.dat", buildingNames, buildingNamesOpp, buildingLocs);
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IOException.class)
+	public void testBuildMissingPaths() throws Exception {
+		CampusDataParser.buildCampusPaths("src/hw8/data/missing_paths.dat", campusPaths);
+	}
+	
 	// bad formated on indented line
 	@Test(timeout = TIMEOUT, expected = Exception.class)
 	public void testBuildBadFormatedPaths() throws Exception {
@@ -136,4 +156,105 @@ public class CampusDataParserTest {
 		cp.addEdge(las, hou, 5.0);
 		assertEquals(cp.entrySet(), campusPaths.entrySet());
 	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testLoadCampusPathsMatchesReferenceParse() throws Exception {
+		// buildCampusPaths goes through loadCampusPaths as well, so the 
+		// scanner is checked against a plain line-by-line parse instead
+		for (String file : new String[] {"src/hw8/data/two_paths.dat", 
+				"src/hw8/data/city_paths.dat", "src/hw8/data/empty_paths.dat"}) {
+			DirGraph<Coordinates, Double> expected = referenceCampusPaths(file);
+			CsrGraph<Coordinates> loaded = CampusDataParser.loadCampusPaths(file);
+			assertEquals(expected.size(), loaded.nodeCount());
+			int edges = 0;
+			for (Coordinates location : expected.getNodesView()) {
+				int id = loaded.idOf(location);
+				assertTrue(id >= 0);
+				Set<LabEdge<Coordinates, Double>> out = new HashSet<LabEdge<Coordinates, Double>>();
+				for (int e = loaded.firstEdge(id); e < loaded.endEdge(id); e++)
+					out.add(new LabEdge<Coordinates, Double>(loaded.nodeAt(loaded.targetOf(e)), 
+							loaded.weightOf(e)));
+				assertEquals(expected.getOutwardEdgesView(location), out);
+				edges += out.size();
+			}
+			assertEquals(edges, loaded.edgeCount());
+		}
+	}
+	
+	/**
+	 * Reads a paths file one line at a time, splitting each line on its 
+	 * separators, and adds every point and path to a DirGraph one by one.
+	 */
+	private static DirGraph<Coordinates, Double> referenceCampusPaths(String file) 
+			throws Exception {
+		DirGraph<Coordinates, Double> paths = new DirGraph<Coordinates, Double>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			Coordinates origin = null;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("#"))
+					continue;
+				String[] tokens = line.replace("\"", "").trim().split(": ");
+				String[] xy = tokens[0].split(",");
+				Coordinates point = new Coordinates(Double.parseDouble(xy[0]), 
+						Double.parseDouble(xy[1]));
+				paths.addNode(point);
+				if (tokens.length == 1)
+					origin = point;
+				else
+					paths.addEdge(origin, point, Double.parseDouble(tokens[1]));
+			}
+		} finally {
+			reader.close();
+		}
+		return paths;
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testLoadCampusPathsParsesNumbersExactly() throws Exception {
+		String[] numbers = {"1906.8026", "-0.5e2", "1E-3", "0.12345678901234567", 
+				"2207.0", "+7", ".25", "123456789012345678", "3.5e30"};
+		File file = File.createTempFile("paths", ".dat");
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		try {
+			out.println("# every number as x and as y");
+			for (String number : numbers)
+				out.println("\"" + number + "\",\"" + number + "\"");
+			out.print("\t0,0: 1.5\r\n");
+		} finally {
+			out.close();
+		}
+		CsrGraph<Coordinates> loaded;
+		try {
+			loaded = CampusDataParser.loadCampusPaths(file.getPath());
+		} finally {
+			file.delete();
+		}
+		assertEquals(numbers.length + 1, loaded.nodeCount());
+		for (int i = 0; i < numbers.length; i++) {
+			double value = Double.parseDouble(numbers[i]);
+			assertEquals(new Coordinates(value, value), loaded.nodeAt(i));
+		}
+		assertEquals(1, loaded.edgeCount());
+		assertEquals(1.5, loaded.weightOf(0), 0.0);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testBadPathsReportLineAndColumn() throws Exception {
+		try {
+			CampusDataParser.loadCampusPaths("src/hw8/data/bad_paths.dat");
+			fail("line 2 has no colon");
+		} catch (CampusDataParser.MalformedDataException e) {
+			assertEquals(2, e.getLine());
+			assertEquals(6, e.getColumn());
+		}
+		try {
+			CampusDataParser.loadCampusPaths("src/hw8/data/bad_paths2.dat");
+			fail("line 1 is an edge with no point before it");
+		} catch (CampusDataParser.MalformedDataException e) {
+			assertEquals(1, e.getLine());
+			assertEquals(1, e.getColumn());
+		}
+	}
 }
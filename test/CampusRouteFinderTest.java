@@ -2,12 +2,20 @@ package hw8.test;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import hw7.SearchMode;
+import hw5.DirGraph;
+import hw8.BuildingRouteTable;
 import hw8.CampusRouteFinder;
+import hw8.CampusSnapshot;
 import hw8.Coordinates;
+import hw8.StraightLineHeuristic;
 
 import org.junit.Test;
 
@@ -37,6 +45,18 @@ public class CampusRouteFinderTest {
 									filepath + "bad_paths.dat");
 	}
 	
+	@Test(timeout = TIMEOUT, expected = IOException.class)
+	public void testConstructModelThrowsExceptionMissingBuildingsFile() throws Exception {
+		new CampusRouteFinder(filepath + "missing_buildings.dat", 
+									filepath + "city_paths.dat");
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IOException.class)
+	public void testConstructModelThrowsExceptionMissingPathsFile() throws Exception {
+		new CampusRouteFinder(filepath + "city_buildings.dat", 
+									filepath + "missing_paths.dat");
+	}
+	
 	@Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
 	public void testConstructModelWithBothArgumentsNull() throws Exception {
 		new CampusRouteFinder(null, null);
@@ -390,4 +410,178 @@ public class CampusRouteFinderTest {
 		route.put(sea, 3.0);
 		assertEquals(route, model.findShortestWalkingRoute(bos, sea));
 	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testSupportsAStarOnCityPaths() throws Exception {
+		CampusRouteFinder model =
+				new CampusRouteFinder(filepath + "city_buildings.dat", filepath + "city_paths.dat");
+		
+		assertTrue(model.supportsAStar());
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testNoAStarOnEmptyPaths() throws Exception {
+		CampusRouteFinder model = 
+				new CampusRouteFinder(filepath + "empty_buildings.dat", filepath + "empty_paths.dat");
+		
+		assertFalse(model.supportsAStar());
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testAStarMatchesDijkstraOnCityPaths() throws Exception {
+		CampusRouteFinder model =
+				new CampusRouteFinder(filepath + "city_buildings.dat", filepath + "city_paths.dat");
+		
+		String[] cities = {"NYC", "SEA", "SAN", "BOS", "HOU", "LAS"};
+		for (String from : cities) {
+			for (String to : cities) {
+				Coordinates start = model.getLocationOfBuilding(from);
+				Coordinates end = model.getLocationOfBuilding(to);
+				assertEquals(model.findShortestWalkingRoute(start, end, SearchMode.DIJKSTRA), 
+						model.findShortestWalkingRoute(start, end, SearchMode.A_STAR));
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testStraightLineHeuristicConsistency() throws Exception {
+		DirGraph<Coordinates, Double> paths = new DirGraph<Coordinates, Double>();
+		Coordinates a = new Coordinates(0, 0);
+		Coordinates b = new Coordinates(3, 4);
+		paths.addNode(a);
+		paths.addNode(b);
+		paths.addEdge(a, b, 10.0);
+		assertTrue(new StraightLineHeuristic(2.0).isConsistent(paths));
+		assertFalse(new StraightLineHeuristic(2.5).isConsistent(paths));
+		assertEquals(2.0, StraightLineHeuristic.calibrate(paths).getScale(), 1e-6);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testBidirectionalMatchesDijkstraOnCityPaths() throws Exception {
+		CampusRouteFinder model =
+				new CampusRouteFinder(filepath + "city_buildings.dat", filepath + "city_paths.dat");
+		
+		String[] cities = {"NYC", "SEA", "SAN", "BOS", "HOU", "LAS"};
+		for (String from : cities) {
+			for (String to : cities) {
+				Coordinates start = model.getLocationOfBuilding(from);
+				Coordinates end = model.getLocationOfBuilding(to);
+				assertEquals(model.findShortestWalkingRoute(start, end, SearchMode.DIJKSTRA), 
+						model.findShortestWalkingRoute(start, end, SearchMode.BIDIRECTIONAL));
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testContractionHierarchyMatchesDijkstraOnCityPaths() throws Exception {
+		CampusRouteFinder model =
+				new CampusRouteFinder(filepath + "city_buildings.dat", filepath + "city_paths.dat");
+		
+		String[] cities = {"NYC", "SEA", "SAN", "BOS", "HOU", "LAS"};
+		for (String from : cities) {
+			for (String to : cities) {
+				Coordinates start = model.getLocationOfBuilding(from);
+				Coordinates end = model.getLocationOfBuilding(to);
+				assertEquals(model.findShortestWalkingRoute(start, end, SearchMode.DIJKSTRA), 
+						model.findShortestWalkingRoute(start, end, SearchMode.CONTRACTION_HIERARCHY));
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testRouteTableMatchesDijkstraOnCityPaths() throws Exception {
+		CampusRouteFinder model =
+				new CampusRouteFinder(filepath + "city_buildings.dat", filepath + "city_paths.dat");
+		BuildingRouteTable table = model.getRouteTable();
+		assertNotNull(table);
+		assertEquals(6, table.buildingCount());
+		assertTrue(table.memoryBytes() > 0);
+		
+		String[] cities = {"NYC", "SEA", "SAN", "BOS", "HOU", "LAS"};
+		for (String from : cities) {
+			for (String to : cities) {
+				Coordinates start = model.getLocationOfBuilding(from);
+				Coordinates end = model.getLocationOfBuilding(to);
+				Map<Coordinates, Double> expected = 
+						model.findShortestWalkingRoute(start, end, SearchMode.DIJKSTRA);
+				assertEquals(expected, model.findShortestWalkingRoute(start, end));
+				if (expected == null)
+					assertEquals(Double.POSITIVE_INFINITY, table.distance(start, end), 0.0);
+				else
+					assertEquals(expected.get(end), table.distance(start, end), 0.0);
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testRouteTableEstimateDoesNotOverflow() {
+		assertEquals(8L * 36 + 4L * 6 * 10 + 4L * 6, BuildingRouteTable.estimateBytes(6, 10));
+		// 65536 buildings over as many nodes would overflow an int twice over
+		assertEquals(12L << 32 | 4L << 16, BuildingRouteTable.estimateBytes(1 << 16, 1 << 16));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testRouteTableIsOptional() throws Exception {
+		CampusRouteFinder model = new CampusRouteFinder(filepath + "city_buildings.dat", 
+				filepath + "city_paths.dat", false);
+		assertNull(model.getRouteTable());
+		Coordinates start = model.getLocationOfBuilding("NYC");
+		Coordinates end = model.getLocationOfBuilding("LAS");
+		assertEquals(model.findShortestWalkingRoute(start, end, SearchMode.DIJKSTRA), 
+				model.findShortestWalkingRoute(start, end));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testSnapshotMatchesTextData() throws Exception {
+		File file = File.createTempFile("city", ".snapshot");
+		file.deleteOnExit();
+		CampusSnapshot.compile(filepath + "city_buildings.dat", filepath + "city_paths.dat", 
+				file.getPath());
+		CampusRouteFinder text = new CampusRouteFinder(filepath + "city_buildings.dat", 
+				filepath + "city_paths.dat");
+		CampusRouteFinder model = CampusSnapshot.read(file.getPath());
+		
+		assertEquals(text.getBuildings(), model.getBuildings());
+		assertEquals(text.supportsAStar(), model.supportsAStar());
+		assertEquals(text.getRouteTable().buildingCount(), model.getRouteTable().buildingCount());
+		for (String from : text.getBuildings().keySet()) {
+			Coordinates start = text.getLocationOfBuilding(from);
+			assertEquals(start, model.getLocationOfBuilding(from));
+			assertEquals(from, model.getAbbreviatedNameOfBuilding(text.getFullNameOfBuilding(from)));
+			for (String to : text.getBuildings().keySet()) {
+				Coordinates end = text.getLocationOfBuilding(to);
+				assertEquals(text.findShortestWalkingRoute(start, end), 
+						model.findShortestWalkingRoute(start, end));
+				for (SearchMode mode : SearchMode.values())
+					assertEquals(text.findShortestWalkingRoute(start, end, mode), 
+							model.findShortestWalkingRoute(start, end, mode));
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testSnapshotOfEmptyCampus() throws Exception {
+		File file = File.createTempFile("empty", ".snapshot");
+		file.deleteOnExit();
+		CampusSnapshot.compile(filepath + "empty_buildings.dat", filepath + "empty_paths.dat", 
+				file.getPath());
+		CampusRouteFinder model = CampusSnapshot.read(file.getPath());
+		assertEquals(new HashMap<String, String>(), model.getBuildings());
+		assertNull(model.getRouteTable());
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IOException.class)
+	public void testSnapshotFailsChecksumWhenCorrupted() throws Exception {
+		File file = File.createTempFile("city", ".snapshot");
+		file.deleteOnExit();
+		CampusSnapshot.compile(filepath + "city_buildings.dat", filepath + "city_paths.dat", 
+				file.getPath());
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		raw.seek(raw.length() - 1);
+		int last = raw.read();
+		raw.seek(raw.length() - 1);
+		raw.write(last ^ 1);
+		raw.close();
+		CampusSnapshot.read(file.getPath());
+	}
 }
@@ -0,0 +1,114 @@
+package hw7.test;
+
+import hw5.ConcurrentDirGraph;
+import hw7.MarvelPaths2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ConcurrentGraphBenchmark measures the query throughput of
+ * minimumCostPath on a ConcurrentDirGraph grid from 1, 2 and 4 reader
+ * threads, while a writer keeps opening and closing diagonal paths, and
+ * the write throughput alongside them. It runs the workload
+ * TestMarvelPaths2.testConcurrentGraphReadersDuringWrites checks.
+ * <p>
+ * Usage: java hw7.test.ConcurrentGraphBenchmark [side millis]
+ */
+public class ConcurrentGraphBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		final int side = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+		final ConcurrentDirGraph<String, Double> c = grid(side);
+		System.out.printf("grid: %d points, %d edges%n", side * side, 4 * side * (side - 1));
+
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int readers = 1; readers <= 4; readers *= 2) {
+			final AtomicBoolean running = new AtomicBoolean(true);
+			final AtomicLong queries = new AtomicLong();
+			final AtomicLong writes = new AtomicLong();
+			Thread writer = new Thread(new Runnable() {
+				public void run() {
+					Random random = new Random(7);
+					try {
+						while (running.get()) {
+							int r = random.nextInt(side - 1);
+							int k = random.nextInt(side - 1);
+							String from = r + "," + k;
+							String to = (r + 1) + "," + (k + 1);
+							if (!c.addEdge(from, to, 1.5))
+								c.removeEdge(from, to, 1.5);
+							writes.incrementAndGet();
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			});
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int t = 0; t < readers; t++) {
+				final long seed = t;
+				threads.add(new Thread(new Runnable() {
+					public void run() {
+						Random random = new Random(seed);
+						try {
+							while (running.get()) {
+								String from = random.nextInt(side) + "," + random.nextInt(side);
+								String to = random.nextInt(side) + "," + random.nextInt(side);
+								if (MarvelPaths2.minimumCostPath(c, from, to) == null)
+									throw new AssertionError("no path from " + from + " to " + to);
+								queries.incrementAndGet();
+							}
+						} catch (Throwable t) {
+							failure.compareAndSet(null, t);
+						}
+					}
+				}));
+			}
+			long start = System.nanoTime();
+			writer.start();
+			for (Thread thread : threads)
+				thread.start();
+			Thread.sleep(millis);
+			running.set(false);
+			writer.join();
+			for (Thread thread : threads)
+				thread.join();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			if (failure.get() != null)
+				throw new AssertionError(failure.get());
+			System.out.printf("%d reader(s): %.0f queries/s with %.0f writes/s%n",
+					readers, queries.get() / seconds, writes.get() / seconds);
+		}
+	}
+
+	/**
+	 * Returns a side by side grid of points named "row,column", with a
+	 * path of length 1 each way between neighbouring points.
+	 */
+	private static ConcurrentDirGraph<String, Double> grid(int side) {
+		ConcurrentDirGraph<String, Double> c = new ConcurrentDirGraph<String, Double>();
+		for (int r = 0; r < side; r++) {
+			for (int k = 0; k < side; k++)
+				c.addNode(r + "," + k);
+		}
+		for (int r = 0; r < side; r++) {
+			for (int k = 0; k < side; k++) {
+				if (r + 1 < side) {
+					c.addEdge(r + "," + k, (r + 1) + "," + k, 1.0);
+					c.addEdge((r + 1) + "," + k, r + "," + k, 1.0);
+				}
+				if (k + 1 < side) {
+					c.addEdge(r + "," + k, r + "," + (k + 1), 1.0);
+					c.addEdge(r + "," + (k + 1), r + "," + k, 1.0);
+				}
+			}
+		}
+		return c;
+	}
+}
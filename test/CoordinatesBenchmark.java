@@ -0,0 +1,144 @@
+package hw8.test;
+
+import hw5.NodeDictionary;
+import hw8.Coordinates;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CoordinatesBenchmark measures what it costs to look points up in the
+ * node map of the campus paths, a NodeDictionary of Coordinates, and in a
+ * HashMap of Coordinates, against a copy of the Coordinates class campus
+ * used to have, with boxed x and y, a rep check on every call and the sum
+ * of the hash codes of x and y as its hash code.
+ * <p>
+ * The points lie on a square grid with the given spacing, as points of a
+ * campus map drawn to whole pixels do. For each kind of point the number
+ * of distinct hash codes and the time per lookup are reported.
+ * <p>
+ * Usage: java hw8.test.CoordinatesBenchmark [side] [spacing]
+ */
+public class CoordinatesBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		double spacing = args.length > 1 ? Double.parseDouble(args[1]) : 4.0;
+		int n = side * side;
+
+		Coordinates[] points = new Coordinates[n];
+		Coordinates[] probes = new Coordinates[n];
+		BoxedCoordinates[] boxedPoints = new BoxedCoordinates[n];
+		BoxedCoordinates[] boxedProbes = new BoxedCoordinates[n];
+		for (int i = 0; i < n; i++) {
+			double x = (i / side) * spacing;
+			double y = (i % side) * spacing;
+			points[i] = new Coordinates(x, y);
+			probes[i] = new Coordinates(x, y);
+			boxedPoints[i] = new BoxedCoordinates(x, y);
+			boxedProbes[i] = new BoxedCoordinates(x, y);
+		}
+
+		System.out.printf("%d points, %d by %d grid, spacing %s%n", n, side, side, spacing);
+		System.out.printf("distinct hash codes: boxed %d, primitive %d%n",
+				distinctHashes(boxedPoints), distinctHashes(points));
+		System.out.println("lookup              boxed ns  primitive ns");
+		for (int round = 0; round < ROUNDS; round++) {
+			double boxedDict = dictionaryLookup(boxedPoints, boxedProbes);
+			double primDict = dictionaryLookup(points, probes);
+			double boxedMap = mapLookup(boxedPoints, boxedProbes);
+			double primMap = mapLookup(points, probes);
+			System.out.printf("NodeDictionary %13.1f %13.1f%n", boxedDict, primDict);
+			System.out.printf("HashMap        %13.1f %13.1f%n", boxedMap, primMap);
+		}
+	}
+
+	private static <T> int distinctHashes(T[] points) {
+		Set<Integer> hashes = new HashSet<Integer>();
+		for (T point : points)
+			hashes.add(point.hashCode());
+		return hashes.size();
+	}
+
+	/**
+	 * Returns the nanoseconds per idOf of a dictionary of points, looking
+	 * up equal but distinct probes.
+	 */
+	private static <T> double dictionaryLookup(T[] points, T[] probes) {
+		NodeDictionary<T> ids = new NodeDictionary<T>(points.length);
+		for (T point : points)
+			ids.add(point);
+		long start = System.nanoTime();
+		long sum = 0;
+		for (T probe : probes)
+			sum += ids.idOf(probe);
+		long time = System.nanoTime() - start;
+		check(sum, probes.length);
+		return (double) time / probes.length;
+	}
+
+	/**
+	 * Returns the nanoseconds per get of a HashMap of points, looking up
+	 * equal but distinct probes.
+	 */
+	private static <T> double mapLookup(T[] points, T[] probes) {
+		Map<T, Integer> ids = new HashMap<T, Integer>();
+		for (int i = 0; i < points.length; i++)
+			ids.put(points[i], i);
+		long start = System.nanoTime();
+		long sum = 0;
+		for (T probe : probes)
+			sum += ids.get(probe);
+		long time = System.nanoTime() - start;
+		check(sum, probes.length);
+		return (double) time / probes.length;
+	}
+
+	/**
+	 * Checks that every probe was found at its own id.
+	 */
+	private static void check(long sum, int n) {
+		if (sum != (long) n * (n - 1) / 2)
+			throw new AssertionError("lookups returned the wrong ids");
+	}
+
+	/**
+	 * The Coordinates of campus before x and y were primitive.
+	 */
+	private static final class BoxedCoordinates {
+		private Double x;
+		private Double y;
+
+		BoxedCoordinates(double x, double y) {
+			this.x = x;
+			this.y = y;
+			checkRep();
+		}
+
+		@Override
+		public boolean equals(/*@Nullable*/ Object other) {
+			checkRep();
+			if (!(other instanceof BoxedCoordinates))
+				return false;
+			BoxedCoordinates c = (BoxedCoordinates) other;
+			return c.x.equals(x) && c.y.equals(y);
+		}
+
+		@Override
+		public int hashCode() {
+			checkRep();
+			return x.hashCode() + y.hashCode();
+		}
+
+		private void checkRep() {
+			if (x == null)
+				throw new RuntimeException("x coordinate cannot be null.");
+			if (y == null)
+				throw new RuntimeException("y coordinate cannot be null.");
+		}
+	}
+}
@@ -3,6 +3,9 @@ package hw8.test;
 import static org.junit.Assert.*;
 import hw8.Coordinates;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -54,4 +57,54 @@ public class CoordinatesTest {
 	public void testHashCode() {
 		assertEquals((new Coordinates(1.23, 4.56)).hashCode(), coordinates.hashCode());
 	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testHashCodeDiffersForSwappedCoordinates() {
+		assertFalse(new Coordinates(1, 2).hashCode() == new Coordinates(2, 1).hashCode());
+		assertFalse(coordinates.equals(new Coordinates(4.56, 1.23)));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testHashCodeSpreadsGridPoints() {
+		// points of a 100 by 100 grid should nearly all hash differently
+		Set<Integer> hashes = new HashSet<Integer>();
+		for (int x = 0; x < 100; x++) {
+			for (int y = 0; y < 100; y++)
+				hashes.add(new Coordinates(x * 10.0, y * 10.0).hashCode());
+		}
+		assertTrue(hashes.size() > 9990);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testCompareTo() {
+		assertTrue(coordinates.compareTo(new Coordinates(1.23, 4.56)) == 0);
+		assertTrue(coordinates.compareTo(new Coordinates(1.23, 5)) < 0);
+		assertTrue(coordinates.compareTo(new Coordinates(1, 9)) > 0);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testPackedRoundTrip() {
+		Coordinates point = new Coordinates(1914.5, -2038.25);
+		long packed = point.toPacked();
+		assertEquals(point, Coordinates.fromPacked(packed));
+		assertTrue(Coordinates.packedX(packed) == 1914.5);
+		assertTrue(Coordinates.packedY(packed) == -2038.25);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testPackedRoundsToResolution() {
+		Coordinates packed = Coordinates.fromPacked(coordinates.toPacked());
+		assertTrue(Math.abs(packed.getX() - 1.23) <= Coordinates.PACKED_RESOLUTION / 2);
+		assertTrue(Math.abs(packed.getY() - 4.56) <= Coordinates.PACKED_RESOLUTION / 2);
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+	public void testToPackedWithNaN() {
+		new Coordinates(Double.NaN, 0).toPacked();
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+	public void testToPackedOutOfRange() {
+		new Coordinates(0, 1e10).toPacked();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package hw7.test;
+
+import hw5.DirGraph;
+import hw5.LabEdge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * GraphFootprintReport measures the heap taken per edge by a whole
+ * DirGraph, against a copy of the representation DirGraph had before its
+ * out-edges were kept in sorted arrays: a TreeSet of out-edges per node
+ * with a read-only view of each, a list of in-edges per node, and a list
+ * of the out-edges to each destination.
+ * <p>
+ * For a random graph of each average degree, both graphs are built from
+ * the same edges, each with its own LabEdge objects and labels, and the
+ * heap each retains is measured on its own, so everything either graph
+ * holds is counted.
+ * <p>
+ * Usage: java hw7.test.GraphFootprintReport [nodes]
+ */
+public class GraphFootprintReport {
+
+	public static void main(String[] args) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		System.out.println("degree  TreeSet graph B/edge  DirGraph B/edge  saved B/edge");
+		for (int degree : new int[] {1, 2, 4, 16, 64}) {
+			long edges = (long) nodes * degree;
+
+			long before = usedHeap();
+			TreeSetGraph trees = treeSetGraph(nodes, degree);
+			long treeBytes = usedHeap() - before;
+			// uses the graph after measuring it, so it is not collected early
+			if (trees.graph.size() != nodes)
+				throw new AssertionError();
+			trees = null;
+
+			before = usedHeap();
+			DirGraph<Integer, Double> graph = randomGraph(nodes, degree);
+			long graphBytes = usedHeap() - before;
+			if (graph.size() != nodes)
+				throw new AssertionError();
+			graph = null;
+
+			System.out.printf("%6d  %20.1f  %15.1f  %12.1f%n", degree,
+					(double) treeBytes / edges, (double) graphBytes / edges,
+					(double) (treeBytes - graphBytes) / edges);
+		}
+	}
+
+	/**
+	 * Returns a graph of n nodes where each node has degree out-edges to
+	 * random nodes, with random labels.
+	 */
+	private static DirGraph<Integer, Double> randomGraph(int n, int degree) {
+		Random random = new Random(n + degree);
+		DirGraph.Builder<Integer, Double> builder =
+				new DirGraph.Builder<Integer, Double>(n, n * degree);
+		for (int i = 0; i < n; i++)
+			builder.addNode(i);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < degree; j++)
+				builder.addEdge(i, random.nextInt(n), (double) random.nextInt(1 << 20));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the edges of randomGraph(n, degree) in a TreeSetGraph.
+	 */
+	private static TreeSetGraph treeSetGraph(int n, int degree) {
+		Random random = new Random(n + degree);
+		TreeSetGraph trees = new TreeSetGraph(n, degree);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < degree; j++)
+				trees.addEdge(i, random.nextInt(n), (double) random.nextInt(1 << 20));
+		}
+		return trees;
+	}
+
+	/**
+	 * Returns the bytes of heap in use after collecting garbage.
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+
+	/**
+	 * The fields of DirGraph before its out-edges were kept in sorted
+	 * arrays, sized as its Builder sized them.
+	 */
+	private static final class TreeSetGraph {
+		final Map<Integer, Set<LabEdge<Integer, Double>>> graph;
+		final Map<Integer, Set<LabEdge<Integer, Double>>> views;
+		final Map<Integer, List<LabEdge<Integer, Double>>> inEdges;
+		final Map<Integer, Map<Integer, List<LabEdge<Integer, Double>>>> edgesTo;
+
+		TreeSetGraph(int n, int degree) {
+			int capacity = (int) (n / 0.75f) + 1;
+			graph = new HashMap<Integer, Set<LabEdge<Integer, Double>>>(capacity);
+			views = new HashMap<Integer, Set<LabEdge<Integer, Double>>>(capacity);
+			inEdges = new HashMap<Integer, List<LabEdge<Integer, Double>>>(capacity);
+			edgesTo = new HashMap<Integer, Map<Integer, List<LabEdge<Integer, Double>>>>(capacity);
+			for (int i = 0; i < n; i++) {
+				Integer node = i;
+				Set<LabEdge<Integer, Double>> out = new TreeSet<LabEdge<Integer, Double>>();
+				graph.put(node, out);
+				views.put(node, Collections.unmodifiableSet(out));
+				inEdges.put(node, new ArrayList<LabEdge<Integer, Double>>(degree));
+				edgesTo.put(node, new HashMap<Integer, List<LabEdge<Integer, Double>>>(
+						Math.max(16, (int) (degree / 0.75f) + 1)));
+			}
+		}
+
+		void addEdge(Integer origin, Integer dest, Double label) {
+			LabEdge<Integer, Double> edge = new LabEdge<Integer, Double>(dest, label);
+			if (!graph.get(origin).add(edge))
+				return;
+			inEdges.get(dest).add(new LabEdge<Integer, Double>(origin, label));
+			Map<Integer, List<LabEdge<Integer, Double>>> byDest = edgesTo.get(origin);
+			List<LabEdge<Integer, Double>> parallel = byDest.get(dest);
+			if (parallel == null) {
+				parallel = new ArrayList<LabEdge<Integer, Double>>(1);
+				byDest.put(dest, parallel);
+			}
+			parallel.add(edge);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package hw7.test;
+
+import hw5.DirGraph;
+import hw7.MarvelParser2;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * GraphLoadBenchmark times building the Marvel graph and a campus-sized
+ * grid one addNode and addEdge call at a time, against building them with
+ * DirGraph.Builder. The Marvel data is generated, with about as many
+ * characters, books and appearances as the real dataset, and is parsed
+ * once before timing so that only building the graph is measured.
+ * <p>
+ * Usage: java hw7.test.GraphLoadBenchmark [characters books appearances]
+ */
+public class GraphLoadBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int characters = args.length > 0 ? Integer.parseInt(args[0]) : 6400;
+		int books = args.length > 1 ? Integer.parseInt(args[1]) : 12900;
+		int appearances = args.length > 2 ? Integer.parseInt(args[2]) : 96000;
+
+		File data = writeMarvelData(characters, books, appearances);
+		final Map<String, HashMap<String, Integer>> charCount =
+				new HashMap<String, HashMap<String, Integer>>();
+		MarvelParser2.parseData(data.getPath(), charCount);
+		data.delete();
+		int pairs = 0;
+		for (HashMap<String, Integer> count : charCount.values())
+			pairs += count.size();
+		System.out.printf("marvel: %d characters, %d edges%n", charCount.size(), pairs);
+
+		report("marvel", new Load() {
+			public Object run() {
+				// what makeWeightedGraph did before DirGraph.Builder
+				DirGraph<String, Double> network = new DirGraph<String, Double>();
+				for (String character : charCount.keySet())
+					network.addNode(character);
+				for (String char1 : charCount.keySet()) {
+					HashMap<String, Integer> count = charCount.get(char1);
+					for (String char2 : count.keySet()) {
+						int num = count.get(char2);
+						network.addEdge(char1, char2, 1.0 / num);
+						network.addEdge(char1, char2, 1.0 / num);
+					}
+				}
+				return network;
+			}
+		}, new Load() {
+			public Object run() {
+				int edges = 0;
+				for (HashMap<String, Integer> count : charCount.values())
+					edges += count.size();
+				DirGraph.Builder<String, Double> network =
+						new DirGraph.Builder<String, Double>(charCount.size(), edges);
+				for (Map.Entry<String, HashMap<String, Integer>> entry : charCount.entrySet()) {
+					network.addNode(entry.getKey());
+					for (Map.Entry<String, Integer> count : entry.getValue().entrySet())
+						network.addEdge(entry.getKey(), count.getKey(), 1.0 / count.getValue());
+				}
+				return network.build();
+			}
+		});
+
+		final int side = 300;
+		final String[][] names = new String[side * side][];
+		for (int r = 0; r < side; r++) {
+			for (int c = 0; c < side; c++)
+				names[r * side + c] = neighbours(r, c, side);
+		}
+		final String[] points = new String[side * side];
+		for (int i = 0; i < points.length; i++)
+			points[i] = (i / side) + "," + (i % side);
+		System.out.printf("grid: %d points, %d edges%n", side * side, 4 * side * (side - 1));
+		report("grid", new Load() {
+			public Object run() {
+				DirGraph<String, Double> paths = new DirGraph<String, Double>();
+				for (int i = 0; i < points.length; i++) {
+					paths.addNode(points[i]);
+					for (String to : names[i]) {
+						paths.addNode(to);
+						paths.addEdge(points[i], to, 1.0);
+					}
+				}
+				return paths;
+			}
+		}, new Load() {
+			public Object run() {
+				DirGraph.Builder<String, Double> paths =
+						new DirGraph.Builder<String, Double>(side * side, 4 * side * side);
+				for (int i = 0; i < points.length; i++) {
+					paths.addNode(points[i]);
+					for (String to : names[i])
+						paths.addEdge(points[i], to, 1.0);
+				}
+				return paths.build();
+			}
+		});
+	}
+
+	/**
+	 * One way of building a graph.
+	 */
+	private interface Load {
+		Object run();
+	}
+
+	/**
+	 * Prints the best of ROUNDS runs of each load, after one warm-up run.
+	 */
+	private static void report(String name, Load oneAtATime, Load builder) {
+		long single = best(oneAtATime);
+		long built = best(builder);
+		System.out.printf("%s: addNode/addEdge %d ms, Builder %d ms (%.2fx)%n",
+				name, single / 1000000, built / 1000000, (double) single / built);
+	}
+
+	private static long best(Load load) {
+		load.run();
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < ROUNDS; i++) {
+			long start = System.nanoTime();
+			load.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the names of the grid points next to (r, c).
+	 */
+	private static String[] neighbours(int r, int c, int side) {
+		String[] all = new String[4];
+		int n = 0;
+		if (r > 0)
+			all[n++] = (r - 1) + "," + c;
+		if (r + 1 < side)
+			all[n++] = (r + 1) + "," + c;
+		if (c > 0)
+			all[n++] = r + "," + (c - 1);
+		if (c + 1 < side)
+			all[n++] = r + "," + (c + 1);
+		String[] some = new String[n];
+		System.arraycopy(all, 0, some, 0, n);
+		return some;
+	}
+
+	/**
+	 * Writes a Marvel-style file where popular characters appear in more
+	 * books, and returns it.
+	 */
+	static File writeMarvelData(int characters, int books, int appearances) throws IOException {
+		File file = File.createTempFile("marvel", ".tsv");
+		Random random = new Random(42);
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		try {
+			for (int i = 0; i < appearances; i++) {
+				// squaring skews the choice towards low-numbered characters
+				double u = random.nextDouble();
+				int character = (int) (u * u * characters);
+				out.println("\"CHARACTER " + character + "\"\t\"BOOK " + random.nextInt(books) + "\"");
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+}
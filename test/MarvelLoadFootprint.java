@@ -0,0 +1,121 @@
+package hw7.test;
+
+import hw5.DirGraph;
+import hw7.MarvelNetwork;
+import hw7.MarvelParser2;
+import hw7.MarvelPaths2;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MarvelLoadFootprint measures the heap it takes to load the Marvel graph
+ * four ways: filling the map of counts and then building a DirGraph from
+ * it, as makeWeightedGraph used to; makeWeightedGraph; makeCompactGraph;
+ * and MarvelNetwork.load, which keeps the index of the books along with
+ * the DirGraph.
+ * <p>
+ * The peak heap of a load is taken as the smallest -Xmx a fresh JVM can
+ * load the graph in, found by binary search, so garbage that a collection
+ * would free is not counted. The heap the finished graph retains is
+ * reported as well. The data is generated with about as many characters,
+ * books and appearances as the real dataset, as GraphLoadBenchmark does.
+ * <p>
+ * Usage: java hw7.test.MarvelLoadFootprint [characters books appearances]
+ */
+public class MarvelLoadFootprint {
+
+	private static final String[] MODES = {"map", "dirgraph", "compact", "network"};
+
+	// precision of the binary search, in MB
+	private static final int STEP = 2;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 3 && args[0].equals("--load")) {
+			load(args[1], args[2]);
+			return;
+		}
+		int characters = args.length > 0 ? Integer.parseInt(args[0]) : 6400;
+		int books = args.length > 1 ? Integer.parseInt(args[1]) : 12900;
+		int appearances = args.length > 2 ? Integer.parseInt(args[2]) : 96000;
+		File data = GraphLoadBenchmark.writeMarvelData(characters, books, appearances);
+		try {
+			System.out.println("load        peak MB  retained MB");
+			for (String mode : MODES) {
+				int lo = 4;    // too small to load in
+				int hi = 2048; // large enough to load in
+				String retained = run(mode, data, hi);
+				if (retained == null)
+					throw new IllegalStateException(mode + " does not load in " + hi + " MB");
+				while (hi - lo > STEP) {
+					int mid = (lo + hi) >>> 1;
+					if (run(mode, data, mid) != null)
+						hi = mid;
+					else
+						lo = mid;
+				}
+				System.out.printf("%-9s %9d %12s%n", mode, hi, retained);
+			}
+		} finally {
+			data.delete();
+		}
+	}
+
+	/**
+	 * Loads data one way in a fresh JVM with a heap of heapMb, and returns
+	 * the heap the graph retains as it reports it, or null if it runs out
+	 * of memory.
+	 */
+	private static /*@Nullable*/ String run(String mode, File data, int heapMb) throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-Xmx" + heapMb + "m", "-Xms" + Math.min(heapMb, 16) + "m",
+				"-XX:+UseSerialGC", "-cp", System.getProperty("java.class.path"),
+				MarvelLoadFootprint.class.getName(), "--load", mode, data.getPath())
+				.redirectErrorStream(true).start();
+		BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		String last = null;
+		for (String line = out.readLine(); line != null; line = out.readLine())
+			last = line;
+		return process.waitFor() == 0 ? last : null;
+	}
+
+	/**
+	 * Loads the graph, then prints the heap it retains, in MB.
+	 */
+	private static void load(String mode, String filename) throws Exception {
+		Object graph;
+		if (mode.equals("map")) {
+			// what makeWeightedGraph did before it read the counts directly
+			Map<String, HashMap<String, Integer>> charCount = new HashMap<String, HashMap<String, Integer>>();
+			MarvelParser2.parseMappedData(filename, charCount);
+			int pairs = 0;
+			for (HashMap<String, Integer> count : charCount.values())
+				pairs += count.size();
+			DirGraph.Builder<String, Double> network =
+					new DirGraph.Builder<String, Double>(charCount.size(), pairs);
+			for (Map.Entry<String, HashMap<String, Integer>> entry : charCount.entrySet()) {
+				network.addNode(entry.getKey());
+				for (Map.Entry<String, Integer> count : entry.getValue().entrySet())
+					network.addEdge(entry.getKey(), count.getKey(), 1.0 / count.getValue());
+			}
+			graph = network.build();
+		} else if (mode.equals("dirgraph")) {
+			graph = MarvelPaths2.makeWeightedGraph(filename);
+		} else if (mode.equals("compact")) {
+			graph = MarvelPaths2.makeCompactGraph(filename);
+		} else {
+			graph = MarvelNetwork.load(filename);
+		}
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		long used = runtime.totalMemory() - runtime.freeMemory();
+		System.out.printf("%.1f%n", used / 1048576.0);
+		// keep the graph reachable until it is measured
+		if (graph.hashCode() == 42)
+			System.out.println();
+	}
+}
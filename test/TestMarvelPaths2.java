@@ -1,7 +1,49 @@
 package hw7.test;
 
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import hw5.ConcurrentDirGraph;
+import hw5.CsrGraph;
 import hw5.DirGraph;
+import hw5.LabEdge;
+import hw5.LabeledGraph;
+import hw5.MappedCsrGraph;
+import hw5.NodeDictionary;
+import hw5.VersionedGraph;
+import hw7.ContractionHierarchy;
+import hw7.IndexedSearch;
+import hw7.LandmarkHeuristic;
+import hw7.MarvelNetwork;
+import hw7.MarvelParser2;
 import hw7.MarvelPaths2;
+import hw7.SearchMode;
+import hw7.ShortestPathTree;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -38,4 +80,1155 @@ public class TestMarvelPaths2 {
 	public void testMinCOstPathAbsentNodes() {
 		MarvelPaths2.minimumCostPath(g, "a", "b");
 	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testMinCostPathToItself() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		List<LabEdge<String, Double>> path = MarvelPaths2.minimumCostPath(t, "a", "a");
+		assertEquals(1, path.size());
+		assertEquals(new LabEdge<String, Double>("a", 0.0), path.get(0));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testMinCostPathNoPath() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		t.addNode("b");
+		t.addEdge("b", "a", 1.0);
+		assertNull(MarvelPaths2.minimumCostPath(t, "a", "b"));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testMinCostPathLabelsAreCumulative() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		t.addNode("b");
+		t.addNode("c");
+		t.addEdge("a", "b", 0.5);
+		t.addEdge("b", "c", 0.25);
+		t.addEdge("a", "c", 1.0);
+		List<LabEdge<String, Double>> path = MarvelPaths2.minimumCostPath(t, "a", "c");
+		assertEquals(3, path.size());
+		assertEquals(new LabEdge<String, Double>("b", 0.5), path.get(1));
+		assertEquals(new LabEdge<String, Double>("c", 0.75), path.get(2));
+	}
+	
+	// equal cost paths are broken by the number of edges
+	@Test(timeout = TIMEOUT)
+	public void testMinCostPathPrefersFewerEdgesOnTie() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		t.addNode("b");
+		t.addNode("c");
+		t.addEdge("a", "b", 1.0);
+		t.addEdge("b", "c", 1.0);
+		t.addEdge("a", "c", 2.0);
+		List<LabEdge<String, Double>> path = MarvelPaths2.minimumCostPath(t, "a", "c");
+		assertEquals(2, path.size());
+		assertEquals(new LabEdge<String, Double>("c", 2.0), path.get(1));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testMinCostPathOnCsrSnapshot() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		t.addNode("b");
+		t.addNode("c");
+		t.addEdge("a", "b", 0.5);
+		t.addEdge("b", "c", 0.25);
+		t.addEdge("a", "c", 1.0);
+		CsrGraph<String> csr = t.toCsr(Double::doubleValue);
+		assertEquals(3, csr.nodeCount());
+		assertEquals(3, csr.edgeCount());
+		assertEquals(MarvelPaths2.minimumCostPath(t, "a", "c"), 
+				MarvelPaths2.minimumCostPath(csr, "a", "c"));
+		assertNull(MarvelPaths2.minimumCostPath(csr, "c", "a"));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testBidirectionalMatchesMinCostPathOnFlights() {
+		for (String from : g.getNodes()) {
+			for (String to : g.getNodes()) {
+				List<LabEdge<String, Double>> expected = MarvelPaths2.minimumCostPath(g, from, to);
+				List<LabEdge<String, Double>> actual = 
+						MarvelPaths2.minimumCostPath(g, from, to, SearchMode.BIDIRECTIONAL);
+				if (expected == null) {
+					assertNull(actual);
+					continue;
+				}
+				assertEquals(expected.size(), actual.size());
+				assertEquals(expected.get(expected.size() - 1), actual.get(actual.size() - 1));
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testBidirectionalMatchesMinCostPath() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		String[] nodes = {"a", "b", "c", "d", "e"};
+		for (String node : nodes)
+			t.addNode(node);
+		t.addEdge("a", "b", 1.0);
+		t.addEdge("b", "c", 1.0);
+		t.addEdge("c", "d", 1.0);
+		t.addEdge("a", "d", 3.0);
+		t.addEdge("d", "e", 0.5);
+		t.addEdge("e", "a", 2.0);
+		for (String from : nodes) {
+			for (String to : nodes) {
+				assertEquals(MarvelPaths2.minimumCostPath(t, from, to), 
+						MarvelPaths2.minimumCostPath(t, from, to, SearchMode.BIDIRECTIONAL));
+				assertEquals(MarvelPaths2.minimumCostPath(t, from, to), 
+						MarvelPaths2.minimumCostPath(CsrGraph.freeze(t), from, to, SearchMode.BIDIRECTIONAL));
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testMinCostPathOnMappedGraph() throws Exception {
+		File file = File.createTempFile("flights", ".csr");
+		file.deleteOnExit();
+		MappedCsrGraph.write(CsrGraph.freeze(g), file.getPath());
+		MappedCsrGraph mapped = MappedCsrGraph.open(file.getPath());
+		assertEquals(g.getNodes(), mapped.getNodes());
+		assertEquals(-1, mapped.idOf("Nowhere"));
+		for (String from : g.getNodes()) {
+			assertEquals(g.getOutwardEdgesOf(from), mapped.getOutwardEdgesOf(from));
+			for (String to : g.getNodes()) {
+				assertEquals(MarvelPaths2.minimumCostPath(g, from, to), 
+						MarvelPaths2.minimumCostPath(mapped, from, to));
+				assertEquals(MarvelPaths2.minimumCostPath(g, from, to), 
+						MarvelPaths2.minimumCostPath(mapped, from, to, SearchMode.BIDIRECTIONAL));
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testMappedGraphFindsNamesInByteOrder() throws Exception {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		String[] nodes = {"", "Z", "a", "\u00e9", "\u4e2d", "a b"};
+		for (String node : nodes)
+			t.addNode(node);
+		t.addEdge("", "\u4e2d", 1.0);
+		t.addEdge("\u4e2d", "\u00e9", 0.5);
+		t.addEdge("\u00e9", "", 0.25);
+		File file = File.createTempFile("names", ".csr");
+		file.deleteOnExit();
+		MappedCsrGraph.write(CsrGraph.freeze(t), file.getPath());
+		MappedCsrGraph mapped = MappedCsrGraph.open(file.getPath());
+		for (String node : nodes) {
+			assertTrue(mapped.containsNode(node));
+			assertEquals(node, mapped.nodeAt(mapped.idOf(node)));
+		}
+		assertFalse(mapped.containsNode("b"));
+		assertEquals(MarvelPaths2.minimumCostPath(t, "", "\u00e9"), 
+				MarvelPaths2.minimumCostPath(mapped, "", "\u00e9"));
+		assertEquals(t.getNodes(), mapped.transpose().getNodes());
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testMappedTransposeIsReadFromFile() throws Exception {
+		File file = File.createTempFile("flights", ".csr");
+		file.deleteOnExit();
+		MappedCsrGraph.write(CsrGraph.freeze(g), file.getPath());
+		MappedCsrGraph mapped = MappedCsrGraph.open(file.getPath());
+		MappedCsrGraph reversed = mapped.transpose();
+		assertSame(mapped, reversed.transpose());
+		assertEquals(mapped.edgeCount(), reversed.edgeCount());
+		for (String to : g.getNodes()) {
+			Set<LabEdge<String, Double>> in = new HashSet<LabEdge<String, Double>>();
+			for (String from : g.getNodes()) {
+				for (LabEdge<String, Double> edge : g.getOutwardEdgesOf(from)) {
+					if (edge.getDest().equals(to))
+						in.add(new LabEdge<String, Double>(from, edge.getLabel()));
+				}
+			}
+			assertEquals(in, reversed.getOutwardEdgesOf(to));
+		}
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IOException.class)
+	public void testOpenRejectsFileThatIsNotAGraph() throws Exception {
+		File file = File.createTempFile("notgraph", ".csr");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[32]);
+		out.close();
+		MappedCsrGraph.open(file.getPath());
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testBidirectionalNoPath() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		t.addNode("b");
+		t.addEdge("b", "a", 1.0);
+		assertNull(MarvelPaths2.minimumCostPath(t, "a", "b", SearchMode.BIDIRECTIONAL));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testContractionHierarchyMatchesMinCostPath() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		String[] nodes = {"a", "b", "c", "d", "e", "f"};
+		for (String node : nodes)
+			t.addNode(node);
+		t.addEdge("a", "b", 1.0);
+		t.addEdge("b", "c", 1.0);
+		t.addEdge("c", "d", 1.0);
+		t.addEdge("a", "d", 3.0);
+		t.addEdge("d", "e", 0.5);
+		t.addEdge("e", "a", 2.0);
+		t.addEdge("b", "e", 4.0);
+		t.addEdge("e", "b", 0.0);
+		ContractionHierarchy<String> ch = ContractionHierarchy.build(t);
+		assertEquals(6, ch.nodeCount());
+		for (String from : nodes) {
+			for (String to : nodes)
+				assertEquals(MarvelPaths2.minimumCostPath(t, from, to), ch.minimumCostPath(from, to));
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testContractionHierarchyMatchesMinCostPathOnFlights() {
+		ContractionHierarchy<String> ch = ContractionHierarchy.build(g);
+		for (String from : g.getNodes()) {
+			for (String to : g.getNodes()) {
+				List<LabEdge<String, Double>> expected = MarvelPaths2.minimumCostPath(g, from, to);
+				List<LabEdge<String, Double>> actual = ch.minimumCostPath(from, to);
+				if (expected == null) {
+					assertNull(actual);
+					continue;
+				}
+				assertEquals(expected.size(), actual.size());
+				assertEquals(expected.get(expected.size() - 1), actual.get(actual.size() - 1));
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+	public void testContractionHierarchyUnknownNode() {
+		ContractionHierarchy.build(g).minimumCostPath("New-York", "Nowhere");
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+	public void testMinCostPathContractionHierarchyNeedsPreprocessing() {
+		MarvelPaths2.minimumCostPath(g, "New-York", "San-Fran", SearchMode.CONTRACTION_HIERARCHY);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testLandmarkAStarMatchesMinCostPathOnFlights() {
+		CsrGraph<String> csr = CsrGraph.freeze(g);
+		for (LandmarkHeuristic.Selection selection : LandmarkHeuristic.Selection.values()) {
+			LandmarkHeuristic<String> alt = LandmarkHeuristic.build(csr, 2, selection);
+			for (String from : g.getNodes()) {
+				for (String to : g.getNodes()) {
+					List<LabEdge<String, Double>> expected = MarvelPaths2.minimumCostPath(g, from, to);
+					List<LabEdge<String, Double>> actual = MarvelPaths2.minimumCostPath(csr, from, to, alt);
+					if (expected == null) {
+						assertNull(actual);
+						continue;
+					}
+					assertEquals(expected.size(), actual.size());
+					assertEquals(expected.get(expected.size() - 1), actual.get(actual.size() - 1));
+				}
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testLandmarkEstimateIsLowerBound() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		String[] nodes = {"a", "b", "c", "d", "e"};
+		for (String node : nodes)
+			t.addNode(node);
+		t.addEdge("a", "b", 1.0);
+		t.addEdge("b", "c", 2.0);
+		t.addEdge("c", "a", 4.0);
+		t.addEdge("c", "d", 0.5);
+		LandmarkHeuristic<String> alt = 
+				LandmarkHeuristic.build(t, 3, LandmarkHeuristic.Selection.FARTHEST);
+		assertEquals(3, alt.landmarkCount());
+		for (String from : nodes) {
+			for (String to : nodes) {
+				List<LabEdge<String, Double>> path = MarvelPaths2.minimumCostPath(t, from, to);
+				double estimate = alt.estimate(from, to);
+				if (path == null)
+					assertEquals(Double.POSITIVE_INFINITY, estimate, 0.0);
+				else
+					assertTrue(estimate <= path.get(path.size() - 1).getLabel());
+			}
+		}
+		assertEquals(0.0, alt.estimate("b", "b"), 0.0);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testLandmarkTablesRoundTrip() throws Exception {
+		CsrGraph<String> csr = CsrGraph.freeze(g);
+		LandmarkHeuristic<String> alt = 
+				LandmarkHeuristic.build(csr, 2, LandmarkHeuristic.Selection.DEGREE);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		alt.writeTo(new DataOutputStream(bytes));
+		LandmarkHeuristic<String> copy = LandmarkHeuristic.readFrom(
+				new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), csr);
+		assertEquals(alt.landmarkCount(), copy.landmarkCount());
+		for (String from : g.getNodes()) {
+			for (String to : g.getNodes())
+				assertEquals(alt.estimate(from, to), copy.estimate(from, to), 0.0);
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testDistanceTableMatchesMinCostPath() {
+		List<String> nodes = new ArrayList<String>(g.getNodes());
+		double[][] table = MarvelPaths2.distanceTable(g, nodes, nodes);
+		assertEquals(nodes.size(), table.length);
+		for (int i = 0; i < nodes.size(); i++) {
+			assertEquals(nodes.size(), table[i].length);
+			for (int j = 0; j < nodes.size(); j++) {
+				List<LabEdge<String, Double>> path = 
+						MarvelPaths2.minimumCostPath(g, nodes.get(i), nodes.get(j));
+				if (path == null)
+					assertEquals(Double.POSITIVE_INFINITY, table[i][j], 0.0);
+				else
+					assertEquals(path.get(path.size() - 1).getLabel(), table[i][j], 0.0);
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testDistanceTableUnreachableAndRepeatedTargets() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		t.addNode("b");
+		t.addNode("c");
+		t.addEdge("a", "b", 1.5);
+		double[][] table = MarvelPaths2.distanceTable(t, 
+				Arrays.asList("a", "c"), Arrays.asList("b", "c", "b", "a"));
+		assertArrayEquals(new double[] {1.5, Double.POSITIVE_INFINITY, 1.5, 0.0}, table[0], 0.0);
+		assertArrayEquals(new double[] {Double.POSITIVE_INFINITY, 0.0, 
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY}, table[1], 0.0);
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+	public void testDistanceTableUnknownTarget() {
+		MarvelPaths2.distanceTable(g, Arrays.asList("New-York"), Arrays.asList("Nowhere"));
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+	public void testMinCostPathAStarNeedsHeuristic() {
+		MarvelPaths2.minimumCostPath(g, "New-York", "San-Fran", SearchMode.A_STAR);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testShortestPathTreeMatchesMinCostPath() {
+		for (LabeledGraph<String, Double> graph : Arrays.<LabeledGraph<String, Double>>asList(
+				g, CsrGraph.freeze(g))) {
+			for (String from : g.getNodes()) {
+				ShortestPathTree<String> tree = MarvelPaths2.shortestPathTree(graph, from);
+				assertEquals(from, tree.getOrigin());
+				for (String to : g.getNodes()) {
+					List<LabEdge<String, Double>> path = 
+							MarvelPaths2.minimumCostPath(g, from, to);
+					assertEquals(path, tree.pathTo(to));
+					if (path == null)
+						assertEquals(Double.POSITIVE_INFINITY, tree.distanceTo(to), 0.0);
+					else
+						assertEquals(path.get(path.size() - 1).getLabel(), tree.distanceTo(to), 0.0);
+				}
+			}
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testShortestPathTreeRadius() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		t.addNode("b");
+		t.addNode("c");
+		t.addNode("d");
+		t.addEdge("a", "b", 1.0);
+		t.addEdge("b", "c", 1.0);
+		t.addEdge("c", "d", 1.0);
+		ShortestPathTree<String> tree = MarvelPaths2.shortestPathTree(t, "a", 2.0);
+		assertEquals(Arrays.asList("a", "b", "c"), tree.getNodes());
+		assertEquals(2.0, tree.distanceAt(2), 0.0);
+		assertFalse(tree.contains("d"));
+		assertNull(tree.pathTo("d"));
+		assertEquals(Double.POSITIVE_INFINITY, tree.distanceTo("d"), 0.0);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testShortestPathTreeLooksUpEveryGraphKind() {
+		ConcurrentDirGraph<String, Double> c = new ConcurrentDirGraph<String, Double>();
+		for (String node : g.getNodes())
+			c.addNode(node);
+		for (String node : g.getNodes()) {
+			for (LabEdge<String, Double> edge : g.getOutwardEdgesOf(node))
+				c.addEdge(node, edge.getDest(), edge.getLabel());
+		}
+		for (LabeledGraph<String, Double> graph : Arrays.<LabeledGraph<String, Double>>asList(
+				g, CsrGraph.freeze(g), c)) {
+			ShortestPathTree<String> tree = MarvelPaths2.shortestPathTree(graph, "New-York");
+			for (int i = 0; i < tree.size(); i++) {
+				assertTrue(tree.contains(tree.nodeAt(i)));
+				assertEquals(tree.distanceAt(i), tree.distanceTo(tree.nodeAt(i)), 0.0);
+			}
+			assertFalse(tree.contains("Nowhere"));
+			assertNull(tree.pathTo("Nowhere"));
+			assertEquals(Double.POSITIVE_INFINITY, tree.distanceTo("Nowhere"), 0.0);
+		}
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IllegalArgumentException.class)
+	public void testShortestPathTreeNegativeRadius() {
+		MarvelPaths2.shortestPathTree(g, "New-York", -1.0);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testConcurrentGraphMatchesDirGraph() {
+		ConcurrentDirGraph<String, Double> c = new ConcurrentDirGraph<String, Double>();
+		for (String node : g.getNodes())
+			c.addNode(node);
+		for (String node : g.getNodes()) {
+			for (LabEdge<String, Double> edge : g.getOutwardEdgesOf(node))
+				assertTrue(c.addEdge(node, edge.getDest(), edge.getLabel()));
+		}
+		for (String from : g.getNodes()) {
+			assertEquals(new ArrayList<LabEdge<String, Double>>(g.getOutwardEdgesOf(from)), 
+					new ArrayList<LabEdge<String, Double>>(c.getOutwardEdgesView(from)));
+			for (String to : g.getNodes())
+				assertEquals(MarvelPaths2.minimumCostPath(g, from, to), 
+						MarvelPaths2.minimumCostPath(c, from, to));
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testConcurrentGraphRemoveEdge() {
+		ConcurrentDirGraph<String, Double> c = new ConcurrentDirGraph<String, Double>();
+		c.addNode("a");
+		c.addNode("b");
+		assertTrue(c.addEdge("a", "b", 1.0));
+		assertFalse(c.addEdge("a", "b", 1.0));
+		assertEquals(1, c.getInwardEdgesView("b").size());
+		assertTrue(c.removeEdge("a", "b", 1.0));
+		assertFalse(c.removeEdge("a", "b", 1.0));
+		assertTrue(c.getOutwardEdgesView("a").isEmpty());
+		assertTrue(c.getInwardEdgesView("b").isEmpty());
+		assertNull(MarvelPaths2.minimumCostPath(c, "a", "b"));
+	}
+	
+	/**
+	 * Runs minimumCostPath on a grid from 4 reader threads while a writer 
+	 * keeps opening and closing diagonal paths. The grid edges are never 
+	 * closed, so every query must find a path. ConcurrentGraphBenchmark 
+	 * measures the throughput of the same workload.
+	 */
+	@Test(timeout = TIMEOUT)
+	public void testConcurrentGraphReadersDuringWrites() throws Exception {
+		final int side = 16;
+		final int readers = 4;
+		final int queriesEach = 100;
+		final ConcurrentDirGraph<String, Double> c = new ConcurrentDirGraph<String, Double>();
+		for (int r = 0; r < side; r++) {
+			for (int k = 0; k < side; k++)
+				c.addNode(r + "," + k);
+		}
+		for (int r = 0; r < side; r++) {
+			for (int k = 0; k < side; k++) {
+				if (r + 1 < side) {
+					c.addEdge(r + "," + k, (r + 1) + "," + k, 1.0);
+					c.addEdge((r + 1) + "," + k, r + "," + k, 1.0);
+				}
+				if (k + 1 < side) {
+					c.addEdge(r + "," + k, r + "," + (k + 1), 1.0);
+					c.addEdge(r + "," + (k + 1), r + "," + k, 1.0);
+				}
+			}
+		}
+		
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicLong queries = new AtomicLong();
+		final AtomicLong writes = new AtomicLong();
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				Random random = new Random(7);
+				try {
+					while (running.get()) {
+						String from = random.nextInt(side - 1) + "," + random.nextInt(side - 1);
+						String[] rc = from.split(",");
+						String to = (Integer.parseInt(rc[0]) + 1) + "," + (Integer.parseInt(rc[1]) + 1);
+						if (!c.addEdge(from, to, 1.5))
+							c.removeEdge(from, to, 1.5);
+						writes.incrementAndGet();
+					}
+				} catch (Throwable t) {
+					failure.compareAndSet(null, t);
+				}
+			}
+		});
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < readers; t++) {
+			final long seed = t;
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					Random random = new Random(seed);
+					try {
+						// the queries overlap the writes from the first one
+						while (writes.get() == 0 && failure.get() == null)
+							Thread.yield();
+						for (int q = 0; q < queriesEach; q++) {
+							String from = random.nextInt(side) + "," + random.nextInt(side);
+							String to = random.nextInt(side) + "," + random.nextInt(side);
+							List<LabEdge<String, Double>> path = 
+									MarvelPaths2.minimumCostPath(c, from, to);
+							assertNotNull(path);
+							assertEquals(from, path.get(0).getDest());
+							assertEquals(to, path.get(path.size() - 1).getDest());
+							for (int i = 1; i < path.size(); i++)
+								assertTrue(path.get(i - 1).getLabel() < path.get(i).getLabel());
+							queries.incrementAndGet();
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			}));
+		}
+		writer.start();
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		running.set(false);
+		writer.join();
+		if (failure.get() != null)
+			throw new AssertionError(failure.get());
+		assertEquals(readers * queriesEach, queries.get());
+		assertTrue(writes.get() > 0);
+	}
+	
+	/**
+	 * Returns a VersionedGraph with the nodes and edges of g, published
+	 * as version 1.
+	 */
+	private VersionedGraph<String, Double> versionedCopyOfG() {
+		VersionedGraph<String, Double> v = new VersionedGraph<String, Double>();
+		for (String node : g.getNodes())
+			v.addNode(node);
+		for (String node : g.getNodes()) {
+			for (LabEdge<String, Double> edge : g.getOutwardEdgesOf(node))
+				assertTrue(v.addEdge(node, edge.getDest(), edge.getLabel()));
+		}
+		assertEquals(1, v.publish());
+		return v;
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testVersionedGraphMatchesDirGraph() {
+		VersionedGraph<String, Double> v = versionedCopyOfG();
+		VersionedGraph.Snapshot<String, Double> snapshot = v.pin();
+		assertEquals(g.getNodes(), snapshot.getNodes());
+		for (String from : g.getNodes()) {
+			for (String to : g.getNodes())
+				assertEquals(MarvelPaths2.minimumCostPath(g, from, to), 
+						MarvelPaths2.minimumCostPath(snapshot, from, to));
+		}
+		snapshot.close();
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testVersionedGraphSnapshotsAreIsolated() {
+		VersionedGraph<String, Double> v = versionedCopyOfG();
+		VersionedGraph.Snapshot<String, Double> before = v.pin();
+		List<LabEdge<String, Double>> path = 
+				MarvelPaths2.minimumCostPath(before, "New-York", "San-Fran");
+		
+		// close every hop of the path and add a direct edge, in one batch
+		for (int i = 1; i < path.size(); i++) {
+			String from = path.get(i - 1).getDest();
+			String to = path.get(i).getDest();
+			double weight = path.get(i).getLabel() - path.get(i - 1).getLabel();
+			assertTrue(v.removeEdge(from, to, weight));
+		}
+		v.addNode("Direct");
+		v.addEdge("New-York", "Direct", 0.75);
+		v.addEdge("Direct", "San-Fran", 0.75);
+		
+		// nothing is visible before publish
+		VersionedGraph.Snapshot<String, Double> unpublished = v.pin();
+		assertEquals(1, unpublished.getVersion());
+		assertFalse(unpublished.containsNode("Direct"));
+		unpublished.close();
+		
+		assertEquals(2, v.publish());
+		VersionedGraph.Snapshot<String, Double> after = v.pin();
+		assertEquals(path, MarvelPaths2.minimumCostPath(before, "New-York", "San-Fran"));
+		assertEquals(Arrays.asList("New-York", "Direct", "San-Fran"), 
+				destinations(MarvelPaths2.minimumCostPath(after, "New-York", "San-Fran")));
+		assertEquals(1, v.pinnedVersionCount());
+		before.close();
+		assertEquals(0, v.pinnedVersionCount());
+		after.close();
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IllegalStateException.class)
+	public void testVersionedGraphClosedSnapshot() {
+		VersionedGraph<String, Double> v = versionedCopyOfG();
+		VersionedGraph.Snapshot<String, Double> snapshot = v.pin();
+		snapshot.close();
+		snapshot.containsNode("New-York");
+	}
+	
+	/**
+	 * Returns the nodes of a path, in order.
+	 */
+	private static List<String> destinations(List<LabEdge<String, Double>> path) {
+		List<String> nodes = new ArrayList<String>();
+		for (LabEdge<String, Double> edge : path)
+			nodes.add(edge.getDest());
+		return nodes;
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testEdgesBetweenParallelEdges() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		t.addNode("b");
+		t.addNode("c");
+		t.addEdge("a", "b", 3.0);
+		t.addEdge("a", "c", 0.5);
+		assertEquals(3.0, t.getShortestEdgeBetween("a", "b").getLabel(), 0.0);
+		t.addEdge("a", "b", 1.0);
+		t.addEdge("a", "b", 2.0);
+		assertEquals(new LabEdge<String, Double>("b", 1.0), t.getShortestEdgeBetween("a", "b"));
+		assertEquals(new HashSet<LabEdge<String, Double>>(Arrays.asList(
+				new LabEdge<String, Double>("b", 1.0), new LabEdge<String, Double>("b", 2.0), 
+				new LabEdge<String, Double>("b", 3.0))), t.getEdgesBetween("a", "b"));
+		assertTrue(t.getEdgesBetween("b", "a").isEmpty());
+	}
+	
+	@Test(timeout = TIMEOUT, expected = NoSuchElementException.class)
+	public void testShortestEdgeBetweenNoEdge() {
+		g.getShortestEdgeBetween("San-Fran", "San-Fran");
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testBuilderMatchesAddEdge() {
+		DirGraph.Builder<String, Double> builder = new DirGraph.Builder<String, Double>(2, 4);
+		for (String node : g.getNodes()) {
+			builder.addNode(node);
+			builder.addEdges(node, g.getOutwardEdgesOf(node));
+			// duplicates are dropped by build
+			builder.addEdges(node, g.getOutwardEdgesOf(node).stream());
+		}
+		builder.addNode("Alone");
+		DirGraph<String, Double> built = builder.build();
+		assertEquals(g.size() + 1, built.size());
+		assertTrue(built.getOutwardEdgesOf("Alone").isEmpty());
+		for (String from : g.getNodes()) {
+			assertEquals(g.getOutwardEdgesOf(from), built.getOutwardEdgesOf(from));
+			for (String to : g.getNodes()) {
+				assertEquals(g.getEdgesBetween(from, to), built.getEdgesBetween(from, to));
+				assertEquals(MarvelPaths2.minimumCostPath(g, from, to), 
+						MarvelPaths2.minimumCostPath(built, from, to));
+				assertEquals(MarvelPaths2.minimumCostPath(g, from, to, SearchMode.BIDIRECTIONAL), 
+						MarvelPaths2.minimumCostPath(built, from, to, SearchMode.BIDIRECTIONAL));
+			}
+		}
+		
+		// the built graph can still be changed one edge at a time
+		assertTrue(built.addEdge("Alone", "New-York", 0.5));
+		assertEquals(new LabEdge<String, Double>("New-York", 0.5), 
+				built.getShortestEdgeBetween("Alone", "New-York"));
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IllegalStateException.class)
+	public void testBuilderBuildsOnce() {
+		DirGraph.Builder<String, Double> builder = new DirGraph.Builder<String, Double>();
+		builder.addEdge("a", "b", 1.0).build();
+		builder.addNode("c");
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testInEdgesMatchOutEdges() {
+		for (String node : g.getNodes()) {
+			Set<LabEdge<String, Double>> in = new HashSet<LabEdge<String, Double>>();
+			Set<String> parents = new HashSet<String>();
+			for (String from : g.getNodes()) {
+				for (LabEdge<String, Double> edge : g.getEdgesBetween(from, node)) {
+					in.add(new LabEdge<String, Double>(from, edge.getLabel()));
+					parents.add(from);
+				}
+			}
+			assertEquals(in, new HashSet<LabEdge<String, Double>>(g.getInwardEdgesOf(node)));
+			assertEquals(parents, g.getParentsOf(node));
+			assertEquals(in.size(), g.inDegree(node));
+			assertEquals(g.getOutwardEdgesOf(node).size(), g.outDegree(node));
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testInEdgeIndexBuiltOnDemand() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>(false);
+		t.addNode("a");
+		t.addNode("b");
+		t.addNode("c");
+		t.addEdge("a", "c", 1.0);
+		t.addEdge("b", "c", 2.0);
+		assertFalse(t.hasInEdgeIndex());
+		assertEquals(new TreeSet<String>(Arrays.asList("a", "b")), t.getParentsOf("c"));
+		assertTrue(t.hasInEdgeIndex());
+		
+		// kept up to date once built
+		t.addEdge("c", "a", 3.0);
+		assertEquals(1, t.inDegree("a"));
+		assertEquals(MarvelPaths2.minimumCostPath(t, "b", "a"), 
+				MarvelPaths2.minimumCostPath(t, "b", "a", SearchMode.BIDIRECTIONAL));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testNodeDictionaryNumbersNodesInOrder() {
+		NodeDictionary<Counted> ids = new NodeDictionary<Counted>();
+		// every node has the same hash code, so all of them collide
+		for (int i = 0; i < 100; i++)
+			assertEquals(i, ids.add(new Counted(i, 0)));
+		assertEquals(100, ids.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, ids.idOf(new Counted(i, 0)));
+			assertEquals(i, ids.add(new Counted(i, 0)));
+			assertEquals(new Counted(i, 0), ids.nodeAt(i));
+		}
+		assertEquals(-1, ids.idOf(new Counted(100, 0)));
+		assertEquals(100, ids.asSet().size());
+		assertTrue(ids.asSet().contains(new Counted(42, 0)));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testSearchOnDirGraphDoesNotHashNodes() {
+		DirGraph<Counted, Double> t = new DirGraph<Counted, Double>();
+		int side = 30;
+		for (int i = 0; i < side * side; i++)
+			t.addNode(new Counted(i, i));
+		for (int i = 0; i < side * side; i++) {
+			if (i % side + 1 < side)
+				t.addEdge(new Counted(i, i), new Counted(i + 1, i + 1), 1.0);
+			if (i + side < side * side)
+				t.addEdge(new Counted(i, i), new Counted(i + side, i + side), 1.5);
+		}
+		Counted first = new Counted(0, 0);
+		Counted last = new Counted(side * side - 1, side * side - 1);
+		assertEquals(t.idOf(last), t.toCsr(Double::doubleValue).idOf(last));
+		
+		Counted.calls = 0;
+		List<LabEdge<Counted, Double>> path = MarvelPaths2.minimumCostPath(t, first, last);
+		assertEquals(2 * (side - 1) + 1, path.size());
+		// the endpoints are looked up, but no node reached by the search
+		assertTrue(Counted.calls + " calls", Counted.calls < 10);
+		assertEquals(path, MarvelPaths2.minimumCostPath(t.toCsr(Double::doubleValue), first, last));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testParseDataMatchesLineByLineCount() throws Exception {
+		// a few crowded books, characters listed twice in a book and a 
+		// comment, so that duplicate and self pairs are counted
+		File file = File.createTempFile("marvel", ".tsv");
+		List<String[]> lines = new ArrayList<String[]>();
+		Random random = new Random(7);
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		try {
+			out.println("# character\tbook");
+			for (int i = 0; i < 3000; i++) {
+				String[] line = {"C" + random.nextInt(200), "B" + random.nextInt(i < 500 ? 5 : 400)};
+				lines.add(line);
+				out.println("\"" + line[0] + "\"\t\"" + line[1] + "\"");
+			}
+		} finally {
+			out.close();
+		}
+		
+		Map<String, HashMap<String, Integer>> expected = new HashMap<String, HashMap<String, Integer>>();
+		Map<String, List<String>> books = new HashMap<String, List<String>>();
+		for (String[] line : lines) {
+			if (!expected.containsKey(line[0]))
+				expected.put(line[0], new HashMap<String, Integer>());
+			if (!books.containsKey(line[1]))
+				books.put(line[1], new ArrayList<String>());
+			for (String other : books.get(line[1])) {
+				increment(expected.get(line[0]), other);
+				increment(expected.get(other), line[0]);
+			}
+			books.get(line[1]).add(line[0]);
+		}
+		
+		Map<String, HashMap<String, Integer>> parallel = new HashMap<String, HashMap<String, Integer>>();
+		Map<String, HashMap<String, Integer>> single = new HashMap<String, HashMap<String, Integer>>();
+		Map<String, HashMap<String, Integer>> mapped = new HashMap<String, HashMap<String, Integer>>();
+		ForkJoinPool pool = new ForkJoinPool(1);
+		try {
+			MarvelParser2.parseData(file.getPath(), parallel);
+			MarvelParser2.parseData(file.getPath(), single, pool);
+			MarvelParser2.parseMappedData(file.getPath(), mapped);
+		} finally {
+			pool.shutdown();
+			file.delete();
+		}
+		assertEquals(expected, parallel);
+		assertEquals(expected, single);
+		assertEquals(expected, mapped);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testIndexedSearchMatchesMinCostPath() {
+		// weights of 1 and 2 make many paths tie exactly
+		Random random = new Random(13);
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		for (int i = 0; i < 60; i++)
+			t.addNode("n" + i);
+		for (int i = 0; i < 240; i++)
+			t.addEdge("n" + random.nextInt(60), "n" + random.nextInt(60), 1.0 + random.nextInt(2));
+		CsrGraph<String> frozen = CsrGraph.freeze(t);
+		int n = frozen.nodeCount();
+		IndexedSearch search = new IndexedSearch(frozen);
+		for (int source = 0; source < n; source++) {
+			search.run(source);
+			assertEquals(source, search.settledAt(0));
+			for (int target = 0; target < n; target++) {
+				List<LabEdge<String, Double>> expected = MarvelPaths2.minimumCostPath(
+						frozen, frozen.nodeAt(source), frozen.nodeAt(target));
+				if (expected == null) {
+					assertFalse(search.isSettled(target));
+					assertEquals(Double.POSITIVE_INFINITY, search.distanceTo(target), 0.0);
+					continue;
+				}
+				assertEquals(expected.get(expected.size() - 1).getLabel(), search.distanceTo(target), 0.0);
+				int v = target;
+				for (int i = expected.size() - 1; i >= 0; i--) {
+					assertEquals(expected.get(i).getDest(), frozen.nodeAt(v));
+					v = search.predecessorOf(v);
+				}
+				assertEquals(-1, v);
+			}
+			
+			// a search for one target stops once it is settled
+			boolean[] isTarget = new boolean[n];
+			isTarget[n - 1 - source] = true;
+			double full = search.distanceTo(n - 1 - source);
+			search.run(source, isTarget, 1);
+			assertEquals(full, search.distanceTo(n - 1 - source), 0.0);
+		}
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testParsersRejectMissingFile() throws Exception {
+		File file = File.createTempFile("marvel", ".tsv");
+		file.delete();
+		Map<String, HashMap<String, Integer>> counts = new HashMap<String, HashMap<String, Integer>>();
+		try {
+			MarvelParser2.parseData(file.getPath(), counts);
+			fail("parseData read a missing file");
+		} catch (IOException e) {
+			assertTrue(counts.isEmpty());
+		}
+		try {
+			MarvelParser2.parseMappedData(file.getPath(), counts);
+			fail("parseMappedData read a missing file");
+		} catch (IOException e) {
+			assertTrue(counts.isEmpty());
+		}
+	}
+	
+	@Test(timeout = TIMEOUT, expected = IOException.class)
+	public void testMakeWeightedGraphRejectsMissingFile() throws Exception {
+		File file = File.createTempFile("marvel", ".tsv");
+		file.delete();
+		MarvelPaths2.makeWeightedGraph(file.getPath());
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testMinCostPathBreaksTiesAsPathCopyingSearch() throws Exception {
+		// few characters in few books give many pairs the same count, so
+		// many paths tie in cost and in number of edges
+		File file = File.createTempFile("marvel", ".tsv");
+		Random random = new Random(5);
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		try {
+			for (int i = 0; i < 600; i++)
+				out.println("\"C" + random.nextInt(120) + "\"\t\"B" + random.nextInt(150) + "\"");
+		} finally {
+			out.close();
+		}
+		DirGraph<String, Double> weighted;
+		CsrGraph<String> compact;
+		try {
+			weighted = MarvelPaths2.makeWeightedGraph(file.getPath());
+			compact = MarvelPaths2.makeCompactGraph(file.getPath());
+		} finally {
+			file.delete();
+		}
+		CsrGraph<String> frozen = CsrGraph.freeze(weighted);
+		List<String> nodes = new ArrayList<String>(weighted.getNodes());
+		for (int q = 0; q < 300; q++) {
+			String from = nodes.get(random.nextInt(nodes.size()));
+			String to = nodes.get(random.nextInt(nodes.size()));
+			List<LabEdge<String, Double>> expected = pathCopyingMinimumCostPath(weighted, from, to);
+			assertEquals(expected, MarvelPaths2.minimumCostPath(weighted, from, to));
+			assertEquals(expected, MarvelPaths2.minimumCostPath(frozen, from, to));
+			assertEquals(expected, MarvelPaths2.minimumCostPath(compact, from, to));
+		}
+	}
+	
+	/**
+	 * Returns the path minimumCostPath returned when it queued a copy of 
+	 * every path in a PriorityQueue, ordered by cost and then by length.
+	 */
+	private static List<LabEdge<String, Double>> pathCopyingMinimumCostPath(
+			DirGraph<String, Double> graph, String origin, String dest) {
+		PriorityQueue<ArrayList<LabEdge<String, Double>>> active = 
+				new PriorityQueue<ArrayList<LabEdge<String, Double>>>(20, 
+						new Comparator<ArrayList<LabEdge<String, Double>>>() {
+							public int compare(ArrayList<LabEdge<String, Double>> path1, 
+									ArrayList<LabEdge<String, Double>> path2) {
+								LabEdge<String, Double> end1 = path1.get(path1.size() - 1);
+								LabEdge<String, Double> end2 = path2.get(path2.size() - 1);
+								if (!end1.getLabel().equals(end2.getLabel()))
+									return end1.getLabel().compareTo(end2.getLabel());
+								return path1.size() - path2.size();
+							}
+						});
+		Set<String> settled = new HashSet<String>();
+		ArrayList<LabEdge<String, Double>> start = new ArrayList<LabEdge<String, Double>>();
+		start.add(new LabEdge<String, Double>(origin, 0.0));
+		active.add(start);
+		while (!active.isEmpty()) {
+			ArrayList<LabEdge<String, Double>> minPath = active.poll();
+			LabEdge<String, Double> end = minPath.get(minPath.size() - 1);
+			if (end.getDest().equals(dest))
+				return minPath;
+			if (settled.contains(end.getDest()))
+				continue;
+			for (LabEdge<String, Double> edge : graph.getOutwardEdgesOf(end.getDest())) {
+				if (!settled.contains(edge.getDest())) {
+					ArrayList<LabEdge<String, Double>> path = 
+							new ArrayList<LabEdge<String, Double>>(minPath);
+					path.add(new LabEdge<String, Double>(edge.getDest(), end.getLabel() + edge.getLabel()));
+					active.add(path);
+				}
+			}
+			settled.add(end.getDest());
+		}
+		return null;
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testCompactGraphMatchesWeightedGraph() throws Exception {
+		File file = File.createTempFile("marvel", ".tsv");
+		Random random = new Random(11);
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		try {
+			for (int i = 0; i < 2000; i++)
+				out.println("\"C" + random.nextInt(150) + "\"\t\"B" + random.nextInt(300) + "\"");
+			// names whose hash codes collide are ordered by name
+			for (String name : new String[] {"BBBB", "Aa", "AaBB", "BB", "BBAa", "AaAa"})
+				out.println("\"" + name + "\"\t\"B0\"");
+		} finally {
+			out.close();
+		}
+		CsrGraph<String> frozen;
+		CsrGraph<String> compact;
+		try {
+			frozen = CsrGraph.freeze(MarvelPaths2.makeWeightedGraph(file.getPath()));
+			compact = MarvelPaths2.makeCompactGraph(file.getPath());
+		} finally {
+			file.delete();
+		}
+		assertEquals(frozen.nodeCount(), compact.nodeCount());
+		assertEquals(frozen.edgeCount(), compact.edgeCount());
+		assertSame(compact, compact.transpose());
+		for (String character : frozen.getNodesView()) {
+			int f = frozen.idOf(character);
+			int c = compact.idOf(character);
+			assertEquals(frozen.endEdge(f) - frozen.firstEdge(f), compact.endEdge(c) - compact.firstEdge(c));
+			for (int i = 0; i < frozen.endEdge(f) - frozen.firstEdge(f); i++) {
+				int fe = frozen.firstEdge(f) + i;
+				int ce = compact.firstEdge(c) + i;
+				assertEquals(frozen.nodeAt(frozen.targetOf(fe)), compact.nodeAt(compact.targetOf(ce)));
+				assertEquals(frozen.weightOf(fe), compact.weightOf(ce), 0.0);
+			}
+		}
+		assertEquals(MarvelPaths2.minimumCostPath(frozen, "C0", "C149"), 
+				MarvelPaths2.minimumCostPath(compact, "C0", "C149"));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testDirGraphRemoveEdge() {
+		DirGraph<String, Double> t = new DirGraph<String, Double>();
+		t.addNode("a");
+		t.addNode("b");
+		t.addEdge("a", "b", 1.0);
+		t.addEdge("a", "b", 2.0);
+		assertTrue(t.removeEdge("a", "b", 1.0));
+		assertFalse(t.removeEdge("a", "b", 1.0));
+		assertEquals(new LabEdge<String, Double>("b", 2.0), t.getShortestEdgeBetween("a", "b"));
+		assertEquals(1, t.getInwardEdgesOf("b").size());
+		assertTrue(t.removeEdge("a", "b", 2.0));
+		assertTrue(t.getOutwardEdgesOf("a").isEmpty());
+		assertTrue(t.getInwardEdgesOf("b").isEmpty());
+		assertTrue(t.getEdgesBetween("a", "b").isEmpty());
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testNetworkAppendMatchesRebuild() throws Exception {
+		File full = File.createTempFile("marvel", ".tsv");
+		File base = File.createTempFile("marvel", ".tsv");
+		File delta = File.createTempFile("marvel", ".tsv");
+		Random random = new Random(13);
+		PrintWriter fullOut = new PrintWriter(new FileWriter(full));
+		PrintWriter baseOut = new PrintWriter(new FileWriter(base));
+		PrintWriter deltaOut = new PrintWriter(new FileWriter(delta));
+		try {
+			for (int i = 0; i < 2000; i++) {
+				// the delta brings new characters and books as well as old ones
+				String line = "\"C" + random.nextInt(i < 1500 ? 120 : 150) + "\"\t\"B" 
+						+ random.nextInt(i < 1500 ? 250 : 300) + "\"";
+				fullOut.println(line);
+				(i < 1500 ? baseOut : deltaOut).println(line);
+			}
+		} finally {
+			fullOut.close();
+			baseOut.close();
+			deltaOut.close();
+		}
+		DirGraph<String, Double> rebuilt;
+		Map<String, HashMap<String, Integer>> counts = new HashMap<String, HashMap<String, Integer>>();
+		MarvelNetwork network;
+		try {
+			rebuilt = MarvelPaths2.makeWeightedGraph(full.getPath());
+			MarvelParser2.parseData(full.getPath(), counts);
+			network = MarvelNetwork.load(base.getPath());
+			network.appendData(delta.getPath());
+		} finally {
+			full.delete();
+			base.delete();
+			delta.delete();
+		}
+		DirGraph<String, Double> appended = network.getGraph();
+		assertEquals(rebuilt.getNodes(), appended.getNodes());
+		for (String character : rebuilt.getNodesView()) {
+			assertEquals(new ArrayList<LabEdge<String, Double>>(rebuilt.getOutwardEdgesOf(character)), 
+					new ArrayList<LabEdge<String, Double>>(appended.getOutwardEdgesOf(character)));
+			for (Map.Entry<String, Integer> pair : counts.get(character).entrySet())
+				assertEquals(pair.getValue().intValue(), network.countOf(character, pair.getKey()));
+		}
+		assertEquals(MarvelPaths2.minimumCostPath(rebuilt, "C0", "C149"), 
+				MarvelPaths2.minimumCostPath(appended, "C0", "C149"));
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testNetworkAppendUpdatesOnlyItsBook() {
+		MarvelNetwork network = new MarvelNetwork();
+		network.append("A", "B1");
+		network.append("C", "B1");
+		network.append("A", "B2");
+		network.append("D", "B2");
+		DirGraph<String, Double> graph = network.getGraph();
+		assertEquals(new LabEdge<String, Double>("C", 1.0), graph.getShortestEdgeBetween("A", "C"));
+		
+		// a second listing of A in B1 pairs it with C and with itself
+		network.append("A", "B1");
+		assertEquals(2, network.countOf("A", "C"));
+		assertEquals(2, network.countOf("C", "A"));
+		assertEquals(2, network.countOf("A", "A"));
+		assertEquals(1, network.countOf("A", "D"));
+		assertEquals(0, network.countOf("C", "D"));
+		assertEquals(new HashSet<LabEdge<String, Double>>(Arrays.asList(
+				new LabEdge<String, Double>("C", 0.5))), graph.getEdgesBetween("A", "C"));
+		assertEquals(new LabEdge<String, Double>("A", 0.5), graph.getShortestEdgeBetween("A", "A"));
+		assertEquals(new TreeSet<String>(Arrays.asList("A", "C")), network.getCharactersOf("B1"));
+		assertTrue(network.getCharactersOf("B3").isEmpty());
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testParseMappedDataMatchesParseData() throws Exception {
+		// CRLF line ends, an unquoted name, a trailing empty token and no 
+		// line end on the last line
+		File file = File.createTempFile("marvel", ".tsv");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(("# comment\r\n\"A\"\t\"B1\"\r\nC\t\"B1\"\r\n\"ELAN\"\t\"B1\"\t\r\n"
+					+ "\"A\"\t\"B2\"\r\n\"ELAN\"\t\"B2\"").getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		Map<String, HashMap<String, Integer>> lines = new HashMap<String, HashMap<String, Integer>>();
+		Map<String, HashMap<String, Integer>> mapped = new HashMap<String, HashMap<String, Integer>>();
+		try {
+			MarvelParser2.parseData(file.getPath(), lines);
+			MarvelParser2.parseMappedData(file.getPath(), mapped);
+		} finally {
+			file.delete();
+		}
+		assertEquals(new TreeSet<String>(Arrays.asList("A", "C", "ELAN")), lines.keySet());
+		assertEquals(Integer.valueOf(2), lines.get("A").get("ELAN"));
+		assertEquals(lines, mapped);
+	}
+	
+	@Test(timeout = TIMEOUT)
+	public void testMalformedLineReportsLineNumber() throws Exception {
+		File file = File.createTempFile("marvel", ".tsv");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write("# comment\n\"A\"\t\"B\"\n\"C\"\t\"B\"\t\"D\"\n".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		try {
+			for (int mode = 0; mode < 2; mode++) {
+				Map<String, HashMap<String, Integer>> count = new HashMap<String, HashMap<String, Integer>>();
+				try {
+					if (mode == 0)
+						MarvelParser2.parseData(file.getPath(), count);
+					else
+						MarvelParser2.parseMappedData(file.getPath(), count);
+					fail("line 3 has two tabs");
+				} catch (MarvelParser2.MalformedDataException e) {
+					assertTrue(e.getMessage(), e.getMessage().startsWith("Line 3 "));
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	private static void increment(Map<String, Integer> count, String character) {
+		Integer old = count.get(character);
+		count.put(character, old == null ? 1 : old + 1);
+	}
+	
+	/**
+	 * A node that counts calls to hashCode and equals.
+	 */
+	private static final class Counted {
+		static int calls = 0;
+		private final int id;
+		private final int hash;
+		
+		Counted(int id, int hash) {
+			this.id = id;
+			this.hash = hash;
+		}
+		
+		@Override
+		public int hashCode() {
+			calls++;
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			calls++;
+			return o instanceof Counted && ((Counted) o).id == id;
+		}
+	}
 }